@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemManager;
+import org.apache.commons.vfs2.Selectors;
+
+import fi.mystes.synapse.mediator.vfs.VfsManagerPool;
+import fi.mystes.synapse.mediator.vfs.VfsOperationOptions;
+
+/**
+ * Helper methods for preparing benchmark directories. Files are created
+ * with a manager borrowed from the connection pool of the benchmark, which
+ * the benchmarked operations then borrow as well, so that ram:// and tmp://
+ * file systems are shared between set-up and the measured operation.
+ */
+public final class BenchmarkFiles {
+
+    /**
+     * System property limiting the total size of generated files, so that
+     * parameter combinations not fitting the machine fail fast.
+     */
+    public static final String MAX_TOTAL_BYTES_PROPERTY = "vfs.benchmark.maxTotalBytes";
+    private static final long DEFAULT_MAX_TOTAL_BYTES = 256L * 1024 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    private BenchmarkFiles() {
+        // static utility methods only - prevent instantiation
+    }
+
+    /**
+     * Returns a fresh root directory URI for given scheme.
+     *
+     * @param scheme
+     *            ram, tmp or file
+     * @return Root directory URI
+     */
+    public static String rootUri(String scheme) {
+        String name = "vfs-benchmark-" + System.nanoTime();
+        if ("file".equals(scheme)) {
+            return new File(System.getProperty("java.io.tmpdir"), name).toURI().toString().replaceFirst("/$", "");
+        } else if ("ram".equals(scheme) || "tmp".equals(scheme)) {
+            return scheme + ":///" + name;
+        }
+        throw new IllegalArgumentException("unsupported scheme: " + scheme);
+    }
+
+    /**
+     * Fails if the generated files would not fit the configured limit.
+     *
+     * @param fileCount
+     *            Amount of files
+     * @param fileSize
+     *            Size of each file in bytes
+     */
+    public static void checkTotalSize(int fileCount, long fileSize) {
+        long maxTotalBytes = Long.getLong(MAX_TOTAL_BYTES_PROPERTY, DEFAULT_MAX_TOTAL_BYTES);
+        if ((double) fileCount * fileSize > maxTotalBytes) {
+            throw new IllegalStateException("Skipping " + fileCount + " files of " + fileSize
+                    + " bytes, exceeds " + MAX_TOTAL_BYTES_PROPERTY + "=" + maxTotalBytes);
+        }
+    }
+
+    /**
+     * Borrows the pooled manager, creating one if the pool is empty.
+     *
+     * @param pool
+     *            Connection pool of the benchmark
+     * @param options
+     *            Options of the benchmarked operation
+     * @return File system manager
+     * @throws FileSystemException
+     *             If creating the manager fails
+     */
+    public static FileSystemManager borrowManager(VfsManagerPool pool, VfsOperationOptions options)
+            throws FileSystemException {
+        FileSystemManager manager = pool.borrow(options);
+        return manager != null ? manager : VfsManagerPool.create();
+    }
+
+    /**
+     * Makes sure given directory contains exactly the given amount of
+     * generated files. Existing files are kept if the count already matches.
+     *
+     * @param manager
+     *            File system manager
+     * @param directoryUri
+     *            Directory to populate
+     * @param fileCount
+     *            Amount of files
+     * @param fileSize
+     *            Size of each file in bytes
+     * @throws IOException
+     *             If writing the files fails
+     */
+    public static void populate(FileSystemManager manager, String directoryUri, int fileCount, long fileSize)
+            throws IOException {
+        FileObject directory = manager.resolveFile(directoryUri);
+        if (directory.exists() && directory.getChildren().length == fileCount) {
+            return;
+        }
+        clear(manager, directoryUri);
+
+        byte[] block = new byte[(int) Math.min(fileSize, WRITE_BUFFER_SIZE)];
+        new Random(42).nextBytes(block);
+        for (int i = 0; i < fileCount; i++) {
+            FileObject file = directory.resolveFile(fileName(i));
+            OutputStream out = file.getContent().getOutputStream();
+            try {
+                for (long written = 0; written < fileSize; written += block.length) {
+                    out.write(block, 0, (int) Math.min(block.length, fileSize - written));
+                }
+            } finally {
+                out.close();
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes everything in given directory, leaving the directory empty.
+     *
+     * @param manager
+     *            File system manager
+     * @param directoryUri
+     *            Directory to clear
+     * @throws FileSystemException
+     *             If deleting fails
+     */
+    public static void clear(FileSystemManager manager, String directoryUri) throws FileSystemException {
+        FileObject directory = manager.resolveFile(directoryUri);
+        directory.delete(Selectors.EXCLUDE_SELF);
+        directory.createFolder();
+    }
+
+    /**
+     * Deletes given directory with its contents.
+     *
+     * @param manager
+     *            File system manager
+     * @param directoryUri
+     *            Directory to delete
+     * @throws FileSystemException
+     *             If deleting fails
+     */
+    public static void delete(FileSystemManager manager, String directoryUri) throws FileSystemException {
+        manager.resolveFile(directoryUri).delete(Selectors.SELECT_ALL);
+    }
+
+    /**
+     * Returns name of the generated file with given index.
+     *
+     * @param index
+     *            File index
+     * @return File name
+     */
+    public static String fileName(int index) {
+        return String.format("file%07d.dat", index);
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.mystes.synapse.mediator.vfs.VfsFileTransferUtility;
+import fi.mystes.synapse.mediator.vfs.VfsManagerPool;
+import fi.mystes.synapse.mediator.vfs.VfsOperationOptions;
+
+/**
+ * Measures copy and move throughput of {@link VfsFileTransferUtility} over
+ * local file systems. Each measured invocation transfers the whole source
+ * directory; the source and target directories are reset between
+ * iterations outside of the measurement.
+ * <p>
+ * The default parameters are a quick smoke set. Larger file counts (up to
+ * 100000) and sizes (up to 1 GB) are selected on the command line, e.g.
+ * <code>-p fileCount=100000 -p fileSize=1024</code>.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class VfsFileTransferBenchmark {
+
+    @Param({ "ram", "tmp", "file" })
+    public String scheme;
+
+    @Param({ "copy", "move" })
+    public String operation;
+
+    @Param({ "1", "100", "1000" })
+    public int fileCount;
+
+    @Param({ "1024", "1048576" })
+    public long fileSize;
+
+    @Param({ "false", "true" })
+    public boolean streaming;
+
+    @Param({ "1024", "65536" })
+    public int blockSize;
+
+    @Param({ "true", "false" })
+    public boolean lock;
+
+    private String root;
+    private String source;
+    private String target;
+    private VfsOperationOptions options;
+    private VfsManagerPool pool;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        BenchmarkFiles.checkTotalSize(fileCount, fileSize);
+
+        root = BenchmarkFiles.rootUri(scheme);
+        source = root + "/source";
+        target = root + "/target";
+        VfsOperationOptions.Builder builder = VfsOperationOptions.with().sourceDirectory(source)
+                .targetDirectory(target).streamingTransferEnabled(streaming)
+                .streamingBlockSize(Integer.toString(blockSize)).lockEnabled(lock);
+        // operations borrow the manager holding the ram:// and tmp:// files
+        pool = new VfsManagerPool(builder.build(), 1);
+        options = builder.managerPool(pool).build();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws IOException {
+        FileSystemManager manager = BenchmarkFiles.borrowManager(pool, options);
+        try {
+            BenchmarkFiles.populate(manager, source, fileCount, fileSize);
+            BenchmarkFiles.clear(manager, target);
+        } finally {
+            pool.release(manager, options);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        FileSystemManager manager = BenchmarkFiles.borrowManager(pool, options);
+        try {
+            BenchmarkFiles.delete(manager, root);
+        } finally {
+            pool.release(manager, options);
+            pool.close();
+        }
+    }
+
+    @Benchmark
+    public int transfer() throws IOException {
+        VfsFileTransferUtility utility = new VfsFileTransferUtility(options);
+        int transferred = "move".equals(operation) ? utility.moveFiles() : utility.copyFiles();
+        if (transferred != fileCount) {
+            throw new IllegalStateException("Transferred " + transferred + " of " + fileCount + " files");
+        }
+        return transferred;
+    }
+}
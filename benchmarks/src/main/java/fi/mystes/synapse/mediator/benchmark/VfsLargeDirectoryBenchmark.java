@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.mystes.synapse.mediator.vfs.VfsFileTransferUtility;
+import fi.mystes.synapse.mediator.vfs.VfsManagerPool;
+import fi.mystes.synapse.mediator.vfs.VfsOperationOptions;
+
+/**
+ * Measures {@link VfsFileTransferUtility} on directories with many entries.
+ * <code>list</code> lists the directory with a file pattern matching
+ * nothing, <code>firstTransfer</code> copies the single file matching the
+ * pattern, so the difference is the cost of one transfer and the total is
+ * the time until the first file arrives. Files hold a single byte. The
+ * directory is populated once per trial.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class VfsLargeDirectoryBenchmark {
+
+    @Param({ "ram", "file" })
+    public String scheme;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int entries;
+
+    private String root;
+    private VfsOperationOptions listOptions;
+    private VfsOperationOptions transferOptions;
+    private VfsManagerPool pool;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        root = BenchmarkFiles.rootUri(scheme);
+        String source = root + "/source";
+        String target = root + "/target";
+        String matching = BenchmarkFiles.fileName(entries / 2).replace(".", "\\.");
+        // both operations borrow the manager holding the ram:// files
+        pool = new VfsManagerPool(VfsOperationOptions.with().sourceDirectory(source).targetDirectory(target)
+                .build(), 1);
+        listOptions = VfsOperationOptions.with().sourceDirectory(source).targetDirectory(target)
+                .filePatternRegex("^$").managerPool(pool).build();
+        transferOptions = VfsOperationOptions.with().sourceDirectory(source).targetDirectory(target)
+                .filePatternRegex(matching).managerPool(pool).build();
+
+        FileSystemManager manager = BenchmarkFiles.borrowManager(pool, listOptions);
+        try {
+            BenchmarkFiles.populate(manager, source, entries, 1);
+            BenchmarkFiles.clear(manager, target);
+        } finally {
+            pool.release(manager, listOptions);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        FileSystemManager manager = BenchmarkFiles.borrowManager(pool, listOptions);
+        try {
+            BenchmarkFiles.delete(manager, root);
+        } finally {
+            pool.release(manager, listOptions);
+            pool.close();
+        }
+    }
+
+    @Benchmark
+    public int list() throws IOException {
+        return new VfsFileTransferUtility(listOptions).copyFiles();
+    }
+
+    @Benchmark
+    public int firstTransfer() throws IOException {
+        int transferred = new VfsFileTransferUtility(transferOptions).copyFiles();
+        if (transferred != 1) {
+            throw new IllegalStateException("Transferred " + transferred + " files instead of 1");
+        }
+        return transferred;
+    }
+}
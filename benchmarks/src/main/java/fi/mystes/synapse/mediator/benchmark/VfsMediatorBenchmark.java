@@ -0,0 +1,177 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.benchmark;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axis2.AxisFault;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.mystes.synapse.mediator.VfsMediator;
+import fi.mystes.synapse.mediator.factory.VfsMediatorFactory;
+import fi.mystes.synapse.mediator.vfs.VfsOperationDelegate;
+import fi.mystes.synapse.mediator.vfs.VfsOperationOptions;
+
+/**
+ * Measures the fixed cost {@link VfsMediator#mediate(MessageContext)} adds
+ * per message: XPath evaluation, operation initialization and building of
+ * operation options. File system access is replaced with a delegate doing
+ * nothing, so only the mediator's own work is measured.
+ * <p>
+ * Run with {@link VfsMediatorBenchmarkRunner} to get allocation rates from
+ * the GC profiler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VfsMediatorBenchmark {
+
+    private static final String SYNAPSE_NS = "http://ws.apache.org/ns/synapse";
+
+    /**
+     * Mediator configured with static values, or with XPath expressions
+     * reading the same values from the payload.
+     */
+    @Param({ "value", "expression" })
+    public String config;
+
+    /**
+     * Amount of order lines in the payload.
+     */
+    @Param({ "10", "1000" })
+    public int payloadLines;
+
+    private VfsMediator mediator;
+    private MessageContext messageContext;
+
+    @Setup
+    public void setUp() throws XMLStreamException, AxisFault {
+        SynapseConfiguration synapseConfig = new SynapseConfiguration();
+        SynapseEnvironment environment = new Axis2SynapseEnvironment(synapseConfig);
+
+        mediator = (VfsMediator) new VfsMediatorFactory().createMediator(AXIOMUtil.stringToOM(mediatorConfig()),
+                new Properties());
+        mediator.setDelegate(new NoOpDelegate());
+        mediator.init(environment);
+
+        SOAPEnvelope envelope = OMAbstractFactory.getSOAP11Factory().getDefaultEnvelope();
+        envelope.getBody().addChild(AXIOMUtil.stringToOM(payload()));
+        messageContext = new Axis2MessageContext(new org.apache.axis2.context.MessageContext(), synapseConfig,
+                environment);
+        messageContext.setEnvelope(envelope);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mediator.destroy();
+    }
+
+    @Benchmark
+    public boolean mediate() {
+        return mediator.mediate(messageContext);
+    }
+
+    /**
+     * Helper method to build the mediator configuration.
+     *
+     * @return Mediator configuration XML
+     */
+    private String mediatorConfig() {
+        StringBuilder xml = new StringBuilder("<vfs xmlns=\"" + SYNAPSE_NS + "\">");
+        if ("expression".equals(config)) {
+            xml.append("<operation expression=\"$body/order/transfer/operation\"/>");
+            xml.append("<sourceDirectory expression=\"$body/order/transfer/source\"/>");
+            xml.append("<targetDirectory expression=\"$body/order/transfer/target\"/>");
+            xml.append("<archiveDirectory expression=\"$body/order/transfer/archive\"/>");
+            xml.append("<filePattern expression=\"$body/order/transfer/pattern\"/>");
+            xml.append("<lockEnabled expression=\"$body/order/transfer/lock\"/>");
+        } else {
+            xml.append("<operation value=\"move\"/>");
+            xml.append("<sourceDirectory value=\"file:///data/outbox\"/>");
+            xml.append("<targetDirectory value=\"sftp://user@partner.example.com/inbox\"/>");
+            xml.append("<archiveDirectory value=\"file:///data/archive\"/>");
+            xml.append("<filePattern value=\"order-.*\\.xml\"/>");
+            xml.append("<lockEnabled value=\"true\"/>");
+        }
+        xml.append("<retry count=\"3\" wait=\"1000\"/>");
+        xml.append("</vfs>");
+        return xml.toString();
+    }
+
+    /**
+     * Helper method to build an order payload with given amount of lines.
+     *
+     * @return Payload XML
+     */
+    private String payload() {
+        StringBuilder xml = new StringBuilder("<order><header><id>12345</id><customer>ACME</customer></header>");
+        xml.append("<transfer><operation>move</operation><source>file:///data/outbox</source>");
+        xml.append("<target>sftp://user@partner.example.com/inbox</target><archive>file:///data/archive</archive>");
+        xml.append("<pattern>order-.*\\.xml</pattern><lock>true</lock></transfer><lines>");
+        for (int i = 0; i < payloadLines; i++) {
+            xml.append("<line><number>").append(i).append("</number><product>P-").append(i % 97)
+                    .append("</product><quantity>").append(i % 10 + 1).append("</quantity></line>");
+        }
+        xml.append("</lines></order>");
+        return xml.toString();
+    }
+
+    /**
+     * Delegate completing operations without touching any file system.
+     */
+    private static class NoOpDelegate implements VfsOperationDelegate {
+        @Override
+        public int copy(VfsOperationOptions options) {
+            return 0;
+        }
+
+        @Override
+        public int move(VfsOperationOptions options) {
+            return 0;
+        }
+
+        @Override
+        public int warmUp(VfsOperationOptions options) {
+            return 0;
+        }
+    }
+}
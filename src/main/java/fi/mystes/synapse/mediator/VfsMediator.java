@@ -16,6 +16,7 @@
 package fi.mystes.synapse.mediator;
 
 import java.text.MessageFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import fi.mystes.synapse.mediator.config.VfsMediatorConfigConstants;
@@ -23,23 +24,35 @@ import org.apache.axiom.om.OMAttribute;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMText;
 import org.apache.commons.vfs2.FileSystemException;
+import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
+import org.apache.synapse.commons.jmx.MBeanRegistrar;
+import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.util.xpath.SynapseXPath;
 import org.jaxen.JaxenException;
 
 import fi.mystes.synapse.mediator.vfs.DefaultVfsOperationDelegate;
+import fi.mystes.synapse.mediator.vfs.VfsBandwidthLimiter;
+import fi.mystes.synapse.mediator.vfs.VfsBulkheadConfig;
+import fi.mystes.synapse.mediator.vfs.VfsCircuitBreakerConfig;
+import fi.mystes.synapse.mediator.vfs.VfsCircuitOpenException;
 import fi.mystes.synapse.mediator.vfs.VfsCopy;
+import fi.mystes.synapse.mediator.vfs.VfsManagerPool;
 import fi.mystes.synapse.mediator.vfs.VfsMove;
 import fi.mystes.synapse.mediator.vfs.VfsOperation;
 import fi.mystes.synapse.mediator.vfs.VfsOperationDelegate;
+import fi.mystes.synapse.mediator.vfs.VfsOperationOptions;
+import fi.mystes.synapse.mediator.vfs.VfsOperationStatistics;
+import fi.mystes.synapse.mediator.vfs.VfsStreamStageConfig;
+import fi.mystes.synapse.mediator.vfs.VfsTransferMetrics;
 
 /**
  * Virtual File System (VFS) mediator class for file copying and moving.
  * 
  */
-public class VfsMediator extends AbstractMediator {
+public class VfsMediator extends AbstractMediator implements ManagedLifecycle {
 
     private static final boolean DEFAULT_LOCK_ENABLED = true;
 
@@ -59,6 +72,35 @@ public class VfsMediator extends AbstractMediator {
     private int retryCount = VfsMediatorConfigConstants.DEFAULT_RETRY_COUNT;
     private int retryWait = VfsMediatorConfigConstants.DEFAULT_RETRY_WAIT;
     private Integer sftpTimeoutValue;
+    private VfsCircuitBreakerConfig circuitBreakerConfig;
+    private VfsBulkheadConfig bulkheadConfig;
+    private long directoryCacheTtl;
+    private int warmupConnections;
+    private String metricsName;
+    private boolean statisticsEnabled;
+    private VfsTransferMetrics metrics;
+    private long bandwidthLimit;
+    private VfsBandwidthLimiter bandwidthLimiter;
+    private VfsManagerPool managerPool;
+    private long readIdleTimeout;
+    private long maxTransferTime;
+    private boolean resumeEnabled;
+    private boolean skipUnchanged;
+    private boolean skipUnchangedChecksum;
+    private String checksumAlgorithm;
+    private boolean checksumVerify;
+    private boolean checksumSidecar;
+    private String compress;
+    private String decompress;
+    private List<VfsStreamStageConfig> streamStages;
+    private long endpointBandwidthLimit;
+    private boolean autoTransferStrategy;
+    private long inMemoryThreshold = VfsMediatorConfigConstants.DEFAULT_IN_MEMORY_THRESHOLD;
+    private int autoBlockSize = VfsMediatorConfigConstants.DEFAULT_AUTO_BLOCK_SIZE;
+    private long chunkedThreshold;
+    private int chunkCount = VfsMediatorConfigConstants.DEFAULT_CHUNK_COUNT;
+    private int sftpQueueDepth;
+    private long sftpPipeliningThreshold = VfsMediatorConfigConstants.DEFAULT_SFTP_PIPELINING_THRESHOLD;
 
     private SynapseXPath filePatternXpath;
     private SynapseXPath operationXpath;
@@ -74,9 +116,27 @@ public class VfsMediator extends AbstractMediator {
     private SynapseXPath streamingTransferXpath;
     private SynapseXPath streamingBlockSizeXpath;
     private final static String FILE_COUNT_PROPERTY_NAME = "vfs.fileCount";
+    static final String SKIPPED_COUNT_PROPERTY_NAME = "vfs.skippedCount";
+    static final String CHECKSUM_PROPERTY_NAME = "vfs.checksum";
+    static final String CHECKSUMS_PROPERTY_NAME = "vfs.checksums";
+    static final String CIRCUIT_OPEN_PROPERTY_NAME = "vfs.circuitOpen";
+    static final String CIRCUIT_OPEN_ENDPOINT_PROPERTY_NAME = "vfs.circuitOpenEndpoint";
     static final String FTP_PASSIVE_MODE_PROPERTY_NAME = "vfs.ftp.passiveMode";
     static final String SFTP_AUTH_KEY_PATH_PROPERTY_NAME = "vfs.sftp.authKeyPath";
     static final String SFTP_USER_DIR_IS_ROOT_PROPERTY_NAME = "vfs.sftp.userDirIsRoot";
+    static final String METRICS_MBEAN_CATEGORY = "VfsMediator";
+    static final String BANDWIDTH_MBEAN_CATEGORY = "VfsMediatorBandwidth";
+    static final String STATS_CONNECT_MS_PROPERTY_NAME = "vfs.stats.connectMs";
+    static final String STATS_LIST_MS_PROPERTY_NAME = "vfs.stats.listMs";
+    static final String STATS_ENTRIES_LISTED_PROPERTY_NAME = "vfs.stats.entriesListed";
+    static final String STATS_FILES_MATCHED_PROPERTY_NAME = "vfs.stats.filesMatched";
+    static final String STATS_LOCK_MS_PROPERTY_NAME = "vfs.stats.lockMs";
+    static final String STATS_TRANSFER_MS_PROPERTY_NAME = "vfs.stats.transferMs";
+    static final String STATS_BYTES_TRANSFERRED_PROPERTY_NAME = "vfs.stats.bytesTransferred";
+    static final String STATS_DELETE_MS_PROPERTY_NAME = "vfs.stats.deleteMs";
+    static final String STATS_RETRIES_PROPERTY_NAME = "vfs.stats.retries";
+    static final String STATS_SLOWEST_FILE_PROPERTY_NAME = "vfs.stats.slowestFile";
+    static final String STATS_SLOWEST_FILE_MS_PROPERTY_NAME = "vfs.stats.slowestFileMs";
 
     private VfsOperationDelegate delegate = new DefaultVfsOperationDelegate();
 
@@ -98,17 +158,171 @@ public class VfsMediator extends AbstractMediator {
 
         VfsOperation op = initOperation(messageContext);
         op.setOperationDelegate(delegate);
+        // skipped files and checksums are collected by the statistics even when they are not published
+        VfsOperationStatistics statistics = statisticsEnabled || skipUnchanged || checksumAlgorithm != null
+                ? new VfsOperationStatistics() : null;
+        op.setStatistics(statistics);
 
         try {
             int processedFileCount = op.execute();
             messageContext.setProperty(FILE_COUNT_PROPERTY_NAME, processedFileCount);
+            if (skipUnchanged) {
+                messageContext.setProperty(SKIPPED_COUNT_PROPERTY_NAME, statistics.getFilesSkipped());
+            }
+            if (checksumAlgorithm != null) {
+                setChecksumProperties(messageContext, statistics);
+            }
+        } catch (VfsCircuitOpenException e) {
+            // lets the fault sequence tell a failed fast call from other errors
+            messageContext.setProperty(CIRCUIT_OPEN_PROPERTY_NAME, Boolean.TRUE);
+            messageContext.setProperty(CIRCUIT_OPEN_ENDPOINT_PROPERTY_NAME, e.getEndpoint());
+            throw new SynapseException(e);
         } catch (FileSystemException e) {
             throw new SynapseException(e);
+        } finally {
+            if (statisticsEnabled) {
+                setStatisticsProperties(messageContext, statistics);
+            }
         }
 
         return true;
     }
 
+    /**
+     * Helper method to set checksums calculated during the operation as
+     * message properties. The checksum of the last transferred file is set
+     * as a string, checksums of all transferred files as a map from target
+     * file name to checksum.
+     *
+     * @param messageContext
+     *            Message context to set properties to
+     * @param statistics
+     *            Statistics of the executed operation
+     */
+    private void setChecksumProperties(MessageContext messageContext, VfsOperationStatistics statistics) {
+        if (statistics.getLastChecksum() != null) {
+            messageContext.setProperty(CHECKSUM_PROPERTY_NAME, statistics.getLastChecksum());
+        }
+        messageContext.setProperty(CHECKSUMS_PROPERTY_NAME, new LinkedHashMap<String, String>(statistics.getChecksums()));
+    }
+
+    /**
+     * Helper method to set operation statistics as message properties, so
+     * that sequences can log them or route on them.
+     *
+     * @param messageContext
+     *            Message context to set properties to
+     * @param statistics
+     *            Statistics of the executed operation
+     */
+    private void setStatisticsProperties(MessageContext messageContext, VfsOperationStatistics statistics) {
+        messageContext.setProperty(STATS_CONNECT_MS_PROPERTY_NAME, statistics.getConnectMillis());
+        messageContext.setProperty(STATS_LIST_MS_PROPERTY_NAME, statistics.getListMillis());
+        messageContext.setProperty(STATS_ENTRIES_LISTED_PROPERTY_NAME, statistics.getEntriesListed());
+        messageContext.setProperty(STATS_FILES_MATCHED_PROPERTY_NAME, statistics.getFilesMatched());
+        messageContext.setProperty(STATS_LOCK_MS_PROPERTY_NAME, statistics.getLockMillis());
+        messageContext.setProperty(STATS_TRANSFER_MS_PROPERTY_NAME, statistics.getTransferMillis());
+        messageContext.setProperty(STATS_BYTES_TRANSFERRED_PROPERTY_NAME, statistics.getBytesTransferred());
+        messageContext.setProperty(STATS_DELETE_MS_PROPERTY_NAME, statistics.getDeleteMillis());
+        messageContext.setProperty(STATS_RETRIES_PROPERTY_NAME, statistics.getRetries());
+        if (statistics.getSlowestFile() != null) {
+            messageContext.setProperty(STATS_SLOWEST_FILE_PROPERTY_NAME, statistics.getSlowestFile());
+            messageContext.setProperty(STATS_SLOWEST_FILE_MS_PROPERTY_NAME, statistics.getSlowestFileMillis());
+        }
+    }
+
+    /**
+     * Registers the transfer metrics and bandwidth limiter MBeans of this
+     * mediator and opens warm-up connections to statically configured directories when warm-up is
+     * enabled, so that the first messages do not pay connection setup costs.
+     * <p>
+     * Connection options are resolved from the global Synapse properties, the same way messages
+     * without connection properties resolve them. Directories given as expressions and connection
+     * properties set per message cannot be warmed up, and operations using them are not pooled.
+     * Warm-up connections are limited to the maximum concurrent sessions of the bulkhead.
+     *
+     * @param synapseEnvironment
+     *            Synapse environment
+     */
+    @Override
+    public void init(SynapseEnvironment synapseEnvironment) {
+        metrics = new VfsTransferMetrics();
+        MBeanRegistrar.getInstance().registerMBean(metrics, METRICS_MBEAN_CATEGORY, getMetricsName());
+        // registered also when not limited, so that a limit can be set at runtime
+        bandwidthLimiter = new VfsBandwidthLimiter(getMetricsName(), bandwidthLimit);
+        MBeanRegistrar.getInstance().registerMBean(bandwidthLimiter, BANDWIDTH_MBEAN_CATEGORY, getMetricsName());
+
+        if (warmupConnections <= 0) {
+            return;
+        }
+        if (sourceDirectoryXpath != null || targetDirectoryXpath != null || archiveDirectoryXpath != null) {
+            log.info("Directories are given as expressions, skipping VFS connection warm-up");
+            return;
+        }
+        int connections = warmupConnections;
+        if (bulkheadConfig != null && bulkheadConfig.getMaxConcurrent() > 0
+                && bulkheadConfig.getMaxConcurrent() < connections) {
+            log.warn("Limiting VFS warm-up connections to bulkhead maximum of " + bulkheadConfig.getMaxConcurrent());
+            connections = bulkheadConfig.getMaxConcurrent();
+        }
+
+        VfsOperationOptions.Builder builder = VfsOperationOptions.with().sourceDirectory(sourceDirectoryValue)
+                .targetDirectory(targetDirectoryValue).archiveDirectory(archiveDirectoryValue)
+                .createMissingDirectories(createMissingDirectoriesXpath == null && createMissingDirectoriesValue)
+                .ftpPassiveModeEnabled(Boolean.valueOf(
+                        resolveGlobalProperty(synapseEnvironment, FTP_PASSIVE_MODE_PROPERTY_NAME)))
+                .userDirIsRootEnabled(resolveGlobalProperty(synapseEnvironment, SFTP_USER_DIR_IS_ROOT_PROPERTY_NAME))
+                .sftpAuthKeyPath(resolveGlobalProperty(synapseEnvironment, SFTP_AUTH_KEY_PATH_PROPERTY_NAME))
+                .retryCount(retryCount).retryWait(retryWait).sftpTimeout(getSftpTimeoutValue())
+                .circuitBreaker(circuitBreakerConfig).directoryCacheTtl(directoryCacheTtl)
+                .warmupConnections(connections);
+        managerPool = new VfsManagerPool(builder.build(), connections);
+        VfsOperationOptions options = builder.managerPool(managerPool).build();
+        try {
+            int warmed = delegate.warmUp(options);
+            log.info("Opened " + warmed + " of " + connections + " VFS warm-up connections");
+        } catch (FileSystemException e) {
+            log.warn("VFS connection warm-up failed", e);
+        }
+    }
+
+    /**
+     * Unregisters the transfer metrics and bandwidth limiter MBeans and closes the pooled
+     * connections of this mediator.
+     */
+    @Override
+    public void destroy() {
+        if (metrics != null) {
+            MBeanRegistrar.getInstance().unRegisterMBean(METRICS_MBEAN_CATEGORY, getMetricsName());
+            metrics = null;
+        }
+        if (bandwidthLimiter != null) {
+            MBeanRegistrar.getInstance().unRegisterMBean(BANDWIDTH_MBEAN_CATEGORY, getMetricsName());
+            bandwidthLimiter = null;
+        }
+        if (managerPool != null) {
+            managerPool.close();
+            managerPool = null;
+        }
+    }
+
+    /**
+     * Helper method to resolve a global Synapse property, which messages
+     * fall back to when they do not set the property.
+     *
+     * @param synapseEnvironment
+     *            Synapse environment, may be null
+     * @param name
+     *            Property name
+     * @return Property value, or null if not set
+     */
+    private String resolveGlobalProperty(SynapseEnvironment synapseEnvironment, String name) {
+        if (synapseEnvironment == null || synapseEnvironment.getSynapseConfiguration() == null) {
+            return null;
+        }
+        return synapseEnvironment.getSynapseConfiguration().getProperty(name);
+    }
+
     /**
      * Setter for VFS operation delegate.
      * 
@@ -610,6 +824,32 @@ public class VfsMediator extends AbstractMediator {
         op.setArchiveFilePrefix(resolveArchiveFilePrefix(messageContext));
         op.setArchiveFileSuffix(resolveArchiveFileSuffix(messageContext));
         op.setSftpAuthKeyPath(resolveSftpAuthKeyPath(messageContext));
+        op.setCircuitBreakerConfig(circuitBreakerConfig);
+        op.setBulkheadConfig(bulkheadConfig);
+        op.setDirectoryCacheTtl(directoryCacheTtl);
+        op.setWarmupConnections(warmupConnections);
+        op.setManagerPool(managerPool);
+        op.setMetrics(metrics);
+        op.setReadIdleTimeout(readIdleTimeout);
+        op.setMaxTransferTime(maxTransferTime);
+        op.setResumeEnabled(resumeEnabled);
+        op.setSkipUnchanged(skipUnchanged);
+        op.setSkipUnchangedChecksum(skipUnchangedChecksum);
+        op.setChecksumAlgorithm(checksumAlgorithm);
+        op.setChecksumVerify(checksumVerify);
+        op.setChecksumSidecar(checksumSidecar);
+        op.setCompress(compress);
+        op.setDecompress(decompress);
+        op.setStreamStages(streamStages);
+        op.setBandwidthLimiter(bandwidthLimiter);
+        op.setEndpointBandwidthLimit(endpointBandwidthLimit);
+        op.setAutoTransferStrategy(autoTransferStrategy);
+        op.setInMemoryThreshold(inMemoryThreshold);
+        op.setAutoBlockSize(autoBlockSize);
+        op.setChunkedThreshold(chunkedThreshold);
+        op.setChunkCount(chunkCount);
+        op.setSftpQueueDepth(sftpQueueDepth);
+        op.setSftpPipeliningThreshold(sftpPipeliningThreshold);
         return op;
     }
 
@@ -949,4 +1189,524 @@ public class VfsMediator extends AbstractMediator {
     public void setArchiveFilenameSuffixValue(String archiveFilenameSuffixValue) {
         this.archiveFilenameSuffixValue = archiveFilenameSuffixValue;
     }
+
+    /**
+     * Getter for per endpoint circuit breaker settings.
+     *
+     * @return Circuit breaker settings, or null if circuit breaking is disabled
+     */
+    public VfsCircuitBreakerConfig getCircuitBreakerConfig() {
+        return circuitBreakerConfig;
+    }
+
+    /**
+     * Setter for per endpoint circuit breaker settings.
+     *
+     * @param circuitBreakerConfig
+     *            Circuit breaker settings, null to disable circuit breaking
+     */
+    public void setCircuitBreakerConfig(VfsCircuitBreakerConfig circuitBreakerConfig) {
+        this.circuitBreakerConfig = circuitBreakerConfig;
+    }
+
+    /**
+     * Getter for per endpoint bulkhead and rate limiter settings.
+     *
+     * @return Bulkhead settings, or null if bulkheads are disabled
+     */
+    public VfsBulkheadConfig getBulkheadConfig() {
+        return bulkheadConfig;
+    }
+
+    /**
+     * Setter for per endpoint bulkhead and rate limiter settings.
+     *
+     * @param bulkheadConfig
+     *            Bulkhead settings, null to disable bulkheads
+     */
+    public void setBulkheadConfig(VfsBulkheadConfig bulkheadConfig) {
+        this.bulkheadConfig = bulkheadConfig;
+    }
+
+    /**
+     * Getter for time in milliseconds validated target and archive directories are cached.
+     *
+     * @return Cache TTL in milliseconds, 0 if caching is disabled
+     */
+    public long getDirectoryCacheTtl() {
+        return directoryCacheTtl;
+    }
+
+    /**
+     * Setter for time in milliseconds validated target and archive directories are cached.
+     *
+     * @param directoryCacheTtl
+     *            Cache TTL in milliseconds, 0 to disable caching
+     */
+    public void setDirectoryCacheTtl(long directoryCacheTtl) {
+        this.directoryCacheTtl = directoryCacheTtl;
+    }
+
+    /**
+     * Getter for amount of pooled connections opened at deployment.
+     *
+     * @return Amount of warm-up connections, 0 if warm-up is disabled
+     */
+    public int getWarmupConnections() {
+        return warmupConnections;
+    }
+
+    /**
+     * Setter for amount of pooled connections opened at deployment.
+     *
+     * @param warmupConnections
+     *            Amount of warm-up connections, 0 to disable warm-up and connection pooling
+     */
+    public void setWarmupConnections(int warmupConnections) {
+        this.warmupConnections = warmupConnections;
+    }
+
+    /**
+     * Getter for the name the transfer metrics MBean is registered with.
+     *
+     * @return Name derived from the enclosing sequence and position of this
+     *         mediator, or a name unique to this instance if not set
+     */
+    public String getMetricsName() {
+        if (metricsName == null) {
+            return "vfs@" + Integer.toHexString(System.identityHashCode(this));
+        }
+        return metricsName;
+    }
+
+    /**
+     * Setter for the name the transfer metrics MBean is registered with.
+     *
+     * @param metricsName
+     *            MBean name, e.g. MySequence/2
+     */
+    public void setMetricsName(String metricsName) {
+        this.metricsName = metricsName;
+    }
+
+    /**
+     * Getter for transfer metrics of this mediator.
+     *
+     * @return Transfer metrics, or null if the mediator is not initialized
+     */
+    public VfsTransferMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Getter for flag indicating whether operation statistics are set as
+     * vfs.stats.* message properties.
+     *
+     * @return True if statistics are enabled
+     */
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    /**
+     * Setter for flag indicating whether operation statistics are set as
+     * vfs.stats.* message properties.
+     *
+     * @param statisticsEnabled
+     *            True to enable statistics
+     */
+    public void setStatisticsEnabled(boolean statisticsEnabled) {
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    /**
+     * Getter for read idle timeout of file transfers.
+     *
+     * @return Milliseconds without progress after which a transfer is aborted, 0 if not limited
+     */
+    public long getReadIdleTimeout() {
+        return readIdleTimeout;
+    }
+
+    /**
+     * Setter for read idle timeout of file transfers.
+     *
+     * @param readIdleTimeout
+     *            Milliseconds without progress after which a transfer is aborted, 0 to not limit
+     */
+    public void setReadIdleTimeout(long readIdleTimeout) {
+        this.readIdleTimeout = readIdleTimeout;
+    }
+
+    /**
+     * Getter for maximum duration of a file transfer.
+     *
+     * @return Milliseconds after which a transfer is aborted, 0 if not limited
+     */
+    public long getMaxTransferTime() {
+        return maxTransferTime;
+    }
+
+    /**
+     * Setter for maximum duration of a file transfer.
+     *
+     * @param maxTransferTime
+     *            Milliseconds after which a transfer is aborted, 0 to not limit
+     */
+    public void setMaxTransferTime(long maxTransferTime) {
+        this.maxTransferTime = maxTransferTime;
+    }
+
+    /**
+     * Getter for flag for resuming interrupted streaming transfers.
+     *
+     * @return True if interrupted streaming transfers are resumed
+     */
+    public boolean isResumeEnabled() {
+        return resumeEnabled;
+    }
+
+    /**
+     * Setter for flag for resuming interrupted streaming transfers.
+     *
+     * @param resumeEnabled
+     *            True to resume interrupted streaming transfers from the size of the partial target file
+     */
+    public void setResumeEnabled(boolean resumeEnabled) {
+        this.resumeEnabled = resumeEnabled;
+    }
+
+    /**
+     * Getter for whether copying skips files whose target is unchanged.
+     *
+     * @return True if unchanged target files are not copied again
+     */
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    /**
+     * Setter for whether copying skips files whose target is unchanged.
+     *
+     * @param skipUnchanged
+     *            True to skip source files whose target file has the same size and is not older than the source
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Getter for whether unchanged target files are detected by content checksum.
+     *
+     * @return True if same sized files are compared by checksum instead of modification time
+     */
+    public boolean isSkipUnchangedChecksum() {
+        return skipUnchangedChecksum;
+    }
+
+    /**
+     * Setter for whether unchanged target files are detected by content checksum.
+     *
+     * @param skipUnchangedChecksum
+     *            True to compare content checksums of same sized files instead of modification times
+     */
+    public void setSkipUnchangedChecksum(boolean skipUnchangedChecksum) {
+        this.skipUnchangedChecksum = skipUnchangedChecksum;
+    }
+
+    /**
+     * Getter for checksum algorithm calculated during transfers.
+     *
+     * @return Checksum algorithm, or null if checksums are not calculated
+     */
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * Setter for checksum algorithm calculated during transfers.
+     *
+     * @param checksumAlgorithm
+     *            Checksum algorithm (CRC32, MD5, SHA-1 or SHA-256), null to not calculate checksums
+     */
+    public void setChecksumAlgorithm(String checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    /**
+     * Getter for whether checksums are verified against source checksum files.
+     *
+     * @return True if transferred files are verified against checksum files next to the source files
+     */
+    public boolean isChecksumVerify() {
+        return checksumVerify;
+    }
+
+    /**
+     * Setter for whether checksums are verified against source checksum files.
+     *
+     * @param checksumVerify
+     *            True to verify transferred files against checksum files next to the source files
+     */
+    public void setChecksumVerify(boolean checksumVerify) {
+        this.checksumVerify = checksumVerify;
+    }
+
+    /**
+     * Getter for whether checksum files are written next to target files.
+     *
+     * @return True if a checksum file is written next to each target file
+     */
+    public boolean isChecksumSidecar() {
+        return checksumSidecar;
+    }
+
+    /**
+     * Setter for whether checksum files are written next to target files.
+     *
+     * @param checksumSidecar
+     *            True to write a checksum file next to each target file
+     */
+    public void setChecksumSidecar(boolean checksumSidecar) {
+        this.checksumSidecar = checksumSidecar;
+    }
+
+    /**
+     * Getter for compression format of target files.
+     *
+     * @return Compression format target files are compressed with, or null
+     */
+    public String getCompress() {
+        return compress;
+    }
+
+    /**
+     * Setter for compression format of target files.
+     *
+     * @param compress
+     *            Compression format (gzip) to compress target files with, null to not compress
+     */
+    public void setCompress(String compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Getter for compression format of source files.
+     *
+     * @return Compression format source files are decompressed from, or null
+     */
+    public String getDecompress() {
+        return decompress;
+    }
+
+    /**
+     * Setter for compression format of source files.
+     *
+     * @param decompress
+     *            Compression format (gzip) to decompress source files from, null to not decompress
+     */
+    public void setDecompress(String decompress) {
+        this.decompress = decompress;
+    }
+
+    /**
+     * Getter for stream stages applied to transferred content.
+     *
+     * @return Stream stage configurations, in order
+     */
+    public List<VfsStreamStageConfig> getStreamStages() {
+        return streamStages;
+    }
+
+    /**
+     * Setter for stream stages applied to transferred content.
+     *
+     * @param streamStages
+     *            Stream stages transforming content between source and target, in order
+     */
+    public void setStreamStages(List<VfsStreamStageConfig> streamStages) {
+        this.streamStages = streamStages;
+    }
+
+    /**
+     * Getter for bandwidth limit of this mediator.
+     *
+     * @return Bandwidth limit in bytes per second, 0 if not limited
+     */
+    public long getBandwidthLimit() {
+        return bandwidthLimit;
+    }
+
+    /**
+     * Setter for bandwidth limit of this mediator. Takes effect when the
+     * mediator is initialized; after that the limit is changed through the
+     * bandwidth limiter MBean.
+     *
+     * @param bandwidthLimit
+     *            Bandwidth limit in bytes per second, 0 for no limit
+     */
+    public void setBandwidthLimit(long bandwidthLimit) {
+        this.bandwidthLimit = bandwidthLimit;
+    }
+
+    /**
+     * Getter for bandwidth limiter of this mediator.
+     *
+     * @return Bandwidth limiter, or null if the mediator is not initialized
+     */
+    public VfsBandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    /**
+     * Getter for bandwidth limit shared per remote endpoint.
+     *
+     * @return Bandwidth limit in bytes per second, 0 if not limited
+     */
+    public long getEndpointBandwidthLimit() {
+        return endpointBandwidthLimit;
+    }
+
+    /**
+     * Setter for bandwidth limit shared per remote endpoint.
+     *
+     * @param endpointBandwidthLimit
+     *            Bandwidth limit in bytes per second shared by all mediators per remote endpoint, 0 for no limit
+     */
+    public void setEndpointBandwidthLimit(long endpointBandwidthLimit) {
+        this.endpointBandwidthLimit = endpointBandwidthLimit;
+    }
+
+    /**
+     * Getter for flag indicating whether transfer strategy is chosen per file by size.
+     *
+     * @return True if transfer strategy is chosen by size
+     */
+    public boolean isAutoTransferStrategy() {
+        return autoTransferStrategy;
+    }
+
+    /**
+     * Setter for flag indicating whether transfer strategy is chosen per file by size.
+     *
+     * @param autoTransferStrategy
+     *            True to choose transfer strategy per file by its size, overriding streaming transfer setting
+     */
+    public void setAutoTransferStrategy(boolean autoTransferStrategy) {
+        this.autoTransferStrategy = autoTransferStrategy;
+    }
+
+    /**
+     * Getter for largest file size copied with a file-sized buffer by automatic transfer strategy.
+     *
+     * @return File size in bytes
+     */
+    public long getInMemoryThreshold() {
+        return inMemoryThreshold;
+    }
+
+    /**
+     * Setter for largest file size copied with a file-sized buffer by automatic transfer strategy.
+     *
+     * @param inMemoryThreshold
+     *            Largest file size in bytes copied with a file-sized buffer by automatic transfer strategy
+     */
+    public void setInMemoryThreshold(long inMemoryThreshold) {
+        this.inMemoryThreshold = inMemoryThreshold;
+    }
+
+    /**
+     * Getter for block size of streaming transfers chosen by automatic transfer strategy.
+     *
+     * @return Block size in bytes
+     */
+    public int getAutoBlockSize() {
+        return autoBlockSize;
+    }
+
+    /**
+     * Setter for block size of streaming transfers chosen by automatic transfer strategy.
+     *
+     * @param autoBlockSize
+     *            Block size in bytes of streaming transfers chosen by automatic transfer strategy
+     */
+    public void setAutoBlockSize(int autoBlockSize) {
+        this.autoBlockSize = autoBlockSize;
+    }
+
+    /**
+     * Getter for minimum size of files transferred in parallel chunks.
+     *
+     * @return Size in bytes, 0 when chunked transfer is disabled
+     */
+    public long getChunkedThreshold() {
+        return chunkedThreshold;
+    }
+
+    /**
+     * Setter for minimum size of files transferred in parallel chunks.
+     *
+     * @param chunkedThreshold
+     *            Minimum size in bytes of files transferred in parallel chunks, 0 to disable
+     */
+    public void setChunkedThreshold(long chunkedThreshold) {
+        this.chunkedThreshold = chunkedThreshold;
+    }
+
+    /**
+     * Getter for amount of chunks transferred concurrently.
+     *
+     * @return Amount of chunks
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Setter for amount of chunks transferred concurrently.
+     *
+     * @param chunkCount
+     *            Amount of chunks a large file is split into and transferred concurrently
+     */
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    /**
+     * Getter for amount of SFTP read or write requests kept in flight.
+     *
+     * @return Queue depth, 0 when pipelining is disabled
+     */
+    public int getSftpQueueDepth() {
+        return sftpQueueDepth;
+    }
+
+    /**
+     * Setter for amount of SFTP read or write requests kept in flight.
+     *
+     * @param sftpQueueDepth
+     *            Amount of SFTP read or write requests kept in flight, 0 to disable pipelining
+     */
+    public void setSftpQueueDepth(int sftpQueueDepth) {
+        this.sftpQueueDepth = sftpQueueDepth;
+    }
+
+    /**
+     * Getter for the minimum size of files transferred with pipelined SFTP requests.
+     *
+     * @return Minimum size in bytes of pipelined files
+     */
+    public long getSftpPipeliningThreshold() {
+        return sftpPipeliningThreshold;
+    }
+
+    /**
+     * Setter for the minimum size of files transferred with pipelined SFTP requests.
+     *
+     * @param sftpPipeliningThreshold
+     *            Minimum size in bytes of files transferred with pipelined SFTP requests
+     */
+    public void setSftpPipeliningThreshold(long sftpPipeliningThreshold) {
+        this.sftpPipeliningThreshold = sftpPipeliningThreshold;
+    }
 }
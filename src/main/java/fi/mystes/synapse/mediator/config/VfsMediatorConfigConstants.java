@@ -51,4 +51,100 @@ public class VfsMediatorConfigConstants {
     public static final QName ELEM_ARCHIVE_FILENAME_PREFIX = new QName(NAMESPACE_STRING, "archiveFilenamePrefix");
     public static final QName ELEM_ARCHIVE_FILENAME_SUFFIX = new QName(NAMESPACE_STRING, "archiveFilenameSuffix");
 
+    public static final QName ELEM_CIRCUIT_BREAKER = new QName(NAMESPACE_STRING, "circuitBreaker");
+    public static final QName ATT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD = new QName("failureRateThreshold");
+    public static final QName ATT_CIRCUIT_BREAKER_MINIMUM_CALLS = new QName("minimumCalls");
+    public static final QName ATT_CIRCUIT_BREAKER_WINDOW_SIZE = new QName("windowSize");
+    public static final QName ATT_CIRCUIT_BREAKER_COOLDOWN = new QName("cooldown");
+
+    public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD = 50;
+    public static final int DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS = 5;
+    public static final int DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 10;
+    public static final long DEFAULT_CIRCUIT_BREAKER_COOLDOWN = 30000;
+
+    public static final QName ELEM_BULKHEAD = new QName(NAMESPACE_STRING, "bulkhead");
+    public static final QName ATT_BULKHEAD_MAX_CONCURRENT = new QName("maxConcurrent");
+    public static final QName ATT_BULKHEAD_OPERATIONS_PER_SECOND = new QName("operationsPerSecond");
+    public static final QName ATT_BULKHEAD_QUEUE_TIMEOUT = new QName("queueTimeout");
+
+    public static final long DEFAULT_BULKHEAD_QUEUE_TIMEOUT = 30000;
+
+    public static final QName ELEM_DIRECTORY_CACHE = new QName(NAMESPACE_STRING, "directoryCache");
+    public static final QName ATT_DIRECTORY_CACHE_TTL = new QName("ttl");
+
+    public static final long DEFAULT_DIRECTORY_CACHE_TTL = 300000;
+
+    public static final QName ELEM_WARMUP = new QName(NAMESPACE_STRING, "warmup");
+    public static final QName ATT_WARMUP_CONNECTIONS = new QName("connections");
+
+    public static final int DEFAULT_WARMUP_CONNECTIONS = 1;
+
+    public static final QName ELEM_STATISTICS = new QName(NAMESPACE_STRING, "statistics");
+    public static final QName ATT_STATISTICS_ENABLED = new QName("enabled");
+
+    public static final QName ELEM_WATCHDOG = new QName(NAMESPACE_STRING, "watchdog");
+    public static final QName ATT_WATCHDOG_READ_IDLE_TIMEOUT = new QName("readIdleTimeout");
+    public static final QName ATT_WATCHDOG_MAX_TRANSFER_TIME = new QName("maxTransferTime");
+
+    public static final long DEFAULT_WATCHDOG_READ_IDLE_TIMEOUT = 60000;
+    public static final long DEFAULT_WATCHDOG_MAX_TRANSFER_TIME = 0;
+
+    public static final QName ELEM_RESUME = new QName(NAMESPACE_STRING, "resume");
+    public static final QName ATT_RESUME_ENABLED = new QName("enabled");
+
+    public static final QName ELEM_SKIP_UNCHANGED = new QName(NAMESPACE_STRING, "skipUnchanged");
+    public static final QName ATT_SKIP_UNCHANGED_ENABLED = new QName("enabled");
+    public static final QName ATT_SKIP_UNCHANGED_COMPARE = new QName("compare");
+
+    public static final String SKIP_UNCHANGED_COMPARE_TIMESTAMP = "timestamp";
+    public static final String SKIP_UNCHANGED_COMPARE_CHECKSUM = "checksum";
+
+    public static final QName ELEM_CHECKSUM = new QName(NAMESPACE_STRING, "checksum");
+    public static final QName ATT_CHECKSUM_ALGORITHM = new QName("algorithm");
+    public static final QName ATT_CHECKSUM_VERIFY = new QName("verify");
+    public static final QName ATT_CHECKSUM_SIDECAR = new QName("sidecar");
+
+    public static final String DEFAULT_CHECKSUM_ALGORITHM = "SHA-256";
+
+    public static final QName ELEM_COMPRESSION = new QName(NAMESPACE_STRING, "compression");
+    public static final QName ATT_COMPRESSION_COMPRESS = new QName("compress");
+    public static final QName ATT_COMPRESSION_DECOMPRESS = new QName("decompress");
+
+    public static final String COMPRESSION_GZIP = "gzip";
+
+    public static final QName ELEM_STREAM_STAGES = new QName(NAMESPACE_STRING, "streamStages");
+    public static final QName ELEM_STREAM_STAGE = new QName(NAMESPACE_STRING, "stage");
+    public static final QName ATT_STREAM_STAGE_CLASS = new QName("class");
+    public static final QName ELEM_STREAM_STAGE_PROPERTY = new QName(NAMESPACE_STRING, "property");
+    public static final QName ATT_STREAM_STAGE_PROPERTY_NAME = new QName("name");
+    public static final QName ATT_STREAM_STAGE_PROPERTY_VALUE = new QName("value");
+
+    public static final QName ELEM_BANDWIDTH = new QName(NAMESPACE_STRING, "bandwidth");
+    public static final QName ATT_BANDWIDTH_BYTES_PER_SECOND = new QName("bytesPerSecond");
+    public static final QName ATT_BANDWIDTH_ENDPOINT_BYTES_PER_SECOND = new QName("endpointBytesPerSecond");
+
+    public static final QName ELEM_TRANSFER_STRATEGY = new QName(NAMESPACE_STRING, "transferStrategy");
+    public static final QName ATT_TRANSFER_STRATEGY_IN_MEMORY_THRESHOLD = new QName("inMemoryThreshold");
+    public static final QName ATT_TRANSFER_STRATEGY_BLOCK_SIZE = new QName("blockSize");
+
+    public static final String TRANSFER_STRATEGY_AUTO = "auto";
+    public static final long DEFAULT_IN_MEMORY_THRESHOLD = 262144;
+    public static final int DEFAULT_AUTO_BLOCK_SIZE = 65536;
+    public static final long MAX_IN_MEMORY_THRESHOLD = 16777216;
+
+    public static final QName ELEM_CHUNKED_TRANSFER = new QName(NAMESPACE_STRING, "chunkedTransfer");
+    public static final QName ATT_CHUNKED_TRANSFER_THRESHOLD = new QName("threshold");
+    public static final QName ATT_CHUNKED_TRANSFER_CHUNKS = new QName("chunks");
+
+    public static final int DEFAULT_CHUNK_COUNT = 4;
+    public static final int MAX_CHUNK_COUNT = 32;
+
+    public static final QName ELEM_SFTP_PIPELINING = new QName(NAMESPACE_STRING, "sftpPipelining");
+    public static final QName ATT_SFTP_PIPELINING_QUEUE_DEPTH = new QName("queueDepth");
+    public static final QName ATT_SFTP_PIPELINING_THRESHOLD = new QName("threshold");
+
+    public static final int DEFAULT_SFTP_QUEUE_DEPTH = 32;
+    public static final long DEFAULT_SFTP_PIPELINING_THRESHOLD = 1048576;
+    public static final int MAX_SFTP_QUEUE_DEPTH = 1024;
+
 }
@@ -16,10 +16,16 @@
 package fi.mystes.synapse.mediator.factory;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.xml.namespace.QName;
 
+import org.apache.axiom.om.OMContainer;
 import org.apache.axiom.om.OMElement;
 import org.apache.synapse.Mediator;
 import org.apache.synapse.config.xml.AbstractMediatorFactory;
@@ -28,6 +34,10 @@ import org.jaxen.JaxenException;
 
 import fi.mystes.synapse.mediator.VfsMediator;
 import fi.mystes.synapse.mediator.config.VfsMediatorConfigConstants;
+import fi.mystes.synapse.mediator.vfs.VfsBulkheadConfig;
+import fi.mystes.synapse.mediator.vfs.VfsChecksum;
+import fi.mystes.synapse.mediator.vfs.VfsCircuitBreakerConfig;
+import fi.mystes.synapse.mediator.vfs.VfsStreamStageConfig;
 
 public class VfsMediatorFactory extends AbstractMediatorFactory {
 
@@ -80,6 +90,38 @@ public class VfsMediatorFactory extends AbstractMediatorFactory {
 
         handleRetryElement(omElement, mediator);
 
+        handleCircuitBreakerElement(omElement, mediator);
+
+        handleBulkheadElement(omElement, mediator);
+
+        handleDirectoryCacheElement(omElement, mediator);
+
+        handleWarmupElement(omElement, mediator);
+
+        handleStatisticsElement(omElement, mediator);
+
+        handleWatchdogElement(omElement, mediator);
+
+        handleResumeElement(omElement, mediator);
+
+        handleSkipUnchangedElement(omElement, mediator);
+
+        handleChecksumElement(omElement, mediator);
+
+        handleCompressionElement(omElement, mediator);
+
+        handleStreamStagesElement(omElement, mediator);
+
+        handleBandwidthElement(omElement, mediator);
+
+        handleTransferStrategyElement(omElement, mediator);
+
+        handleChunkedTransferElement(omElement, mediator);
+
+        handleSftpPipeliningElement(omElement, mediator);
+
+        mediator.setMetricsName(resolveMetricsName(omElement));
+
         handleSftpTimeoutElement(omElement, mediator);
 
         handleTargetFilenamePrefixElement(omElement, mediator);
@@ -236,6 +278,584 @@ public class VfsMediatorFactory extends AbstractMediatorFactory {
         }
     }
 
+    /**
+     * Retrieves 'circuitBreaker' element from given OMElement and sets circuit
+     * breaker settings to given mediator. Missing attributes get default
+     * values.
+     *
+     * @param omElement
+     *            To read 'circuitBreaker' element from
+     * @param mediator
+     *            To set circuit breaker settings to
+     */
+    private void handleCircuitBreakerElement(OMElement omElement, VfsMediator mediator) {
+        OMElement circuitBreakerElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_CIRCUIT_BREAKER);
+        if (circuitBreakerElement == null) {
+            return;
+        }
+
+        try {
+            int failureRateThreshold = parseInt(circuitBreakerElement,
+                    VfsMediatorConfigConstants.ATT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD,
+                    VfsMediatorConfigConstants.DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD);
+            int minimumCalls = parseInt(circuitBreakerElement,
+                    VfsMediatorConfigConstants.ATT_CIRCUIT_BREAKER_MINIMUM_CALLS,
+                    VfsMediatorConfigConstants.DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS);
+            int windowSize = parseInt(circuitBreakerElement,
+                    VfsMediatorConfigConstants.ATT_CIRCUIT_BREAKER_WINDOW_SIZE,
+                    VfsMediatorConfigConstants.DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE);
+            long cooldown = parseLong(circuitBreakerElement, VfsMediatorConfigConstants.ATT_CIRCUIT_BREAKER_COOLDOWN,
+                    VfsMediatorConfigConstants.DEFAULT_CIRCUIT_BREAKER_COOLDOWN);
+
+            mediator.setCircuitBreakerConfig(
+                    new VfsCircuitBreakerConfig(failureRateThreshold, minimumCalls, windowSize, cooldown));
+        } catch (Exception e) {
+            handleException("Failed to parse circuit breaker attributes.", e);
+        }
+    }
+
+    /**
+     * Retrieves 'bulkhead' element from given OMElement and sets bulkhead
+     * settings to given mediator. Missing limits are unlimited.
+     *
+     * @param omElement
+     *            To read 'bulkhead' element from
+     * @param mediator
+     *            To set bulkhead settings to
+     */
+    private void handleBulkheadElement(OMElement omElement, VfsMediator mediator) {
+        OMElement bulkheadElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_BULKHEAD);
+        if (bulkheadElement == null) {
+            return;
+        }
+
+        try {
+            int maxConcurrent = parseInt(bulkheadElement, VfsMediatorConfigConstants.ATT_BULKHEAD_MAX_CONCURRENT, 0);
+            int operationsPerSecond = parseInt(bulkheadElement,
+                    VfsMediatorConfigConstants.ATT_BULKHEAD_OPERATIONS_PER_SECOND, 0);
+            long queueTimeout = parseLong(bulkheadElement, VfsMediatorConfigConstants.ATT_BULKHEAD_QUEUE_TIMEOUT,
+                    VfsMediatorConfigConstants.DEFAULT_BULKHEAD_QUEUE_TIMEOUT);
+
+            mediator.setBulkheadConfig(new VfsBulkheadConfig(maxConcurrent, operationsPerSecond, queueTimeout));
+        } catch (Exception e) {
+            handleException("Failed to parse bulkhead attributes.", e);
+        }
+    }
+
+    /**
+     * Retrieves 'directoryCache' element from given OMElement and sets
+     * directory cache TTL to given mediator.
+     *
+     * @param omElement
+     *            To read 'directoryCache' element from
+     * @param mediator
+     *            To set directory cache TTL to
+     */
+    private void handleDirectoryCacheElement(OMElement omElement, VfsMediator mediator) {
+        OMElement directoryCacheElement = omElement
+                .getFirstChildWithName(VfsMediatorConfigConstants.ELEM_DIRECTORY_CACHE);
+        if (directoryCacheElement == null) {
+            return;
+        }
+
+        try {
+            long ttl = parseLong(directoryCacheElement, VfsMediatorConfigConstants.ATT_DIRECTORY_CACHE_TTL,
+                    VfsMediatorConfigConstants.DEFAULT_DIRECTORY_CACHE_TTL);
+            if (ttl < 0) {
+                throw new IllegalArgumentException("invalid ttl: " + ttl);
+            }
+
+            mediator.setDirectoryCacheTtl(ttl);
+        } catch (Exception e) {
+            handleException("Failed to parse directoryCache attributes.", e);
+        }
+    }
+
+    /**
+     * Retrieves 'warmup' element from given OMElement and sets the amount of
+     * warm-up connections to given mediator.
+     *
+     * @param omElement
+     *            To read 'warmup' element from
+     * @param mediator
+     *            To set warm-up connections to
+     */
+    private void handleWarmupElement(OMElement omElement, VfsMediator mediator) {
+        OMElement warmupElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_WARMUP);
+        if (warmupElement == null) {
+            return;
+        }
+
+        try {
+            int connections = parseInt(warmupElement, VfsMediatorConfigConstants.ATT_WARMUP_CONNECTIONS,
+                    VfsMediatorConfigConstants.DEFAULT_WARMUP_CONNECTIONS);
+            if (connections < 0) {
+                throw new IllegalArgumentException("invalid connections: " + connections);
+            }
+
+            mediator.setWarmupConnections(connections);
+        } catch (Exception e) {
+            handleException("Failed to parse warmup attributes.", e);
+        }
+    }
+
+    /**
+     * Retrieves 'statistics' element from given OMElement and enables
+     * operation statistics of given mediator. Statistics are enabled unless
+     * the 'enabled' attribute is false.
+     *
+     * @param omElement
+     *            To read 'statistics' element from
+     * @param mediator
+     *            To enable statistics of
+     */
+    private void handleStatisticsElement(OMElement omElement, VfsMediator mediator) {
+        OMElement statisticsElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_STATISTICS);
+        if (statisticsElement == null) {
+            return;
+        }
+
+        String enabled = statisticsElement.getAttributeValue(VfsMediatorConfigConstants.ATT_STATISTICS_ENABLED);
+        mediator.setStatisticsEnabled(enabled == null || Boolean.parseBoolean(enabled.trim()));
+    }
+
+    /**
+     * Retrieves 'watchdog' element from given OMElement and sets stalled
+     * transfer timeouts to given mediator.
+     *
+     * @param omElement
+     *            To read 'watchdog' element from
+     * @param mediator
+     *            To set transfer timeouts to
+     */
+    private void handleWatchdogElement(OMElement omElement, VfsMediator mediator) {
+        OMElement watchdogElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_WATCHDOG);
+        if (watchdogElement == null) {
+            return;
+        }
+
+        try {
+            long readIdleTimeout = parseLong(watchdogElement, VfsMediatorConfigConstants.ATT_WATCHDOG_READ_IDLE_TIMEOUT,
+                    VfsMediatorConfigConstants.DEFAULT_WATCHDOG_READ_IDLE_TIMEOUT);
+            long maxTransferTime = parseLong(watchdogElement, VfsMediatorConfigConstants.ATT_WATCHDOG_MAX_TRANSFER_TIME,
+                    VfsMediatorConfigConstants.DEFAULT_WATCHDOG_MAX_TRANSFER_TIME);
+            if (readIdleTimeout < 0) {
+                throw new IllegalArgumentException("invalid readIdleTimeout: " + readIdleTimeout);
+            }
+            if (maxTransferTime < 0) {
+                throw new IllegalArgumentException("invalid maxTransferTime: " + maxTransferTime);
+            }
+
+            mediator.setReadIdleTimeout(readIdleTimeout);
+            mediator.setMaxTransferTime(maxTransferTime);
+        } catch (Exception e) {
+            handleException("Failed to parse watchdog attributes.", e);
+        }
+    }
+
+    /**
+     * Retrieves 'resume' element from given OMElement and enables resuming
+     * of interrupted streaming transfers. Resuming is enabled unless the
+     * 'enabled' attribute is false.
+     *
+     * @param omElement
+     *            To read 'resume' element from
+     * @param mediator
+     *            To enable resuming of
+     */
+    private void handleResumeElement(OMElement omElement, VfsMediator mediator) {
+        OMElement resumeElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_RESUME);
+        if (resumeElement == null) {
+            return;
+        }
+
+        String enabled = resumeElement.getAttributeValue(VfsMediatorConfigConstants.ATT_RESUME_ENABLED);
+        mediator.setResumeEnabled(enabled == null || Boolean.parseBoolean(enabled.trim()));
+    }
+
+    /**
+     * Retrieves 'skipUnchanged' element from given OMElement and enables
+     * skipping of source files whose target is unchanged. Skipping is enabled
+     * unless the 'enabled' attribute is false. The 'compare' attribute
+     * selects whether same sized files are compared by timestamp (default) or
+     * by checksum.
+     *
+     * @param omElement
+     *            To read 'skipUnchanged' element from
+     * @param mediator
+     *            To enable skipping of
+     */
+    private void handleSkipUnchangedElement(OMElement omElement, VfsMediator mediator) {
+        OMElement skipElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_SKIP_UNCHANGED);
+        if (skipElement == null) {
+            return;
+        }
+
+        String enabled = skipElement.getAttributeValue(VfsMediatorConfigConstants.ATT_SKIP_UNCHANGED_ENABLED);
+        mediator.setSkipUnchanged(enabled == null || Boolean.parseBoolean(enabled.trim()));
+
+        String compare = skipElement.getAttributeValue(VfsMediatorConfigConstants.ATT_SKIP_UNCHANGED_COMPARE);
+        if (compare == null || VfsMediatorConfigConstants.SKIP_UNCHANGED_COMPARE_TIMESTAMP.equals(compare.trim())) {
+            mediator.setSkipUnchangedChecksum(false);
+        } else if (VfsMediatorConfigConstants.SKIP_UNCHANGED_COMPARE_CHECKSUM.equals(compare.trim())) {
+            mediator.setSkipUnchangedChecksum(true);
+        } else {
+            handleException("Invalid skipUnchanged compare value: " + compare);
+        }
+    }
+
+    /**
+     * Retrieves 'checksum' element from given OMElement and enables
+     * calculating checksums of transferred files with the algorithm given in
+     * 'algorithm' attribute (default SHA-256). When 'verify' is true, the
+     * checksums are compared with checksum files next to the source files.
+     * When 'sidecar' is true, checksum files are written next to the target
+     * files.
+     *
+     * @param omElement
+     *            To read 'checksum' element from
+     * @param mediator
+     *            To enable checksums of
+     */
+    private void handleChecksumElement(OMElement omElement, VfsMediator mediator) {
+        OMElement checksumElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_CHECKSUM);
+        if (checksumElement == null) {
+            return;
+        }
+
+        String algorithm = checksumElement.getAttributeValue(VfsMediatorConfigConstants.ATT_CHECKSUM_ALGORITHM);
+        algorithm = algorithm == null ? VfsMediatorConfigConstants.DEFAULT_CHECKSUM_ALGORITHM : algorithm.trim();
+        if (!VfsChecksum.isSupported(algorithm)) {
+            handleException("Unsupported checksum algorithm: " + algorithm);
+        }
+        mediator.setChecksumAlgorithm(algorithm);
+
+        String verify = checksumElement.getAttributeValue(VfsMediatorConfigConstants.ATT_CHECKSUM_VERIFY);
+        mediator.setChecksumVerify(verify != null && Boolean.parseBoolean(verify.trim()));
+
+        String sidecar = checksumElement.getAttributeValue(VfsMediatorConfigConstants.ATT_CHECKSUM_SIDECAR);
+        mediator.setChecksumSidecar(sidecar != null && Boolean.parseBoolean(sidecar.trim()));
+    }
+
+    /**
+     * Retrieves 'compression' element from given OMElement and sets target
+     * files to be compressed with the format given in 'compress' attribute,
+     * or source files to be decompressed with the format given in
+     * 'decompress' attribute. Only gzip is supported.
+     *
+     * @param omElement
+     *            To read 'compression' element from
+     * @param mediator
+     *            To set compression of
+     */
+    private void handleCompressionElement(OMElement omElement, VfsMediator mediator) {
+        OMElement compressionElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_COMPRESSION);
+        if (compressionElement == null) {
+            return;
+        }
+
+        String compress = compressionElement.getAttributeValue(VfsMediatorConfigConstants.ATT_COMPRESSION_COMPRESS);
+        String decompress = compressionElement.getAttributeValue(VfsMediatorConfigConstants.ATT_COMPRESSION_DECOMPRESS);
+        if (compress != null && decompress != null) {
+            handleException("Compression element cannot have both compress and decompress attributes.");
+        }
+        String format = compress != null ? compress : decompress;
+        if (format == null || !VfsMediatorConfigConstants.COMPRESSION_GZIP.equals(format.trim())) {
+            handleException("Unsupported compression format: " + format);
+        }
+        if (mediator.isChecksumVerify()) {
+            handleException("Checksum verification cannot be used with compression.");
+        }
+        if (compress != null) {
+            mediator.setCompress(compress.trim());
+        } else {
+            mediator.setDecompress(decompress.trim());
+        }
+    }
+
+    /**
+     * Retrieves 'streamStages' element from given OMElement and sets the
+     * stream stages declared in its 'stage' child elements, in document
+     * order. Each stage names its implementation class in 'class' attribute
+     * and is configured with its 'property' child elements.
+     *
+     * @param omElement
+     *            To read 'streamStages' element from
+     * @param mediator
+     *            To set stream stages of
+     */
+    private void handleStreamStagesElement(OMElement omElement, VfsMediator mediator) {
+        OMElement stagesElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_STREAM_STAGES);
+        if (stagesElement == null) {
+            return;
+        }
+
+        List<VfsStreamStageConfig> stages = new ArrayList<VfsStreamStageConfig>();
+        Iterator<?> stageElements = stagesElement.getChildrenWithName(VfsMediatorConfigConstants.ELEM_STREAM_STAGE);
+        while (stageElements.hasNext()) {
+            OMElement stageElement = (OMElement) stageElements.next();
+            String className = stageElement.getAttributeValue(VfsMediatorConfigConstants.ATT_STREAM_STAGE_CLASS);
+            if (className == null || className.trim().isEmpty()) {
+                handleException("Stream stage element must have class attribute.");
+            }
+
+            Map<String, String> properties = new LinkedHashMap<String, String>();
+            Iterator<?> propertyElements = stageElement
+                    .getChildrenWithName(VfsMediatorConfigConstants.ELEM_STREAM_STAGE_PROPERTY);
+            while (propertyElements.hasNext()) {
+                OMElement propertyElement = (OMElement) propertyElements.next();
+                String name = propertyElement
+                        .getAttributeValue(VfsMediatorConfigConstants.ATT_STREAM_STAGE_PROPERTY_NAME);
+                if (name == null) {
+                    handleException("Stream stage property element must have name attribute.");
+                }
+                String value = propertyElement
+                        .getAttributeValue(VfsMediatorConfigConstants.ATT_STREAM_STAGE_PROPERTY_VALUE);
+                properties.put(name, value != null ? value : "");
+            }
+
+            try {
+                stages.add(new VfsStreamStageConfig(className.trim(), properties));
+            } catch (IllegalArgumentException e) {
+                handleException("Invalid stream stage " + className.trim() + ": " + e.getMessage(), e);
+            }
+        }
+        if (stages.isEmpty()) {
+            handleException("Stream stages element must have at least one stage element.");
+        }
+        if (mediator.isChecksumVerify()) {
+            handleException("Checksum verification cannot be used with stream stages.");
+        }
+        mediator.setStreamStages(stages);
+    }
+
+    /**
+     * Retrieves 'bandwidth' element from given OMElement and sets bandwidth
+     * limit of the mediator from 'bytesPerSecond' attribute and bandwidth
+     * limit shared per remote endpoint from 'endpointBytesPerSecond'
+     * attribute.
+     *
+     * @param omElement
+     *            To read 'bandwidth' element from
+     * @param mediator
+     *            To set bandwidth limits of
+     */
+    private void handleBandwidthElement(OMElement omElement, VfsMediator mediator) {
+        OMElement bandwidthElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_BANDWIDTH);
+        if (bandwidthElement == null) {
+            return;
+        }
+
+        try {
+            long bytesPerSecond = parseLong(bandwidthElement,
+                    VfsMediatorConfigConstants.ATT_BANDWIDTH_BYTES_PER_SECOND, 0);
+            long endpointBytesPerSecond = parseLong(bandwidthElement,
+                    VfsMediatorConfigConstants.ATT_BANDWIDTH_ENDPOINT_BYTES_PER_SECOND, 0);
+            if (bytesPerSecond < 0 || endpointBytesPerSecond < 0) {
+                throw new IllegalArgumentException("invalid bandwidth limit");
+            }
+
+            mediator.setBandwidthLimit(bytesPerSecond);
+            mediator.setEndpointBandwidthLimit(endpointBytesPerSecond);
+        } catch (Exception e) {
+            handleException("Failed to parse bandwidth attributes.", e);
+        }
+    }
+
+    /**
+     * Retrieves 'transferStrategy' element from given OMElement and enables
+     * choosing the transfer strategy per file by its size when 'value'
+     * attribute is "auto". Files up to 'inMemoryThreshold' bytes are
+     * copied with a buffer sized to the file and larger ones streamed with 'blockSize' blocks.
+     *
+     * @param omElement
+     *            To read 'transferStrategy' element from
+     * @param mediator
+     *            To set transfer strategy of
+     */
+    private void handleTransferStrategyElement(OMElement omElement, VfsMediator mediator) {
+        OMElement strategyElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_TRANSFER_STRATEGY);
+        if (strategyElement == null) {
+            return;
+        }
+
+        String value = strategyElement.getAttributeValue(ATT_VALUE);
+        if (value == null || !VfsMediatorConfigConstants.TRANSFER_STRATEGY_AUTO.equals(value.trim())) {
+            handleException("Unsupported transfer strategy: " + value);
+        }
+        try {
+            long inMemoryThreshold = parseLong(strategyElement,
+                    VfsMediatorConfigConstants.ATT_TRANSFER_STRATEGY_IN_MEMORY_THRESHOLD,
+                    VfsMediatorConfigConstants.DEFAULT_IN_MEMORY_THRESHOLD);
+            int blockSize = parseInt(strategyElement, VfsMediatorConfigConstants.ATT_TRANSFER_STRATEGY_BLOCK_SIZE,
+                    VfsMediatorConfigConstants.DEFAULT_AUTO_BLOCK_SIZE);
+            if (inMemoryThreshold < 0 || inMemoryThreshold > VfsMediatorConfigConstants.MAX_IN_MEMORY_THRESHOLD) {
+                throw new IllegalArgumentException("invalid in-memory threshold: " + inMemoryThreshold);
+            }
+            if (blockSize < 1) {
+                throw new IllegalArgumentException("invalid block size: " + blockSize);
+            }
+
+            mediator.setAutoTransferStrategy(true);
+            mediator.setInMemoryThreshold(inMemoryThreshold);
+            mediator.setAutoBlockSize(blockSize);
+        } catch (Exception e) {
+            handleException("Failed to parse transfer strategy attributes.", e);
+        }
+    }
+
+    /**
+     * Retrieves 'chunkedTransfer' element from given OMElement and enables
+     * transferring files of at least 'threshold' bytes as 'chunks' byte
+     * ranges copied concurrently.
+     *
+     * @param omElement
+     *            To read 'chunkedTransfer' element from
+     * @param mediator
+     *            To set chunked transfer of
+     */
+    private void handleChunkedTransferElement(OMElement omElement, VfsMediator mediator) {
+        OMElement chunkedElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_CHUNKED_TRANSFER);
+        if (chunkedElement == null) {
+            return;
+        }
+
+        try {
+            long threshold = parseLong(chunkedElement, VfsMediatorConfigConstants.ATT_CHUNKED_TRANSFER_THRESHOLD, 0);
+            int chunks = parseInt(chunkedElement, VfsMediatorConfigConstants.ATT_CHUNKED_TRANSFER_CHUNKS,
+                    VfsMediatorConfigConstants.DEFAULT_CHUNK_COUNT);
+            if (threshold < 1) {
+                throw new IllegalArgumentException("invalid chunked transfer threshold: " + threshold);
+            }
+            if (chunks < 2 || chunks > VfsMediatorConfigConstants.MAX_CHUNK_COUNT) {
+                throw new IllegalArgumentException("invalid chunk count: " + chunks);
+            }
+
+            mediator.setChunkedThreshold(threshold);
+            mediator.setChunkCount(chunks);
+        } catch (Exception e) {
+            handleException("Failed to parse chunked transfer attributes.", e);
+        }
+    }
+
+    /**
+     * Retrieves 'sftpPipelining' element from given OMElement and enables
+     * SFTP transfers keeping 'queueDepth' read or write requests in flight.
+     *
+     * @param omElement
+     *            To read 'sftpPipelining' element from
+     * @param mediator
+     *            To set SFTP queue depth of
+     */
+    private void handleSftpPipeliningElement(OMElement omElement, VfsMediator mediator) {
+        OMElement pipeliningElement = omElement.getFirstChildWithName(VfsMediatorConfigConstants.ELEM_SFTP_PIPELINING);
+        if (pipeliningElement == null) {
+            return;
+        }
+
+        try {
+            int queueDepth = parseInt(pipeliningElement, VfsMediatorConfigConstants.ATT_SFTP_PIPELINING_QUEUE_DEPTH,
+                    VfsMediatorConfigConstants.DEFAULT_SFTP_QUEUE_DEPTH);
+            if (queueDepth < 1 || queueDepth > VfsMediatorConfigConstants.MAX_SFTP_QUEUE_DEPTH) {
+                throw new IllegalArgumentException("invalid SFTP queue depth: " + queueDepth);
+            }
+            long threshold = parseLong(pipeliningElement, VfsMediatorConfigConstants.ATT_SFTP_PIPELINING_THRESHOLD,
+                    VfsMediatorConfigConstants.DEFAULT_SFTP_PIPELINING_THRESHOLD);
+            if (threshold < 0) {
+                throw new IllegalArgumentException("invalid SFTP pipelining threshold: " + threshold);
+            }
+
+            mediator.setSftpQueueDepth(queueDepth);
+            mediator.setSftpPipeliningThreshold(threshold);
+        } catch (Exception e) {
+            handleException("Failed to parse SFTP pipelining attributes.", e);
+        }
+    }
+
+    /**
+     * Resolves name for the transfer metrics MBean of given mediator element
+     * from the nearest named ancestor (sequence, proxy, ...), the elements
+     * between them and the position of the mediator, e.g.
+     * "MyProxy/target/inSequence/2".
+     *
+     * @param omElement
+     *            Mediator element
+     * @return MBean name, or null if the element is not part of a document
+     */
+    private String resolveMetricsName(OMElement omElement) {
+        if (!(omElement.getParent() instanceof OMElement)) {
+            return null;
+        }
+        StringBuilder name = new StringBuilder().append(positionOf(omElement));
+        OMContainer parent = omElement.getParent();
+        while (parent instanceof OMElement) {
+            OMElement element = (OMElement) parent;
+            String elementName = element.getAttributeValue(new QName("name"));
+            name.insert(0, (elementName != null ? elementName : element.getLocalName()) + "/");
+            if (elementName != null) {
+                break;
+            }
+            parent = element.getParent();
+        }
+        // characters not allowed in unquoted JMX object name values
+        return name.toString().replaceAll("[,=:\"*?]", "_");
+    }
+
+    /**
+     * Helper method to get position of given element among its siblings.
+     *
+     * @param omElement
+     *            Element with a parent
+     * @return Zero based position
+     */
+    private int positionOf(OMElement omElement) {
+        int position = 0;
+        Iterator<?> siblings = omElement.getParent().getChildElements();
+        while (siblings.hasNext()) {
+            if (siblings.next() == omElement) {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Helper method to read optional integer attribute.
+     *
+     * @param element
+     *            To read attribute from
+     * @param attribute
+     *            Attribute name
+     * @param defaultValue
+     *            Value to use if attribute is missing
+     * @return Attribute value as integer
+     * @throws NumberFormatException
+     *             If attribute value is not an integer
+     */
+    private int parseInt(OMElement element, QName attribute, int defaultValue) {
+        String value = element.getAttributeValue(attribute);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Helper method to read optional long attribute.
+     *
+     * @param element
+     *            To read attribute from
+     * @param attribute
+     *            Attribute name
+     * @param defaultValue
+     *            Value to use if attribute is missing
+     * @return Attribute value as long
+     * @throws NumberFormatException
+     *             If attribute value is not a number
+     */
+    private long parseLong(OMElement element, QName attribute, long defaultValue) {
+        String value = element.getAttributeValue(attribute);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
     /**
      * Retrieves 'createMissingDirectories' from given OMElement and sets it to
      * given mediator.
@@ -15,12 +15,17 @@
  */
 package fi.mystes.synapse.mediator.serializer;
 
+import java.util.Map;
+
 import org.apache.axiom.om.OMElement;
 import org.apache.synapse.Mediator;
 import org.apache.synapse.config.xml.AbstractMediatorSerializer;
 
 import fi.mystes.synapse.mediator.VfsMediator;
 import fi.mystes.synapse.mediator.config.VfsMediatorConfigConstants;
+import fi.mystes.synapse.mediator.vfs.VfsBulkheadConfig;
+import fi.mystes.synapse.mediator.vfs.VfsCircuitBreakerConfig;
+import fi.mystes.synapse.mediator.vfs.VfsStreamStageConfig;
 
 /**
  * Mediator serializer class to transform mediator instance to OMElement
@@ -147,6 +152,21 @@ public class VfsMediatorSerializer extends AbstractMediatorSerializer {
         }
 
         handleRetry(mediator, element);
+        handleCircuitBreaker(mediator, element);
+        handleBulkhead(mediator, element);
+        handleDirectoryCache(mediator, element);
+        handleWarmup(mediator, element);
+        handleStatistics(mediator, element);
+        handleWatchdog(mediator, element);
+        handleResume(mediator, element);
+        handleSkipUnchanged(mediator, element);
+        handleChecksum(mediator, element);
+        handleCompression(mediator, element);
+        handleStreamStages(mediator, element);
+        handleBandwidth(mediator, element);
+        handleTransferStrategy(mediator, element);
+        handleChunkedTransfer(mediator, element);
+        handleSftpPipelining(mediator, element);
 
         handleTargetFilenamePrefixElement(mediator, element);
         handleTargetFilenameSuffixElement(mediator, element);
@@ -170,6 +190,227 @@ public class VfsMediatorSerializer extends AbstractMediatorSerializer {
         element.addChild(retryElement);
     }
 
+    /**
+     * Handles the serialization of circuitBreaker -element.
+     *
+     * @param mediator
+     * @param element
+     */
+    private void handleCircuitBreaker(VfsMediator mediator, OMElement element) {
+        VfsCircuitBreakerConfig config = mediator.getCircuitBreakerConfig();
+        if(config == null) {
+            return;
+        }
+
+        OMElement circuitBreakerElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_CIRCUIT_BREAKER.getLocalPart(), synNS);
+        circuitBreakerElement.addAttribute(VfsMediatorConfigConstants.ATT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD.getLocalPart(), Integer.toString(config.getFailureRateThreshold()), nullNS);
+        circuitBreakerElement.addAttribute(VfsMediatorConfigConstants.ATT_CIRCUIT_BREAKER_MINIMUM_CALLS.getLocalPart(), Integer.toString(config.getMinimumCalls()), nullNS);
+        circuitBreakerElement.addAttribute(VfsMediatorConfigConstants.ATT_CIRCUIT_BREAKER_WINDOW_SIZE.getLocalPart(), Integer.toString(config.getWindowSize()), nullNS);
+        circuitBreakerElement.addAttribute(VfsMediatorConfigConstants.ATT_CIRCUIT_BREAKER_COOLDOWN.getLocalPart(), Long.toString(config.getCooldown()), nullNS);
+
+        element.addChild(circuitBreakerElement);
+    }
+
+    /**
+     * Handles the serialization of bulkhead -element.
+     *
+     * @param mediator
+     * @param element
+     */
+    private void handleBulkhead(VfsMediator mediator, OMElement element) {
+        VfsBulkheadConfig config = mediator.getBulkheadConfig();
+        if(config == null) {
+            return;
+        }
+
+        OMElement bulkheadElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_BULKHEAD.getLocalPart(), synNS);
+        bulkheadElement.addAttribute(VfsMediatorConfigConstants.ATT_BULKHEAD_MAX_CONCURRENT.getLocalPart(), Integer.toString(config.getMaxConcurrent()), nullNS);
+        bulkheadElement.addAttribute(VfsMediatorConfigConstants.ATT_BULKHEAD_OPERATIONS_PER_SECOND.getLocalPart(), Integer.toString(config.getOperationsPerSecond()), nullNS);
+        bulkheadElement.addAttribute(VfsMediatorConfigConstants.ATT_BULKHEAD_QUEUE_TIMEOUT.getLocalPart(), Long.toString(config.getQueueTimeout()), nullNS);
+
+        element.addChild(bulkheadElement);
+    }
+
+    /**
+     * Handles the serialization of directoryCache -element.
+     *
+     * @param mediator
+     * @param element
+     */
+    private void handleDirectoryCache(VfsMediator mediator, OMElement element) {
+        if(mediator.getDirectoryCacheTtl() <= 0) {
+            return;
+        }
+
+        OMElement directoryCacheElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_DIRECTORY_CACHE.getLocalPart(), synNS);
+        directoryCacheElement.addAttribute(VfsMediatorConfigConstants.ATT_DIRECTORY_CACHE_TTL.getLocalPart(), Long.toString(mediator.getDirectoryCacheTtl()), nullNS);
+
+        element.addChild(directoryCacheElement);
+    }
+
+    /**
+     * Handles the serialization of warmup -element.
+     *
+     * @param mediator
+     * @param element
+     */
+    private void handleWarmup(VfsMediator mediator, OMElement element) {
+        if(mediator.getWarmupConnections() <= 0) {
+            return;
+        }
+
+        OMElement warmupElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_WARMUP.getLocalPart(), synNS);
+        warmupElement.addAttribute(VfsMediatorConfigConstants.ATT_WARMUP_CONNECTIONS.getLocalPart(), Integer.toString(mediator.getWarmupConnections()), nullNS);
+
+        element.addChild(warmupElement);
+    }
+
+    private void handleStatistics(VfsMediator mediator, OMElement element) {
+        if(!mediator.isStatisticsEnabled()) {
+            return;
+        }
+
+        OMElement statisticsElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_STATISTICS.getLocalPart(), synNS);
+        statisticsElement.addAttribute(VfsMediatorConfigConstants.ATT_STATISTICS_ENABLED.getLocalPart(), Boolean.TRUE.toString(), nullNS);
+
+        element.addChild(statisticsElement);
+    }
+
+    private void handleWatchdog(VfsMediator mediator, OMElement element) {
+        if(mediator.getReadIdleTimeout() <= 0 && mediator.getMaxTransferTime() <= 0) {
+            return;
+        }
+
+        OMElement watchdogElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_WATCHDOG.getLocalPart(), synNS);
+        watchdogElement.addAttribute(VfsMediatorConfigConstants.ATT_WATCHDOG_READ_IDLE_TIMEOUT.getLocalPart(), Long.toString(mediator.getReadIdleTimeout()), nullNS);
+        watchdogElement.addAttribute(VfsMediatorConfigConstants.ATT_WATCHDOG_MAX_TRANSFER_TIME.getLocalPart(), Long.toString(mediator.getMaxTransferTime()), nullNS);
+
+        element.addChild(watchdogElement);
+    }
+
+    private void handleResume(VfsMediator mediator, OMElement element) {
+        if(!mediator.isResumeEnabled()) {
+            return;
+        }
+
+        OMElement resumeElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_RESUME.getLocalPart(), synNS);
+        resumeElement.addAttribute(VfsMediatorConfigConstants.ATT_RESUME_ENABLED.getLocalPart(), Boolean.TRUE.toString(), nullNS);
+
+        element.addChild(resumeElement);
+    }
+
+    private void handleSkipUnchanged(VfsMediator mediator, OMElement element) {
+        if(!mediator.isSkipUnchanged()) {
+            return;
+        }
+
+        OMElement skipElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_SKIP_UNCHANGED.getLocalPart(), synNS);
+        skipElement.addAttribute(VfsMediatorConfigConstants.ATT_SKIP_UNCHANGED_ENABLED.getLocalPart(), Boolean.TRUE.toString(), nullNS);
+        skipElement.addAttribute(VfsMediatorConfigConstants.ATT_SKIP_UNCHANGED_COMPARE.getLocalPart(),
+                mediator.isSkipUnchangedChecksum() ? VfsMediatorConfigConstants.SKIP_UNCHANGED_COMPARE_CHECKSUM
+                        : VfsMediatorConfigConstants.SKIP_UNCHANGED_COMPARE_TIMESTAMP, nullNS);
+
+        element.addChild(skipElement);
+    }
+
+    private void handleChecksum(VfsMediator mediator, OMElement element) {
+        if(mediator.getChecksumAlgorithm() == null) {
+            return;
+        }
+
+        OMElement checksumElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_CHECKSUM.getLocalPart(), synNS);
+        checksumElement.addAttribute(VfsMediatorConfigConstants.ATT_CHECKSUM_ALGORITHM.getLocalPart(), mediator.getChecksumAlgorithm(), nullNS);
+        checksumElement.addAttribute(VfsMediatorConfigConstants.ATT_CHECKSUM_VERIFY.getLocalPart(), Boolean.toString(mediator.isChecksumVerify()), nullNS);
+        checksumElement.addAttribute(VfsMediatorConfigConstants.ATT_CHECKSUM_SIDECAR.getLocalPart(), Boolean.toString(mediator.isChecksumSidecar()), nullNS);
+
+        element.addChild(checksumElement);
+    }
+
+    private void handleCompression(VfsMediator mediator, OMElement element) {
+        if(mediator.getCompress() == null && mediator.getDecompress() == null) {
+            return;
+        }
+
+        OMElement compressionElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_COMPRESSION.getLocalPart(), synNS);
+        if (mediator.getCompress() != null) {
+            compressionElement.addAttribute(VfsMediatorConfigConstants.ATT_COMPRESSION_COMPRESS.getLocalPart(), mediator.getCompress(), nullNS);
+        } else {
+            compressionElement.addAttribute(VfsMediatorConfigConstants.ATT_COMPRESSION_DECOMPRESS.getLocalPart(), mediator.getDecompress(), nullNS);
+        }
+
+        element.addChild(compressionElement);
+    }
+
+    private void handleStreamStages(VfsMediator mediator, OMElement element) {
+        if(mediator.getStreamStages() == null || mediator.getStreamStages().isEmpty()) {
+            return;
+        }
+
+        OMElement stagesElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_STREAM_STAGES.getLocalPart(), synNS);
+        for (VfsStreamStageConfig stage : mediator.getStreamStages()) {
+            OMElement stageElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_STREAM_STAGE.getLocalPart(), synNS);
+            stageElement.addAttribute(VfsMediatorConfigConstants.ATT_STREAM_STAGE_CLASS.getLocalPart(), stage.getClassName(), nullNS);
+            for (Map.Entry<String, String> property : stage.getProperties().entrySet()) {
+                OMElement propertyElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_STREAM_STAGE_PROPERTY.getLocalPart(), synNS);
+                propertyElement.addAttribute(VfsMediatorConfigConstants.ATT_STREAM_STAGE_PROPERTY_NAME.getLocalPart(), property.getKey(), nullNS);
+                propertyElement.addAttribute(VfsMediatorConfigConstants.ATT_STREAM_STAGE_PROPERTY_VALUE.getLocalPart(), property.getValue(), nullNS);
+                stageElement.addChild(propertyElement);
+            }
+            stagesElement.addChild(stageElement);
+        }
+
+        element.addChild(stagesElement);
+    }
+
+    private void handleBandwidth(VfsMediator mediator, OMElement element) {
+        if(mediator.getBandwidthLimit() <= 0 && mediator.getEndpointBandwidthLimit() <= 0) {
+            return;
+        }
+
+        OMElement bandwidthElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_BANDWIDTH.getLocalPart(), synNS);
+        bandwidthElement.addAttribute(VfsMediatorConfigConstants.ATT_BANDWIDTH_BYTES_PER_SECOND.getLocalPart(), Long.toString(mediator.getBandwidthLimit()), nullNS);
+        bandwidthElement.addAttribute(VfsMediatorConfigConstants.ATT_BANDWIDTH_ENDPOINT_BYTES_PER_SECOND.getLocalPart(), Long.toString(mediator.getEndpointBandwidthLimit()), nullNS);
+
+        element.addChild(bandwidthElement);
+    }
+
+    private void handleTransferStrategy(VfsMediator mediator, OMElement element) {
+        if(!mediator.isAutoTransferStrategy()) {
+            return;
+        }
+
+        OMElement strategyElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_TRANSFER_STRATEGY.getLocalPart(), synNS);
+        strategyElement.addAttribute(ATT_VALUE, VfsMediatorConfigConstants.TRANSFER_STRATEGY_AUTO, nullNS);
+        strategyElement.addAttribute(VfsMediatorConfigConstants.ATT_TRANSFER_STRATEGY_IN_MEMORY_THRESHOLD.getLocalPart(), Long.toString(mediator.getInMemoryThreshold()), nullNS);
+        strategyElement.addAttribute(VfsMediatorConfigConstants.ATT_TRANSFER_STRATEGY_BLOCK_SIZE.getLocalPart(), Integer.toString(mediator.getAutoBlockSize()), nullNS);
+
+        element.addChild(strategyElement);
+    }
+
+    private void handleChunkedTransfer(VfsMediator mediator, OMElement element) {
+        if(mediator.getChunkedThreshold() <= 0) {
+            return;
+        }
+
+        OMElement chunkedElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_CHUNKED_TRANSFER.getLocalPart(), synNS);
+        chunkedElement.addAttribute(VfsMediatorConfigConstants.ATT_CHUNKED_TRANSFER_THRESHOLD.getLocalPart(), Long.toString(mediator.getChunkedThreshold()), nullNS);
+        chunkedElement.addAttribute(VfsMediatorConfigConstants.ATT_CHUNKED_TRANSFER_CHUNKS.getLocalPart(), Integer.toString(mediator.getChunkCount()), nullNS);
+
+        element.addChild(chunkedElement);
+    }
+
+    private void handleSftpPipelining(VfsMediator mediator, OMElement element) {
+        if(mediator.getSftpQueueDepth() <= 0) {
+            return;
+        }
+
+        OMElement pipeliningElement = fac.createOMElement(VfsMediatorConfigConstants.ELEM_SFTP_PIPELINING.getLocalPart(), synNS);
+        pipeliningElement.addAttribute(VfsMediatorConfigConstants.ATT_SFTP_PIPELINING_QUEUE_DEPTH.getLocalPart(), Integer.toString(mediator.getSftpQueueDepth()), nullNS);
+        pipeliningElement.addAttribute(VfsMediatorConfigConstants.ATT_SFTP_PIPELINING_THRESHOLD.getLocalPart(), Long.toString(mediator.getSftpPipeliningThreshold()), nullNS);
+
+        element.addChild(pipeliningElement);
+    }
+
     /**
      * Handles the serialization of archiveFilenameSuffix -element.
      *
@@ -15,6 +15,8 @@
  */
 package fi.mystes.synapse.mediator.vfs;
 
+import java.util.List;
+
 import org.apache.commons.vfs2.FileSystemException;
 
 /**
@@ -38,6 +40,33 @@ public abstract class AbstractVfsOperation implements VfsOperation {
     private int retryWait;
     private int sftpTimeout;
     private String sftpAuthKeyPath;
+    private VfsCircuitBreakerConfig circuitBreakerConfig;
+    private VfsBulkheadConfig bulkheadConfig;
+    private long directoryCacheTtl;
+    private int warmupConnections;
+    private VfsTransferMetrics metrics;
+    private VfsOperationStatistics statistics;
+    private long readIdleTimeout;
+    private long maxTransferTime;
+    private boolean resumeEnabled;
+    private boolean skipUnchanged;
+    private boolean skipUnchangedChecksum;
+    private String checksumAlgorithm;
+    private boolean checksumVerify;
+    private boolean checksumSidecar;
+    private String compress;
+    private String decompress;
+    private List<VfsStreamStageConfig> streamStages;
+    private VfsBandwidthLimiter bandwidthLimiter;
+    private long endpointBandwidthLimit;
+    private boolean autoTransferStrategy;
+    private long inMemoryThreshold;
+    private int autoBlockSize;
+    private long chunkedThreshold;
+    private int chunkCount;
+    private int sftpQueueDepth;
+    private VfsManagerPool managerPool;
+    private long sftpPipeliningThreshold;
 
     private String targetFilePrefix;
     private String targetFileSuffix;
@@ -192,6 +221,141 @@ public abstract class AbstractVfsOperation implements VfsOperation {
         this.sftpAuthKeyPath = path;
     }
 
+    @Override
+    public void setCircuitBreakerConfig(VfsCircuitBreakerConfig circuitBreakerConfig) {
+        this.circuitBreakerConfig = circuitBreakerConfig;
+    }
+
+    @Override
+    public void setBulkheadConfig(VfsBulkheadConfig bulkheadConfig) {
+        this.bulkheadConfig = bulkheadConfig;
+    }
+
+    @Override
+    public void setDirectoryCacheTtl(long directoryCacheTtl) {
+        this.directoryCacheTtl = directoryCacheTtl;
+    }
+
+    @Override
+    public void setWarmupConnections(int warmupConnections) {
+        this.warmupConnections = warmupConnections;
+    }
+
+    @Override
+    public void setMetrics(VfsTransferMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void setStatistics(VfsOperationStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void setReadIdleTimeout(long readIdleTimeout) {
+        this.readIdleTimeout = readIdleTimeout;
+    }
+
+    @Override
+    public void setMaxTransferTime(long maxTransferTime) {
+        this.maxTransferTime = maxTransferTime;
+    }
+
+    @Override
+    public void setResumeEnabled(boolean resumeEnabled) {
+        this.resumeEnabled = resumeEnabled;
+    }
+
+    @Override
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    @Override
+    public void setSkipUnchangedChecksum(boolean skipUnchangedChecksum) {
+        this.skipUnchangedChecksum = skipUnchangedChecksum;
+    }
+
+    @Override
+    public void setChecksumAlgorithm(String checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    @Override
+    public void setChecksumVerify(boolean checksumVerify) {
+        this.checksumVerify = checksumVerify;
+    }
+
+    @Override
+    public void setChecksumSidecar(boolean checksumSidecar) {
+        this.checksumSidecar = checksumSidecar;
+    }
+
+    @Override
+    public void setCompress(String compress) {
+        this.compress = compress;
+    }
+
+    @Override
+    public void setDecompress(String decompress) {
+        this.decompress = decompress;
+    }
+
+    @Override
+    public void setStreamStages(List<VfsStreamStageConfig> streamStages) {
+        this.streamStages = streamStages;
+    }
+
+    @Override
+    public void setBandwidthLimiter(VfsBandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    @Override
+    public void setEndpointBandwidthLimit(long endpointBandwidthLimit) {
+        this.endpointBandwidthLimit = endpointBandwidthLimit;
+    }
+
+    @Override
+    public void setAutoTransferStrategy(boolean autoTransferStrategy) {
+        this.autoTransferStrategy = autoTransferStrategy;
+    }
+
+    @Override
+    public void setInMemoryThreshold(long inMemoryThreshold) {
+        this.inMemoryThreshold = inMemoryThreshold;
+    }
+
+    @Override
+    public void setAutoBlockSize(int autoBlockSize) {
+        this.autoBlockSize = autoBlockSize;
+    }
+
+    @Override
+    public void setChunkedThreshold(long chunkedThreshold) {
+        this.chunkedThreshold = chunkedThreshold;
+    }
+
+    @Override
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    @Override
+    public void setSftpQueueDepth(int sftpQueueDepth) {
+        this.sftpQueueDepth = sftpQueueDepth;
+    }
+
+    @Override
+    public void setManagerPool(VfsManagerPool managerPool) {
+        this.managerPool = managerPool;
+    }
+
+    @Override
+    public void setSftpPipeliningThreshold(long sftpPipeliningThreshold) {
+        this.sftpPipeliningThreshold = sftpPipeliningThreshold;
+    }
+
     /**
      * Interface method to be implemented by subclasses.
      * 
@@ -233,6 +397,16 @@ public abstract class AbstractVfsOperation implements VfsOperation {
                 .streamingBlockSize(streamingBlockSize).retryCount(retryCount).retryWait(retryWait).sftpTimeout(sftpTimeout)
                 .targetFilePrefix(targetFilePrefix).targetFileSuffix(targetFileSuffix)
                 .archiveFilePrefix(archiveFilePrefix).archiveFileSuffix(archiveFileSuffix).sftpAuthKeyPath(sftpAuthKeyPath)
+                .circuitBreaker(circuitBreakerConfig).bulkhead(bulkheadConfig).directoryCacheTtl(directoryCacheTtl)
+                .warmupConnections(warmupConnections).metrics(metrics).statistics(statistics)
+                .readIdleTimeout(readIdleTimeout).maxTransferTime(maxTransferTime).resumeEnabled(resumeEnabled)
+                .skipUnchanged(skipUnchanged).skipUnchangedChecksum(skipUnchangedChecksum)
+                .checksumAlgorithm(checksumAlgorithm).checksumVerify(checksumVerify).checksumSidecar(checksumSidecar)
+                .compress(compress).decompress(decompress).streamStages(streamStages).bandwidthLimiter(bandwidthLimiter)
+                .endpointBandwidthLimit(endpointBandwidthLimit).autoTransferStrategy(autoTransferStrategy)
+                .inMemoryThreshold(inMemoryThreshold).autoBlockSize(autoBlockSize).chunkedThreshold(chunkedThreshold)
+                .chunkCount(chunkCount).sftpQueueDepth(sftpQueueDepth).managerPool(managerPool)
+                .sftpPipeliningThreshold(sftpPipeliningThreshold)
                 .build();
     }
 }
@@ -46,4 +46,17 @@ public class DefaultVfsOperationDelegate implements VfsOperationDelegate {
     public int move(VfsOperationOptions options) throws FileSystemException {
         return new VfsFileTransferUtility(options).moveFiles();
     }
+
+    /**
+     * Opens pooled connections to the directories of given operation
+     * options.
+     * 
+     * @return Amount of connections opened
+     * @throws FileSystemException
+     *             If connection options cannot be initialized
+     */
+    @Override
+    public int warmUp(VfsOperationOptions options) throws FileSystemException {
+        return new VfsFileTransferUtility(options).warmUp(options.getWarmupConnections());
+    }
 }
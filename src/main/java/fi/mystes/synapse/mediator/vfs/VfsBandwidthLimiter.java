@@ -0,0 +1,260 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.synapse.commons.jmx.MBeanRegistrar;
+
+/**
+ * Token bucket limiting the bandwidth of file transfers. Each mediator has
+ * its own limiter, and limiters shared by all mediators are created per
+ * remote endpoint, so that bulk transfers cannot saturate a shared link.
+ * <p>
+ * The bucket holds at most one second worth of tokens. A transfer takes
+ * tokens for every copied block and, when the bucket runs dry, reserves the
+ * missing tokens in advance and waits until they have been refilled, so
+ * waiting transfers are served in arrival order. The limit can be changed at
+ * runtime through JMX; 0 disables limiting.
+ */
+public class VfsBandwidthLimiter implements VfsBandwidthLimiterMBean {
+
+    /**
+     * JMX category shared endpoint limiters are registered with.
+     */
+    public static final String ENDPOINT_MBEAN_CATEGORY = "VfsEndpointBandwidth";
+
+    private static final ConcurrentMap<String, VfsBandwidthLimiter> limiters = new ConcurrentHashMap<String, VfsBandwidthLimiter>();
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    private volatile long bytesPerSecond;
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            Name of the mediator or endpoint the limiter belongs to
+     * @param bytesPerSecond
+     *            Bandwidth limit in bytes per second, 0 for unlimited
+     */
+    public VfsBandwidthLimiter(String name, long bytesPerSecond) {
+        this.name = name;
+        this.refilledAt = nanoTime();
+        setBytesPerSecond(bytesPerSecond);
+        this.tokens = bytesPerSecond;
+    }
+
+    /**
+     * Returns the limiter shared by all mediators for the endpoint given URI
+     * points to. The first limit used for an endpoint wins; it can be
+     * changed later through JMX.
+     *
+     * @param uri
+     *            VFS URI
+     * @param bytesPerSecond
+     *            Bandwidth limit in bytes per second, 0 when endpoint
+     *            limits are not enabled
+     * @return Shared limiter, or null if not enabled or URI is not remote
+     */
+    public static VfsBandwidthLimiter forUri(String uri, long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            return null;
+        }
+        String endpoint = VfsEndpoint.keyOf(uri);
+        if (endpoint == null) {
+            return null;
+        }
+        VfsBandwidthLimiter limiter = limiters.get(endpoint);
+        if (limiter == null) {
+            VfsBandwidthLimiter created = new VfsBandwidthLimiter(endpoint, bytesPerSecond);
+            limiter = limiters.putIfAbsent(endpoint, created);
+            if (limiter == null) {
+                limiter = created;
+                MBeanRegistrar.getInstance().registerMBean(created, ENDPOINT_MBEAN_CATEGORY, mbeanName(endpoint));
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Forgets all shared endpoint limiters.
+     */
+    static void reset() {
+        for (String endpoint : limiters.keySet()) {
+            MBeanRegistrar.getInstance().unRegisterMBean(ENDPOINT_MBEAN_CATEGORY, mbeanName(endpoint));
+        }
+        limiters.clear();
+    }
+
+    /**
+     * Takes tokens for given amount of bytes from all given limiters. Waiting
+     * for bandwidth is not idle time, so the read idle clock of the watched
+     * transfer is paused meanwhile.
+     *
+     * @param limiters
+     *            Limiters to take tokens from
+     * @param bytes
+     *            Amount of bytes about to be transferred
+     * @param transfer
+     *            Watched transfer, or null if not watched
+     * @throws InterruptedIOException
+     *             If interrupted while waiting
+     */
+    static void acquireAll(List<VfsBandwidthLimiter> limiters, long bytes, VfsTransferWatchdog.Transfer transfer)
+            throws InterruptedIOException {
+        if (limiters.isEmpty()) {
+            return;
+        }
+        if (transfer != null) {
+            transfer.pause();
+        }
+        try {
+            for (VfsBandwidthLimiter limiter : limiters) {
+                limiter.acquire(bytes);
+            }
+        } finally {
+            if (transfer != null) {
+                transfer.resume();
+            }
+        }
+    }
+
+    /**
+     * Takes tokens for given amount of bytes, waiting until they are
+     * available if the bucket is empty.
+     *
+     * @param bytes
+     *            Amount of bytes about to be transferred
+     * @throws InterruptedIOException
+     *             If interrupted while waiting
+     */
+    public void acquire(long bytes) throws InterruptedIOException {
+        long rate = bytesPerSecond;
+        if (rate <= 0 || bytes <= 0) {
+            return;
+        }
+        bytesTransferred.addAndGet(bytes);
+        long wait;
+        synchronized (this) {
+            refill(nanoTime());
+            tokens -= bytes;
+            wait = tokens >= 0 ? 0 : (long) (-tokens * NANOS_PER_SECOND / rate);
+        }
+        if (wait > 0) {
+            throttledNanos.addAndGet(wait);
+            try {
+                sleepNanos(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth of " + name);
+            }
+        }
+    }
+
+    @Override
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    @Override
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("invalid bandwidth limit: " + bytesPerSecond);
+        }
+        refill(nanoTime());
+        this.bytesPerSecond = bytesPerSecond;
+        // unlimited periods must not leave a burst behind, nor reservations made with the old limit
+        tokens = bytesPerSecond == 0 ? 0 : Math.min(Math.max(tokens, 0), bytesPerSecond);
+    }
+
+    @Override
+    public long getBytesTransferred() {
+        return bytesTransferred.get();
+    }
+
+    @Override
+    public long getThrottledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+    }
+
+    /**
+     * Returns name of the mediator or endpoint the limiter belongs to.
+     *
+     * @return Limiter name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns current time in nanoseconds. Visible for tests.
+     *
+     * @return Current time in nanoseconds
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Waits given time. Visible for tests.
+     *
+     * @param nanos
+     *            Time to wait in nanoseconds
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     */
+    void sleepNanos(long nanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+
+    /**
+     * Helper method to add tokens for the time elapsed since last refill.
+     * Must be called while holding the lock of this limiter.
+     *
+     * @param now
+     *            Current time in nanoseconds
+     */
+    private void refill(long now) {
+        long rate = bytesPerSecond;
+        if (rate > 0) {
+            tokens = Math.min(rate, tokens + (now - refilledAt) * rate / NANOS_PER_SECOND);
+        }
+        refilledAt = now;
+    }
+
+    /**
+     * Helper method to make an endpoint key usable as a JMX object name
+     * value.
+     *
+     * @param endpoint
+     *            Endpoint key
+     * @return MBean name
+     */
+    private static String mbeanName(String endpoint) {
+        return endpoint.replaceAll("[,=:\"*?]", "_");
+    }
+}
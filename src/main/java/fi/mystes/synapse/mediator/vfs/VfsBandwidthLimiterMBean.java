@@ -0,0 +1,45 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+/**
+ * JMX management interface of {@link VfsBandwidthLimiter}. The limit can be
+ * changed at runtime, e.g. to slow down bulk transfers during business hours.
+ */
+public interface VfsBandwidthLimiterMBean {
+
+    /**
+     * @return Bandwidth limit in bytes per second, 0 if unlimited
+     */
+    long getBytesPerSecond();
+
+    /**
+     * @param bytesPerSecond
+     *            New bandwidth limit in bytes per second, 0 for unlimited
+     */
+    void setBytesPerSecond(long bytesPerSecond);
+
+    /**
+     * @return Amount of bytes passed through the limiter
+     */
+    long getBytesTransferred();
+
+    /**
+     * @return Total time transfers have waited for bandwidth in
+     *         milliseconds
+     */
+    long getThrottledMillis();
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of copy buffers shared by all transfers, so that block by block
+ * copies do not allocate a new buffer per file. Buffers are pooled by size;
+ * at most {@link #MAX_POOLED_PER_SIZE} buffers and
+ * {@link #MAX_POOLED_BYTES_PER_SIZE} bytes of each size are kept. Buffers
+ * larger than {@link #MAX_POOLED_BUFFER_SIZE} are not pooled.
+ */
+public final class VfsBufferPool {
+
+    static final int MAX_POOLED_PER_SIZE = 64;
+    static final int MAX_POOLED_BYTES_PER_SIZE = 4194304;
+    static final int MAX_POOLED_BUFFER_SIZE = 1048576;
+
+    private static final ConcurrentMap<Integer, Pool> pools = new ConcurrentHashMap<Integer, Pool>();
+
+    private VfsBufferPool() {
+        // static utility methods only - prevent instantiation
+    }
+
+    /**
+     * Takes a buffer of given size from the pool, or allocates a new one if
+     * the pool is empty.
+     *
+     * @param size
+     *            Buffer size in bytes
+     * @return Buffer of exactly given size
+     */
+    public static byte[] acquire(int size) {
+        if (size > MAX_POOLED_BUFFER_SIZE) {
+            return new byte[size];
+        }
+        Pool pool = poolFor(size);
+        byte[] buffer = pool.buffers.poll();
+        if (buffer == null) {
+            return new byte[size];
+        }
+        pool.pooled.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used by the
+     * caller afterwards.
+     *
+     * @param buffer
+     *            Buffer taken with {@link #acquire(int)}, or null
+     */
+    public static void release(byte[] buffer) {
+        if (buffer == null || buffer.length > MAX_POOLED_BUFFER_SIZE) {
+            return;
+        }
+        Pool pool = poolFor(buffer.length);
+        int limit = Math.min(MAX_POOLED_PER_SIZE, MAX_POOLED_BYTES_PER_SIZE / buffer.length);
+        if (pool.pooled.incrementAndGet() > limit) {
+            pool.pooled.decrementAndGet();
+            return;
+        }
+        pool.buffers.offer(buffer);
+    }
+
+    /**
+     * Returns amount of pooled buffers of given size. Visible for tests.
+     *
+     * @param size
+     *            Buffer size in bytes
+     * @return Amount of buffers in the pool
+     */
+    static int pooled(int size) {
+        return poolFor(size).pooled.get();
+    }
+
+    /**
+     * Empties all pools.
+     */
+    static void reset() {
+        pools.clear();
+    }
+
+    /**
+     * Helper method to get the pool of given buffer size.
+     *
+     * @param size
+     *            Buffer size in bytes
+     * @return Pool of buffers of given size
+     */
+    private static Pool poolFor(int size) {
+        Pool pool = pools.get(size);
+        if (pool == null) {
+            Pool created = new Pool();
+            pool = pools.putIfAbsent(size, created);
+            if (pool == null) {
+                pool = created;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Buffers of a single size.
+     */
+    private static final class Pool {
+        private final Queue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+        private final AtomicInteger pooled = new AtomicInteger();
+    }
+}
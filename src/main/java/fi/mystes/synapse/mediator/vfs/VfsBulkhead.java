@@ -0,0 +1,192 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileSystemException;
+
+/**
+ * Bulkhead and rate limiter shared by all mediators using the same remote
+ * endpoint. Limits the amount of concurrent sessions and the rate of
+ * operations, so that partner limits such as MaxSessions and MaxStartups are
+ * not exceeded. Waiting callers are served in arrival order.
+ */
+public class VfsBulkhead {
+
+    private static final ConcurrentMap<String, VfsBulkhead> bulkheads = new ConcurrentHashMap<String, VfsBulkhead>();
+
+    private final String endpoint;
+    private final VfsBulkheadConfig config;
+    private final Semaphore sessions;
+    private final long operationInterval;
+
+    private long nextOperationSlot;
+
+    /**
+     * Constructor.
+     *
+     * @param endpoint
+     *            Key of the guarded endpoint
+     * @param config
+     *            Bulkhead settings
+     */
+    VfsBulkhead(String endpoint, VfsBulkheadConfig config) {
+        if (config == null) {
+            throw new NullPointerException("config cannot be null");
+        }
+        this.endpoint = endpoint;
+        this.config = config;
+        this.sessions = config.getMaxConcurrent() > 0 ? new Semaphore(config.getMaxConcurrent(), true) : null;
+        this.operationInterval = config.getOperationsPerSecond() > 0
+                ? TimeUnit.SECONDS.toNanos(1) / config.getOperationsPerSecond() : 0;
+    }
+
+    /**
+     * Returns the shared bulkhead for the endpoint given URI points to. The
+     * first configuration used for an endpoint wins.
+     *
+     * @param uri
+     *            VFS URI
+     * @param config
+     *            Bulkhead settings, null when bulkheads are not enabled
+     * @return Bulkhead, or null if not enabled or URI is not remote
+     */
+    public static VfsBulkhead forUri(String uri, VfsBulkheadConfig config) {
+        if (config == null) {
+            return null;
+        }
+        String endpoint = VfsEndpoint.keyOf(uri);
+        if (endpoint == null) {
+            return null;
+        }
+        VfsBulkhead bulkhead = bulkheads.get(endpoint);
+        if (bulkhead == null) {
+            VfsBulkhead created = new VfsBulkhead(endpoint, config);
+            bulkhead = bulkheads.putIfAbsent(endpoint, created);
+            if (bulkhead == null) {
+                bulkhead = created;
+            }
+        }
+        return bulkhead;
+    }
+
+    /**
+     * Forgets all shared bulkheads.
+     */
+    static void reset() {
+        bulkheads.clear();
+    }
+
+    /**
+     * Reserves a session slot for the endpoint, waiting at most the queue
+     * timeout. Every successful call must be paired with {@link #exit()}.
+     *
+     * @throws FileSystemException
+     *             If no slot became free within the queue timeout
+     */
+    public void enter() throws FileSystemException {
+        if (sessions == null) {
+            return;
+        }
+        boolean acquired;
+        try {
+            acquired = sessions.tryAcquire(config.getQueueTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileSystemException("Interrupted while waiting for a free session on endpoint " + endpoint, e);
+        }
+        if (!acquired) {
+            throw new FileSystemException("Timed out after " + config.getQueueTimeout()
+                    + " ms waiting for a free session on endpoint " + endpoint);
+        }
+    }
+
+    /**
+     * Reserves a session slot for the endpoint if one is free, without
+     * waiting. Every successful call must be paired with {@link #exit()}.
+     *
+     * @return True if a slot was reserved or sessions are not limited
+     */
+    public boolean tryEnter() {
+        return sessions == null || sessions.tryAcquire();
+    }
+
+    /**
+     * Releases a session slot reserved with {@link #enter()} or
+     * {@link #tryEnter()}.
+     */
+    public void exit() {
+        if (sessions != null) {
+            sessions.release();
+        }
+    }
+
+    /**
+     * Waits until the endpoint's operation rate allows a new operation.
+     * Operations are scheduled in arrival order.
+     *
+     * @throws FileSystemException
+     *             If the operation could not be scheduled within the queue
+     *             timeout
+     */
+    public void throttle() throws FileSystemException {
+        if (operationInterval == 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextOperationSlot);
+            wait = slot - now;
+            if (wait > TimeUnit.MILLISECONDS.toNanos(config.getQueueTimeout())) {
+                throw new FileSystemException("Timed out after " + config.getQueueTimeout()
+                        + " ms waiting for operation rate limit on endpoint " + endpoint);
+            }
+            nextOperationSlot = slot + operationInterval;
+        }
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FileSystemException("Interrupted while waiting for operation rate limit on endpoint "
+                        + endpoint, e);
+            }
+        }
+    }
+
+    /**
+     * Returns amount of currently free session slots.
+     *
+     * @return Free session slots, or Integer.MAX_VALUE if unlimited
+     */
+    public int getAvailableSessions() {
+        return sessions == null ? Integer.MAX_VALUE : sessions.availablePermits();
+    }
+
+    /**
+     * Returns key of the guarded endpoint.
+     *
+     * @return Endpoint key
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
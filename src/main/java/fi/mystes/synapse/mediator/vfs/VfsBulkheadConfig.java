@@ -0,0 +1,111 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+/**
+ * Bean class containing settings for per endpoint bulkheads and rate
+ * limiters.
+ *
+ */
+public final class VfsBulkheadConfig {
+    private final int maxConcurrent;
+    private final int operationsPerSecond;
+    private final long queueTimeout;
+
+    /**
+     * Class constructor.
+     *
+     * @param maxConcurrent
+     *            Maximum amount of concurrent sessions per endpoint, 0 for
+     *            unlimited
+     * @param operationsPerSecond
+     *            Maximum amount of operations per second per endpoint, 0 for
+     *            unlimited
+     * @param queueTimeout
+     *            Maximum time in milliseconds to wait for a free session or
+     *            operation slot
+     * @throws IllegalArgumentException
+     *             If any of the values is negative
+     */
+    public VfsBulkheadConfig(int maxConcurrent, int operationsPerSecond, long queueTimeout) {
+        if (maxConcurrent < 0) {
+            throw new IllegalArgumentException("invalid max concurrent: " + maxConcurrent);
+        }
+        if (operationsPerSecond < 0) {
+            throw new IllegalArgumentException("invalid operations per second: " + operationsPerSecond);
+        }
+        if (queueTimeout < 0) {
+            throw new IllegalArgumentException("invalid queue timeout: " + queueTimeout);
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.operationsPerSecond = operationsPerSecond;
+        this.queueTimeout = queueTimeout;
+    }
+
+    /**
+     * Returns maximum amount of concurrent sessions per endpoint.
+     *
+     * @return Maximum amount of concurrent sessions, 0 for unlimited
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Returns maximum amount of operations per second per endpoint.
+     *
+     * @return Maximum operations per second, 0 for unlimited
+     */
+    public int getOperationsPerSecond() {
+        return operationsPerSecond;
+    }
+
+    /**
+     * Returns maximum time in milliseconds to wait for a free slot.
+     *
+     * @return Queue timeout in milliseconds
+     */
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+
+        VfsBulkheadConfig that = (VfsBulkheadConfig) o;
+
+        return maxConcurrent == that.maxConcurrent && operationsPerSecond == that.operationsPerSecond
+                && queueTimeout == that.queueTimeout;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = maxConcurrent;
+        result = 31 * result + operationsPerSecond;
+        result = 31 * result + (int) (queueTimeout ^ (queueTimeout >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "maxConcurrent=" + maxConcurrent + ", operationsPerSecond=" + operationsPerSecond + ", queueTimeout="
+                + queueTimeout;
+    }
+}
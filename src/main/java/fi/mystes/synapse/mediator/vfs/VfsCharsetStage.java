@@ -0,0 +1,243 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Map;
+
+/**
+ * Stream stage converting text content from one character set to another,
+ * e.g. from ISO-8859-1 to UTF-8. Content that cannot be decoded with the
+ * source character set or encoded with the target one fails the transfer.
+ * Working buffers are taken from {@link VfsBufferPool}.
+ * <p>
+ * Properties:
+ * <ul>
+ * <li>from - character set of the source content (required)</li>
+ * <li>to - character set of the target content (required)</li>
+ * </ul>
+ */
+public class VfsCharsetStage implements VfsStreamStage {
+
+    public static final String PROPERTY_FROM = "from";
+    public static final String PROPERTY_TO = "to";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private Charset from;
+    private Charset to;
+
+    @Override
+    public void init(Map<String, String> properties) {
+        from = charset(properties, PROPERTY_FROM);
+        to = charset(properties, PROPERTY_TO);
+    }
+
+    @Override
+    public InputStream open(InputStream source, String fileName) throws IOException {
+        return new ConvertingInputStream(source,
+                from.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT),
+                to.newEncoder().onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT));
+    }
+
+    @Override
+    public String targetFileName(String fileName) {
+        return fileName;
+    }
+
+    /**
+     * Helper method to resolve a character set property.
+     *
+     * @param properties
+     *            Stage properties
+     * @param name
+     *            Property name
+     * @return Character set
+     * @throws IllegalArgumentException
+     *             If the property is missing or names an unsupported
+     *             character set
+     */
+    private static Charset charset(Map<String, String> properties, String name) {
+        String value = properties.get(name);
+        if (value == null || value.trim().length() == 0) {
+            throw new IllegalArgumentException("charset stage requires property '" + name + "'");
+        }
+        try {
+            return Charset.forName(value.trim());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("unsupported charset '" + value + "'", e);
+        }
+    }
+
+    /**
+     * Helper method to throw the error of a coder result, if any.
+     *
+     * @param result
+     *            Result of decoding or encoding
+     * @throws CharacterCodingException
+     *             If the result is an error
+     */
+    private static void check(CoderResult result) throws CharacterCodingException {
+        if (result.isError()) {
+            result.throwException();
+        }
+    }
+
+    /**
+     * Input stream decoding the source bytes and encoding the characters
+     * again. The buffers are returned to the pool when the stream is closed.
+     */
+    private static final class ConvertingInputStream extends InputStream {
+        private final InputStream source;
+        private final CharsetDecoder decoder;
+        private final CharsetEncoder encoder;
+        private final byte[] inArray = VfsBufferPool.acquire(BUFFER_SIZE);
+        private final byte[] charArray = VfsBufferPool.acquire(BUFFER_SIZE);
+        private final byte[] outArray = VfsBufferPool.acquire(BUFFER_SIZE);
+        private final ByteBuffer in = ByteBuffer.wrap(inArray);
+        private final CharBuffer chars = ByteBuffer.wrap(charArray).asCharBuffer();
+        private final ByteBuffer out = ByteBuffer.wrap(outArray);
+        private final byte[] single = new byte[1];
+        private boolean endOfInput;
+        private boolean decoderFlushing;
+        private boolean decoded;
+        private boolean needsInput = true;
+        private boolean encoderFlushing;
+        private boolean flushed;
+        private boolean closed;
+
+        ConvertingInputStream(InputStream source, CharsetDecoder decoder, CharsetEncoder encoder) {
+            this.source = source;
+            this.decoder = decoder;
+            this.encoder = encoder;
+            in.flip();
+            chars.flip();
+            out.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (!out.hasRemaining()) {
+                if (flushed) {
+                    return -1;
+                }
+                fill();
+            }
+            int count = Math.min(len, out.remaining());
+            out.get(b, off, count);
+            return count;
+        }
+
+        /**
+         * Helper method to encode the next block of characters.
+         *
+         * @throws IOException
+         *             If reading or converting the content fails
+         */
+        private void fill() throws IOException {
+            out.clear();
+            while (out.position() == 0 && !flushed) {
+                if (needsInput && !decoded) {
+                    decode();
+                }
+                if (!encoderFlushing) {
+                    CoderResult result = encoder.encode(chars, out, decoded);
+                    check(result);
+                    needsInput = result.isUnderflow();
+                    encoderFlushing = decoded && result.isUnderflow();
+                }
+                if (encoderFlushing) {
+                    CoderResult result = encoder.flush(out);
+                    check(result);
+                    flushed = result.isUnderflow();
+                }
+            }
+            out.flip();
+        }
+
+        /**
+         * Helper method to decode the next block of source bytes.
+         *
+         * @throws IOException
+         *             If reading or decoding the content fails
+         */
+        private void decode() throws IOException {
+            if (!endOfInput) {
+                in.compact();
+                int read = source.read(inArray, in.position(), in.remaining());
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    in.position(in.position() + read);
+                }
+                in.flip();
+            }
+            chars.compact();
+            try {
+                if (!decoderFlushing) {
+                    CoderResult result = decoder.decode(in, chars, endOfInput);
+                    check(result);
+                    decoderFlushing = endOfInput && result.isUnderflow();
+                }
+                if (decoderFlushing) {
+                    CoderResult result = decoder.flush(chars);
+                    check(result);
+                    decoded = result.isUnderflow();
+                }
+            } finally {
+                chars.flip();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                source.close();
+            } finally {
+                VfsBufferPool.release(inArray);
+                VfsBufferPool.release(charArray);
+                VfsBufferPool.release(outArray);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Checksum of file content calculated while the content is transferred, so
+ * that verifying the transfer does not need another read of the file. One
+ * instance is used per transfer and reset whenever the transfer starts over.
+ */
+public final class VfsChecksum {
+
+    public static final String CRC32 = "CRC32";
+    public static final String MD5 = "MD5";
+    public static final String SHA1 = "SHA-1";
+    public static final String SHA256 = "SHA-256";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String algorithm;
+    private final MessageDigest digest;
+    private final CRC32 crc;
+
+    /**
+     * Constructor.
+     *
+     * @param algorithm
+     *            One of {@link #CRC32}, {@link #MD5}, {@link #SHA1} and
+     *            {@link #SHA256}
+     * @throws IllegalArgumentException
+     *             If the algorithm is not supported
+     */
+    public VfsChecksum(String algorithm) {
+        if (!isSupported(algorithm)) {
+            throw new IllegalArgumentException("unsupported checksum algorithm: " + algorithm);
+        }
+        this.algorithm = algorithm.toUpperCase(Locale.ENGLISH);
+        if (CRC32.equals(this.algorithm)) {
+            digest = null;
+            crc = new CRC32();
+        } else {
+            try {
+                digest = MessageDigest.getInstance(this.algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("unsupported checksum algorithm: " + algorithm, e);
+            }
+            crc = null;
+        }
+    }
+
+    /**
+     * Checks whether given checksum algorithm is supported.
+     *
+     * @param algorithm
+     *            Algorithm name, case insensitive
+     * @return True if supported
+     */
+    public static boolean isSupported(String algorithm) {
+        if (algorithm == null) {
+            return false;
+        }
+        String name = algorithm.toUpperCase(Locale.ENGLISH);
+        return CRC32.equals(name) || MD5.equals(name) || SHA1.equals(name) || SHA256.equals(name);
+    }
+
+    /**
+     * Adds transferred bytes to the checksum.
+     *
+     * @param buffer
+     *            Buffer holding the bytes
+     * @param offset
+     *            Offset of the first byte in buffer
+     * @param length
+     *            Amount of bytes
+     */
+    public void update(byte[] buffer, int offset, int length) {
+        if (crc != null) {
+            crc.update(buffer, offset, length);
+        } else {
+            digest.update(buffer, offset, length);
+        }
+    }
+
+    /**
+     * Resets the checksum for a transfer starting over.
+     */
+    public void reset() {
+        if (crc != null) {
+            crc.reset();
+        } else {
+            digest.reset();
+        }
+    }
+
+    /**
+     * Returns the checksum of the bytes added so far, as lower case hex
+     * string. Unlike {@link MessageDigest#digest()}, does not reset the
+     * checksum.
+     *
+     * @return Checksum in hex
+     */
+    public String getValue() {
+        byte[] value;
+        if (crc != null) {
+            long crcValue = crc.getValue();
+            value = new byte[] { (byte) (crcValue >>> 24), (byte) (crcValue >>> 16), (byte) (crcValue >>> 8),
+                    (byte) crcValue };
+        } else {
+            try {
+                value = ((MessageDigest) digest.clone()).digest();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(algorithm + " digest cannot be cloned", e);
+            }
+        }
+        char[] hex = new char[value.length * 2];
+        for (int i = 0; i < value.length; i++) {
+            hex[i * 2] = HEX[(value[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[value[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Returns name of the checksum algorithm.
+     *
+     * @return Algorithm name in upper case
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the extension of checksum files written with this algorithm,
+     * e.g. <code>.sha256</code>.
+     *
+     * @return File name extension including the dot
+     */
+    public String getFileExtension() {
+        return "." + algorithm.replace("-", "").toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Parses the checksum from the content of a checksum file. Both a plain
+     * checksum and the <code>sha256sum</code> style "checksum file name"
+     * format are accepted.
+     *
+     * @param content
+     *            Content of the checksum file
+     * @return Checksum in lower case, or null if the content is empty
+     */
+    public static String parse(String content) {
+        String value = content == null ? "" : content.trim();
+        if (value.length() == 0) {
+            return null;
+        }
+        int end = 0;
+        while (end < value.length() && !Character.isWhitespace(value.charAt(end))) {
+            end++;
+        }
+        return value.substring(0, end).toLowerCase(Locale.ENGLISH);
+    }
+}
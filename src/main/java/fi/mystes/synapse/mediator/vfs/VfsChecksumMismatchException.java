@@ -0,0 +1,66 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import org.apache.commons.vfs2.FileSystemException;
+
+/**
+ * Exception thrown when the checksum calculated while transferring a file
+ * does not match the checksum file delivered with the source file. The
+ * transferred target file is deleted before this is thrown.
+ *
+ */
+public class VfsChecksumMismatchException extends FileSystemException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String expected;
+    private final String actual;
+
+    /**
+     * Constructor.
+     *
+     * @param file
+     *            Name of the transferred file
+     * @param expected
+     *            Checksum read from the checksum file
+     * @param actual
+     *            Checksum calculated during the transfer
+     */
+    public VfsChecksumMismatchException(String file, String expected, String actual) {
+        super("Checksum of " + file + " does not match, expected " + expected + " but was " + actual);
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    /**
+     * Returns the checksum read from the checksum file.
+     *
+     * @return Expected checksum
+     */
+    public String getExpected() {
+        return expected;
+    }
+
+    /**
+     * Returns the checksum calculated during the transfer.
+     *
+     * @return Actual checksum
+     */
+    public String getActual() {
+        return actual;
+    }
+}
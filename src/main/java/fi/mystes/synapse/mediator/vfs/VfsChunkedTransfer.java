@@ -0,0 +1,291 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+
+/**
+ * Transfer of a single large file as byte ranges copied concurrently, each
+ * with its own random access streams. On SFTP every stream gets its own
+ * channel, so the ranges are not limited by the window and latency of a
+ * single channel.
+ * <p>
+ * The ranges are written to a part file preallocated to the size of the
+ * source, so the caller can rename it to the target once all ranges are
+ * complete. A failed range is retried on its own, starting over from the
+ * beginning of the range.
+ */
+class VfsChunkedTransfer {
+
+    private static final Log log = LogFactory.getLog(VfsChunkedTransfer.class);
+    private static final long CANCELLED = -1;
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "vfs-chunked-transfer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final FileObject source;
+    private final FileObject part;
+    private final int chunks;
+    private final int blockSize;
+    private final List<VfsBandwidthLimiter> limiters;
+    private final VfsOperationOptions options;
+    private final VfsCircuitBreaker circuitBreaker;
+    private final VfsFileTransferUtility.Retrier.RetryListener retryListener;
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     *
+     * @param source
+     *            File to transfer, on a file system supporting random access
+     *            reads
+     * @param part
+     *            Part file to write, on a file system supporting random
+     *            access writes
+     * @param chunks
+     *            Amount of byte ranges transferred concurrently
+     * @param blockSize
+     *            Size of copied blocks in bytes
+     * @param limiters
+     *            Bandwidth limiters each block waits for
+     * @param options
+     *            Operation options for retry and watchdog settings
+     * @param circuitBreaker
+     *            Circuit breaker of the target endpoint, or null
+     * @param retryListener
+     *            Listener notified of retried ranges, called by one range at
+     *            a time
+     */
+    VfsChunkedTransfer(FileObject source, FileObject part, int chunks, int blockSize,
+            List<VfsBandwidthLimiter> limiters, VfsOperationOptions options, VfsCircuitBreaker circuitBreaker,
+            final VfsFileTransferUtility.Retrier.RetryListener retryListener) {
+        this.source = source;
+        this.part = part;
+        this.chunks = Math.max(1, chunks);
+        this.blockSize = blockSize;
+        this.limiters = limiters;
+        this.options = options;
+        this.circuitBreaker = circuitBreaker;
+        this.retryListener = new VfsFileTransferUtility.Retrier.RetryListener() {
+            @Override
+            public synchronized void onRetry(FileSystemException cause) {
+                if (retryListener != null) {
+                    retryListener.onRetry(cause);
+                }
+            }
+        };
+    }
+
+    /**
+     * Transfers the source file to the part file.
+     *
+     * @return Amount of bytes transferred
+     * @throws FileSystemException
+     *             If a range fails after all retries; the part file is left
+     *             for the caller to delete
+     */
+    long transfer() throws FileSystemException {
+        final long size = source.getContent().getSize();
+        preallocate(size);
+
+        long chunkSize = Math.max(blockSize, (size + chunks - 1) / chunks);
+        List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        for (long start = 0; start < size; start += chunkSize) {
+            final long rangeStart = start;
+            final long rangeEnd = Math.min(size, start + chunkSize);
+            futures.add(executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws FileSystemException {
+                    try {
+                        return new VfsFileTransferUtility.Retrier<Long>(circuitBreaker, retryListener) {
+                            @Override
+                            public Long operation() throws FileSystemException {
+                                // cancelled ranges complete normally, so they are neither retried
+                                // nor counted as failures of the endpoint
+                                return failed.get() ? CANCELLED : copyRange(rangeStart, rangeEnd);
+                            }
+                        }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+                    } catch (FileSystemException e) {
+                        failed.set(true);
+                        throw e;
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                }
+            }));
+        }
+        log.debug("Transferring " + size + " bytes of " + source.getName().getFriendlyURI() + " in "
+                + futures.size() + " chunks");
+
+        FileSystemException failure = null;
+        long transferred = 0;
+        for (Future<Long> future : futures) {
+            try {
+                long copied = future.get();
+                if (copied != CANCELLED) {
+                    transferred += copied;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.set(true);
+                failure = failure != null ? failure
+                        : new FileSystemException("Interrupted during chunked transfer of " + source.getName(), e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof FileSystemException ? (FileSystemException) e.getCause()
+                            : new FileSystemException("Chunked transfer of " + source.getName() + " failed",
+                                    e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return transferred;
+    }
+
+    /**
+     * Helper method to create the part file with the size of the source,
+     * so that ranges can be written in any order.
+     *
+     * @param size
+     *            Size of the source file
+     * @throws FileSystemException
+     *             If the part file cannot be created
+     */
+    private void preallocate(long size) throws FileSystemException {
+        part.createFile();
+        RandomAccessContent content = part.getContent().getRandomAccessContent(RandomAccessMode.READWRITE);
+        try {
+            content.setLength(size);
+        } catch (IOException e) {
+            throw new FileSystemException("Could not allocate " + size + " bytes for " + part.getName(), e);
+        } finally {
+            closeQuietly(content);
+            part.getContent().close();
+        }
+    }
+
+    /**
+     * Helper method to copy a single byte range.
+     *
+     * @param start
+     *            First byte of the range
+     * @param end
+     *            End of the range, exclusive
+     * @return Amount of bytes copied, or CANCELLED if another range failed
+     * @throws FileSystemException
+     *             If the copy fails
+     */
+    private long copyRange(long start, long end) throws FileSystemException {
+        RandomAccessContent input = null;
+        RandomAccessContent output = null;
+        VfsTransferWatchdog.Transfer transfer = null;
+        byte[] buffer = VfsBufferPool.acquire(blockSize);
+        try {
+            if (options.getReadIdleTimeout() > 0 || options.getMaxTransferTime() > 0) {
+                // watched before opening, opening may hang as well
+                transfer = VfsTransferWatchdog.getInstance().watch(
+                        source.getName().getFriendlyURI() + " [" + start + "-" + end + ")",
+                        options.getReadIdleTimeout(), options.getMaxTransferTime());
+            }
+            input = source.getContent().getRandomAccessContent(RandomAccessMode.READ);
+            input.seek(start);
+            InputStream inputStream = input.getInputStream();
+            if (transfer != null) {
+                transfer.watchStream(inputStream);
+            }
+            output = part.getContent().getRandomAccessContent(RandomAccessMode.READWRITE);
+            output.seek(start);
+
+            long remaining = end - start;
+            while (remaining > 0) {
+                if (failed.get()) {
+                    return CANCELLED;
+                }
+                int length = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (length < 0) {
+                    throw new EOFException("Source ended at " + (end - remaining) + " before end of range " + end);
+                }
+                VfsBandwidthLimiter.acquireAll(limiters, length, transfer);
+                if (transfer != null) {
+                    transfer.progress();
+                }
+                output.write(buffer, 0, length);
+                remaining -= length;
+            }
+            return end - start;
+        } catch (FileSystemException e) {
+            throw e;
+        } catch (IOException e) {
+            if (transfer != null) {
+                transfer.checkAborted();
+            }
+            throw new FileSystemException("Could not copy range " + start + "-" + end + " of " + source.getName(), e);
+        } finally {
+            if (transfer != null) {
+                transfer.finish();
+            }
+            closeQuietly(output);
+            closeQuietly(input);
+            VfsBufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Helper method to close random access content, ignoring failures.
+     *
+     * @param content
+     *            Content to close, or null
+     */
+    private static void closeQuietly(RandomAccessContent content) {
+        if (content == null) {
+            return;
+        }
+        try {
+            content.close();
+        } catch (IOException e) {
+            log.debug("Could not close random access content", e);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Circuit breaker guarding calls to a single remote endpoint. Instances are
+ * shared by all mediators using the same endpoint, so a dead host is detected
+ * once and subsequent calls fail fast instead of running the full retry
+ * sequence.
+ * <p>
+ * The breaker is CLOSED while the failure rate of the latest calls stays
+ * below the threshold. When the threshold is reached, the breaker goes OPEN
+ * and rejects all calls until the cooldown has elapsed. After that a single
+ * trial call is let through (HALF_OPEN): success closes the circuit, failure
+ * opens it again.
+ */
+public class VfsCircuitBreaker {
+
+    private static final Log log = LogFactory.getLog(VfsCircuitBreaker.class);
+    private static final ConcurrentMap<String, VfsCircuitBreaker> breakers = new ConcurrentHashMap<String, VfsCircuitBreaker>();
+
+    /**
+     * Circuit breaker states.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String endpoint;
+    private final VfsCircuitBreakerConfig config;
+    private final boolean[] outcomes;
+
+    private State state = State.CLOSED;
+    private int position;
+    private int recordedCalls;
+    private int failedCalls;
+    private long openedAt;
+    private boolean trialInProgress;
+
+    /**
+     * Constructor.
+     *
+     * @param endpoint
+     *            Key of the guarded endpoint
+     * @param config
+     *            Circuit breaker settings
+     */
+    VfsCircuitBreaker(String endpoint, VfsCircuitBreakerConfig config) {
+        if (config == null) {
+            throw new NullPointerException("config cannot be null");
+        }
+        this.endpoint = endpoint;
+        this.config = config;
+        this.outcomes = new boolean[config.getWindowSize()];
+    }
+
+    /**
+     * Returns the shared circuit breaker for the endpoint given URI points
+     * to. The first configuration used for an endpoint wins.
+     *
+     * @param uri
+     *            VFS URI
+     * @param config
+     *            Circuit breaker settings, null when circuit breaking is not
+     *            enabled
+     * @return Circuit breaker, or null if not enabled or URI is not remote
+     */
+    public static VfsCircuitBreaker forUri(String uri, VfsCircuitBreakerConfig config) {
+        if (config == null) {
+            return null;
+        }
+        String endpoint = VfsEndpoint.keyOf(uri);
+        if (endpoint == null) {
+            return null;
+        }
+        VfsCircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            VfsCircuitBreaker created = new VfsCircuitBreaker(endpoint, config);
+            breaker = breakers.putIfAbsent(endpoint, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Forgets all shared circuit breakers.
+     */
+    static void reset() {
+        breakers.clear();
+    }
+
+    /**
+     * Checks whether a call to the endpoint is allowed.
+     *
+     * @throws VfsCircuitOpenException
+     *             If the circuit is open
+     */
+    public synchronized void acquirePermission() throws VfsCircuitOpenException {
+        if (state == State.OPEN) {
+            if (currentTimeMillis() - openedAt < config.getCooldown()) {
+                throw new VfsCircuitOpenException(endpoint);
+            }
+            log.info("Circuit breaker for " + endpoint + " half-open, letting a trial call through");
+            state = State.HALF_OPEN;
+            trialInProgress = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInProgress) {
+                throw new VfsCircuitOpenException(endpoint);
+            }
+            trialInProgress = true;
+        }
+    }
+
+    /**
+     * Records a successful call.
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            log.info("Circuit breaker for " + endpoint + " closed");
+            state = State.CLOSED;
+            clearWindow();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * Records a failed call and opens the circuit if failure rate exceeds
+     * the threshold.
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recordedCalls >= config.getMinimumCalls()
+                    && failedCalls * 100 >= config.getFailureRateThreshold() * recordedCalls) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Records a call that ended without an outcome telling anything about
+     * the endpoint, e.g. a local error or an aborted transfer. A trial call
+     * in progress is released, so that the next call can be the trial.
+     */
+    public synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            trialInProgress = false;
+        }
+    }
+
+    /**
+     * Returns current state of the circuit.
+     *
+     * @return Circuit state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns key of the guarded endpoint.
+     *
+     * @return Endpoint key
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Returns current time in milliseconds. Visible for tests.
+     *
+     * @return Current time in milliseconds
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Helper method to open the circuit.
+     */
+    private void open() {
+        log.warn("Circuit breaker for " + endpoint + " opened, failing fast for " + config.getCooldown() + " ms");
+        state = State.OPEN;
+        openedAt = currentTimeMillis();
+        trialInProgress = false;
+        clearWindow();
+    }
+
+    /**
+     * Helper method to record call outcome to the sliding window.
+     *
+     * @param failed
+     *            True if the call failed
+     */
+    private void record(boolean failed) {
+        if (recordedCalls == outcomes.length) {
+            if (outcomes[position]) {
+                failedCalls--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        outcomes[position] = failed;
+        if (failed) {
+            failedCalls++;
+        }
+        position = (position + 1) % outcomes.length;
+    }
+
+    /**
+     * Helper method to clear the sliding window.
+     */
+    private void clearWindow() {
+        position = 0;
+        recordedCalls = 0;
+        failedCalls = 0;
+    }
+}
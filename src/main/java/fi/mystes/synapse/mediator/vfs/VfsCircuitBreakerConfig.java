@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+/**
+ * Bean class containing settings for per endpoint circuit breakers.
+ *
+ */
+public final class VfsCircuitBreakerConfig {
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final int windowSize;
+    private final long cooldown;
+
+    /**
+     * Class constructor.
+     *
+     * @param failureRateThreshold
+     *            Failure rate in percents (1-100) which opens the circuit
+     * @param minimumCalls
+     *            Minimum amount of recorded calls before failure rate is
+     *            evaluated
+     * @param windowSize
+     *            Amount of latest calls the failure rate is calculated from
+     * @param cooldown
+     *            Time in milliseconds the circuit stays open before a trial
+     *            call is let through
+     * @throws IllegalArgumentException
+     *             If any of the values is out of range
+     */
+    public VfsCircuitBreakerConfig(int failureRateThreshold, int minimumCalls, int windowSize, long cooldown) {
+        if (failureRateThreshold < 1 || failureRateThreshold > 100) {
+            throw new IllegalArgumentException("invalid failure rate threshold: " + failureRateThreshold);
+        }
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("invalid window size: " + windowSize);
+        }
+        if (minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("invalid minimum calls: " + minimumCalls);
+        }
+        if (cooldown < 0) {
+            throw new IllegalArgumentException("invalid cooldown: " + cooldown);
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.windowSize = windowSize;
+        this.cooldown = cooldown;
+    }
+
+    /**
+     * Returns failure rate threshold in percents.
+     *
+     * @return Failure rate threshold
+     */
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * Returns minimum amount of calls before failure rate is evaluated.
+     *
+     * @return Minimum amount of calls
+     */
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * Returns amount of latest calls the failure rate is calculated from.
+     *
+     * @return Window size
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Returns time in milliseconds the circuit stays open.
+     *
+     * @return Cooldown in milliseconds
+     */
+    public long getCooldown() {
+        return cooldown;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+
+        VfsCircuitBreakerConfig that = (VfsCircuitBreakerConfig) o;
+
+        return failureRateThreshold == that.failureRateThreshold && minimumCalls == that.minimumCalls
+                && windowSize == that.windowSize && cooldown == that.cooldown;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = failureRateThreshold;
+        result = 31 * result + minimumCalls;
+        result = 31 * result + windowSize;
+        result = 31 * result + (int) (cooldown ^ (cooldown >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "failureRateThreshold=" + failureRateThreshold + ", minimumCalls=" + minimumCalls + ", windowSize="
+                + windowSize + ", cooldown=" + cooldown;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import org.apache.commons.vfs2.FileSystemException;
+
+/**
+ * Exception thrown when a call to a remote endpoint is rejected because the
+ * endpoint's circuit breaker is open. These are never retried.
+ *
+ */
+public class VfsCircuitOpenException extends FileSystemException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String endpoint;
+
+    /**
+     * Constructor.
+     *
+     * @param endpoint
+     *            Key of the endpoint whose circuit is open
+     */
+    public VfsCircuitOpenException(String endpoint) {
+        super("Circuit breaker is open for endpoint " + endpoint + ", refusing to connect");
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Returns key of the endpoint whose circuit is open.
+     *
+     * @return Endpoint key, e.g. sftp://host:22
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
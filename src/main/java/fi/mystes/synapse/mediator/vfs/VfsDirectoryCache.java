@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of directories recently validated to exist. Shared by all mediators,
+ * so that static target and archive directories are checked (or created) on
+ * the remote server only on first use, after the entry expires and after a
+ * write to the directory has failed.
+ */
+public class VfsDirectoryCache {
+
+    private static final VfsDirectoryCache instance = new VfsDirectoryCache();
+
+    private final ConcurrentMap<String, Long> expiresAt = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Constructor. Visible for tests, use {@link #getInstance()} otherwise.
+     */
+    VfsDirectoryCache() {
+    }
+
+    /**
+     * Returns the shared directory cache.
+     *
+     * @return Shared directory cache
+     */
+    public static VfsDirectoryCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Checks whether given directory has been validated and the entry has not
+     * expired yet.
+     *
+     * @param uri
+     *            Normalized directory URI
+     * @return True if directory is known to exist
+     */
+    public boolean isValidated(String uri) {
+        Long expires = expiresAt.get(uri);
+        if (expires == null) {
+            return false;
+        }
+        if (currentTimeMillis() >= expires.longValue()) {
+            expiresAt.remove(uri, expires);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records given directory as validated.
+     *
+     * @param uri
+     *            Normalized directory URI
+     * @param ttl
+     *            Time in milliseconds the entry is valid
+     */
+    public void validated(String uri, long ttl) {
+        if (ttl > 0) {
+            expiresAt.put(uri, Long.valueOf(currentTimeMillis() + ttl));
+        }
+    }
+
+    /**
+     * Forgets given directory, so that it is validated again on next use.
+     *
+     * @param uri
+     *            Normalized directory URI
+     */
+    public void invalidate(String uri) {
+        expiresAt.remove(uri);
+    }
+
+    /**
+     * Forgets all directories.
+     */
+    void clear() {
+        expiresAt.clear();
+    }
+
+    /**
+     * Returns current time in milliseconds. Visible for tests.
+     *
+     * @return Current time in milliseconds
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
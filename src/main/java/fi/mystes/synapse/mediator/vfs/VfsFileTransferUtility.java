@@ -21,13 +21,26 @@ import org.apache.commons.vfs2.*;
 import org.apache.commons.vfs2.impl.StandardFileSystemManager;
 import org.apache.commons.vfs2.provider.ftp.FtpFileSystemConfigBuilder;
 import org.apache.commons.vfs2.provider.sftp.SftpFileSystemConfigBuilder;
+import org.apache.commons.vfs2.util.RandomAccessMode;
 import org.apache.synapse.SynapseException;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Utility class providing methods for VFS operations (copy/move).
@@ -37,9 +50,29 @@ public class VfsFileTransferUtility {
     private static final Log log = LogFactory.getLog(VfsFileTransferUtility.class);
     private static final String LOCK_FILE_SUFFIX = ".lock";
     private static final String DEFAULT_STREAMING_BLOCK_SIZE = "1024";
+    private static final int WATCHED_COPY_BLOCK_SIZE = 8192;
+    private static final int CHUNK_BLOCK_SIZE = 65536;
+    private static final String PART_FILE_EXTENSION = ".part";
+    private static final String SKIP_UNCHANGED_CHECKSUM = VfsChecksum.SHA256;
+    private static final String GZIP = "gzip";
+    private static final String GZIP_EXTENSION = ".gz";
 
     private final VfsOperationOptions options;
     private final FileSystemOptions fsOptions;
+    private final VfsFlightRecorder recorder = VfsFlightRecorder.getInstance();
+    private final Retrier.RetryListener retryListener = new Retrier.RetryListener() {
+        @Override
+        public void onRetry(FileSystemException cause) {
+            if (options.getMetrics() != null) {
+                options.getMetrics().retry();
+            }
+            if (options.getStatistics() != null) {
+                options.getStatistics().retried();
+            }
+            recorder.retry(cause, options.getRetryWait());
+        }
+    };
+    private VfsSftpPipeline sftpPipeline;
 
     /**
      * Constructor.
@@ -66,10 +99,57 @@ public class VfsFileTransferUtility {
         }
         if(options.getSftpAuthKeyPath() != null) {
             // note #1: keys with a pass phrase not supported for now
-            // note #2: using deprecated API as WSO2 ESB is using an old version of commons-vfs2
-            SftpFileSystemConfigBuilder.getInstance().setIdentities(fsOptions, new File(options.getSftpAuthKeyPath()));
+            configureSftpIdentity(options.getSftpAuthKeyPath());
         }
         SftpFileSystemConfigBuilder.getInstance().setTimeout(fsOptions, options.getSftpTimeout());
+        if (options.getReadIdleTimeout() > 0) {
+            configureFtpTimeouts((int) Math.min(options.getReadIdleTimeout(), Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Helper method to time out FTP connections that make no progress for
+     * the read idle timeout. The watchdog can only abort a hanging transfer
+     * by closing its streams, so it cannot wake up a RETR or STOR still
+     * setting up its data connection.
+     *
+     * @param timeout
+     *            Timeout in milliseconds
+     */
+    private void configureFtpTimeouts(int timeout) {
+        FtpFileSystemConfigBuilder builder = FtpFileSystemConfigBuilder.getInstance();
+        builder.setDataTimeout(fsOptions, timeout);
+        builder.setSoTimeout(fsOptions, timeout);
+        try {
+            builder.setConnectTimeout(fsOptions, timeout);
+        } catch (LinkageError e) {
+            // added in commons-vfs2 2.1, WSO2 ESB may ship an older version
+            log.debug("FTP connect timeout not supported by commons-vfs2");
+        }
+    }
+
+    /**
+     * Helper method to configure SFTP private key authentication. Parsed keys
+     * and known hosts are served from {@link VfsSftpIdentityCache} when the
+     * commons-vfs2 version supports identity repositories.
+     *
+     * @param keyPath
+     *            Path to private key
+     * @throws FileSystemException
+     *             If setting the options fails
+     */
+    private void configureSftpIdentity(String keyPath) throws FileSystemException {
+        SftpFileSystemConfigBuilder builder = SftpFileSystemConfigBuilder.getInstance();
+        try {
+            builder.setIdentityRepositoryFactory(fsOptions, VfsSftpIdentityCache.identityRepositoryFactory(keyPath));
+            // no identity files, so that commons-vfs does not parse the key (or ~/.ssh/id_rsa) itself
+            builder.setIdentities(fsOptions, new File[0]);
+            builder.setKnownHosts(fsOptions, VfsSftpIdentityCache.NO_KNOWN_HOSTS);
+        } catch (LinkageError e) {
+            // using deprecated API as WSO2 ESB is using an old version of commons-vfs2
+            log.debug("Identity repositories not supported by commons-vfs2, SFTP key is parsed on each connection");
+            builder.setIdentities(fsOptions, new File(keyPath));
+        }
     }
 
     /**
@@ -107,25 +187,31 @@ public class VfsFileTransferUtility {
      */
     private FileObject[] listFiles(final FileSystemManager manager, final String sourceDirectoryPath, final String filePatternRegex) throws FileSystemException {
 
+        final long start = System.nanoTime();
+        Object listingEvent = recorder.beginListing();
         final FileObject fromDirectory = resolveFile(manager, sourceDirectoryPath);
+        final int[] entriesListed = new int[1];
         FileObject[] fileList = null;
 
         try {
             log.debug("Source directory: " + fileObjectNameForDebug(fromDirectory));
             // check that both of the parameters are folders
             isFolder(fromDirectory);
+            throttle(sourceDirectoryPath);
 
-            Retrier<FileObject[]> retrier = new Retrier<FileObject[]>() {
+            Retrier<FileObject[]> retrier = new Retrier<FileObject[]>(circuitBreakerFor(sourceDirectoryPath), retryListener) {
                 @Override
                 public FileObject[] operation() throws FileSystemException {
                     FileObject[] fileListRet = null;
+                    entriesListed[0] = 0;
                     if (filePatternRegex != null) {
                         log.debug("Applying file pattern " + filePatternRegex);
-                        FileFilter ff = initFileFilter(filePatternRegex);
+                        FileFilter ff = initFileFilter(filePatternRegex, entriesListed);
                         fileListRet = fromDirectory.findFiles(new FileFilterSelector(ff));
                     } else {
                         // List all the files in that directory and copy each
                         fileListRet = fromDirectory.getChildren();
+                        entriesListed[0] = fileListRet.length;
                     }
                     log.debug("Found " + fileListRet.length + " files in source directory");
 
@@ -135,6 +221,13 @@ public class VfsFileTransferUtility {
 
             fileList = retrier.doWithRetry(options.getRetryCount(), options.getRetryWait());
 
+            if (options.getMetrics() != null) {
+                options.getMetrics().recordList(System.nanoTime() - start);
+            }
+            if (options.getStatistics() != null) {
+                options.getStatistics().listed(System.nanoTime() - start, entriesListed[0], fileList.length);
+            }
+            recorder.endListing(listingEvent, fileObjectNameForDebug(fromDirectory), entriesListed[0], fileList.length);
         } finally {
             try {
                 fromDirectory.close();
@@ -161,11 +254,7 @@ public class VfsFileTransferUtility {
     private boolean copyFile(final FileSystemManager manager, final FileObject file, String targetDirectoryPath, boolean lockEnabled, TargetType targetType)
             throws FileSystemException {
         if (file.getType() == FileType.FILE) {
-            final String targetPath = targetDirectoryPath + "/" +
-                    getPrefix(targetType) +
-                    FilenameUtils.removeExtension(file.getName().getBaseName()) +
-                    getSuffix(targetType) +
-                    (FilenameUtils.getExtension(file.getName().getBaseName()).isEmpty() ? "" : ("." + FilenameUtils.getExtension(file.getName().getBaseName())));
+            final String targetPath = targetDirectoryPath + "/" + targetFileName(file, targetType);
 
             String lockFilePath = null;
             if (lockEnabled) {
@@ -177,19 +266,27 @@ public class VfsFileTransferUtility {
             try {
                 log.debug(
                         "About to copy " + fileObjectNameForDebug(file) + " to " + fileObjectNameForDebug(newLocation));
-
-                if(options.isStreamingTransferEnabled()) {
-                    // TODO: Should we use the retrier for this?
-                    streamFromFileToFile(file, resolveFile(manager, targetPath));
+                throttle(file.getName().getURI());
+                throttle(targetPath);
+
+                long transferStart = System.nanoTime();
+                Object transferEvent = recorder.beginTransfer();
+                final VfsChecksum checksum = newChecksum();
+                // archive copies are kept as they are
+                final boolean transform = targetType == TargetType.TARGET && isTransformed();
+                long bytes = transferContent(manager, file, newLocation, targetPath, checksum, transform);
+
+                if (checksum != null) {
+                    checksumTransferred(manager, file, newLocation, checksum, targetType);
                 }
-                else{
-                    new Retrier<Object>() {
-                        @Override
-                        public Object operation() throws FileSystemException {
-                            newLocation.copyFrom(file, Selectors.SELECT_SELF);
-                            return null;
-                        }
-                    }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+
+                bytes = recordTransfer(file, newLocation, bytes, System.nanoTime() - transferStart, transferEvent);
+                if (options.getMetrics() != null) {
+                    if (targetType == TargetType.ARCHIVE) {
+                        options.getMetrics().fileArchived(bytes);
+                    } else {
+                        options.getMetrics().fileCopied(bytes);
+                    }
                 }
 
                 newLocation.close();
@@ -211,11 +308,14 @@ public class VfsFileTransferUtility {
      * Creates File filter that matches file names to given regex
      *
      * @param regex
+     * @param entriesSeen
+     *            Single element array the amount of filtered entries is added to
      * @return
      */
-    private FileFilter initFileFilter(final String regex) {
+    private FileFilter initFileFilter(final String regex, final int[] entriesSeen) {
         FileFilter ff = new FileFilter() {
             public boolean accept(FileSelectInfo fileInfo) {
+                entriesSeen[0]++;
                 FileObject fo = fileInfo.getFile();
                 return fo.getName().getBaseName().matches(regex);
             }
@@ -234,52 +334,343 @@ public class VfsFileTransferUtility {
      *             If given file operation fails
      */
     private int doOperation(Operation operation) throws FileSystemException {
+        Object operationEvent = recorder.beginOperation();
+        List<VfsBulkhead> bulkheads = Collections.emptyList();
         FileSystemManager manager = null;
+        String toDirectoryName = null;
+        int fileProcessed = 0;
+        boolean completed = false;
         try {
+            // inside the try, so that rejected operations are counted as failures
+            bulkheads = enterBulkheads();
+            long start = System.nanoTime();
             manager = initManager();
+            if (options.getSftpQueueDepth() > 0) {
+                sftpPipeline = new VfsSftpPipeline(options);
+            }
 
             FileObject toDirectory = resolveFile(manager, options.getTargetDirectory());
             log.debug("Starting operation " + operation + ", target directory: " + fileObjectNameForDebug(toDirectory));
             validateFolder(toDirectory, options.isCreateMissingDirectories());
+            String toDirectoryUri = toDirectory.getName().getURI();
+            toDirectoryName = fileObjectNameForDebug(toDirectory);
 
+            String archiveDirUri = null;
             if (options.getArchiveDirectory() != null) {
                 FileObject archiveDir = resolveFile(manager, options.getArchiveDirectory());
                 log.debug("Using archive directory: " + fileObjectNameForDebug(archiveDir));
                 validateFolder(archiveDir, options.isCreateMissingDirectories());
+                archiveDirUri = archiveDir.getName().getURI();
                 archiveDir.close();
             }
 
+            if (options.getStatistics() != null) {
+                options.getStatistics().connected(System.nanoTime() - start);
+            }
+
+            Map<String, FileObject> targetFiles = null;
+            if (operation == Operation.COPY && options.isSkipUnchanged()) {
+                targetFiles = listTargetFiles(toDirectory);
+            }
+
             FileObject[] children = listFiles(manager, options.getSourceDirectory(), options.getFilePatternRegex());
-            int fileProcessed = 0;
             for (int i = 0; i < children.length; i++) {
                 log.debug("Processing file #" + (i + 1));
+                if (targetFiles != null
+                        && isUnchanged(children[i], targetFiles.get(targetFileName(children[i], TargetType.TARGET)))) {
+                    fileSkipped(children[i]);
+                    continue;
+                }
                 // archive file here first before processing it
                 if (options.getArchiveDirectory() != null) {
                     log.debug("Copying file to archive directory");
-                    copyFile(manager, children[i], options.getArchiveDirectory(), options.isLockEnabled(), TargetType.ARCHIVE);
+                    boolean archived = false;
+                    try {
+                        copyFile(manager, children[i], options.getArchiveDirectory(), options.isLockEnabled(), TargetType.ARCHIVE);
+                        archived = true;
+                    } finally {
+                        if (!archived) {
+                            VfsDirectoryCache.getInstance().invalidate(archiveDirUri);
+                        }
+                    }
                 }
-                if (operation == Operation.MOVE) {
-                    if (moveFile(manager, children[i], options.getTargetDirectory(), options.isLockEnabled())) {
-                        // FileObject was copied successfully
-                        fileProcessed++;
+                boolean written = false;
+                try {
+                    if (operation == Operation.MOVE) {
+                        if (moveFile(manager, children[i], options.getTargetDirectory(), options.isLockEnabled())) {
+                            // FileObject was copied successfully
+                            fileProcessed++;
+                        }
+                    } else if (operation == Operation.COPY) {
+                        if (copyFile(manager, children[i], options.getTargetDirectory(), options.isLockEnabled(), TargetType.TARGET)) {
+                            // FileObject was copied successfully
+                            fileProcessed++;
+                        }
+                    } else {
+                        // unsupported operation
                     }
-                } else if (operation == Operation.COPY) {
-                    if (copyFile(manager, children[i], options.getTargetDirectory(), options.isLockEnabled(), TargetType.TARGET)) {
-                        // FileObject was copied successfully
-                        fileProcessed++;
+                    written = true;
+                } finally {
+                    if (!written) {
+                        // directory may have been removed, check it again on next use
+                        VfsDirectoryCache.getInstance().invalidate(toDirectoryUri);
                     }
-                } else {
-                    // unsupported operation
                 }
 
             }
             toDirectory.close();
 
+            completed = true;
             return fileProcessed;
         } finally {
+            if (sftpPipeline != null) {
+                sftpPipeline.close();
+                sftpPipeline = null;
+            }
             if(manager != null) {
-                ((StandardFileSystemManager) manager).close();
+                releaseManager(manager, completed);
+            }
+            exitBulkheads(bulkheads);
+            if (!completed && options.getMetrics() != null) {
+                options.getMetrics().failure();
+            }
+            recorder.endOperation(operationEvent, operation.name().toLowerCase(Locale.ENGLISH), toDirectoryName,
+                    fileProcessed, completed);
+        }
+    }
+
+    /**
+     * Helper method to list the files already in target directory. The
+     * directory is listed once per operation, so that checking for unchanged
+     * targets does not need a round trip per source file.
+     *
+     * @param toDirectory
+     *            Target directory
+     * @return Files in target directory by base name
+     * @throws FileSystemException
+     *             If listing fails
+     */
+    private Map<String, FileObject> listTargetFiles(final FileObject toDirectory) throws FileSystemException {
+        String toDirectoryUri = toDirectory.getName().getURI();
+        throttle(toDirectoryUri);
+        FileObject[] children = new Retrier<FileObject[]>(circuitBreakerFor(toDirectoryUri), retryListener) {
+            @Override
+            public FileObject[] operation() throws FileSystemException {
+                return toDirectory.getChildren();
+            }
+        }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+
+        Map<String, FileObject> targetFiles = new HashMap<String, FileObject>(children.length * 2);
+        for (FileObject child : children) {
+            targetFiles.put(child.getName().getBaseName(), child);
+        }
+        log.debug("Found " + targetFiles.size() + " existing entries in target directory");
+        return targetFiles;
+    }
+
+    /**
+     * Helper method to check whether the existing target of a source file is
+     * unchanged. Target is unchanged when it has the same size as the source
+     * and either the same content checksum or, when checksums are not
+     * compared, a modification time not older than the source's. If any of
+     * the attributes cannot be read, the file is considered changed. Targets
+     * of compressed or transformed content never match the source, so they
+     * are considered changed without reading either file.
+     *
+     * @param file
+     *            Source file
+     * @param target
+     *            Existing target file, or null if there is none
+     * @return True if copying the source file can be skipped
+     */
+    private boolean isUnchanged(FileObject file, FileObject target) {
+        if (target == null || isTransformed()) {
+            return false;
+        }
+        try {
+            if (file.getType() != FileType.FILE || target.getType() != FileType.FILE) {
+                return false;
+            }
+            if (file.getContent().getSize() != target.getContent().getSize()) {
+                return false;
             }
+            if (options.isSkipUnchangedChecksum()) {
+                return checksumOf(file).equals(checksumOf(target));
+            }
+            return target.getContent().getLastModifiedTime() >= file.getContent().getLastModifiedTime();
+        } catch (FileSystemException e) {
+            log.debug("Unable to compare " + fileObjectNameForDebug(file) + " to its target, copying it: "
+                    + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Helper method to calculate checksum of file content.
+     *
+     * @param file
+     *            File to read
+     * @return Checksum of the content in hex
+     * @throws FileSystemException
+     *             If reading the file fails
+     */
+    private String checksumOf(FileObject file) throws FileSystemException {
+        VfsChecksum checksum = new VfsChecksum(SKIP_UNCHANGED_CHECKSUM);
+        InputStream inputStream = file.getContent().getInputStream();
+        byte[] buffer = VfsBufferPool.acquire(WATCHED_COPY_BLOCK_SIZE);
+        try {
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                checksum.update(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            throw new FileSystemException("Unable to read " + fileObjectNameForDebug(file), e);
+        } finally {
+            VfsBufferPool.release(buffer);
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {}
+            file.getContent().close();
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Helper method to record a source file skipped for having an unchanged
+     * target.
+     *
+     * @param file
+     *            Skipped source file
+     */
+    private void fileSkipped(FileObject file) {
+        log.debug("Target of " + fileObjectNameForDebug(file) + " is unchanged, skipping");
+        if (options.getMetrics() != null) {
+            options.getMetrics().fileSkipped();
+        }
+        if (options.getStatistics() != null) {
+            options.getStatistics().skipped();
+        }
+    }
+
+    /**
+     * Opens the given amount of pooled connections to the source, target and
+     * archive directories and validates the directories. Failures are logged
+     * and do not prevent the remaining connections from being opened.
+     *
+     * @param connections
+     *            Amount of connections to open
+     * @return Amount of connections opened and added to the pool
+     */
+    public int warmUp(int connections) {
+        int warmed = 0;
+        if (options.getManagerPool() == null) {
+            return warmed;
+        }
+        for (int i = 0; i < connections; i++) {
+            FileSystemManager manager = null;
+            boolean completed = false;
+            try {
+                manager = VfsManagerPool.create();
+                FileObject fromDirectory = resolveFile(manager, options.getSourceDirectory());
+                isFolder(fromDirectory);
+                fromDirectory.close();
+                if (options.getTargetDirectory() != null) {
+                    FileObject toDirectory = resolveFile(manager, options.getTargetDirectory());
+                    validateFolder(toDirectory, options.isCreateMissingDirectories());
+                    toDirectory.close();
+                }
+                if (options.getArchiveDirectory() != null) {
+                    FileObject archiveDir = resolveFile(manager, options.getArchiveDirectory());
+                    validateFolder(archiveDir, options.isCreateMissingDirectories());
+                    archiveDir.close();
+                }
+                completed = true;
+                warmed++;
+            } catch (FileSystemException e) {
+                log.warn("Warm-up of connection #" + (i + 1) + " failed", e);
+            } finally {
+                if (manager != null) {
+                    releaseManager(manager, completed);
+                }
+            }
+        }
+        return warmed;
+    }
+
+    /**
+     * Helper method to reserve a session slot from the bulkhead of each
+     * remote endpoint the operation uses.
+     *
+     * @return Bulkheads entered, to be exited when the operation ends
+     * @throws FileSystemException
+     *             If a session slot could not be reserved within the queue
+     *             timeout
+     */
+    private List<VfsBulkhead> enterBulkheads() throws FileSystemException {
+        Map<String, VfsBulkhead> bulkheadsByEndpoint = new TreeMap<String, VfsBulkhead>();
+        for (String path : new String[] { options.getSourceDirectory(), options.getTargetDirectory(),
+                options.getArchiveDirectory() }) {
+            VfsBulkhead bulkhead = VfsBulkhead.forUri(path, options.getBulkheadConfig());
+            if (bulkhead != null) {
+                bulkheadsByEndpoint.put(bulkhead.getEndpoint(), bulkhead);
+            }
+        }
+
+        List<VfsBulkhead> entered = new ArrayList<VfsBulkhead>();
+        try {
+            // entered in endpoint order so that concurrent operations cannot deadlock
+            for (VfsBulkhead bulkhead : bulkheadsByEndpoint.values()) {
+                Object lockEvent = recorder.beginLockWait();
+                long start = System.nanoTime();
+                boolean acquired = false;
+                try {
+                    bulkhead.enter();
+                    acquired = true;
+                } finally {
+                    recorder.endLockWait(lockEvent, "bulkhead", bulkhead.getEndpoint(), acquired);
+                    if (options.getMetrics() != null) {
+                        options.getMetrics().recordLock(System.nanoTime() - start);
+                    }
+                    if (options.getStatistics() != null) {
+                        options.getStatistics().locked(System.nanoTime() - start);
+                    }
+                }
+                entered.add(bulkhead);
+            }
+        } catch (FileSystemException e) {
+            exitBulkheads(entered);
+            throw e;
+        }
+        return entered;
+    }
+
+    /**
+     * Helper method to release session slots reserved by
+     * {@link #enterBulkheads()}.
+     *
+     * @param bulkheads
+     *            Bulkheads entered
+     */
+    private void exitBulkheads(List<VfsBulkhead> bulkheads) {
+        for (VfsBulkhead bulkhead : bulkheads) {
+            bulkhead.exit();
+        }
+    }
+
+    /**
+     * Helper method to wait until the operation rate limit of the endpoint of
+     * given path allows a new operation.
+     *
+     * @param path
+     *            VFS path
+     * @throws FileSystemException
+     *             If the operation could not be scheduled within the queue
+     *             timeout
+     */
+    private void throttle(String path) throws FileSystemException {
+        VfsBulkhead bulkhead = VfsBulkhead.forUri(path, options.getBulkheadConfig());
+        if (bulkhead != null) {
+            bulkhead.throttle();
         }
     }
 
@@ -297,11 +688,7 @@ public class VfsFileTransferUtility {
      */
     private boolean moveFile(final FileSystemManager manager, final FileObject file, String toDirectoryPath, boolean lockEnabled) throws FileSystemException {
         if (file.getType() == FileType.FILE) {
-            final String targetPath = toDirectoryPath + "/" +
-                    getPrefix(TargetType.TARGET) +
-                    FilenameUtils.removeExtension(file.getName().getBaseName()) +
-                    getSuffix(TargetType.TARGET) +
-                    (FilenameUtils.getExtension(file.getName().getBaseName()).isEmpty() ? "" : ("." + FilenameUtils.getExtension(file.getName().getBaseName())));
+            final String targetPath = toDirectoryPath + "/" + targetFileName(file, TargetType.TARGET);
 
             String lockFilePath = null;
             if (lockEnabled) {
@@ -313,23 +700,31 @@ public class VfsFileTransferUtility {
             try {
                 log.debug(
                         "About to move " + fileObjectNameForDebug(file) + " to " + fileObjectNameForDebug(newLocation));
-
-                if(options.isStreamingTransferEnabled()) {
-                    streamFromFileToFile(file, resolveFile(manager, targetPath)); // TODO TODO could fail. What if we fail during streaming and continue? Do we get targetFile which has the first streamed fragment and then the whole file again?
-                }
-                else{
-                    new Retrier<Object>() {
-                        @Override
-                        public Object operation() throws FileSystemException {
-                            newLocation.copyFrom(file, Selectors.SELECT_SELF); // could fail
-                            return null;
-                        }
-                    }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+                throttle(file.getName().getURI());
+                throttle(targetPath);
+
+                long transferStart = System.nanoTime();
+                Object transferEvent = recorder.beginTransfer();
+                final VfsChecksum checksum = newChecksum();
+                final boolean transform = isTransformed();
+                // on abort the source file is kept, only the partial target is removed
+                long bytes = transferContent(manager, file, newLocation, targetPath, checksum, transform);
+
+                if (checksum != null) {
+                    // verified and checksum file written before the source file is deleted
+                    checksumTransferred(manager, file, newLocation, checksum, TargetType.TARGET);
                 }
 
+                bytes = recordTransfer(file, newLocation, bytes, System.nanoTime() - transferStart, transferEvent);
+
                 newLocation.close();
+                long deleteStart = System.nanoTime();
                 file.delete();
                 file.close();
+                recordDelete(System.nanoTime() - deleteStart);
+                if (options.getMetrics() != null) {
+                    options.getMetrics().fileMoved(bytes);
+                }
                 log.debug("File moved to " + fileObjectNameForDebug(newLocation));
             } finally {
                 if (lockFilePath != null) {
@@ -343,6 +738,57 @@ public class VfsFileTransferUtility {
     }
 
 
+    /**
+     * Helper method to record a finished file transfer to metrics,
+     * statistics and flight recorder.
+     *
+     * @param file
+     *            Transferred source file
+     * @param newLocation
+     *            Target file
+     * @param bytes
+     *            Amount of bytes transferred, or -1 if not known
+     * @param nanos
+     *            Transfer time in nanoseconds
+     * @param transferEvent
+     *            Flight recorder event handle, or null
+     * @return Amount of bytes transferred
+     * @throws FileSystemException
+     *             If reading source file size fails
+     */
+    private long recordTransfer(FileObject file, FileObject newLocation, long bytes, long nanos, Object transferEvent)
+            throws FileSystemException {
+        if (options.getMetrics() == null && options.getStatistics() == null && transferEvent == null) {
+            return bytes;
+        }
+        if (bytes < 0) {
+            bytes = file.getContent().getSize();
+        }
+        if (options.getMetrics() != null) {
+            options.getMetrics().recordTransfer(nanos);
+        }
+        if (options.getStatistics() != null) {
+            options.getStatistics().transferred(file.getName().getBaseName(), bytes, nanos);
+        }
+        recorder.endTransfer(transferEvent, fileObjectNameForDebug(file), fileObjectNameForDebug(newLocation), bytes);
+        return bytes;
+    }
+
+    /**
+     * Helper method to record a finished delete to metrics and statistics.
+     *
+     * @param nanos
+     *            Delete time in nanoseconds
+     */
+    private void recordDelete(long nanos) {
+        if (options.getMetrics() != null) {
+            options.getMetrics().recordDelete(nanos);
+        }
+        if (options.getStatistics() != null) {
+            options.getStatistics().deleted(nanos);
+        }
+    }
+
     /**
      * Helper method to create lock file for multithreading.
      * 
@@ -353,9 +799,15 @@ public class VfsFileTransferUtility {
      *             If lock file creation fails
      */
     private String createLockFile(final FileSystemManager manager, final String targetPath) throws FileSystemException {
+        long start = System.nanoTime();
+        Object lockEvent = recorder.beginLockWait();
         FileObject lockFile = resolveFile(manager, lockFilePath(targetPath));;
         log.debug("About to create lock file: " + fileObjectNameForDebug(lockFile));
         if (lockFile.exists()) {
+            if (options.getMetrics() != null) {
+                options.getMetrics().lockConflict();
+            }
+            recorder.endLockWait(lockEvent, "lock file", fileObjectNameForDebug(lockFile), false);
             throw new FileSystemException(
                     "Lock file " + fileObjectNameForDebug(lockFile) + " already exists, refusing to create lock file");
         }
@@ -365,111 +817,932 @@ public class VfsFileTransferUtility {
         String uri = lockFile.getName().getURI();
 
         lockFile.close();
+        if (options.getMetrics() != null) {
+            options.getMetrics().recordLock(System.nanoTime() - start);
+        }
+        if (options.getStatistics() != null) {
+            options.getStatistics().locked(System.nanoTime() - start);
+        }
+        recorder.endLockWait(lockEvent, "lock file", fileObjectNameForDebug(lockFile), true);
 
         return uri;
     }
 
     /**
-     * Helper method to stream file from source to destination folder.
+     * Helper method to transfer file content with the strategy chosen for
+     * the file. Failed transfers are retried with the retry policy; the
+     * partial target of a transfer aborted by the watchdog is deleted.
      *
-     * @param inputFile
+     * @param manager
+     *            FileSystemManager
+     * @param file
      *            FileObject of input file
-     * @param outputFile
+     * @param newLocation
      *            FileObject of output file
-     * @return Boolean value of success. It is based on file length comparison.
+     * @param targetPath
+     *            Path of output file
+     * @param checksum
+     *            Checksum to calculate of the transferred content, or null
+     * @param transform
+     *            True to decompress, transform and compress the content
+     * @return Amount of bytes transferred, or -1 if not known
      * @throws FileSystemException
-     *             If given file operation fails
+     *             If the transfer fails after all retries
      */
-    private void streamFromFileToFile(FileObject inputFile, FileObject outputFile) {
-
-        InputStream inputStream = null;
-        OutputStream outputStream = null;
+    private long transferContent(FileSystemManager manager, final FileObject file, final FileObject newLocation,
+            String targetPath, final VfsChecksum checksum, final boolean transform) throws FileSystemException {
+        VfsTransferStrategy strategy = transferStrategyFor(file, newLocation, checksum, transform);
+        if (options.getMetrics() != null) {
+            options.getMetrics().transferStrategy(strategy);
+        }
 
         try {
-            inputStream = inputFile.getContent().getInputStream();
-
-            outputStream = outputFile.getContent().getOutputStream();
-
-            String blockSize = DEFAULT_STREAMING_BLOCK_SIZE;
-
-            if(options.getStreamingBlockSize() == null || !options.getStreamingBlockSize().matches("^\\d+$")) {
-                blockSize = DEFAULT_STREAMING_BLOCK_SIZE;
-                log.warn("Streaming block size not numeric, using default value of " + DEFAULT_STREAMING_BLOCK_SIZE);
-            }
-            else{
-                blockSize = options.getStreamingBlockSize();
-            }
-
-            int length;
-            byte[] buffer = new byte[new Integer(blockSize)];
-            while ((length = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, length);
+            switch (strategy) {
+            case CHUNKED:
+                return copyChunked(manager, file, newLocation, targetPath);
+            case PIPELINED:
+                return new Retrier<Long>(circuitBreakerFor(targetPath), retryListener) {
+                    @Override
+                    public Long operation() throws FileSystemException {
+                        return sftpPipeline.transfer(file, newLocation, bandwidthLimitersFor(file, newLocation));
+                    }
+                }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+            case STREAMING:
+                return streamFromFileToFile(file, resolveFile(manager, targetPath), streamingBlockSize(), checksum,
+                        transform);
+            case IN_MEMORY:
+                return new Retrier<Long>(circuitBreakerFor(targetPath), retryListener) {
+                    @Override
+                    public Long operation() throws FileSystemException {
+                        return copyInMemory(file, newLocation, checksum, transform);
+                    }
+                }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+            default:
+                return new Retrier<Long>(circuitBreakerFor(targetPath), retryListener) {
+                    @Override
+                    public Long operation() throws FileSystemException {
+                        return copyFrom(file, newLocation, checksum, transform); // could fail
+                    }
+                }.doWithRetry(options.getRetryCount(), options.getRetryWait());
             }
-
-            outputStream.flush();
-            outputStream.close();
-        } catch (IOException e) {
-            throw new SynapseException("Unexpected error during the file transfer", e);
+        } catch (VfsTransferAbortedException e) {
+            // chunks are only written to the part file, which copyChunked has already deleted;
+            // the target may be an earlier version of the file that must be kept
+            transferAborted(strategy == VfsTransferStrategy.CHUNKED ? null : newLocation);
+            throw e;
         }
-        finally {
-            try {
-                if (outputStream != null) {
-                    outputStream.flush();
-                    outputStream.close();
-                }
-            } catch(IOException ex){
-                // making sure that output streams were closed in error situation
-            }
+    }
 
-            try {
-                if (inputStream != null) {
-                    inputStream.close();
-                }
-            } catch(IOException ex) {
-                // making sure that inputstream is closed
+    /**
+     * Helper method to choose the transfer strategy of a file. Files of at
+     * least the chunked transfer threshold are transferred in parallel
+     * chunks when possible. With the automatic strategy, files up to the
+     * in-memory threshold are transferred with a buffer of their size.
+     * Remaining files of at least the pipelining threshold are transferred
+     * from or to SFTP servers with pipelined requests when enabled and a
+     * session is free. Other files are streamed with the automatic strategy;
+     * otherwise the streaming transfer setting decides.
+     *
+     * @param file
+     *            FileObject of input file
+     * @param newLocation
+     *            FileObject of output file
+     * @param checksum
+     *            Checksum to calculate of the transferred content, or null
+     * @param transform
+     *            True to decompress, transform and compress the content
+     * @return Transfer strategy
+     */
+    private VfsTransferStrategy transferStrategyFor(FileObject file, FileObject newLocation, VfsChecksum checksum,
+            boolean transform) {
+        if (options.getChunkedThreshold() > 0 && isChunkable(file, newLocation, checksum, transform)) {
+            return VfsTransferStrategy.CHUNKED;
+        }
+        boolean auto = options.isAutoTransferStrategy();
+        long size = auto || sftpPipeline != null ? sizeOf(file) : -1;
+        if (auto && size >= 0 && size <= options.getInMemoryThreshold()) {
+            return VfsTransferStrategy.IN_MEMORY;
+        }
+        if (sftpPipeline != null && size >= 0 && size >= options.getSftpPipeliningThreshold() && checksum == null
+                && !transform) {
+            FileObject sftpFile = VfsSftpPipeline.isSftp(file) ? file
+                    : VfsSftpPipeline.isSftp(newLocation) ? newLocation : null;
+            if (sftpFile != null && sftpPipeline.reserve(sftpFile)) {
+                return VfsTransferStrategy.PIPELINED;
             }
-
         }
-
+        if (auto) {
+            return VfsTransferStrategy.STREAMING;
+        }
+        return options.isStreamingTransferEnabled() ? VfsTransferStrategy.STREAMING : VfsTransferStrategy.COPY;
     }
 
     /**
-     * Helper method to delete lock file.
-     * 
-     * @param lockFilePath
-     *            Lock file to be deleted
-     * @throws FileSystemException
-     *             If lock file deletion fails
+     * Helper method to get the size of a file. The size is known from the
+     * directory listing, so there is no extra remote call.
+     *
+     * @param file
+     *            FileObject of input file
+     * @return Size in bytes, or -1 if unknown
      */
-    private void deleteLockFile(final FileSystemManager manager, final String lockFilePath) throws FileSystemException {
-        new Retrier<Object>() {
-            @Override
-            public Object operation() throws FileSystemException {
-                FileObject lockFile = resolveFile(manager, lockFilePath);
-                log.debug("Deleting lock file: " + fileObjectNameForDebug(lockFile));
-                lockFile.delete();
-                lockFile.close();
-
-                return null;
-            }
-        }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+    private long sizeOf(FileObject file) {
+        try {
+            return file.getContent().getSize();
+        } catch (FileSystemException e) {
+            log.debug("Could not get size of " + fileObjectNameForDebug(file) + ", streaming it", e);
+            return -1;
+        }
     }
 
     /**
-     * Helper method to get lock file with file suffix.
-     * 
-     * @param targetPath
-     *            Lock file path
-     * @return Absolute file (with suffix) path
+     * Helper method to check whether a file can be transferred in parallel
+     * chunks. Chunks are written out of order, so the content must be
+     * copied as is and both file systems must support random access.
+     *
+     * @param file
+     *            FileObject of input file
+     * @param newLocation
+     *            FileObject of output file
+     * @param checksum
+     *            Checksum to calculate of the transferred content, or null
+     * @param transform
+     *            True to decompress, transform and compress the content
+     * @return True if the file is large enough and can be chunked
      */
-    private String lockFilePath(String targetPath) {
-        return targetPath + LOCK_FILE_SUFFIX;
+    private boolean isChunkable(FileObject file, FileObject newLocation, VfsChecksum checksum, boolean transform) {
+        try {
+            if (file.getContent().getSize() < options.getChunkedThreshold()) {
+                return false;
+            }
+            if (checksum != null || transform) {
+                log.debug("Not chunking " + fileObjectNameForDebug(file) + ", content is checksummed or transformed");
+                return false;
+            }
+            if (!file.getFileSystem().hasCapability(Capability.RANDOM_ACCESS_READ)
+                    || !newLocation.getFileSystem().hasCapability(Capability.RANDOM_ACCESS_WRITE)) {
+                log.debug("Not chunking " + fileObjectNameForDebug(file) + ", no random access to source or target");
+                return false;
+            }
+            return true;
+        } catch (FileSystemException e) {
+            log.debug("Could not get size of " + fileObjectNameForDebug(file) + ", not chunking it", e);
+            return false;
+        }
     }
 
     /**
-     * Helper method to check whether given path is folder.
-     * 
-     * @param path
+     * Helper method to transfer a file in parallel chunks to a part file
+     * next to the target, which replaces the target once all chunks are
+     * complete. Each chunk is retried on its own with the retry policy.
+     *
+     * @param manager
+     *            FileSystemManager
+     * @param file
+     *            FileObject of input file
+     * @param newLocation
+     *            FileObject of output file
+     * @param targetPath
+     *            Path of output file
+     * @return Amount of bytes transferred
+     * @throws FileSystemException
+     *             If a chunk fails after all retries, or the part file
+     *             cannot be renamed
+     */
+    private long copyChunked(FileSystemManager manager, FileObject file, final FileObject newLocation,
+            String targetPath) throws FileSystemException {
+        final FileObject partFile = resolveFile(manager, targetPath + PART_FILE_EXTENSION);
+        VfsCircuitBreaker circuitBreaker = circuitBreakerFor(targetPath);
+        try {
+            long bytes = new VfsChunkedTransfer(file, partFile, options.getChunkCount(),
+                    CHUNK_BLOCK_SIZE, bandwidthLimitersFor(file, newLocation), options,
+                    circuitBreaker, retryListener).transfer();
+            new Retrier<Object>(circuitBreaker, retryListener) {
+                @Override
+                public Object operation() throws FileSystemException {
+                    if (newLocation.exists()) {
+                        newLocation.delete();
+                    }
+                    partFile.moveTo(newLocation);
+                    return null;
+                }
+            }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+            return bytes;
+        } catch (FileSystemException e) {
+            try {
+                partFile.delete();
+            } catch (FileSystemException deleteFailure) {
+                log.warn("Could not delete part file " + fileObjectNameForDebug(partFile), deleteFailure);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Helper method to get the block size of streaming transfers.
+     *
+     * @return Block size chosen by the automatic strategy, or the configured
+     *         streaming block size
+     */
+    private int streamingBlockSize() {
+        if (options.isAutoTransferStrategy()) {
+            return options.getAutoBlockSize();
+        }
+        if(options.getStreamingBlockSize() == null || !options.getStreamingBlockSize().matches("^\\d+$")) {
+            log.warn("Streaming block size not numeric, using default value of " + DEFAULT_STREAMING_BLOCK_SIZE);
+            return new Integer(DEFAULT_STREAMING_BLOCK_SIZE);
+        }
+        return new Integer(options.getStreamingBlockSize());
+    }
+
+    /**
+     * Helper method to stream file from source to destination folder. When
+     * resuming is enabled, failed transfers are retried with the retry
+     * policy and each retry continues from the size of the partial target
+     * file.
+     *
+     * @param inputFile
+     *            FileObject of input file
+     * @param outputFile
+     *            FileObject of output file
+     * @param blockSize
+     *            Size of copied blocks in bytes
+     * @param checksum
+     *            Checksum to calculate of the transferred content, or null
+     * @param transform
+     *            True to decompress, transform and compress the content
+     * @return Amount of bytes transferred
+     * @throws FileSystemException
+     *             If given file operation fails
+     */
+    private long streamFromFileToFile(FileObject inputFile, FileObject outputFile, int blockSize,
+            VfsChecksum checksum, boolean transform) throws FileSystemException {
+
+        if (options.isResumeEnabled()) {
+            return resumableCopyContent(inputFile, outputFile, blockSize, checksum, transform);
+        }
+
+        try {
+            return copyContent(inputFile, outputFile, blockSize, 0, checksum, transform);
+        } catch (VfsTransferAbortedException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new SynapseException("Unexpected error during the file transfer", e);
+        }
+    }
+
+    /**
+     * Helper method to copy file content with retries, resuming each retry
+     * from the bytes the target file already holds. Resuming needs append
+     * support from the target file system; sources without random access
+     * are read from the start and the transferred bytes skipped. Otherwise
+     * the retry starts over from the first byte, as it always does when
+     * the content is transformed. Transfers aborted by the watchdog are
+     * retried as well, keeping the partial target file until the last
+     * attempt fails.
+     *
+     * @param inputFile
+     *            FileObject of input file
+     * @param outputFile
+     *            FileObject of output file
+     * @param blockSize
+     *            Size of copied blocks in bytes
+     * @param checksum
+     *            Checksum to calculate of the whole file content, or null
+     * @param transform
+     *            True to decompress, transform and compress the content
+     * @return Size of the transferred file
+     * @throws FileSystemException
+     *             If the copy fails after all retries
+     */
+    private long resumableCopyContent(final FileObject inputFile, final FileObject outputFile, final int blockSize,
+            final VfsChecksum checksum, final boolean transform) throws FileSystemException {
+        return new Retrier<Long>(circuitBreakerFor(outputFile.getName().getURI()), retryListener) {
+            private boolean failed;
+
+            @Override
+            boolean isRetryable(FileSystemException cause) {
+                // a stalled connection is exactly what resuming is for
+                return cause instanceof VfsTransferAbortedException || super.isRetryable(cause);
+            }
+
+            @Override
+            public Long operation() throws FileSystemException {
+                // compressed offsets do not map to source offsets
+                long offset = failed && !transform ? resumeOffset(inputFile, outputFile) : 0;
+                if (offset > 0) {
+                    log.debug("Resuming transfer of " + fileObjectNameForDebug(inputFile) + " from byte " + offset);
+                    if (options.getMetrics() != null) {
+                        options.getMetrics().transferResumed(offset);
+                    }
+                }
+                failed = true;
+                try {
+                    return offset + copyContent(inputFile, outputFile, blockSize, offset, checksum, transform);
+                } catch (FileSystemException e) {
+                    throw e;
+                } catch (IOException e) {
+                    throw new FileSystemException("Could not stream " + fileObjectNameForDebug(inputFile), e);
+                }
+            }
+        }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+    }
+
+    /**
+     * Helper method to resolve the offset an interrupted transfer can be
+     * resumed from: the size of the partial target file, as confirmed by the
+     * target server.
+     *
+     * @param inputFile
+     *            FileObject of input file
+     * @param outputFile
+     *            FileObject of the partial output file
+     * @return Offset to resume from, or 0 to start over
+     */
+    private long resumeOffset(FileObject inputFile, FileObject outputFile) {
+        try {
+            if (!outputFile.getFileSystem().hasCapability(Capability.APPEND_CONTENT)) {
+                return 0;
+            }
+            outputFile.refresh();
+            if (!outputFile.exists()) {
+                return 0;
+            }
+            long written = outputFile.getContent().getSize();
+            long size = inputFile.getContent().getSize();
+            return written > 0 && written <= size ? written : 0;
+        } catch (FileSystemException e) {
+            log.debug("Cannot resume transfer of " + fileObjectNameForDebug(inputFile) + ", starting over", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Helper method to copy file content block by block with a pooled
+     * buffer. When a read idle timeout or maximum transfer time is set, the
+     * copy is watched by {@link VfsTransferWatchdog}. Every block waits for
+     * bandwidth from the limiters of the mediator and of the remote
+     * endpoints involved. When transforming, the
+     * content is decompressed, passed through the stream stages and
+     * compressed on the fly in the copy loop. The
+     * checksum is calculated from the bytes written to the target; when
+     * resuming, the bytes already in the target file are read from the
+     * source to include them in the checksum.
+     *
+     * @param inputFile
+     *            FileObject of input file
+     * @param outputFile
+     *            FileObject of output file
+     * @param blockSize
+     *            Size of copied blocks in bytes
+     * @param offset
+     *            Byte offset to start from, appending to the output file,
+     *            or 0 to overwrite it
+     * @param checksum
+     *            Checksum to calculate of the whole file content, or null
+     * @param transform
+     *            True to decompress, transform and compress the content
+     * @return Amount of bytes written to the output file
+     * @throws VfsTransferAbortedException
+     *             If the watchdog aborted the transfer
+     * @throws IOException
+     *             If the copy fails
+     */
+    private long copyContent(FileObject inputFile, FileObject outputFile, int blockSize, long offset,
+            VfsChecksum checksum, boolean transform) throws IOException {
+
+        InputStream inputStream = null;
+        OutputStream outputStream = null;
+        RandomAccessContent randomAccess = null;
+        VfsTransferWatchdog.Transfer transfer = null;
+
+        byte[] buffer = VfsBufferPool.acquire(blockSize);
+        if (checksum != null) {
+            checksum.reset();
+        }
+
+        try {
+            if (isWatched()) {
+                // watched before the streams are opened, opening may hang as well, e.g. on FTP data connections
+                transfer = VfsTransferWatchdog.getInstance().watch(fileObjectNameForDebug(inputFile),
+                        options.getReadIdleTimeout(), options.getMaxTransferTime());
+            }
+
+            if (offset > 0 && checksum == null
+                    && inputFile.getFileSystem().hasCapability(Capability.RANDOM_ACCESS_READ)) {
+                randomAccess = inputFile.getContent().getRandomAccessContent(RandomAccessMode.READ);
+                randomAccess.seek(offset);
+                inputStream = randomAccess.getInputStream();
+            } else {
+                inputStream = inputFile.getContent().getInputStream();
+            }
+            if (transfer != null) {
+                transfer.watchStream(inputStream);
+            }
+            if (offset > 0 && checksum != null) {
+                checksumFully(inputStream, offset, checksum, buffer, transfer);
+            } else if (offset > 0 && randomAccess == null) {
+                skipFully(inputStream, offset, buffer.length, transfer);
+            }
+
+            outputStream = outputFile.getContent().getOutputStream(offset > 0);
+            if (transfer != null) {
+                transfer.watchStream(outputStream);
+            }
+
+            CountingOutputStream written = new CountingOutputStream(outputStream, checksum);
+            outputStream = written;
+            CountingInputStream compressedInput = null;
+            if (transform && GZIP.equals(options.getDecompress())) {
+                compressedInput = new CountingInputStream(inputStream);
+                inputStream = new GZIPInputStream(compressedInput, blockSize);
+            }
+            if (transform && options.getStreamStages() != null) {
+                String fileName = inputFile.getName().getBaseName();
+                for (VfsStreamStageConfig stage : options.getStreamStages()) {
+                    inputStream = stage.getStage().open(inputStream, fileName);
+                }
+            }
+            if (transform && GZIP.equals(options.getCompress())) {
+                outputStream = new GZIPOutputStream(outputStream, blockSize);
+            }
+
+            List<VfsBandwidthLimiter> limiters = bandwidthLimitersFor(inputFile, outputFile);
+            int length;
+            long transferred = 0;
+            while ((length = inputStream.read(buffer)) != -1) {
+                VfsBandwidthLimiter.acquireAll(limiters, length, transfer);
+                if (transfer != null) {
+                    transfer.progress();
+                }
+                outputStream.write(buffer, 0, length);
+                transferred += length;
+            }
+            if (transfer != null) {
+                // a stream closed by the watchdog may look like end of file
+                transfer.checkAborted();
+            }
+
+            outputStream.flush();
+            outputStream.close();
+            if (transform && isCompressed() && options.getMetrics() != null) {
+                options.getMetrics().transferCompressed(transferred,
+                        compressedInput != null ? compressedInput.getCount() : written.getCount());
+            }
+            return written.getCount();
+        } catch (IOException e) {
+            if (transfer != null) {
+                transfer.checkAborted();
+            }
+            throw e;
+        }
+        finally {
+            if (transfer != null) {
+                transfer.finish();
+            }
+
+            try {
+                if (outputStream != null) {
+                    outputStream.flush();
+                    outputStream.close();
+                }
+            } catch(IOException ex){
+                // making sure that output streams were closed in error situation
+            }
+
+            try {
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+            } catch(IOException ex) {
+                // making sure that inputstream is closed
+            }
+
+            try {
+                if (randomAccess != null) {
+                    randomAccess.close();
+                }
+            } catch(IOException ex) {
+                // making sure that random access content is closed
+            }
+
+            VfsBufferPool.release(buffer);
+        }
+
+    }
+
+    /**
+     * Helper method to skip bytes of a stream that cannot seek.
+     *
+     * @param inputStream
+     *            Stream to skip
+     * @param count
+     *            Amount of bytes to skip
+     * @param blockSize
+     *            Amount of bytes to skip at a time
+     * @param transfer
+     *            Watched transfer to report progress to, or null
+     * @throws IOException
+     *             If the stream ends before the bytes were skipped
+     */
+    private static void skipFully(InputStream inputStream, long count, int blockSize,
+            VfsTransferWatchdog.Transfer transfer) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            if (transfer != null) {
+                transfer.progress();
+            }
+            long skipped = inputStream.skip(Math.min(remaining, blockSize));
+            if (skipped <= 0) {
+                if (inputStream.read() == -1) {
+                    throw new IOException("Unexpected end of file, " + remaining + " bytes left to skip");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Helper method to read bytes of a stream into checksum without copying
+     * them anywhere.
+     *
+     * @param inputStream
+     *            Stream to read
+     * @param count
+     *            Amount of bytes to read
+     * @param checksum
+     *            Checksum to update
+     * @param buffer
+     *            Buffer to read with
+     * @param transfer
+     *            Watched transfer to report progress to, or null
+     * @throws IOException
+     *             If the stream ends before the bytes were read
+     */
+    private static void checksumFully(InputStream inputStream, long count, VfsChecksum checksum, byte[] buffer,
+            VfsTransferWatchdog.Transfer transfer) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            if (transfer != null) {
+                transfer.progress();
+            }
+            int length = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (length == -1) {
+                throw new IOException("Unexpected end of file, " + remaining + " bytes left to read");
+            }
+            checksum.update(buffer, 0, length);
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Helper method to collect the bandwidth limiters a transfer between
+     * given files is subject to.
+     *
+     * @param inputFile
+     *            FileObject of input file
+     * @param outputFile
+     *            FileObject of output file
+     * @return Limiter of the mediator and shared limiters of the remote
+     *         endpoints, each only once
+     */
+    private List<VfsBandwidthLimiter> bandwidthLimitersFor(FileObject inputFile, FileObject outputFile) {
+        List<VfsBandwidthLimiter> limiters = new ArrayList<VfsBandwidthLimiter>(3);
+        if (options.getBandwidthLimiter() != null) {
+            limiters.add(options.getBandwidthLimiter());
+        }
+        for (FileObject file : new FileObject[] { inputFile, outputFile }) {
+            VfsBandwidthLimiter limiter = VfsBandwidthLimiter.forUri(file.getName().getURI(),
+                    options.getEndpointBandwidthLimit());
+            if (limiter != null && !limiters.contains(limiter)) {
+                limiters.add(limiter);
+            }
+        }
+        return limiters;
+    }
+
+    /**
+     * Helper method to check whether transfers are bandwidth limited.
+     *
+     * @return True if the mediator or endpoint bandwidth is limited
+     */
+    private boolean isThrottled() {
+        return (options.getBandwidthLimiter() != null && options.getBandwidthLimiter().getBytesPerSecond() > 0)
+                || options.getEndpointBandwidthLimit() > 0;
+    }
+
+    /**
+     * Helper method to check whether transferred content is transformed on
+     * the way to the target.
+     *
+     * @return True if compression, decompression or stream stages are set
+     */
+    private boolean isTransformed() {
+        return isCompressed() || (options.getStreamStages() != null && !options.getStreamStages().isEmpty());
+    }
+
+    /**
+     * Helper method to check whether transferred content is compressed or
+     * decompressed.
+     *
+     * @return True if compression or decompression is set
+     */
+    private boolean isCompressed() {
+        return options.getCompress() != null || options.getDecompress() != null;
+    }
+
+    /**
+     * Helper method to check whether transfers are watched for stalling.
+     *
+     * @return True if read idle timeout or maximum transfer time is set
+     */
+    private boolean isWatched() {
+        return options.getReadIdleTimeout() > 0 || options.getMaxTransferTime() > 0;
+    }
+
+    /**
+     * Helper method to copy file content with commons-vfs, or block by block
+     * when transfers are watched for stalling, bandwidth limited, checksums
+     * are calculated or the content is transformed.
+     *
+     * @param file
+     *            FileObject of input file
+     * @param newLocation
+     *            FileObject of output file
+     * @param checksum
+     *            Checksum to calculate of the transferred content, or null
+     * @param transform
+     *            True to decompress, transform and compress the content
+     * @return Amount of bytes transferred, or -1 if not known
+     * @throws FileSystemException
+     *             If the copy fails
+     */
+    private long copyFrom(FileObject file, FileObject newLocation, VfsChecksum checksum, boolean transform)
+            throws FileSystemException {
+        if (!isWatched() && !isThrottled() && checksum == null && !transform) {
+            newLocation.copyFrom(file, Selectors.SELECT_SELF);
+            return -1;
+        }
+        try {
+            return copyContent(file, newLocation, WATCHED_COPY_BLOCK_SIZE, 0, checksum, transform);
+        } catch (FileSystemException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new FileSystemException("Could not copy " + fileObjectNameForDebug(file), e);
+        }
+    }
+
+    /**
+     * Helper method to copy file content block by block through a pooled
+     * buffer sized to the listed file size instead of the streaming block
+     * size. The buffer size is rounded up to a power of two, so that few
+     * buffer sizes are pooled.
+     *
+     * @param file
+     *            FileObject of input file
+     * @param newLocation
+     *            FileObject of output file
+     * @param checksum
+     *            Checksum to calculate of the transferred content, or null
+     * @param transform
+     *            True to decompress, transform and compress the content
+     * @return Amount of bytes transferred
+     * @throws FileSystemException
+     *             If the copy fails
+     */
+    private long copyInMemory(FileObject file, FileObject newLocation, VfsChecksum checksum, boolean transform)
+            throws FileSystemException {
+        long size = sizeOf(file);
+        int bufferSize = WATCHED_COPY_BLOCK_SIZE;
+        while (bufferSize < size) {
+            bufferSize <<= 1;
+        }
+        try {
+            return copyContent(file, newLocation, bufferSize, 0, checksum, transform);
+        } catch (FileSystemException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new FileSystemException("Could not copy " + fileObjectNameForDebug(file), e);
+        }
+    }
+
+    /**
+     * Helper method to create the checksum calculated during a transfer.
+     *
+     * @return New checksum, or null if checksums are not enabled
+     */
+    private VfsChecksum newChecksum() {
+        return options.getChecksumAlgorithm() == null ? null : new VfsChecksum(options.getChecksumAlgorithm());
+    }
+
+    /**
+     * Helper method to handle the checksum calculated while transferring a
+     * file. When verification is enabled and a checksum file with the
+     * algorithm's extension, e.g. <code>file.xml.sha256</code>, exists next
+     * to the source file, the checksums are compared and a mismatching
+     * target file is deleted. When checksum files are enabled, one is
+     * written next to the target file, while the target is still locked.
+     *
+     * @param manager
+     *            File system manager
+     * @param file
+     *            Transferred source file
+     * @param newLocation
+     *            Target file
+     * @param checksum
+     *            Checksum calculated during the transfer
+     * @param targetType
+     *            target folder or archive folder
+     * @throws VfsChecksumMismatchException
+     *             If the checksums do not match
+     * @throws FileSystemException
+     *             If reading or writing the checksum file fails
+     */
+    private void checksumTransferred(FileSystemManager manager, FileObject file, FileObject newLocation,
+            VfsChecksum checksum, TargetType targetType) throws FileSystemException {
+        String actual = checksum.getValue();
+        log.debug(checksum.getAlgorithm() + " of " + fileObjectNameForDebug(file) + " is " + actual);
+        if (options.isChecksumVerify()) {
+            String expected = readChecksumFile(manager, file.getName().getURI() + checksum.getFileExtension());
+            if (expected == null) {
+                log.debug("No checksum file for " + fileObjectNameForDebug(file) + ", not verified");
+            } else if (!expected.equals(actual)) {
+                try {
+                    newLocation.refresh();
+                    newLocation.delete();
+                } catch (FileSystemException e) {
+                    log.warn("Could not delete corrupted file " + fileObjectNameForDebug(newLocation), e);
+                }
+                throw new VfsChecksumMismatchException(fileObjectNameForDebug(file), expected, actual);
+            }
+        }
+        if (targetType == TargetType.TARGET && options.isChecksumSidecar()) {
+            writeChecksumFile(manager, newLocation, checksum);
+        }
+        if (targetType == TargetType.TARGET && options.getStatistics() != null) {
+            options.getStatistics().checksummed(newLocation.getName().getBaseName(), actual);
+        }
+    }
+
+    /**
+     * Helper method to write a checksum file next to a target file, in the
+     * <code>sha256sum</code> output format. If writing fails, the target
+     * file is deleted too, so that it is never delivered without its
+     * checksum.
+     *
+     * @param manager
+     *            File system manager
+     * @param newLocation
+     *            Target file
+     * @param checksum
+     *            Checksum calculated during the transfer
+     * @throws FileSystemException
+     *             If writing the checksum file fails
+     */
+    private void writeChecksumFile(FileSystemManager manager, FileObject newLocation, VfsChecksum checksum)
+            throws FileSystemException {
+        String path = newLocation.getName().getURI() + checksum.getFileExtension();
+        final byte[] content;
+        try {
+            content = (checksum.getValue() + "  " + newLocation.getName().getBaseName() + "\n").getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new SynapseException("UTF-8 not supported", e);
+        }
+        final FileObject checksumFile = resolveFile(manager, path);
+        boolean written = false;
+        try {
+            new Retrier<Object>(circuitBreakerFor(path), retryListener) {
+                @Override
+                public Object operation() throws FileSystemException {
+                    OutputStream outputStream = checksumFile.getContent().getOutputStream();
+                    try {
+                        outputStream.write(content);
+                        outputStream.close();
+                    } catch (IOException e) {
+                        throw new FileSystemException("Could not write checksum file " + fileObjectNameForDebug(checksumFile), e);
+                    } finally {
+                        checksumFile.getContent().close();
+                    }
+                    return null;
+                }
+            }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+            written = true;
+            log.debug("Checksum file written to " + fileObjectNameForDebug(checksumFile));
+        } finally {
+            checksumFile.close();
+            if (!written) {
+                try {
+                    newLocation.refresh();
+                    newLocation.delete();
+                } catch (FileSystemException e) {
+                    log.warn("Could not delete file without checksum " + fileObjectNameForDebug(newLocation), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method to read the checksum from a checksum file.
+     *
+     * @param manager
+     *            File system manager
+     * @param path
+     *            Path of the checksum file
+     * @return Checksum in lower case hex, or null if the file does not exist
+     *         or is empty
+     * @throws FileSystemException
+     *             If reading the file fails
+     */
+    private String readChecksumFile(FileSystemManager manager, String path) throws FileSystemException {
+        FileObject checksumFile = resolveFile(manager, path);
+        try {
+            if (!checksumFile.exists()) {
+                return null;
+            }
+            InputStream inputStream = checksumFile.getContent().getInputStream();
+            try {
+                StringBuilder content = new StringBuilder();
+                byte[] buffer = new byte[256];
+                int length;
+                while ((length = inputStream.read(buffer)) != -1) {
+                    content.append(new String(buffer, 0, length, "US-ASCII"));
+                }
+                return VfsChecksum.parse(content.toString());
+            } catch (IOException e) {
+                throw new FileSystemException("Could not read checksum file " + fileObjectNameForDebug(checksumFile), e);
+            } finally {
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {}
+            }
+        } finally {
+            checksumFile.close();
+        }
+    }
+
+    /**
+     * Helper method to handle a transfer aborted by the watchdog by deleting
+     * the partially written target file.
+     *
+     * @param newLocation
+     *            FileObject of the partial target file, or null if nothing
+     *            was written to the target
+     */
+    private void transferAborted(FileObject newLocation) {
+        if (options.getMetrics() != null) {
+            options.getMetrics().transferAborted();
+        }
+        if (newLocation == null) {
+            return;
+        }
+        try {
+            newLocation.refresh();
+            newLocation.delete();
+            log.debug("Deleted partial file " + fileObjectNameForDebug(newLocation));
+        } catch (FileSystemException e) {
+            log.warn("Could not delete partial file " + fileObjectNameForDebug(newLocation), e);
+        }
+    }
+
+    /**
+     * Helper method to delete lock file.
+     * 
+     * @param lockFilePath
+     *            Lock file to be deleted
+     * @throws FileSystemException
+     *             If lock file deletion fails
+     */
+    private void deleteLockFile(final FileSystemManager manager, final String lockFilePath) throws FileSystemException {
+        long start = System.nanoTime();
+        new Retrier<Object>(null, retryListener) {
+            @Override
+            public Object operation() throws FileSystemException {
+                FileObject lockFile = resolveFile(manager, lockFilePath);
+                log.debug("Deleting lock file: " + fileObjectNameForDebug(lockFile));
+                lockFile.delete();
+                lockFile.close();
+
+                return null;
+            }
+        }.doWithRetry(options.getRetryCount(), options.getRetryWait());
+        recordDelete(System.nanoTime() - start);
+    }
+
+    /**
+     * Helper method to get lock file with file suffix.
+     * 
+     * @param targetPath
+     *            Lock file path
+     * @return Absolute file (with suffix) path
+     */
+    private String lockFilePath(String targetPath) {
+        return targetPath + LOCK_FILE_SUFFIX;
+    }
+
+    /**
+     * Helper method to check whether given path is folder.
+     * 
+     * @param path
      *            File path to be checked
      * @throws FileSystemException
      *             If given path is not a filder
@@ -483,6 +1756,8 @@ public class VfsFileTransferUtility {
     /**
      * Helper method to validate existence of given directory. Will create
      * missing directory if createMissingDirectories flag is set to true.
+     * Directories validated within the directory cache TTL are not checked
+     * again.
      * 
      * @param path
      *            To be validated
@@ -492,11 +1767,18 @@ public class VfsFileTransferUtility {
      *             If given path is not directory or directory creation fails
      */
     private void validateFolder(FileObject path, boolean createMissingDirectories) throws FileSystemException {
+        VfsDirectoryCache cache = VfsDirectoryCache.getInstance();
+        String uri = path.getName().getURI();
+        if (options.getDirectoryCacheTtl() > 0 && cache.isValidated(uri)) {
+            log.debug("Directory " + fileObjectNameForDebug(path) + " validated recently, skipping check");
+            return;
+        }
         if (createMissingDirectories) {
             createFolder(path);
         } else {
             isFolder(path);
         }
+        cache.validated(uri, options.getDirectoryCacheTtl());
     }
 
     /**
@@ -532,7 +1814,7 @@ public class VfsFileTransferUtility {
      *             If resolving file fails
      */
     private FileObject resolveFile(final FileSystemManager manager, final String path) throws FileSystemException {
-        return new Retrier<FileObject>() {
+        return new Retrier<FileObject>(circuitBreakerFor(path), retryListener) {
             @Override
             public FileObject operation() throws FileSystemException {
                 return manager.resolveFile(path, fsOptions);
@@ -540,6 +1822,50 @@ public class VfsFileTransferUtility {
         }.doWithRetry(options.getRetryCount(), options.getRetryWait());
     }
 
+    /**
+     * Helper method to get the circuit breaker guarding the endpoint of given
+     * path.
+     *
+     * @param path
+     *            VFS path
+     * @return Shared circuit breaker, or null if circuit breaking is disabled
+     *         or path is not remote
+     */
+    private VfsCircuitBreaker circuitBreakerFor(String path) {
+        return VfsCircuitBreaker.forUri(path, options.getCircuitBreakerConfig());
+    }
+
+    /**
+     * Helper method to get the name a file gets in target or archive
+     * directory.
+     *
+     * @param file
+     *            Source file
+     * @param targetType
+     *            target folder or archive folder
+     * @return Base name with prefix and suffix applied, and with stream stage
+     *         names and compression extension applied for target folder
+     */
+    private String targetFileName(FileObject file, TargetType targetType) {
+        String baseName = file.getName().getBaseName();
+        if (targetType == TargetType.TARGET && GZIP.equals(options.getDecompress())
+                && baseName.toLowerCase(Locale.ENGLISH).endsWith(GZIP_EXTENSION)) {
+            baseName = baseName.substring(0, baseName.length() - GZIP_EXTENSION.length());
+        }
+        String extension = FilenameUtils.getExtension(baseName);
+        String name = getPrefix(targetType) + FilenameUtils.removeExtension(baseName) + getSuffix(targetType)
+                + (extension.isEmpty() ? "" : "." + extension);
+        if (targetType == TargetType.TARGET && options.getStreamStages() != null) {
+            for (VfsStreamStageConfig stage : options.getStreamStages()) {
+                name = stage.getStage().targetFileName(name);
+            }
+        }
+        if (targetType == TargetType.TARGET && GZIP.equals(options.getCompress())) {
+            name += GZIP_EXTENSION;
+        }
+        return name;
+    }
+
     /**
      * Helper method to get the suffix for file operations.
      * @param targetType target folder or archive folder
@@ -590,43 +1916,222 @@ public class VfsFileTransferUtility {
 
 
     private FileSystemManager initManager() throws FileSystemException {
+        VfsManagerPool pool = options.getManagerPool();
+        if (pool != null && pool.accepts(options)) {
+            FileSystemManager pooled = pool.borrow(options);
+            return pooled != null ? pooled : VfsManagerPool.create();
+        }
         StandardFileSystemManager manager = new StandardFileSystemManager();
         manager.init();
 
         return manager;
     }
 
+    /**
+     * Helper method to return a manager to the connection pool, or close it
+     * if pooling is disabled, the pool does not accept the connections of the
+     * operation or the operation failed and the connections may be broken.
+     *
+     * @param manager
+     *            Manager to release
+     * @param completed
+     *            True if the operation using the manager completed
+     */
+    private void releaseManager(FileSystemManager manager, boolean completed) {
+        if (completed && options.getManagerPool() != null) {
+            options.getManagerPool().release(manager, options);
+        } else {
+            ((StandardFileSystemManager) manager).close();
+        }
+    }
+
+
+    /**
+     * Output stream counting the bytes written to the target and updating
+     * their checksum.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final VfsChecksum checksum;
+        private long count;
+
+        CountingOutputStream(OutputStream out, VfsChecksum checksum) {
+            super(out);
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (checksum != null) {
+                checksum.update(b, off, len);
+            }
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Input stream counting the bytes read from the source.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
 
     abstract static class Retrier<T> {
 
         private static final Log log = LogFactory.getLog(Retrier.class);
 
+        /**
+         * Listener notified before each retry attempt.
+         */
+        interface RetryListener {
+
+            /**
+             * Called after a failed attempt, before waiting for the retry.
+             *
+             * @param cause
+             *            Failure of the previous attempt
+             */
+            void onRetry(FileSystemException cause);
+        }
+
+        private final VfsCircuitBreaker circuitBreaker;
+        private final RetryListener retryListener;
+
+        Retrier() {
+            this(null);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param circuitBreaker
+         *            Circuit breaker of the endpoint the operation talks to,
+         *            or null if the operation is not guarded
+         */
+        Retrier(VfsCircuitBreaker circuitBreaker) {
+            this(circuitBreaker, null);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param circuitBreaker
+         *            Circuit breaker of the endpoint the operation talks to,
+         *            or null if the operation is not guarded
+         * @param retryListener
+         *            Listener notified of retries, or null
+         */
+        Retrier(VfsCircuitBreaker circuitBreaker, RetryListener retryListener) {
+            this.circuitBreaker = circuitBreaker;
+            this.retryListener = retryListener;
+        }
+
         public T doWithRetry(int retryCount, int retryWait) throws FileSystemException {
             boolean retry = false;
             int retries = 0;
             T ret = null;
             do {
+                if (circuitBreaker != null) {
+                    // fails fast without retrying when the circuit is open
+                    circuitBreaker.acquirePermission();
+                }
+                boolean recorded = false;
                 try {
                     ret = operation();
                     retry = false;
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onSuccess();
+                        recorded = true;
+                    }
                 } catch (FileSystemException e) {
+                    // local aborts and rejections tell nothing about the endpoint
+                    if (circuitBreaker != null && !(e instanceof VfsCircuitOpenException)
+                            && !(e instanceof VfsTransferAbortedException)) {
+                        circuitBreaker.onFailure();
+                        recorded = true;
+                    }
+                    if (!isRetryable(e)) {
+                        throw e;
+                    }
                     log.debug("Connection failed! Retry count: " + retryCount + ", Retry wait: " + retryWait + ", Retries left: " + (retryCount - retries));
                     if (retries >= retryCount) {
                         throw e;
                     }
                     retry = true;
                     retries++;
+                    if (retryListener != null) {
+                        retryListener.onRetry(e);
+                    }
                     try {
                         Thread.sleep(retryWait);
                     } catch (InterruptedException ignored) {
                         retry = false;
                     }
+                } finally {
+                    if (circuitBreaker != null && !recorded) {
+                        circuitBreaker.onAbandoned();
+                    }
                 }
             } while (retry);
 
             return ret;
         }
 
+        /**
+         * Checks whether a failed attempt may be retried. Calls rejected by
+         * an open circuit and transfers aborted by the watchdog are not
+         * retried by default.
+         *
+         * @param cause
+         *            Failure of the attempt
+         * @return True if the attempt may be retried
+         */
+        boolean isRetryable(FileSystemException cause) {
+            return !(cause instanceof VfsCircuitOpenException) && !(cause instanceof VfsTransferAbortedException);
+        }
+
         public abstract T operation() throws FileSystemException;
 
     }
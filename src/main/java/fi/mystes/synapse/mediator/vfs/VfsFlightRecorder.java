@@ -0,0 +1,205 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Emits Java Flight Recorder events of VFS operations. The JFR
+ * implementation is compiled separately for Java 11 and loaded only when
+ * present and supported by the running JVM; otherwise a no-op recorder is
+ * used.
+ * <p>
+ * Each begin method returns an event handle, or null when the event type is
+ * not enabled in the active recording. The matching end method must be
+ * called with the handle, null handles are ignored.
+ */
+abstract class VfsFlightRecorder {
+
+    private static final Log log = LogFactory.getLog(VfsFlightRecorder.class);
+
+    static final String JFR_RECORDER_CLASS = "fi.mystes.synapse.mediator.vfs.JfrVfsFlightRecorder";
+
+    static final VfsFlightRecorder NO_OP = new VfsFlightRecorder() {
+        @Override
+        Object beginOperation() {
+            return null;
+        }
+
+        @Override
+        void endOperation(Object event, String operation, String uri, int files, boolean success) {
+        }
+
+        @Override
+        Object beginListing() {
+            return null;
+        }
+
+        @Override
+        void endListing(Object event, String uri, int entries, int matched) {
+        }
+
+        @Override
+        Object beginLockWait() {
+            return null;
+        }
+
+        @Override
+        void endLockWait(Object event, String lock, String uri, boolean acquired) {
+        }
+
+        @Override
+        Object beginTransfer() {
+            return null;
+        }
+
+        @Override
+        void endTransfer(Object event, String sourceUri, String targetUri, long bytes) {
+        }
+
+        @Override
+        void retry(Throwable cause, long waitMillis) {
+        }
+    };
+
+    private static final VfsFlightRecorder INSTANCE = load(JFR_RECORDER_CLASS);
+
+    /**
+     * Returns the recorder of the running JVM.
+     *
+     * @return JFR recorder, or no-op recorder if JFR is not available
+     */
+    static VfsFlightRecorder getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Helper method to load the recorder implementation.
+     *
+     * @param className
+     *            Name of the implementation class
+     * @return Recorder instance, or no-op recorder if loading fails
+     */
+    static VfsFlightRecorder load(String className) {
+        try {
+            return (VfsFlightRecorder) Class.forName(className).newInstance();
+        } catch (Exception e) {
+            log.debug("JFR events not available: " + e);
+        } catch (LinkageError e) {
+            // class compiled for a newer JVM, or jdk.jfr missing
+            log.debug("JFR events not available: " + e);
+        }
+        return NO_OP;
+    }
+
+    /**
+     * Begins a copy or move operation event.
+     *
+     * @return Event handle, or null if not enabled
+     */
+    abstract Object beginOperation();
+
+    /**
+     * Ends and commits an operation event.
+     *
+     * @param event
+     *            Handle returned by {@link #beginOperation()}
+     * @param operation
+     *            Operation name
+     * @param uri
+     *            Target directory URI without password
+     * @param files
+     *            Amount of files processed
+     * @param success
+     *            True if the operation completed
+     */
+    abstract void endOperation(Object event, String operation, String uri, int files, boolean success);
+
+    /**
+     * Begins a source directory listing event.
+     *
+     * @return Event handle, or null if not enabled
+     */
+    abstract Object beginListing();
+
+    /**
+     * Ends and commits a listing event.
+     *
+     * @param event
+     *            Handle returned by {@link #beginListing()}
+     * @param uri
+     *            Source directory URI without password
+     * @param entries
+     *            Amount of entries in the directory
+     * @param matched
+     *            Amount of entries matching the file pattern
+     */
+    abstract void endListing(Object event, String uri, int entries, int matched);
+
+    /**
+     * Begins a lock wait event.
+     *
+     * @return Event handle, or null if not enabled
+     */
+    abstract Object beginLockWait();
+
+    /**
+     * Ends and commits a lock wait event.
+     *
+     * @param event
+     *            Handle returned by {@link #beginLockWait()}
+     * @param lock
+     *            Kind of lock waited for, e.g. lock file or bulkhead
+     * @param uri
+     *            Lock file URI without password, or endpoint key
+     * @param acquired
+     *            True if the lock was acquired
+     */
+    abstract void endLockWait(Object event, String lock, String uri, boolean acquired);
+
+    /**
+     * Begins a file transfer event.
+     *
+     * @return Event handle, or null if not enabled
+     */
+    abstract Object beginTransfer();
+
+    /**
+     * Ends and commits a file transfer event.
+     *
+     * @param event
+     *            Handle returned by {@link #beginTransfer()}
+     * @param sourceUri
+     *            Source file URI without password
+     * @param targetUri
+     *            Target file URI without password
+     * @param bytes
+     *            Amount of bytes transferred
+     */
+    abstract void endTransfer(Object event, String sourceUri, String targetUri, long bytes);
+
+    /**
+     * Commits a retry event, if enabled.
+     *
+     * @param cause
+     *            Failure of the previous attempt, its message is only read
+     *            when the event is enabled
+     * @param waitMillis
+     *            Time waited before the next attempt in milliseconds
+     */
+    abstract void retry(Throwable cause, long waitMillis);
+}
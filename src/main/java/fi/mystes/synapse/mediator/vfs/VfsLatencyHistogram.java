@@ -0,0 +1,161 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed, roughly exponential millisecond
+ * buckets. Percentiles are reported as the upper bound of the bucket they
+ * fall into.
+ */
+final class VfsLatencyHistogram {
+
+    private static final long[] BOUNDS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000,
+            60000, Long.MAX_VALUE };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length);
+    private final VfsStripedCounter count = new VfsStripedCounter();
+    private final VfsStripedCounter totalNanos = new VfsStripedCounter();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a measured duration.
+     *
+     * @param nanos
+     *            Duration in nanoseconds
+     */
+    void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (millis > BOUNDS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Returns amount of recorded durations.
+     *
+     * @return Amount of recorded durations
+     */
+    long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns mean of recorded durations.
+     *
+     * @return Mean in milliseconds, 0 if nothing is recorded
+     */
+    double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns longest recorded duration.
+     *
+     * @return Maximum in milliseconds
+     */
+    long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    /**
+     * Returns the upper bound of the bucket given percentile falls into.
+     *
+     * @param percentile
+     *            Percentile between 0 and 100
+     * @return Percentile in milliseconds, or -1 if it is beyond the last
+     *         bounded bucket; 0 if nothing is recorded
+     */
+    long getPercentileMillis(double percentile) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long bucketCount : snapshot) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return BOUNDS[i] == Long.MAX_VALUE ? -1 : BOUNDS[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the bucket counts in readable form, e.g.
+     * "&lt;=1ms: 10, &lt;=2ms: 3, &gt;60000ms: 0".
+     *
+     * @return Bucket counts
+     */
+    String getBuckets() {
+        long[] snapshot = snapshot();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < snapshot.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            if (BOUNDS[i] == Long.MAX_VALUE) {
+                sb.append(">").append(BOUNDS[i - 1]);
+            } else {
+                sb.append("<=").append(BOUNDS[i]);
+            }
+            sb.append("ms: ").append(snapshot[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Clears all recorded durations.
+     */
+    void reset() {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    /**
+     * Helper method to copy bucket counts.
+     *
+     * @return Bucket counts
+     */
+    private long[] snapshot() {
+        long[] snapshot = new long[BOUNDS.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = buckets.get(i);
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemManager;
+import org.apache.commons.vfs2.cache.NullFilesCache;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+
+/**
+ * Pool of file system managers kept open between operations of one mediator,
+ * so that the connections they hold are reused instead of reconnecting on
+ * every message. Pooled managers do not cache file objects, so every operation
+ * sees the current state of the remote file system.
+ * <p>
+ * A pool only holds managers connected to the directories and with the
+ * connection options it was warmed up with. Operations resolving other
+ * directories or options, for example from expressions, are not pooled and
+ * close their connections when done.
+ */
+public final class VfsManagerPool {
+
+    private final LinkedList<FileSystemManager> idle = new LinkedList<FileSystemManager>();
+    private final List<Object> key;
+    private final int capacity;
+    private boolean closed;
+
+    /**
+     * Class constructor.
+     *
+     * @param options
+     *            Options of the operations whose connections are pooled
+     * @param capacity
+     *            Maximum amount of idle managers
+     */
+    public VfsManagerPool(VfsOperationOptions options, int capacity) {
+        this.key = keyOf(options);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a new manager suitable for pooling.
+     *
+     * @return Initialized file system manager
+     * @throws FileSystemException
+     *             If manager initialization fails
+     */
+    public static FileSystemManager create() throws FileSystemException {
+        StandardFileSystemManager manager = new StandardFileSystemManager();
+        manager.setFilesCache(new NullFilesCache());
+        manager.init();
+
+        return manager;
+    }
+
+    /**
+     * Checks if connections of an operation with given options can be pooled.
+     *
+     * @param options
+     *            Operation options
+     * @return True if the operation uses the directories and connection
+     *         options of this pool
+     */
+    public boolean accepts(VfsOperationOptions options) {
+        return key.equals(keyOf(options));
+    }
+
+    /**
+     * Takes the most recently used idle manager from the pool.
+     *
+     * @param options
+     *            Options of the borrowing operation
+     * @return Idle manager, or null if the pool is empty or does not accept
+     *         the operation
+     */
+    public synchronized FileSystemManager borrow(VfsOperationOptions options) {
+        return accepts(options) ? idle.poll() : null;
+    }
+
+    /**
+     * Returns a manager to the pool. The manager is closed if the pool is full
+     * or does not accept the operation.
+     *
+     * @param manager
+     *            Manager created with {@link #create()}
+     * @param options
+     *            Options of the operation that used the manager
+     */
+    public void release(FileSystemManager manager, VfsOperationOptions options) {
+        if (accepts(options)) {
+            synchronized (this) {
+                if (!closed && idle.size() < capacity) {
+                    idle.addFirst(manager);
+                    return;
+                }
+            }
+        }
+        ((StandardFileSystemManager) manager).close();
+    }
+
+    /**
+     * Closes all idle managers. Managers released after this are closed as
+     * well.
+     */
+    public void close() {
+        LinkedList<FileSystemManager> managers;
+        synchronized (this) {
+            closed = true;
+            managers = new LinkedList<FileSystemManager>(idle);
+            idle.clear();
+        }
+        for (FileSystemManager manager : managers) {
+            ((StandardFileSystemManager) manager).close();
+        }
+    }
+
+    /**
+     * Returns amount of idle managers in the pool.
+     *
+     * @return Idle managers
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Helper method to collect the options that define which connections a
+     * manager holds.
+     *
+     * @param options
+     *            Operation options
+     * @return Pool key
+     */
+    private static List<Object> keyOf(VfsOperationOptions options) {
+        return Arrays.<Object>asList(options.getSourceDirectory(), options.getTargetDirectory(),
+                options.getArchiveDirectory(), options.isFtpPassiveModeEnabled(), options.getUserDirIsRootOption(),
+                options.getSftpAuthKeyPath(), options.getSftpTimeout());
+    }
+}
@@ -15,6 +15,8 @@
  */
 package fi.mystes.synapse.mediator.vfs;
 
+import java.util.List;
+
 import org.apache.commons.vfs2.FileSystemException;
 
 /**
@@ -166,4 +168,220 @@ public interface VfsOperation {
      * @param path
      */
     void setSftpAuthKeyPath(String path);
+
+    /**
+     * Sets the per endpoint circuit breaker settings.
+     *
+     * @param circuitBreakerConfig
+     *            Circuit breaker settings, null to disable circuit breaking
+     */
+    void setCircuitBreakerConfig(VfsCircuitBreakerConfig circuitBreakerConfig);
+
+    /**
+     * Sets the per endpoint bulkhead and rate limiter settings.
+     *
+     * @param bulkheadConfig
+     *            Bulkhead settings, null to disable bulkheads
+     */
+    void setBulkheadConfig(VfsBulkheadConfig bulkheadConfig);
+
+    /**
+     * Sets time in milliseconds validated target and archive directories are cached.
+     *
+     * @param directoryCacheTtl
+     *            Cache TTL in milliseconds, 0 to disable caching
+     */
+    void setDirectoryCacheTtl(long directoryCacheTtl);
+
+    /**
+     * Sets amount of pooled connections opened at deployment.
+     *
+     * @param warmupConnections
+     *            Amount of warm-up connections, 0 to disable warm-up and connection pooling
+     */
+    void setWarmupConnections(int warmupConnections);
+
+    /**
+     * Sets transfer metrics of the mediator.
+     *
+     * @param metrics
+     *            Transfer metrics to record to, null to not collect metrics
+     */
+    void setMetrics(VfsTransferMetrics metrics);
+
+    /**
+     * Sets per operation statistics collector.
+     *
+     * @param statistics
+     *            Statistics collector, null to not collect statistics
+     */
+    void setStatistics(VfsOperationStatistics statistics);
+
+    /**
+     * Sets read idle timeout of file transfers.
+     *
+     * @param readIdleTimeout
+     *            Milliseconds without progress after which a transfer is aborted, 0 to not limit
+     */
+    void setReadIdleTimeout(long readIdleTimeout);
+
+    /**
+     * Sets maximum duration of a file transfer.
+     *
+     * @param maxTransferTime
+     *            Milliseconds after which a transfer is aborted, 0 to not limit
+     */
+    void setMaxTransferTime(long maxTransferTime);
+
+    /**
+     * Sets flag for resuming interrupted streaming transfers.
+     *
+     * @param resumeEnabled
+     *            True to resume interrupted streaming transfers from the size of the partial target file
+     */
+    void setResumeEnabled(boolean resumeEnabled);
+
+    /**
+     * Sets whether copying skips files whose target is unchanged.
+     *
+     * @param skipUnchanged
+     *            True to skip source files whose target file has the same size and is not older than the source
+     */
+    void setSkipUnchanged(boolean skipUnchanged);
+
+    /**
+     * Sets whether unchanged target files are detected by content checksum.
+     *
+     * @param skipUnchangedChecksum
+     *            True to compare content checksums of same sized files instead of modification times
+     */
+    void setSkipUnchangedChecksum(boolean skipUnchangedChecksum);
+
+    /**
+     * Sets checksum algorithm calculated during transfers.
+     *
+     * @param checksumAlgorithm
+     *            Checksum algorithm (CRC32, MD5, SHA-1 or SHA-256), null to not calculate checksums
+     */
+    void setChecksumAlgorithm(String checksumAlgorithm);
+
+    /**
+     * Sets whether checksums are verified against source checksum files.
+     *
+     * @param checksumVerify
+     *            True to verify transferred files against checksum files next to the source files
+     */
+    void setChecksumVerify(boolean checksumVerify);
+
+    /**
+     * Sets whether checksum files are written next to target files.
+     *
+     * @param checksumSidecar
+     *            True to write a checksum file next to each target file
+     */
+    void setChecksumSidecar(boolean checksumSidecar);
+
+    /**
+     * Sets compression format of target files.
+     *
+     * @param compress
+     *            Compression format (gzip) to compress target files with, null to not compress
+     */
+    void setCompress(String compress);
+
+    /**
+     * Sets compression format of source files.
+     *
+     * @param decompress
+     *            Compression format (gzip) to decompress source files from, null to not decompress
+     */
+    void setDecompress(String decompress);
+
+    /**
+     * Sets stream stages applied to transferred content.
+     *
+     * @param streamStages
+     *            Stream stages transforming content between source and target, in order
+     */
+    void setStreamStages(List<VfsStreamStageConfig> streamStages);
+
+    /**
+     * Sets bandwidth limiter of the mediator.
+     *
+     * @param bandwidthLimiter
+     *            Bandwidth limiter of the mediator, null for no mediator limit
+     */
+    void setBandwidthLimiter(VfsBandwidthLimiter bandwidthLimiter);
+
+    /**
+     * Sets bandwidth limit shared per remote endpoint.
+     *
+     * @param endpointBandwidthLimit
+     *            Bandwidth limit in bytes per second shared by all mediators per remote endpoint, 0 for no limit
+     */
+    void setEndpointBandwidthLimit(long endpointBandwidthLimit);
+
+    /**
+     * Sets flag indicating whether transfer strategy is chosen per file by size.
+     *
+     * @param autoTransferStrategy
+     *            True to choose transfer strategy per file by its size, overriding streaming transfer setting
+     */
+    void setAutoTransferStrategy(boolean autoTransferStrategy);
+
+    /**
+     * Sets largest file size copied with a file-sized buffer by automatic transfer strategy.
+     *
+     * @param inMemoryThreshold
+     *            Largest file size in bytes copied with a file-sized buffer by automatic transfer strategy
+     */
+    void setInMemoryThreshold(long inMemoryThreshold);
+
+    /**
+     * Sets block size of streaming transfers chosen by automatic transfer strategy.
+     *
+     * @param autoBlockSize
+     *            Block size in bytes of streaming transfers chosen by automatic transfer strategy
+     */
+    void setAutoBlockSize(int autoBlockSize);
+
+    /**
+     * Sets minimum size of files transferred in parallel chunks.
+     *
+     * @param chunkedThreshold
+     *            Minimum size in bytes of files transferred in parallel chunks, 0 to disable
+     */
+    void setChunkedThreshold(long chunkedThreshold);
+
+    /**
+     * Sets amount of chunks transferred concurrently.
+     *
+     * @param chunkCount
+     *            Amount of chunks a large file is split into and transferred concurrently
+     */
+    void setChunkCount(int chunkCount);
+
+    /**
+     * Sets amount of SFTP read or write requests kept in flight.
+     *
+     * @param sftpQueueDepth
+     *            Amount of SFTP read or write requests kept in flight, 0 to disable pipelining
+     */
+    void setSftpQueueDepth(int sftpQueueDepth);
+
+    /**
+     * Sets the connection pool of the mediator.
+     *
+     * @param managerPool
+     *            Connection pool of the mediator, or null if connections are not pooled
+     */
+    void setManagerPool(VfsManagerPool managerPool);
+
+    /**
+     * Sets the minimum size of files transferred with pipelined SFTP requests.
+     *
+     * @param sftpPipeliningThreshold
+     *            Minimum size in bytes of files transferred with pipelined SFTP requests
+     */
+    void setSftpPipeliningThreshold(long sftpPipeliningThreshold);
 }
@@ -46,4 +46,16 @@ public interface VfsOperationDelegate {
      */
     int move(VfsOperationOptions options) throws FileSystemException;
 
+    /**
+     * Method for opening pooled connections ahead of the first operation
+     * 
+     * @param options
+     *            Contains the directories to connect to and the amount of
+     *            connections to open
+     * @return Amount of connections opened
+     * @throws FileSystemException
+     *             If connection options cannot be initialized
+     */
+    int warmUp(VfsOperationOptions options) throws FileSystemException;
+
 }
@@ -15,6 +15,8 @@
  */
 package fi.mystes.synapse.mediator.vfs;
 
+import java.util.List;
+
 /**
  * Bean class containing all necessary settings for VFS operations.
  *
@@ -38,6 +40,33 @@ public final class VfsOperationOptions {
     private final int retryWait;
     private final int sftpTimeout;
     private final String sftpAuthKeyPath;
+    private final VfsCircuitBreakerConfig circuitBreakerConfig;
+    private final VfsBulkheadConfig bulkheadConfig;
+    private final long directoryCacheTtl;
+    private final int warmupConnections;
+    private final VfsTransferMetrics metrics;
+    private final VfsOperationStatistics statistics;
+    private final long readIdleTimeout;
+    private final long maxTransferTime;
+    private final boolean resumeEnabled;
+    private final boolean skipUnchanged;
+    private final boolean skipUnchangedChecksum;
+    private final String checksumAlgorithm;
+    private final boolean checksumVerify;
+    private final boolean checksumSidecar;
+    private final String compress;
+    private final String decompress;
+    private final List<VfsStreamStageConfig> streamStages;
+    private final VfsBandwidthLimiter bandwidthLimiter;
+    private final long endpointBandwidthLimit;
+    private final boolean autoTransferStrategy;
+    private final long inMemoryThreshold;
+    private final int autoBlockSize;
+    private final long chunkedThreshold;
+    private final int chunkCount;
+    private final int sftpQueueDepth;
+    private final VfsManagerPool managerPool;
+    private final long sftpPipeliningThreshold;
 
     /**
      * Class constructor.
@@ -74,6 +103,60 @@ public final class VfsOperationOptions {
      *            Suffix to use when doing file operations
      * @param sftpAuthKeyPath
      *            Path to private key to be used in SFTP authentication
+     * @param circuitBreakerConfig
+     *            Settings for per endpoint circuit breakers, null if disabled
+     * @param bulkheadConfig
+     *            Settings for per endpoint bulkheads, null if disabled
+     * @param directoryCacheTtl
+     *            Cache TTL in milliseconds, 0 to disable caching
+     * @param warmupConnections
+     *            Amount of warm-up connections, 0 to disable warm-up and connection pooling
+     * @param metrics
+     *            Transfer metrics to record to, null to not collect metrics
+     * @param statistics
+     *            Statistics collector, null to not collect statistics
+     * @param readIdleTimeout
+     *            Milliseconds without progress after which a transfer is aborted, 0 to not limit
+     * @param maxTransferTime
+     *            Milliseconds after which a transfer is aborted, 0 to not limit
+     * @param resumeEnabled
+     *            True to resume interrupted streaming transfers from the size of the partial target file
+     * @param skipUnchanged
+     *            True to skip source files whose target file has the same size and is not older than the source
+     * @param skipUnchangedChecksum
+     *            True to compare content checksums of same sized files instead of modification times
+     * @param checksumAlgorithm
+     *            Checksum algorithm (CRC32, MD5, SHA-1 or SHA-256), null to not calculate checksums
+     * @param checksumVerify
+     *            True to verify transferred files against checksum files next to the source files
+     * @param checksumSidecar
+     *            True to write a checksum file next to each target file
+     * @param compress
+     *            Compression format (gzip) to compress target files with, null to not compress
+     * @param decompress
+     *            Compression format (gzip) to decompress source files from, null to not decompress
+     * @param streamStages
+     *            Stream stages transforming content between source and target, in order
+     * @param bandwidthLimiter
+     *            Bandwidth limiter of the mediator, null for no mediator limit
+     * @param endpointBandwidthLimit
+     *            Bandwidth limit in bytes per second shared by all mediators per remote endpoint, 0 for no limit
+     * @param autoTransferStrategy
+     *            True to choose transfer strategy per file by its size, overriding streaming transfer setting
+     * @param inMemoryThreshold
+     *            Largest file size in bytes copied with a file-sized buffer by automatic transfer strategy
+     * @param autoBlockSize
+     *            Block size in bytes of streaming transfers chosen by automatic transfer strategy
+     * @param chunkedThreshold
+     *            Minimum size in bytes of files transferred in parallel chunks, 0 to disable
+     * @param chunkCount
+     *            Amount of chunks a large file is split into and transferred concurrently
+     * @param sftpQueueDepth
+     *            Amount of SFTP read or write requests kept in flight, 0 to disable pipelining
+     * @param managerPool
+     *            Connection pool of the mediator, or null if connections are not pooled
+     * @param sftpPipeliningThreshold
+     *            Minimum size in bytes of files transferred with pipelined SFTP requests
      */
     public VfsOperationOptions(String sourceDirectory, String targetDirectory,
                                String filePatternRegex, String archiveDirectory,
@@ -82,7 +165,17 @@ public final class VfsOperationOptions {
                                String streamingBlockSize, int retryCount,
                                int retryWait, int sftpTimeout,
                                String archiveFilePrefix, String archiveFileSuffix,
-                               String targetFilePrefix, String targetFileSuffix, String sftpAuthKeyPath) {
+                               String targetFilePrefix, String targetFileSuffix, String sftpAuthKeyPath,
+                               VfsCircuitBreakerConfig circuitBreakerConfig, VfsBulkheadConfig bulkheadConfig,
+                               long directoryCacheTtl, int warmupConnections, VfsTransferMetrics metrics,
+                               VfsOperationStatistics statistics, long readIdleTimeout, long maxTransferTime,
+                               boolean resumeEnabled, boolean skipUnchanged, boolean skipUnchangedChecksum,
+                               String checksumAlgorithm, boolean checksumVerify, boolean checksumSidecar,
+                               String compress, String decompress, List<VfsStreamStageConfig> streamStages,
+                               VfsBandwidthLimiter bandwidthLimiter, long endpointBandwidthLimit,
+                               boolean autoTransferStrategy, long inMemoryThreshold, int autoBlockSize,
+                               long chunkedThreshold, int chunkCount, int sftpQueueDepth,
+                               VfsManagerPool managerPool, long sftpPipeliningThreshold) {
         this.sourceDirectory = sourceDirectory;
         this.targetDirectory = targetDirectory;
         this.filePatternRegex = filePatternRegex;
@@ -101,6 +194,33 @@ public final class VfsOperationOptions {
         this.targetFilePrefix = targetFilePrefix;
         this.targetFileSuffix = targetFileSuffix;
         this.sftpAuthKeyPath = sftpAuthKeyPath;
+        this.circuitBreakerConfig = circuitBreakerConfig;
+        this.bulkheadConfig = bulkheadConfig;
+        this.directoryCacheTtl = directoryCacheTtl;
+        this.warmupConnections = warmupConnections;
+        this.metrics = metrics;
+        this.statistics = statistics;
+        this.readIdleTimeout = readIdleTimeout;
+        this.maxTransferTime = maxTransferTime;
+        this.resumeEnabled = resumeEnabled;
+        this.skipUnchanged = skipUnchanged;
+        this.skipUnchangedChecksum = skipUnchangedChecksum;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.checksumVerify = checksumVerify;
+        this.checksumSidecar = checksumSidecar;
+        this.compress = compress;
+        this.decompress = decompress;
+        this.streamStages = streamStages;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.endpointBandwidthLimit = endpointBandwidthLimit;
+        this.autoTransferStrategy = autoTransferStrategy;
+        this.inMemoryThreshold = inMemoryThreshold;
+        this.autoBlockSize = autoBlockSize;
+        this.chunkedThreshold = chunkedThreshold;
+        this.chunkCount = chunkCount;
+        this.sftpQueueDepth = sftpQueueDepth;
+        this.managerPool = managerPool;
+        this.sftpPipeliningThreshold = sftpPipeliningThreshold;
     }
 
     /**
@@ -247,6 +367,249 @@ public final class VfsOperationOptions {
         return this.sftpAuthKeyPath;
     }
 
+    /**
+     * Returns settings for per endpoint circuit breakers.
+     *
+     * @return Circuit breaker settings, or null if circuit breaking is disabled
+     */
+    public VfsCircuitBreakerConfig getCircuitBreakerConfig() {
+        return this.circuitBreakerConfig;
+    }
+
+    /**
+     * Returns settings for per endpoint bulkheads and rate limiters.
+     *
+     * @return Bulkhead settings, or null if bulkheads are disabled
+     */
+    public VfsBulkheadConfig getBulkheadConfig() {
+        return this.bulkheadConfig;
+    }
+
+    /**
+     * Returns time in milliseconds validated target and archive directories are cached.
+     *
+     * @return Cache TTL in milliseconds, 0 if caching is disabled
+     */
+    public long getDirectoryCacheTtl() {
+        return this.directoryCacheTtl;
+    }
+
+    /**
+     * Returns amount of pooled connections opened at deployment.
+     *
+     * @return Amount of warm-up connections, 0 if warm-up is disabled
+     */
+    public int getWarmupConnections() {
+        return this.warmupConnections;
+    }
+
+    /**
+     * Returns transfer metrics of the mediator.
+     *
+     * @return Transfer metrics, or null if metrics are not collected
+     */
+    public VfsTransferMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Returns per operation statistics collector.
+     *
+     * @return Statistics collector, or null if statistics are not collected
+     */
+    public VfsOperationStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Returns read idle timeout of file transfers.
+     *
+     * @return Milliseconds without progress after which a transfer is aborted, 0 if not limited
+     */
+    public long getReadIdleTimeout() {
+        return this.readIdleTimeout;
+    }
+
+    /**
+     * Returns maximum duration of a file transfer.
+     *
+     * @return Milliseconds after which a transfer is aborted, 0 if not limited
+     */
+    public long getMaxTransferTime() {
+        return this.maxTransferTime;
+    }
+
+    /**
+     * Returns flag for resuming interrupted streaming transfers.
+     *
+     * @return True if interrupted streaming transfers are resumed
+     */
+    public boolean isResumeEnabled() {
+        return this.resumeEnabled;
+    }
+
+    /**
+     * Returns whether copying skips files whose target is unchanged.
+     *
+     * @return True if unchanged target files are not copied again
+     */
+    public boolean isSkipUnchanged() {
+        return this.skipUnchanged;
+    }
+
+    /**
+     * Returns whether unchanged target files are detected by content checksum.
+     *
+     * @return True if same sized files are compared by checksum instead of modification time
+     */
+    public boolean isSkipUnchangedChecksum() {
+        return this.skipUnchangedChecksum;
+    }
+
+    /**
+     * Returns checksum algorithm calculated during transfers.
+     *
+     * @return Checksum algorithm, or null if checksums are not calculated
+     */
+    public String getChecksumAlgorithm() {
+        return this.checksumAlgorithm;
+    }
+
+    /**
+     * Returns whether checksums are verified against source checksum files.
+     *
+     * @return True if transferred files are verified against checksum files next to the source files
+     */
+    public boolean isChecksumVerify() {
+        return this.checksumVerify;
+    }
+
+    /**
+     * Returns whether checksum files are written next to target files.
+     *
+     * @return True if a checksum file is written next to each target file
+     */
+    public boolean isChecksumSidecar() {
+        return this.checksumSidecar;
+    }
+
+    /**
+     * Returns compression format of target files.
+     *
+     * @return Compression format target files are compressed with, or null
+     */
+    public String getCompress() {
+        return this.compress;
+    }
+
+    /**
+     * Returns compression format of source files.
+     *
+     * @return Compression format source files are decompressed from, or null
+     */
+    public String getDecompress() {
+        return this.decompress;
+    }
+
+    /**
+     * Returns stream stages applied to transferred content.
+     *
+     * @return Stream stage configurations, in order
+     */
+    public List<VfsStreamStageConfig> getStreamStages() {
+        return this.streamStages;
+    }
+
+    /**
+     * Returns bandwidth limiter of the mediator.
+     *
+     * @return Bandwidth limiter, or null if not limited
+     */
+    public VfsBandwidthLimiter getBandwidthLimiter() {
+        return this.bandwidthLimiter;
+    }
+
+    /**
+     * Returns bandwidth limit shared per remote endpoint.
+     *
+     * @return Bandwidth limit in bytes per second, 0 if not limited
+     */
+    public long getEndpointBandwidthLimit() {
+        return this.endpointBandwidthLimit;
+    }
+
+    /**
+     * Returns flag indicating whether transfer strategy is chosen per file by size.
+     *
+     * @return True if transfer strategy is chosen by size
+     */
+    public boolean isAutoTransferStrategy() {
+        return this.autoTransferStrategy;
+    }
+
+    /**
+     * Returns largest file size copied with a file-sized buffer by automatic transfer strategy.
+     *
+     * @return File size in bytes
+     */
+    public long getInMemoryThreshold() {
+        return this.inMemoryThreshold;
+    }
+
+    /**
+     * Returns block size of streaming transfers chosen by automatic transfer strategy.
+     *
+     * @return Block size in bytes
+     */
+    public int getAutoBlockSize() {
+        return this.autoBlockSize;
+    }
+
+    /**
+     * Returns minimum size of files transferred in parallel chunks.
+     *
+     * @return Size in bytes, 0 when chunked transfer is disabled
+     */
+    public long getChunkedThreshold() {
+        return this.chunkedThreshold;
+    }
+
+    /**
+     * Returns amount of chunks transferred concurrently.
+     *
+     * @return Amount of chunks
+     */
+    public int getChunkCount() {
+        return this.chunkCount;
+    }
+
+    /**
+     * Returns amount of SFTP read or write requests kept in flight.
+     *
+     * @return Queue depth, 0 when pipelining is disabled
+     */
+    public int getSftpQueueDepth() {
+        return this.sftpQueueDepth;
+    }
+
+    /**
+     * Returns the connection pool of the mediator.
+     *
+     * @return Connection pool, or null if connections are not pooled
+     */
+    public VfsManagerPool getManagerPool() {
+        return this.managerPool;
+    }
+
+    /**
+     * Returns the minimum size of files transferred with pipelined SFTP requests.
+     *
+     * @return Minimum size in bytes of pipelined files
+     */
+    public long getSftpPipeliningThreshold() {
+        return this.sftpPipeliningThreshold;
+    }
+
     /**
      * Returns builder instance to build VfsOperationOptions bean.
      * 
@@ -294,6 +657,56 @@ public final class VfsOperationOptions {
             return false;
         if(archiveFileSuffix != null ? !archiveFileSuffix.equals(that.archiveFileSuffix) : that.archiveFileSuffix != null)
             return false;
+        if(circuitBreakerConfig != null ? !circuitBreakerConfig.equals(that.circuitBreakerConfig) : that.circuitBreakerConfig != null)
+            return false;
+        if(bulkheadConfig != null ? !bulkheadConfig.equals(that.bulkheadConfig) : that.bulkheadConfig != null)
+            return false;
+        if(directoryCacheTtl != that.directoryCacheTtl)
+            return false;
+        if(warmupConnections != that.warmupConnections)
+            return false;
+        if(readIdleTimeout != that.readIdleTimeout)
+            return false;
+        if(maxTransferTime != that.maxTransferTime)
+            return false;
+        if(resumeEnabled != that.resumeEnabled)
+            return false;
+        if(skipUnchanged != that.skipUnchanged)
+            return false;
+        if(skipUnchangedChecksum != that.skipUnchangedChecksum)
+            return false;
+        if(checksumAlgorithm != null ? !checksumAlgorithm.equals(that.checksumAlgorithm) : that.checksumAlgorithm != null)
+            return false;
+        if(checksumVerify != that.checksumVerify)
+            return false;
+        if(checksumSidecar != that.checksumSidecar)
+            return false;
+        if(compress != null ? !compress.equals(that.compress) : that.compress != null)
+            return false;
+        if(decompress != null ? !decompress.equals(that.decompress) : that.decompress != null)
+            return false;
+        if(streamStages != null ? !streamStages.equals(that.streamStages) : that.streamStages != null)
+            return false;
+        if(bandwidthLimiter != null ? !bandwidthLimiter.equals(that.bandwidthLimiter) : that.bandwidthLimiter != null)
+            return false;
+        if(endpointBandwidthLimit != that.endpointBandwidthLimit)
+            return false;
+        if(autoTransferStrategy != that.autoTransferStrategy)
+            return false;
+        if(inMemoryThreshold != that.inMemoryThreshold)
+            return false;
+        if(autoBlockSize != that.autoBlockSize)
+            return false;
+        if(chunkedThreshold != that.chunkedThreshold)
+            return false;
+        if(chunkCount != that.chunkCount)
+            return false;
+        if(sftpQueueDepth != that.sftpQueueDepth)
+            return false;
+        if(managerPool != null ? !managerPool.equals(that.managerPool) : that.managerPool != null)
+            return false;
+        if(sftpPipeliningThreshold != that.sftpPipeliningThreshold)
+            return false;
         return !(archiveDirectory != null ? !archiveDirectory.equals(that.archiveDirectory)
                 : that.archiveDirectory != null);
 
@@ -475,6 +888,249 @@ public final class VfsOperationOptions {
         Builder sftpTimeout(int timeout);
 
         Builder sftpAuthKeyPath(String path);
+
+        /**
+         * Setter for per endpoint circuit breaker settings.
+         *
+         * @param circuitBreakerConfig
+         *            Circuit breaker settings, null to disable circuit breaking
+         * @return This builder instance
+         */
+        Builder circuitBreaker(VfsCircuitBreakerConfig circuitBreakerConfig);
+
+        /**
+         * Setter for per endpoint bulkhead and rate limiter settings.
+         *
+         * @param bulkheadConfig
+         *            Bulkhead settings, null to disable bulkheads
+         * @return This builder instance
+         */
+        Builder bulkhead(VfsBulkheadConfig bulkheadConfig);
+
+        /**
+         * Setter for time in milliseconds validated target and archive directories are cached.
+         *
+         * @param directoryCacheTtl
+         *            Cache TTL in milliseconds, 0 to disable caching
+         * @return This builder instance
+         */
+        Builder directoryCacheTtl(long directoryCacheTtl);
+
+        /**
+         * Setter for amount of pooled connections opened at deployment.
+         *
+         * @param warmupConnections
+         *            Amount of warm-up connections, 0 to disable warm-up and connection pooling
+         * @return This builder instance
+         */
+        Builder warmupConnections(int warmupConnections);
+
+        /**
+         * Setter for transfer metrics of the mediator.
+         *
+         * @param metrics
+         *            Transfer metrics to record to, null to not collect metrics
+         * @return This builder instance
+         */
+        Builder metrics(VfsTransferMetrics metrics);
+
+        /**
+         * Setter for per operation statistics collector.
+         *
+         * @param statistics
+         *            Statistics collector, null to not collect statistics
+         * @return This builder instance
+         */
+        Builder statistics(VfsOperationStatistics statistics);
+
+        /**
+         * Setter for read idle timeout of file transfers.
+         *
+         * @param readIdleTimeout
+         *            Milliseconds without progress after which a transfer is aborted, 0 to not limit
+         * @return This builder instance
+         */
+        Builder readIdleTimeout(long readIdleTimeout);
+
+        /**
+         * Setter for maximum duration of a file transfer.
+         *
+         * @param maxTransferTime
+         *            Milliseconds after which a transfer is aborted, 0 to not limit
+         * @return This builder instance
+         */
+        Builder maxTransferTime(long maxTransferTime);
+
+        /**
+         * Setter for flag for resuming interrupted streaming transfers.
+         *
+         * @param resumeEnabled
+         *            True to resume interrupted streaming transfers from the size of the partial target file
+         * @return This builder instance
+         */
+        Builder resumeEnabled(boolean resumeEnabled);
+
+        /**
+         * Setter for whether copying skips files whose target is unchanged.
+         *
+         * @param skipUnchanged
+         *            True to skip source files whose target file has the same size and is not older than the source
+         * @return This builder instance
+         */
+        Builder skipUnchanged(boolean skipUnchanged);
+
+        /**
+         * Setter for whether unchanged target files are detected by content checksum.
+         *
+         * @param skipUnchangedChecksum
+         *            True to compare content checksums of same sized files instead of modification times
+         * @return This builder instance
+         */
+        Builder skipUnchangedChecksum(boolean skipUnchangedChecksum);
+
+        /**
+         * Setter for checksum algorithm calculated during transfers.
+         *
+         * @param checksumAlgorithm
+         *            Checksum algorithm (CRC32, MD5, SHA-1 or SHA-256), null to not calculate checksums
+         * @return This builder instance
+         */
+        Builder checksumAlgorithm(String checksumAlgorithm);
+
+        /**
+         * Setter for whether checksums are verified against source checksum files.
+         *
+         * @param checksumVerify
+         *            True to verify transferred files against checksum files next to the source files
+         * @return This builder instance
+         */
+        Builder checksumVerify(boolean checksumVerify);
+
+        /**
+         * Setter for whether checksum files are written next to target files.
+         *
+         * @param checksumSidecar
+         *            True to write a checksum file next to each target file
+         * @return This builder instance
+         */
+        Builder checksumSidecar(boolean checksumSidecar);
+
+        /**
+         * Setter for compression format of target files.
+         *
+         * @param compress
+         *            Compression format (gzip) to compress target files with, null to not compress
+         * @return This builder instance
+         */
+        Builder compress(String compress);
+
+        /**
+         * Setter for compression format of source files.
+         *
+         * @param decompress
+         *            Compression format (gzip) to decompress source files from, null to not decompress
+         * @return This builder instance
+         */
+        Builder decompress(String decompress);
+
+        /**
+         * Setter for stream stages applied to transferred content.
+         *
+         * @param streamStages
+         *            Stream stages transforming content between source and target, in order
+         * @return This builder instance
+         */
+        Builder streamStages(List<VfsStreamStageConfig> streamStages);
+
+        /**
+         * Setter for bandwidth limiter of the mediator.
+         *
+         * @param bandwidthLimiter
+         *            Bandwidth limiter of the mediator, null for no mediator limit
+         * @return This builder instance
+         */
+        Builder bandwidthLimiter(VfsBandwidthLimiter bandwidthLimiter);
+
+        /**
+         * Setter for bandwidth limit shared per remote endpoint.
+         *
+         * @param endpointBandwidthLimit
+         *            Bandwidth limit in bytes per second shared by all mediators per remote endpoint, 0 for no limit
+         * @return This builder instance
+         */
+        Builder endpointBandwidthLimit(long endpointBandwidthLimit);
+
+        /**
+         * Setter for flag indicating whether transfer strategy is chosen per file by size.
+         *
+         * @param autoTransferStrategy
+         *            True to choose transfer strategy per file by its size, overriding streaming transfer setting
+         * @return This builder instance
+         */
+        Builder autoTransferStrategy(boolean autoTransferStrategy);
+
+        /**
+         * Setter for largest file size copied with a file-sized buffer by automatic transfer strategy.
+         *
+         * @param inMemoryThreshold
+         *            Largest file size in bytes copied with a file-sized buffer by automatic transfer strategy
+         * @return This builder instance
+         */
+        Builder inMemoryThreshold(long inMemoryThreshold);
+
+        /**
+         * Setter for block size of streaming transfers chosen by automatic transfer strategy.
+         *
+         * @param autoBlockSize
+         *            Block size in bytes of streaming transfers chosen by automatic transfer strategy
+         * @return This builder instance
+         */
+        Builder autoBlockSize(int autoBlockSize);
+
+        /**
+         * Setter for minimum size of files transferred in parallel chunks.
+         *
+         * @param chunkedThreshold
+         *            Minimum size in bytes of files transferred in parallel chunks, 0 to disable
+         * @return This builder instance
+         */
+        Builder chunkedThreshold(long chunkedThreshold);
+
+        /**
+         * Setter for amount of chunks transferred concurrently.
+         *
+         * @param chunkCount
+         *            Amount of chunks a large file is split into and transferred concurrently
+         * @return This builder instance
+         */
+        Builder chunkCount(int chunkCount);
+
+        /**
+         * Setter for amount of SFTP read or write requests kept in flight.
+         *
+         * @param sftpQueueDepth
+         *            Amount of SFTP read or write requests kept in flight, 0 to disable pipelining
+         * @return This builder instance
+         */
+        Builder sftpQueueDepth(int sftpQueueDepth);
+
+        /**
+         * Setter for the connection pool of the mediator.
+         *
+         * @param managerPool
+         *            Connection pool of the mediator, or null if connections are not pooled
+         * @return This builder instance
+         */
+        Builder managerPool(VfsManagerPool managerPool);
+
+        /**
+         * Setter for the minimum size of files transferred with pipelined SFTP requests.
+         *
+         * @param sftpPipeliningThreshold
+         *            Minimum size in bytes of files transferred with pipelined SFTP requests
+         * @return This builder instance
+         */
+        Builder sftpPipeliningThreshold(long sftpPipeliningThreshold);
     }
 
     /**
@@ -500,13 +1156,46 @@ public final class VfsOperationOptions {
         private String targetFileSuffix;
         private String targetFilePrefix;
         private String sftpKeyPath;
+        private VfsCircuitBreakerConfig circuitBreakerConfig;
+        private VfsBulkheadConfig bulkheadConfig;
+        private long directoryCacheTtl;
+        private int warmupConnections;
+        private VfsTransferMetrics metrics;
+        private VfsOperationStatistics statistics;
+        private long readIdleTimeout;
+        private long maxTransferTime;
+        private boolean resumeEnabled;
+        private boolean skipUnchanged;
+        private boolean skipUnchangedChecksum;
+        private String checksumAlgorithm;
+        private boolean checksumVerify;
+        private boolean checksumSidecar;
+        private String compress;
+        private String decompress;
+        private List<VfsStreamStageConfig> streamStages;
+        private VfsBandwidthLimiter bandwidthLimiter;
+        private long endpointBandwidthLimit;
+        private boolean autoTransferStrategy;
+        private long inMemoryThreshold;
+        private int autoBlockSize;
+        private long chunkedThreshold;
+        private int chunkCount;
+        private int sftpQueueDepth;
+        private VfsManagerPool managerPool;
+        private long sftpPipeliningThreshold;
 
         @Override
         public VfsOperationOptions build() {
             return new VfsOperationOptions(sourceDirectory, targetDirectory, filePatternRegex, archiveDirectory,
                     createMissingDirectories, lockEnabled, ftpPassiveMode, streamingTransfer, userDirIsRoot,
                     streamingBlockSize, retryCount, retryWait, sftpTimeout, archiveFilePrefix, archiveFileSuffix,
-                    targetFilePrefix, targetFileSuffix, sftpKeyPath);
+                    targetFilePrefix, targetFileSuffix, sftpKeyPath, circuitBreakerConfig,
+                    bulkheadConfig, directoryCacheTtl, warmupConnections, metrics, statistics,
+                    readIdleTimeout, maxTransferTime, resumeEnabled, skipUnchanged, skipUnchangedChecksum,
+                    checksumAlgorithm, checksumVerify, checksumSidecar, compress, decompress, streamStages,
+                    bandwidthLimiter, endpointBandwidthLimit, autoTransferStrategy, inMemoryThreshold,
+                    autoBlockSize, chunkedThreshold, chunkCount, sftpQueueDepth, managerPool,
+                    sftpPipeliningThreshold);
         }
 
         @Override
@@ -634,5 +1323,194 @@ public final class VfsOperationOptions {
 
             return this;
         }
+
+        @Override
+        public Builder circuitBreaker(VfsCircuitBreakerConfig circuitBreakerConfig) {
+            this.circuitBreakerConfig = circuitBreakerConfig;
+
+            return this;
+        }
+
+        @Override
+        public Builder bulkhead(VfsBulkheadConfig bulkheadConfig) {
+            this.bulkheadConfig = bulkheadConfig;
+
+            return this;
+        }
+
+        @Override
+        public Builder directoryCacheTtl(long directoryCacheTtl) {
+            this.directoryCacheTtl = directoryCacheTtl;
+
+            return this;
+        }
+
+        @Override
+        public Builder warmupConnections(int warmupConnections) {
+            this.warmupConnections = warmupConnections;
+
+            return this;
+        }
+
+        @Override
+        public Builder metrics(VfsTransferMetrics metrics) {
+            this.metrics = metrics;
+
+            return this;
+        }
+
+        @Override
+        public Builder statistics(VfsOperationStatistics statistics) {
+            this.statistics = statistics;
+
+            return this;
+        }
+
+        @Override
+        public Builder readIdleTimeout(long readIdleTimeout) {
+            this.readIdleTimeout = readIdleTimeout;
+
+            return this;
+        }
+
+        @Override
+        public Builder maxTransferTime(long maxTransferTime) {
+            this.maxTransferTime = maxTransferTime;
+
+            return this;
+        }
+
+        @Override
+        public Builder resumeEnabled(boolean resumeEnabled) {
+            this.resumeEnabled = resumeEnabled;
+
+            return this;
+        }
+
+        @Override
+        public Builder skipUnchanged(boolean skipUnchanged) {
+            this.skipUnchanged = skipUnchanged;
+
+            return this;
+        }
+
+        @Override
+        public Builder skipUnchangedChecksum(boolean skipUnchangedChecksum) {
+            this.skipUnchangedChecksum = skipUnchangedChecksum;
+
+            return this;
+        }
+
+        @Override
+        public Builder checksumAlgorithm(String checksumAlgorithm) {
+            this.checksumAlgorithm = checksumAlgorithm;
+
+            return this;
+        }
+
+        @Override
+        public Builder checksumVerify(boolean checksumVerify) {
+            this.checksumVerify = checksumVerify;
+
+            return this;
+        }
+
+        @Override
+        public Builder checksumSidecar(boolean checksumSidecar) {
+            this.checksumSidecar = checksumSidecar;
+
+            return this;
+        }
+
+        @Override
+        public Builder compress(String compress) {
+            this.compress = compress;
+
+            return this;
+        }
+
+        @Override
+        public Builder decompress(String decompress) {
+            this.decompress = decompress;
+
+            return this;
+        }
+
+        @Override
+        public Builder streamStages(List<VfsStreamStageConfig> streamStages) {
+            this.streamStages = streamStages;
+
+            return this;
+        }
+
+        @Override
+        public Builder bandwidthLimiter(VfsBandwidthLimiter bandwidthLimiter) {
+            this.bandwidthLimiter = bandwidthLimiter;
+
+            return this;
+        }
+
+        @Override
+        public Builder endpointBandwidthLimit(long endpointBandwidthLimit) {
+            this.endpointBandwidthLimit = endpointBandwidthLimit;
+
+            return this;
+        }
+
+        @Override
+        public Builder autoTransferStrategy(boolean autoTransferStrategy) {
+            this.autoTransferStrategy = autoTransferStrategy;
+
+            return this;
+        }
+
+        @Override
+        public Builder inMemoryThreshold(long inMemoryThreshold) {
+            this.inMemoryThreshold = inMemoryThreshold;
+
+            return this;
+        }
+
+        @Override
+        public Builder autoBlockSize(int autoBlockSize) {
+            this.autoBlockSize = autoBlockSize;
+
+            return this;
+        }
+
+        @Override
+        public Builder chunkedThreshold(long chunkedThreshold) {
+            this.chunkedThreshold = chunkedThreshold;
+
+            return this;
+        }
+
+        @Override
+        public Builder chunkCount(int chunkCount) {
+            this.chunkCount = chunkCount;
+
+            return this;
+        }
+
+        @Override
+        public Builder sftpQueueDepth(int sftpQueueDepth) {
+            this.sftpQueueDepth = sftpQueueDepth;
+
+            return this;
+        }
+
+        @Override
+        public Builder managerPool(VfsManagerPool managerPool) {
+            this.managerPool = managerPool;
+
+            return this;
+        }
+
+        @Override
+        public Builder sftpPipeliningThreshold(long sftpPipeliningThreshold) {
+            this.sftpPipeliningThreshold = sftpPipeliningThreshold;
+
+            return this;
+        }
     }
 }
@@ -0,0 +1,267 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing breakdown of a single VFS operation. An instance is filled in by
+ * {@link VfsFileTransferUtility} while the operation runs and read by the
+ * mediator afterwards, so it is not meant to be shared between operations.
+ * Values of a failed operation cover the phases run before the failure.
+ */
+public class VfsOperationStatistics {
+
+    private long connectNanos;
+    private long listNanos;
+    private int entriesListed;
+    private int filesMatched;
+    private long lockNanos;
+    private long transferNanos;
+    private long bytesTransferred;
+    private long deleteNanos;
+    private int retries;
+    private int filesSkipped;
+    private final Map<String, String> checksums = new LinkedHashMap<String, String>();
+    private String lastChecksum;
+    private String slowestFile;
+    private long slowestFileNanos = -1;
+
+    /**
+     * Records time spent connecting to and validating target and archive
+     * directories.
+     *
+     * @param nanos
+     *            Elapsed time in nanoseconds
+     */
+    void connected(long nanos) {
+        connectNanos += nanos;
+    }
+
+    /**
+     * Records source directory listing.
+     *
+     * @param nanos
+     *            Elapsed time in nanoseconds
+     * @param entries
+     *            Amount of entries in source directory
+     * @param matched
+     *            Amount of entries matching the file pattern
+     */
+    void listed(long nanos, int entries, int matched) {
+        listNanos += nanos;
+        entriesListed = entries;
+        filesMatched = matched;
+    }
+
+    /**
+     * Records lock file creation or a wait for a bulkhead slot.
+     *
+     * @param nanos
+     *            Elapsed time in nanoseconds
+     */
+    void locked(long nanos) {
+        lockNanos += nanos;
+    }
+
+    /**
+     * Records a file transfer to target or archive directory.
+     *
+     * @param file
+     *            Name of the transferred file
+     * @param bytes
+     *            Amount of bytes transferred
+     * @param nanos
+     *            Elapsed time in nanoseconds
+     */
+    void transferred(String file, long bytes, long nanos) {
+        transferNanos += nanos;
+        bytesTransferred += bytes;
+        if (nanos > slowestFileNanos) {
+            slowestFileNanos = nanos;
+            slowestFile = file;
+        }
+    }
+
+    /**
+     * Records deletion of a source or lock file.
+     *
+     * @param nanos
+     *            Elapsed time in nanoseconds
+     */
+    void deleted(long nanos) {
+        deleteNanos += nanos;
+    }
+
+    /**
+     * Records a retried call.
+     */
+    void retried() {
+        retries++;
+    }
+
+    /**
+     * Records a source file not copied because its target is unchanged.
+     */
+    void skipped() {
+        filesSkipped++;
+    }
+
+    /**
+     * Records checksum of a file transferred to target directory.
+     *
+     * @param file
+     *            Name of the file in target directory
+     * @param checksum
+     *            Checksum in hex
+     */
+    void checksummed(String file, String checksum) {
+        checksums.put(file, checksum);
+        lastChecksum = checksum;
+    }
+
+    /**
+     * Returns time spent connecting to and validating target and archive
+     * directories. Connecting to source directory is part of listing.
+     *
+     * @return Connect time in milliseconds
+     */
+    public long getConnectMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(connectNanos);
+    }
+
+    /**
+     * Returns time spent listing source directory.
+     *
+     * @return List time in milliseconds
+     */
+    public long getListMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(listNanos);
+    }
+
+    /**
+     * Returns amount of entries found in source directory.
+     *
+     * @return Amount of entries listed
+     */
+    public int getEntriesListed() {
+        return entriesListed;
+    }
+
+    /**
+     * Returns amount of source directory entries matching the file pattern.
+     *
+     * @return Amount of files matched
+     */
+    public int getFilesMatched() {
+        return filesMatched;
+    }
+
+    /**
+     * Returns time spent creating lock files and waiting for bulkhead slots.
+     *
+     * @return Lock time in milliseconds
+     */
+    public long getLockMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lockNanos);
+    }
+
+    /**
+     * Returns time spent transferring files, including archive copies.
+     *
+     * @return Transfer time in milliseconds
+     */
+    public long getTransferMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(transferNanos);
+    }
+
+    /**
+     * Returns amount of bytes transferred, including archive copies.
+     *
+     * @return Bytes transferred
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * Returns time spent deleting moved source files and lock files.
+     *
+     * @return Delete time in milliseconds
+     */
+    public long getDeleteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deleteNanos);
+    }
+
+    /**
+     * Returns amount of retried calls.
+     *
+     * @return Amount of retries
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Returns amount of source files not copied because their target file
+     * was unchanged. These are not included in the handled file count.
+     *
+     * @return Amount of skipped files
+     */
+    public int getFilesSkipped() {
+        return filesSkipped;
+    }
+
+    /**
+     * Returns checksums of the files transferred to target directory.
+     *
+     * @return Checksums in hex by target file name, in transfer order
+     */
+    public Map<String, String> getChecksums() {
+        return Collections.unmodifiableMap(checksums);
+    }
+
+    /**
+     * Returns checksum of the file last transferred to target directory.
+     *
+     * @return Checksum in hex, or null if no checksums were calculated
+     */
+    public String getLastChecksum() {
+        return lastChecksum;
+    }
+
+    /**
+     * Returns name of the file whose transfer took longest.
+     *
+     * @return File name, or null if no files were transferred
+     */
+    public String getSlowestFile() {
+        return slowestFile;
+    }
+
+    /**
+     * Returns transfer time of the slowest file.
+     *
+     * @return Transfer time in milliseconds, or -1 if no files were
+     *         transferred
+     */
+    public long getSlowestFileMillis() {
+        return slowestFileNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(slowestFileNanos);
+    }
+}
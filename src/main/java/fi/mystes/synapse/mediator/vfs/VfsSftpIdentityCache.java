@@ -0,0 +1,334 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.provider.sftp.IdentityRepositoryFactory;
+
+import com.jcraft.jsch.HostKeyRepository;
+import com.jcraft.jsch.Identity;
+import com.jcraft.jsch.IdentityRepository;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.KeyPair;
+
+/**
+ * In-memory cache of parsed SFTP private keys and known hosts. Without it
+ * JSch reads and parses the key and known hosts files on every connection.
+ * Entries are reloaded when the modification time or size of the file
+ * changes.
+ */
+public final class VfsSftpIdentityCache {
+
+    private static final Log log = LogFactory.getLog(VfsSftpIdentityCache.class);
+
+    /**
+     * Known hosts location handed to commons-vfs while the cache is in use.
+     * The file does not exist, so commons-vfs does not parse the real file
+     * before the cached repository replaces it.
+     */
+    static final File NO_KNOWN_HOSTS = new File(sshDirectory(), ".vfs-mediator-known-hosts-cached");
+
+    private static final ConcurrentMap<String, Entry<Identity>> identities = new ConcurrentHashMap<String, Entry<Identity>>();
+    private static final ConcurrentMap<String, Entry<HostKeyRepository>> knownHosts = new ConcurrentHashMap<String, Entry<HostKeyRepository>>();
+    private static final ConcurrentMap<String, IdentityRepositoryFactory> factories = new ConcurrentHashMap<String, IdentityRepositoryFactory>();
+
+    private VfsSftpIdentityCache() {
+        // static utility methods only - prevent instantiation
+    }
+
+    /**
+     * Returns identity repository factory serving the cached private key of
+     * given path and installing the cached known hosts of the SSH directory.
+     * The same factory instance is returned for the same path, so that file
+     * system options using it compare equal and pooled connections can be
+     * reused.
+     *
+     * @param keyPath
+     *            Path to private key
+     * @return Identity repository factory for commons-vfs SFTP provider
+     */
+    public static IdentityRepositoryFactory identityRepositoryFactory(final String keyPath) {
+        IdentityRepositoryFactory factory = factories.get(keyPath);
+        if (factory == null) {
+            IdentityRepositoryFactory created = createIdentityRepositoryFactory(keyPath);
+            factory = factories.putIfAbsent(keyPath, created);
+            if (factory == null) {
+                factory = created;
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Returns identity repository serving the cached private key of given
+     * path and installs the cached known hosts of the SSH directory to given
+     * JSch instance.
+     *
+     * @param jsch
+     *            JSch instance opening the connection
+     * @param keyPath
+     *            Path to private key
+     * @return Identity repository
+     * @throws JSchException
+     *             If the private key cannot be parsed
+     */
+    static IdentityRepository identityRepository(JSch jsch, String keyPath) throws JSchException {
+        installKnownHosts(jsch);
+        return new CachedIdentityRepository(getIdentity(new File(keyPath)));
+    }
+
+    /**
+     * Installs the cached known hosts of the SSH directory to given JSch
+     * instance, if the directory has a known hosts file.
+     *
+     * @param jsch
+     *            JSch instance opening the connection
+     */
+    static void installKnownHosts(JSch jsch) {
+        HostKeyRepository hostKeys = getKnownHosts(new File(sshDirectory(), "known_hosts"));
+        if (hostKeys != null) {
+            jsch.setHostKeyRepository(hostKeys);
+        }
+    }
+
+    /**
+     * Helper method to create identity repository factory for given key. The
+     * factory cannot throw checked exceptions, so a key parse failure is
+     * thrown unchecked and commons-vfs fails the connection with it.
+     *
+     * @param keyPath
+     *            Path to private key
+     * @return Identity repository factory
+     */
+    private static IdentityRepositoryFactory createIdentityRepositoryFactory(final String keyPath) {
+        return new IdentityRepositoryFactory() {
+            @Override
+            public IdentityRepository create(JSch jsch) {
+                try {
+                    return identityRepository(jsch, keyPath);
+                } catch (JSchException e) {
+                    throw new IllegalStateException("Failed to parse SFTP private key " + keyPath, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the parsed private key of given file, parsing the file only if
+     * it has changed since last call.
+     *
+     * @param keyFile
+     *            Private key file
+     * @return Parsed private key
+     * @throws JSchException
+     *             If the file cannot be read or parsed
+     */
+    static Identity getIdentity(final File keyFile) throws JSchException {
+        Entry<Identity> entry = identities.get(keyFile.getAbsolutePath());
+        if (entry == null || !entry.isCurrent(keyFile)) {
+            entry = new Entry<Identity>(keyFile);
+            entry.value = new CachedIdentity(keyFile.getAbsolutePath(),
+                    KeyPair.load(new JSch(), keyFile.getAbsolutePath()));
+            log.debug("Parsed SFTP private key " + keyFile.getAbsolutePath());
+            identities.put(keyFile.getAbsolutePath(), entry);
+        }
+        return entry.value;
+    }
+
+    /**
+     * Returns the parsed known hosts of given file, parsing the file only if
+     * it has changed since last call.
+     *
+     * @param knownHostsFile
+     *            Known hosts file
+     * @return Parsed known hosts, or null if the file does not exist or
+     *         cannot be parsed
+     */
+    static HostKeyRepository getKnownHosts(final File knownHostsFile) {
+        if (!knownHostsFile.isFile()) {
+            return null;
+        }
+        Entry<HostKeyRepository> entry = knownHosts.get(knownHostsFile.getAbsolutePath());
+        if (entry == null || !entry.isCurrent(knownHostsFile)) {
+            entry = new Entry<HostKeyRepository>(knownHostsFile);
+            try {
+                JSch parser = new JSch();
+                parser.setKnownHosts(knownHostsFile.getAbsolutePath());
+                entry.value = parser.getHostKeyRepository();
+                log.debug("Parsed SFTP known hosts " + knownHostsFile.getAbsolutePath());
+            } catch (JSchException e) {
+                log.error("Failed to parse SFTP known hosts " + knownHostsFile.getAbsolutePath(), e);
+                return null;
+            }
+            knownHosts.put(knownHostsFile.getAbsolutePath(), entry);
+        }
+        return entry.value;
+    }
+
+    /**
+     * Forgets all cached keys and known hosts.
+     */
+    static void reset() {
+        identities.clear();
+        knownHosts.clear();
+    }
+
+    /**
+     * Helper method to resolve the SSH directory the same way commons-vfs
+     * does.
+     *
+     * @return SSH directory
+     */
+    private static File sshDirectory() {
+        String sshDir = System.getProperty("vfs.sftp.sshdir");
+        if (sshDir == null) {
+            sshDir = System.getProperty("user.home") + File.separator + ".ssh";
+        }
+        return new File(sshDir);
+    }
+
+    /**
+     * Cache entry remembering the state of the file it was parsed from.
+     */
+    private static final class Entry<T> {
+        private final long lastModified;
+        private final long length;
+        private T value;
+
+        Entry(File file) {
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        boolean isCurrent(File file) {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+    }
+
+    /**
+     * Identity backed by a parsed key pair. Shared between connections, so
+     * the key is never cleared.
+     */
+    private static final class CachedIdentity implements Identity {
+        private final String name;
+        private final KeyPair keyPair;
+        private final byte[] publicKeyBlob;
+
+        CachedIdentity(String name, KeyPair keyPair) {
+            this.name = name;
+            this.keyPair = keyPair;
+            this.publicKeyBlob = keyPair.getPublicKeyBlob();
+        }
+
+        @Override
+        public boolean setPassphrase(byte[] passphrase) throws JSchException {
+            return keyPair.decrypt(passphrase);
+        }
+
+        @Override
+        public byte[] getPublicKeyBlob() {
+            return publicKeyBlob;
+        }
+
+        @Override
+        public byte[] getSignature(byte[] data) {
+            return keyPair.getSignature(data);
+        }
+
+        @Override
+        public boolean decrypt() {
+            // same as JSch identity files: succeeds if the key is not encrypted
+            return keyPair.decrypt((byte[]) null);
+        }
+
+        @Override
+        public String getAlgName() {
+            // public key blob starts with the algorithm name as an SSH string
+            int length = ((publicKeyBlob[0] & 0xff) << 24) | ((publicKeyBlob[1] & 0xff) << 16)
+                    | ((publicKeyBlob[2] & 0xff) << 8) | (publicKeyBlob[3] & 0xff);
+            try {
+                return new String(publicKeyBlob, 4, length, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isEncrypted() {
+            return keyPair.isEncrypted();
+        }
+
+        @Override
+        public void clear() {
+            // shared between connections
+        }
+    }
+
+    /**
+     * Read-only identity repository serving cached identities.
+     */
+    private static final class CachedIdentityRepository implements IdentityRepository {
+        private final Vector<Identity> identities = new Vector<Identity>();
+
+        CachedIdentityRepository(Identity identity) {
+            identities.add(identity);
+        }
+
+        @Override
+        public String getName() {
+            return "Cached identities";
+        }
+
+        @Override
+        public int getStatus() {
+            return RUNNING;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Vector getIdentities() {
+            return identities;
+        }
+
+        @Override
+        public boolean add(byte[] identity) {
+            return false;
+        }
+
+        @Override
+        public boolean remove(byte[] blob) {
+            return false;
+        }
+
+        @Override
+        public void removeAll() {
+            // read-only
+        }
+    }
+}
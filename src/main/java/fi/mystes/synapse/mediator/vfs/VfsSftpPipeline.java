@@ -0,0 +1,410 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.provider.GenericFileName;
+import org.apache.commons.vfs2.provider.sftp.SftpFileSystemConfigBuilder;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpProgressMonitor;
+
+/**
+ * SFTP transfers keeping several read or write requests in flight on one
+ * channel, like the -R option of OpenSSH sftp. Streams of the commons-vfs
+ * SFTP provider wait for the response to each block, which caps throughput
+ * at block size per round trip. JSch pipelines bulk transfers up to a
+ * configurable amount of outstanding requests, but the provider does not
+ * expose its channels, so this class opens its own SSH session per endpoint.
+ * Sessions are reused by the transfers of one operation and closed with it.
+ * Each session takes an extra slot from the bulkhead of its endpoint; when
+ * none is free, files are transferred through commons-vfs instead.
+ */
+final class VfsSftpPipeline implements Closeable {
+
+    private static final Log log = LogFactory.getLog(VfsSftpPipeline.class);
+    private static final String SFTP_SCHEME = "sftp";
+
+    private final VfsOperationOptions options;
+    private final Map<String, ChannelSftp> channels = new HashMap<String, ChannelSftp>();
+    private final Map<String, VfsBulkhead> reserved = new HashMap<String, VfsBulkhead>();
+
+    /**
+     * Constructor.
+     *
+     * @param options
+     *            Operation options for queue depth, authentication and
+     *            watchdog settings
+     */
+    VfsSftpPipeline(VfsOperationOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Checks whether given file is on an SFTP server.
+     *
+     * @param file
+     *            File to check
+     * @return True if the file is accessed with SFTP
+     */
+    static boolean isSftp(FileObject file) {
+        return SFTP_SCHEME.equals(file.getName().getScheme());
+    }
+
+    /**
+     * Reserves a session to the SFTP server given file is on. The session
+     * counts against the bulkhead of the endpoint, so it is only reserved if
+     * a slot is free right away; waiting could deadlock operations that
+     * already hold their own slots.
+     *
+     * @param file
+     *            File on an SFTP server
+     * @return True if a session is reserved for this pipeline
+     */
+    boolean reserve(FileObject file) {
+        String key = keyOf((GenericFileName) file.getName());
+        if (reserved.containsKey(key)) {
+            return true;
+        }
+        VfsBulkhead bulkhead = VfsBulkhead.forUri(file.getName().getURI(), options.getBulkheadConfig());
+        if (bulkhead != null && !bulkhead.tryEnter()) {
+            log.debug("No free session on endpoint " + bulkhead.getEndpoint() + ", not pipelining");
+            return false;
+        }
+        reserved.put(key, bulkhead);
+        return true;
+    }
+
+    /**
+     * Transfers a file from or to an SFTP server. Files on an SFTP source are
+     * downloaded with pipelined reads, others uploaded to the SFTP target
+     * with pipelined writes. The other end is accessed through commons-vfs.
+     *
+     * @param source
+     *            File to transfer
+     * @param target
+     *            File to write
+     * @param limiters
+     *            Bandwidth limiters each transferred block waits for
+     * @return Amount of bytes transferred
+     * @throws FileSystemException
+     *             If the transfer fails
+     */
+    long transfer(FileObject source, FileObject target, List<VfsBandwidthLimiter> limiters)
+            throws FileSystemException {
+        boolean download = isSftp(source);
+        final ChannelSftp channel = channelFor(download ? source : target);
+        Monitor monitor = new Monitor(limiters);
+        Closeable stream = null;
+        try {
+            // watched before the local stream is opened, opening may hang as well
+            monitor.watch(source, channel);
+            if (download) {
+                OutputStream outputStream = target.getContent().getOutputStream();
+                stream = outputStream;
+                monitor.watchStream(outputStream);
+                channel.get(pathOf(source), outputStream, monitor);
+                outputStream.close();
+            } else {
+                InputStream inputStream = source.getContent().getInputStream();
+                stream = inputStream;
+                monitor.watchStream(inputStream);
+                channel.put(inputStream, pathOf(target), monitor, ChannelSftp.OVERWRITE);
+            }
+            monitor.checkFailed();
+            return monitor.bytes;
+        } catch (SftpException e) {
+            monitor.checkFailed();
+            throw new FileSystemException("Pipelined SFTP transfer of " + source.getName().getFriendlyURI()
+                    + " failed", e);
+        } catch (FileSystemException e) {
+            throw e;
+        } catch (IOException e) {
+            monitor.checkFailed();
+            throw new FileSystemException("Pipelined SFTP transfer of " + source.getName().getFriendlyURI()
+                    + " failed", e);
+        } finally {
+            monitor.finish();
+            closeQuietly(stream);
+            try {
+                // written outside commons-vfs, so cached attributes are stale
+                target.refresh();
+            } catch (FileSystemException e) {
+                log.debug("Could not refresh " + target.getName().getFriendlyURI(), e);
+            }
+        }
+    }
+
+    /**
+     * Closes all channels and sessions opened by this pipeline and releases
+     * their bulkhead slots.
+     */
+    @Override
+    public void close() {
+        for (ChannelSftp channel : channels.values()) {
+            disconnect(channel);
+        }
+        channels.clear();
+        for (VfsBulkhead bulkhead : reserved.values()) {
+            if (bulkhead != null) {
+                bulkhead.exit();
+            }
+        }
+        reserved.clear();
+    }
+
+    /**
+     * Helper method to get the channel of the server given file is on,
+     * opening a new session if there is none or it has been closed.
+     *
+     * @param file
+     *            File on an SFTP server
+     * @return Connected channel
+     * @throws FileSystemException
+     *             If connecting fails
+     */
+    private ChannelSftp channelFor(FileObject file) throws FileSystemException {
+        GenericFileName name = (GenericFileName) file.getName();
+        int port = name.getPort() > 0 ? name.getPort() : name.getDefaultPort();
+        String key = keyOf(name);
+        if (!reserved.containsKey(key)) {
+            throw new IllegalStateException("no session reserved for " + key);
+        }
+        ChannelSftp channel = channels.remove(key);
+        if (channel != null && channel.isConnected()) {
+            channels.put(key, channel);
+            return channel;
+        }
+        if (channel != null) {
+            disconnect(channel);
+        }
+
+        Session session = null;
+        try {
+            JSch jsch = new JSch();
+            if (options.getSftpAuthKeyPath() != null) {
+                jsch.setIdentityRepository(VfsSftpIdentityCache.identityRepository(jsch, options.getSftpAuthKeyPath()));
+            } else {
+                VfsSftpIdentityCache.installKnownHosts(jsch);
+            }
+            session = jsch.getSession(name.getUserName(), name.getHostName(), port);
+            if (name.getPassword() != null) {
+                session.setPassword(name.getPassword());
+            }
+            // check host keys the same way the commons-vfs connection of the file does
+            session.setConfig("StrictHostKeyChecking", SftpFileSystemConfigBuilder.getInstance()
+                    .getStrictHostKeyChecking(file.getFileSystem().getFileSystemOptions()));
+            if (options.getSftpTimeout() > 0) {
+                session.setTimeout(options.getSftpTimeout());
+            }
+            session.connect();
+
+            channel = (ChannelSftp) session.openChannel(SFTP_SCHEME);
+            channel.setBulkRequests(options.getSftpQueueDepth());
+            channel.connect();
+            if (options.getUserDirIsRootOption() != null) {
+                channel.cd("/");
+            }
+            log.debug("Opened pipelined SFTP channel to " + name.getHostName() + ":" + port + " with queue depth "
+                    + options.getSftpQueueDepth());
+        } catch (JSchException e) {
+            if (session != null) {
+                session.disconnect();
+            }
+            throw new FileSystemException("Could not open pipelined SFTP channel to " + name.getHostName() + ":"
+                    + port, e);
+        } catch (SftpException e) {
+            disconnect(channel);
+            throw new FileSystemException("Could not change to root directory of " + name.getHostName() + ":"
+                    + port, e);
+        }
+        channels.put(key, channel);
+        return channel;
+    }
+
+    /**
+     * Helper method to get the key of the session given file name is
+     * accessed with.
+     *
+     * @param name
+     *            Name of a file on an SFTP server
+     * @return Session key
+     */
+    private static String keyOf(GenericFileName name) {
+        int port = name.getPort() > 0 ? name.getPort() : name.getDefaultPort();
+        return name.getUserName() + "@" + name.getHostName() + ":" + port;
+    }
+
+    /**
+     * Helper method to get the path of a file for the channel, relative to
+     * the user directory unless the root is used, as commons-vfs does.
+     *
+     * @param file
+     *            File on an SFTP server
+     * @return Path of the file
+     * @throws FileSystemException
+     *             If the path cannot be decoded
+     */
+    private static String pathOf(FileObject file) throws FileSystemException {
+        String path = file.getName().getPathDecoded();
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    /**
+     * Helper method to disconnect a channel and its session.
+     *
+     * @param channel
+     *            Channel to disconnect, or null
+     */
+    private static void disconnect(ChannelSftp channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            Session session = channel.getSession();
+            channel.disconnect();
+            session.disconnect();
+        } catch (JSchException e) {
+            log.debug("Could not disconnect SFTP session", e);
+        }
+    }
+
+    /**
+     * Helper method to close a stream, ignoring failures.
+     *
+     * @param stream
+     *            Stream to close, or null
+     */
+    private static void closeQuietly(Closeable stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.debug("Could not close stream", e);
+        }
+    }
+
+    /**
+     * Progress monitor counting transferred bytes, waiting for bandwidth and
+     * reporting progress to the watchdog. JSch calls it from the transferring
+     * thread after each block.
+     */
+    private final class Monitor implements SftpProgressMonitor {
+        private final List<VfsBandwidthLimiter> limiters;
+        private VfsTransferWatchdog.Transfer transfer;
+        private InterruptedIOException interrupted;
+        private long bytes;
+
+        Monitor(List<VfsBandwidthLimiter> limiters) {
+            this.limiters = limiters;
+        }
+
+        /**
+         * Starts watching the transfer if watchdog timeouts are set. An
+         * aborted transfer disconnects the channel, as closing the local
+         * stream does not wake up a thread waiting for the server.
+         */
+        void watch(FileObject source, final ChannelSftp channel) {
+            if (options.getReadIdleTimeout() > 0 || options.getMaxTransferTime() > 0) {
+                transfer = VfsTransferWatchdog.getInstance().watch(source.getName().getFriendlyURI(),
+                        options.getReadIdleTimeout(), options.getMaxTransferTime(), new Closeable() {
+                            @Override
+                            public void close() {
+                                disconnect(channel);
+                            }
+                        });
+            }
+        }
+
+        /**
+         * Adds the local stream of the transfer to the streams closed when
+         * the transfer is aborted.
+         */
+        void watchStream(Closeable stream) {
+            if (transfer != null) {
+                transfer.watchStream(stream);
+            }
+        }
+
+        /**
+         * Throws the reason the transfer was stopped by this monitor or the
+         * watchdog, if any.
+         */
+        void checkFailed() throws FileSystemException {
+            if (transfer != null) {
+                transfer.checkAborted();
+            }
+            if (interrupted != null) {
+                throw new FileSystemException("Interrupted while waiting for bandwidth", interrupted);
+            }
+        }
+
+        void finish() {
+            if (transfer != null) {
+                transfer.finish();
+            }
+        }
+
+        @Override
+        public void init(int op, String src, String dest, long max) {
+            // size is not needed
+        }
+
+        @Override
+        public boolean count(long count) {
+            try {
+                VfsBandwidthLimiter.acquireAll(limiters, count, transfer);
+            } catch (InterruptedIOException e) {
+                // cancels the transfer
+                interrupted = e;
+                return false;
+            }
+            if (transfer != null) {
+                try {
+                    transfer.progress();
+                } catch (VfsTransferAbortedException e) {
+                    // rethrown by checkFailed
+                    return false;
+                }
+            }
+            bytes += count;
+            return true;
+        }
+
+        @Override
+        public void end() {
+            // completion is handled by the caller
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Service provider interface for stages transforming file content on its
+ * way from source to target, e.g. encryption or charset conversion. Stages
+ * are declared in the mediator configuration and chained into the copy loop,
+ * so that all of them are applied in a single streaming pass.
+ * <p>
+ * A stage is created once per mediator and shared by concurrent transfers,
+ * so implementations must be thread safe; state of a single transfer
+ * belongs to the stream returned by {@link #open(InputStream, String)}.
+ * Working buffers of the stream should be taken from {@link VfsBufferPool}
+ * and released when the stream is closed, so that transfers share them
+ * instead of allocating per file. Implementations need a public no-argument
+ * constructor.
+ */
+public interface VfsStreamStage {
+
+    /**
+     * Initializes the stage with properties from the mediator
+     * configuration. Called once before the stage is used.
+     *
+     * @param properties
+     *            Stage properties by name, never null
+     * @throws IllegalArgumentException
+     *             If the properties are not valid for the stage
+     */
+    void init(Map<String, String> properties);
+
+    /**
+     * Opens the transformed stream of a single transfer. Closing the
+     * returned stream must close the given stream and release the buffers
+     * the stream took from {@link VfsBufferPool}.
+     *
+     * @param source
+     *            Content coming from the previous stage, or from the source
+     *            file for the first stage
+     * @param fileName
+     *            Name of the transferred source file
+     * @return Stream of transformed content
+     * @throws IOException
+     *             If opening the stream fails
+     */
+    InputStream open(InputStream source, String fileName) throws IOException;
+
+    /**
+     * Returns name of the target file, e.g. with an extension for the
+     * transformed content added.
+     *
+     * @param fileName
+     *            Name given by the previous stage, or by the target file
+     *            prefix and suffix settings for the first stage
+     * @return Target file name
+     */
+    String targetFileName(String fileName);
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bean class containing the configuration of a single stream stage and the
+ * stage created from it.
+ *
+ */
+public final class VfsStreamStageConfig {
+    private final String className;
+    private final Map<String, String> properties;
+    private final VfsStreamStage stage;
+
+    /**
+     * Class constructor. Creates and initializes the stage.
+     *
+     * @param className
+     *            Fully qualified name of the {@link VfsStreamStage}
+     *            implementation
+     * @param properties
+     *            Stage properties by name
+     * @throws IllegalArgumentException
+     *             If the class cannot be instantiated as a stage or rejects
+     *             the properties
+     */
+    public VfsStreamStageConfig(String className, Map<String, String> properties) {
+        if (className == null) {
+            throw new IllegalArgumentException("stage class not set");
+        }
+        this.className = className;
+        this.properties = Collections.unmodifiableMap(properties == null ? new LinkedHashMap<String, String>()
+                : new LinkedHashMap<String, String>(properties));
+        this.stage = createStage(className);
+        stage.init(this.properties);
+    }
+
+    /**
+     * Returns name of the stage class.
+     *
+     * @return Fully qualified class name
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns stage properties.
+     *
+     * @return Properties by name, in configuration order
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns the initialized stage.
+     *
+     * @return Stream stage
+     */
+    public VfsStreamStage getStage() {
+        return stage;
+    }
+
+    /**
+     * Helper method to instantiate the stage class, first with the class
+     * loader of this bundle and then with the context class loader.
+     *
+     * @param className
+     *            Fully qualified class name
+     * @return New stage instance
+     * @throws IllegalArgumentException
+     *             If the class cannot be instantiated as a stage
+     */
+    private static VfsStreamStage createStage(String className) {
+        Class<?> stageClass;
+        try {
+            stageClass = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+            try {
+                if (contextLoader == null) {
+                    throw e;
+                }
+                stageClass = contextLoader.loadClass(className);
+            } catch (ClassNotFoundException notFound) {
+                throw new IllegalArgumentException("stage class not found: " + className, notFound);
+            }
+        }
+        if (!VfsStreamStage.class.isAssignableFrom(stageClass)) {
+            throw new IllegalArgumentException(className + " does not implement " + VfsStreamStage.class.getName());
+        }
+        try {
+            return (VfsStreamStage) stageClass.newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException("cannot instantiate stage " + className, e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("cannot instantiate stage " + className, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+
+        VfsStreamStageConfig that = (VfsStreamStageConfig) o;
+
+        return className.equals(that.className) && properties.equals(that.properties);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * className.hashCode() + properties.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "className=" + className + ", properties=" + properties;
+    }
+}
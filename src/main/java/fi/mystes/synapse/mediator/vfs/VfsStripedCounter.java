@@ -0,0 +1,85 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free counter spreading updates over several cells, so that threads
+ * updating the same counter rarely contend on one memory location.
+ */
+final class VfsStripedCounter {
+
+    private static final int STRIPES = stripes();
+    // cells are spaced apart so that stripes do not share a cache line
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Adds given value to the counter.
+     *
+     * @param value
+     *            Value to add
+     */
+    void add(long value) {
+        cells.getAndAdd((int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING, value);
+    }
+
+    /**
+     * Increments the counter by one.
+     */
+    void increment() {
+        add(1);
+    }
+
+    /**
+     * Returns current value of the counter. Not atomic with respect to
+     * concurrent updates.
+     *
+     * @return Sum of all cells
+     */
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * Resets the counter to zero.
+     */
+    void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i * PADDING, 0);
+        }
+    }
+
+    /**
+     * Helper method to calculate amount of stripes, a power of two at least
+     * twice the amount of processors.
+     *
+     * @return Amount of stripes
+     */
+    private static int stripes() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() * 2) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
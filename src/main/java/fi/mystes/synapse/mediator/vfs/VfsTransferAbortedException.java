@@ -0,0 +1,40 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import org.apache.commons.vfs2.FileSystemException;
+
+/**
+ * Exception thrown when the stalled transfer watchdog aborts a file
+ * transfer. These are only retried when resuming is enabled, as the retry
+ * then continues from the partial target file instead of repeating the
+ * whole transfer on a connection that may not be trusted.
+ *
+ */
+public class VfsTransferAbortedException extends FileSystemException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     *
+     * @param message
+     *            Reason the transfer was aborted
+     */
+    public VfsTransferAbortedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,534 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fi.mystes.synapse.mediator.vfs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer metrics of a single mediator instance, registered as a JMX MBean.
+ * Recording uses striped lock-free counters, so it is cheap on the hot path.
+ */
+public class VfsTransferMetrics implements VfsTransferMetricsMBean {
+
+    private final VfsStripedCounter filesCopied = new VfsStripedCounter();
+    private final VfsStripedCounter filesMoved = new VfsStripedCounter();
+    private final VfsStripedCounter filesArchived = new VfsStripedCounter();
+    private final VfsStripedCounter bytesCopied = new VfsStripedCounter();
+    private final VfsStripedCounter bytesMoved = new VfsStripedCounter();
+    private final VfsStripedCounter bytesArchived = new VfsStripedCounter();
+    private final VfsStripedCounter retries = new VfsStripedCounter();
+    private final VfsStripedCounter lockConflicts = new VfsStripedCounter();
+    private final VfsStripedCounter failures = new VfsStripedCounter();
+    private final VfsStripedCounter abortedTransfers = new VfsStripedCounter();
+    private final VfsStripedCounter resumedTransfers = new VfsStripedCounter();
+    private final VfsStripedCounter bytesResumed = new VfsStripedCounter();
+    private final VfsStripedCounter filesSkipped = new VfsStripedCounter();
+    private final VfsStripedCounter uncompressedBytes = new VfsStripedCounter();
+    private final VfsStripedCounter compressedBytes = new VfsStripedCounter();
+    private final VfsStripedCounter copyTransfers = new VfsStripedCounter();
+    private final VfsStripedCounter inMemoryTransfers = new VfsStripedCounter();
+    private final VfsStripedCounter streamingTransfers = new VfsStripedCounter();
+    private final VfsStripedCounter chunkedTransfers = new VfsStripedCounter();
+    private final VfsStripedCounter pipelinedTransfers = new VfsStripedCounter();
+
+    private final VfsLatencyHistogram listLatency = new VfsLatencyHistogram();
+    private final VfsLatencyHistogram lockLatency = new VfsLatencyHistogram();
+    private final VfsLatencyHistogram transferLatency = new VfsLatencyHistogram();
+    private final VfsLatencyHistogram deleteLatency = new VfsLatencyHistogram();
+
+    private volatile long resetAt = System.nanoTime();
+
+    /**
+     * Records a file copied to target directory.
+     *
+     * @param bytes
+     *            Size of the file
+     */
+    void fileCopied(long bytes) {
+        filesCopied.increment();
+        bytesCopied.add(bytes);
+    }
+
+    /**
+     * Records a file moved to target directory.
+     *
+     * @param bytes
+     *            Size of the file
+     */
+    void fileMoved(long bytes) {
+        filesMoved.increment();
+        bytesMoved.add(bytes);
+    }
+
+    /**
+     * Records a file copied to archive directory.
+     *
+     * @param bytes
+     *            Size of the file
+     */
+    void fileArchived(long bytes) {
+        filesArchived.increment();
+        bytesArchived.add(bytes);
+    }
+
+    /**
+     * Records a retried remote call.
+     */
+    void retry() {
+        retries.increment();
+    }
+
+    /**
+     * Records a lock file that already existed.
+     */
+    void lockConflict() {
+        lockConflicts.increment();
+    }
+
+    /**
+     * Records a failed operation.
+     */
+    void failure() {
+        failures.increment();
+    }
+
+    /**
+     * Records a transfer aborted by the stalled transfer watchdog.
+     */
+    void transferAborted() {
+        abortedTransfers.increment();
+    }
+
+    /**
+     * Records a streaming transfer resumed after a failure.
+     *
+     * @param offset
+     *            Bytes already in the target file, not transferred again
+     */
+    void transferResumed(long offset) {
+        resumedTransfers.increment();
+        bytesResumed.add(offset);
+    }
+
+    /**
+     * Records a source file not copied because its target is unchanged.
+     */
+    void fileSkipped() {
+        filesSkipped.increment();
+    }
+
+    /**
+     * Records a file compressed or decompressed during transfer.
+     *
+     * @param uncompressed
+     *            Size of the uncompressed content in bytes
+     * @param compressed
+     *            Size of the compressed content in bytes
+     */
+    void transferCompressed(long uncompressed, long compressed) {
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+    }
+
+    /**
+     * Records the strategy a file was transferred with.
+     *
+     * @param strategy
+     *            Transfer strategy used
+     */
+    void transferStrategy(VfsTransferStrategy strategy) {
+        switch (strategy) {
+        case IN_MEMORY:
+            inMemoryTransfers.increment();
+            break;
+        case STREAMING:
+            streamingTransfers.increment();
+            break;
+        case CHUNKED:
+            chunkedTransfers.increment();
+            break;
+        case PIPELINED:
+            pipelinedTransfers.increment();
+            break;
+        default:
+            copyTransfers.increment();
+        }
+    }
+
+    /**
+     * Records duration of source directory listing.
+     *
+     * @param nanos
+     *            Duration in nanoseconds
+     */
+    void recordList(long nanos) {
+        listLatency.record(nanos);
+    }
+
+    /**
+     * Records duration of lock file creation or of a wait for a bulkhead
+     * slot.
+     *
+     * @param nanos
+     *            Duration in nanoseconds
+     */
+    void recordLock(long nanos) {
+        lockLatency.record(nanos);
+    }
+
+    /**
+     * Records duration of file transfer.
+     *
+     * @param nanos
+     *            Duration in nanoseconds
+     */
+    void recordTransfer(long nanos) {
+        transferLatency.record(nanos);
+    }
+
+    /**
+     * Records duration of source and lock file deletion.
+     *
+     * @param nanos
+     *            Duration in nanoseconds
+     */
+    void recordDelete(long nanos) {
+        deleteLatency.record(nanos);
+    }
+
+    @Override
+    public long getFilesCopied() {
+        return filesCopied.sum();
+    }
+
+    @Override
+    public long getFilesMoved() {
+        return filesMoved.sum();
+    }
+
+    @Override
+    public long getFilesArchived() {
+        return filesArchived.sum();
+    }
+
+    @Override
+    public long getBytesCopied() {
+        return bytesCopied.sum();
+    }
+
+    @Override
+    public long getBytesMoved() {
+        return bytesMoved.sum();
+    }
+
+    @Override
+    public long getBytesArchived() {
+        return bytesArchived.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getLockConflicts() {
+        return lockConflicts.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getAbortedTransfers() {
+        return abortedTransfers.sum();
+    }
+
+    @Override
+    public long getResumedTransfers() {
+        return resumedTransfers.sum();
+    }
+
+    @Override
+    public long getBytesResumed() {
+        return bytesResumed.sum();
+    }
+
+    @Override
+    public long getFilesSkipped() {
+        return filesSkipped.sum();
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    @Override
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        long uncompressed = uncompressedBytes.sum();
+        return uncompressed == 0 ? 0 : (double) compressedBytes.sum() / uncompressed;
+    }
+
+    @Override
+    public long getCopyTransfers() {
+        return copyTransfers.sum();
+    }
+
+    @Override
+    public long getInMemoryTransfers() {
+        return inMemoryTransfers.sum();
+    }
+
+    @Override
+    public long getStreamingTransfers() {
+        return streamingTransfers.sum();
+    }
+
+    @Override
+    public long getChunkedTransfers() {
+        return chunkedTransfers.sum();
+    }
+
+    @Override
+    public long getPipelinedTransfers() {
+        return pipelinedTransfers.sum();
+    }
+
+    @Override
+    public double getFilesCopiedRate() {
+        return rate(filesCopied.sum());
+    }
+
+    @Override
+    public double getFilesMovedRate() {
+        return rate(filesMoved.sum());
+    }
+
+    @Override
+    public double getFilesArchivedRate() {
+        return rate(filesArchived.sum());
+    }
+
+    @Override
+    public double getBytesCopiedRate() {
+        return rate(bytesCopied.sum());
+    }
+
+    @Override
+    public double getBytesMovedRate() {
+        return rate(bytesMoved.sum());
+    }
+
+    @Override
+    public double getBytesArchivedRate() {
+        return rate(bytesArchived.sum());
+    }
+
+    @Override
+    public long getListLatencyCount() {
+        return listLatency.getCount();
+    }
+
+    @Override
+    public double getListLatencyMean() {
+        return listLatency.getMeanMillis();
+    }
+
+    @Override
+    public long getListLatencyP50() {
+        return listLatency.getPercentileMillis(50);
+    }
+
+    @Override
+    public long getListLatencyP95() {
+        return listLatency.getPercentileMillis(95);
+    }
+
+    @Override
+    public long getListLatencyP99() {
+        return listLatency.getPercentileMillis(99);
+    }
+
+    @Override
+    public long getListLatencyMax() {
+        return listLatency.getMaxMillis();
+    }
+
+    @Override
+    public String getListLatencyHistogram() {
+        return listLatency.getBuckets();
+    }
+
+    @Override
+    public long getLockLatencyCount() {
+        return lockLatency.getCount();
+    }
+
+    @Override
+    public double getLockLatencyMean() {
+        return lockLatency.getMeanMillis();
+    }
+
+    @Override
+    public long getLockLatencyP50() {
+        return lockLatency.getPercentileMillis(50);
+    }
+
+    @Override
+    public long getLockLatencyP95() {
+        return lockLatency.getPercentileMillis(95);
+    }
+
+    @Override
+    public long getLockLatencyP99() {
+        return lockLatency.getPercentileMillis(99);
+    }
+
+    @Override
+    public long getLockLatencyMax() {
+        return lockLatency.getMaxMillis();
+    }
+
+    @Override
+    public String getLockLatencyHistogram() {
+        return lockLatency.getBuckets();
+    }
+
+    @Override
+    public long getTransferLatencyCount() {
+        return transferLatency.getCount();
+    }
+
+    @Override
+    public double getTransferLatencyMean() {
+        return transferLatency.getMeanMillis();
+    }
+
+    @Override
+    public long getTransferLatencyP50() {
+        return transferLatency.getPercentileMillis(50);
+    }
+
+    @Override
+    public long getTransferLatencyP95() {
+        return transferLatency.getPercentileMillis(95);
+    }
+
+    @Override
+    public long getTransferLatencyP99() {
+        return transferLatency.getPercentileMillis(99);
+    }
+
+    @Override
+    public long getTransferLatencyMax() {
+        return transferLatency.getMaxMillis();
+    }
+
+    @Override
+    public String getTransferLatencyHistogram() {
+        return transferLatency.getBuckets();
+    }
+
+    @Override
+    public long getDeleteLatencyCount() {
+        return deleteLatency.getCount();
+    }
+
+    @Override
+    public double getDeleteLatencyMean() {
+        return deleteLatency.getMeanMillis();
+    }
+
+    @Override
+    public long getDeleteLatencyP50() {
+        return deleteLatency.getPercentileMillis(50);
+    }
+
+    @Override
+    public long getDeleteLatencyP95() {
+        return deleteLatency.getPercentileMillis(95);
+    }
+
+    @Override
+    public long getDeleteLatencyP99() {
+        return deleteLatency.getPercentileMillis(99);
+    }
+
+    @Override
+    public long getDeleteLatencyMax() {
+        return deleteLatency.getMaxMillis();
+    }
+
+    @Override
+    public String getDeleteLatencyHistogram() {
+        return deleteLatency.getBuckets();
+    }
+
+    @Override
+    public long getSecondsSinceReset() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - resetAt);
+    }
+
+    @Override
+    public void resetStatistics() {
+        filesCopied.reset();
+        filesMoved.reset();
+        filesArchived.reset();
+        bytesCopied.reset();
+        bytesMoved.reset();
+        bytesArchived.reset();
+        retries.reset();
+        lockConflicts.reset();
+        failures.reset();
+        abortedTransfers.reset();
+        resumedTransfers.reset();
+        bytesResumed.reset();
+        filesSkipped.reset();
+        uncompressedBytes.reset();
+        compressedBytes.reset();
+        copyTransfers.reset();
+        inMemoryTransfers.reset();
+        streamingTransfers.reset();
+        chunkedTransfers.reset();
+        pipelinedTransfers.reset();
+        listLatency.reset();
+        lockLatency.reset();
+        transferLatency.reset();
+        deleteLatency.reset();
+        resetAt = System.nanoTime();
+    }
+
+    /**
+     * Helper method to calculate average rate since last reset.
+     *
+     * @param count
+     *            Counter value
+     * @return Average per second
+     */
+    private double rate(long count) {
+        long elapsed = System.nanoTime() - resetAt;
+        return elapsed <= 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+}
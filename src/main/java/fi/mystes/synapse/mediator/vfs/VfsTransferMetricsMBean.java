@@ -0,0 +1,313 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fi.mystes.synapse.mediator.vfs;
+
+/**
+ * JMX management interface of {@link VfsTransferMetrics}. Counters and rates
+ * are cumulative since the mediator was deployed or statistics were reset,
+ * latencies are in milliseconds.
+ */
+public interface VfsTransferMetricsMBean {
+
+    /**
+     * @return Amount of files copied to target directory
+     */
+    long getFilesCopied();
+
+    /**
+     * @return Amount of files moved to target directory
+     */
+    long getFilesMoved();
+
+    /**
+     * @return Amount of files copied to archive directory
+     */
+    long getFilesArchived();
+
+    /**
+     * @return Amount of bytes copied to target directory
+     */
+    long getBytesCopied();
+
+    /**
+     * @return Amount of bytes moved to target directory
+     */
+    long getBytesMoved();
+
+    /**
+     * @return Amount of bytes copied to archive directory
+     */
+    long getBytesArchived();
+
+    /**
+     * @return Amount of retried remote calls
+     */
+    long getRetries();
+
+    /**
+     * @return Amount of lock conflicts, i.e. lock files that already existed
+     */
+    long getLockConflicts();
+
+    /**
+     * @return Amount of failed operations
+     */
+    long getFailures();
+
+    /**
+     * @return Amount of transfers aborted for stalling or running too long
+     */
+    long getAbortedTransfers();
+
+    /**
+     * @return Amount of streaming transfers resumed after a failure
+     */
+    long getResumedTransfers();
+
+    /**
+     * @return Bytes not transferred again thanks to resumed transfers
+     */
+    long getBytesResumed();
+
+    /**
+     * @return Amount of files not copied because their target was unchanged
+     */
+    long getFilesSkipped();
+
+    /**
+     * @return Uncompressed size of files compressed or decompressed during
+     *         transfer
+     */
+    long getUncompressedBytes();
+
+    /**
+     * @return Compressed size of files compressed or decompressed during
+     *         transfer
+     */
+    long getCompressedBytes();
+
+    /**
+     * @return Compressed size divided by uncompressed size of files
+     *         compressed or decompressed during transfer, 0 if none
+     */
+    double getCompressionRatio();
+
+    /**
+     * @return Amount of files transferred by commons-vfs copy
+     */
+    long getCopyTransfers();
+
+    /**
+     * @return Amount of files copied with a buffer sized to the file
+     */
+    long getInMemoryTransfers();
+
+    /**
+     * @return Amount of files transferred by streaming
+     */
+    long getStreamingTransfers();
+
+    /**
+     * @return Amount of files transferred in parallel chunks
+     */
+    long getChunkedTransfers();
+
+    /**
+     * @return Amount of files transferred with pipelined SFTP requests
+     */
+    long getPipelinedTransfers();
+
+    /**
+     * @return Average files copied to target directory per second
+     */
+    double getFilesCopiedRate();
+
+    /**
+     * @return Average files moved to target directory per second
+     */
+    double getFilesMovedRate();
+
+    /**
+     * @return Average files copied to archive directory per second
+     */
+    double getFilesArchivedRate();
+
+    /**
+     * @return Average bytes copied to target directory per second
+     */
+    double getBytesCopiedRate();
+
+    /**
+     * @return Average bytes moved to target directory per second
+     */
+    double getBytesMovedRate();
+
+    /**
+     * @return Average bytes copied to archive directory per second
+     */
+    double getBytesArchivedRate();
+
+    /**
+     * @return Amount of measured source directory listing phases
+     */
+    long getListLatencyCount();
+
+    /**
+     * @return Mean source directory listing latency
+     */
+    double getListLatencyMean();
+
+    /**
+     * @return Median source directory listing latency
+     */
+    long getListLatencyP50();
+
+    /**
+     * @return 95th percentile source directory listing latency
+     */
+    long getListLatencyP95();
+
+    /**
+     * @return 99th percentile source directory listing latency
+     */
+    long getListLatencyP99();
+
+    /**
+     * @return Maximum source directory listing latency
+     */
+    long getListLatencyMax();
+
+    /**
+     * @return Source directory listing latency histogram bucket counts
+     */
+    String getListLatencyHistogram();
+
+    /**
+     * @return Amount of measured lock file creation phases
+     */
+    long getLockLatencyCount();
+
+    /**
+     * @return Mean lock file creation latency
+     */
+    double getLockLatencyMean();
+
+    /**
+     * @return Median lock file creation latency
+     */
+    long getLockLatencyP50();
+
+    /**
+     * @return 95th percentile lock file creation latency
+     */
+    long getLockLatencyP95();
+
+    /**
+     * @return 99th percentile lock file creation latency
+     */
+    long getLockLatencyP99();
+
+    /**
+     * @return Maximum lock file creation latency
+     */
+    long getLockLatencyMax();
+
+    /**
+     * @return Lock file creation latency histogram bucket counts
+     */
+    String getLockLatencyHistogram();
+
+    /**
+     * @return Amount of measured file transfer phases
+     */
+    long getTransferLatencyCount();
+
+    /**
+     * @return Mean file transfer latency
+     */
+    double getTransferLatencyMean();
+
+    /**
+     * @return Median file transfer latency
+     */
+    long getTransferLatencyP50();
+
+    /**
+     * @return 95th percentile file transfer latency
+     */
+    long getTransferLatencyP95();
+
+    /**
+     * @return 99th percentile file transfer latency
+     */
+    long getTransferLatencyP99();
+
+    /**
+     * @return Maximum file transfer latency
+     */
+    long getTransferLatencyMax();
+
+    /**
+     * @return File transfer latency histogram bucket counts
+     */
+    String getTransferLatencyHistogram();
+
+    /**
+     * @return Amount of measured source and lock file deletion phases
+     */
+    long getDeleteLatencyCount();
+
+    /**
+     * @return Mean source and lock file deletion latency
+     */
+    double getDeleteLatencyMean();
+
+    /**
+     * @return Median source and lock file deletion latency
+     */
+    long getDeleteLatencyP50();
+
+    /**
+     * @return 95th percentile source and lock file deletion latency
+     */
+    long getDeleteLatencyP95();
+
+    /**
+     * @return 99th percentile source and lock file deletion latency
+     */
+    long getDeleteLatencyP99();
+
+    /**
+     * @return Maximum source and lock file deletion latency
+     */
+    long getDeleteLatencyMax();
+
+    /**
+     * @return Source and lock file deletion latency histogram bucket counts
+     */
+    String getDeleteLatencyHistogram();
+
+    /**
+     * @return Seconds since statistics were last reset
+     */
+    long getSecondsSinceReset();
+
+    /**
+     * Resets all counters and histograms.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+/**
+ * Ways of copying file content from source to target.
+ */
+public enum VfsTransferStrategy {
+
+    /**
+     * Copied by commons-vfs with its default buffering.
+     */
+    COPY,
+
+    /**
+     * Copied block by block through a pooled buffer sized to the listed file
+     * size instead of the streaming block size.
+     */
+    IN_MEMORY,
+
+    /**
+     * Streamed block by block, optionally resuming after failures.
+     */
+    STREAMING,
+
+    /**
+     * Split into byte ranges copied concurrently with random access reads
+     * and writes, then renamed to the target once all ranges are complete.
+     */
+    CHUNKED,
+
+    /**
+     * Downloaded from or uploaded to an SFTP server with several read or
+     * write requests in flight at a time.
+     */
+    PIPELINED
+}
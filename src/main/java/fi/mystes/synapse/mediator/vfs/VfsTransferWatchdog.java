@@ -0,0 +1,288 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Watchdog aborting file transfers that make no progress for the read idle
+ * timeout or run longer than the maximum transfer time. A transfer blocked
+ * on a half-dead connection is aborted by closing its streams from the
+ * watchdog thread, which makes the blocked read or write fail.
+ */
+public class VfsTransferWatchdog {
+
+    private static final Log log = LogFactory.getLog(VfsTransferWatchdog.class);
+
+    static final long CHECK_INTERVAL = 250;
+
+    private static final VfsTransferWatchdog instance = new VfsTransferWatchdog(true);
+
+    private final ConcurrentMap<Transfer, Boolean> transfers = new ConcurrentHashMap<Transfer, Boolean>();
+    private final boolean scheduled;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param scheduled
+     *            True to check transfers periodically in a background
+     *            thread, false to check only when {@link #check()} is called
+     */
+    VfsTransferWatchdog(boolean scheduled) {
+        this.scheduled = scheduled;
+    }
+
+    /**
+     * Returns the shared watchdog instance.
+     *
+     * @return Watchdog
+     */
+    public static VfsTransferWatchdog getInstance() {
+        return instance;
+    }
+
+    /**
+     * Starts watching a transfer. The returned handle must be finished when
+     * the transfer ends.
+     *
+     * @param name
+     *            Name of the transferred file for error messages
+     * @param readIdleTimeout
+     *            Milliseconds without progress after which the transfer is
+     *            aborted, 0 to not limit
+     * @param maxTransferTime
+     *            Milliseconds after which the transfer is aborted, 0 to not
+     *            limit
+     * @param streams
+     *            Streams to close when the transfer is aborted; streams
+     *            opened later are added with {@link Transfer#watchStream}
+     * @return Transfer handle
+     */
+    public Transfer watch(String name, long readIdleTimeout, long maxTransferTime, Closeable... streams) {
+        Transfer transfer = new Transfer(name, readIdleTimeout, maxTransferTime, streams, currentTimeMillis());
+        transfers.put(transfer, Boolean.TRUE);
+        if (scheduled) {
+            ensureScheduled();
+        }
+        return transfer;
+    }
+
+    /**
+     * Aborts watched transfers exceeding their timeouts.
+     */
+    void check() {
+        long now = currentTimeMillis();
+        for (Transfer transfer : transfers.keySet()) {
+            String reason = transfer.timeoutReason(now);
+            if (reason != null) {
+                transfers.remove(transfer);
+                log.warn("Aborting transfer of " + transfer.name + ": " + reason);
+                transfer.abort(reason);
+            }
+        }
+    }
+
+    /**
+     * Returns amount of transfers being watched. Visible for tests.
+     *
+     * @return Amount of watched transfers
+     */
+    int getWatchedCount() {
+        return transfers.size();
+    }
+
+    /**
+     * Returns current time in milliseconds. Visible for tests.
+     *
+     * @return Current time in milliseconds
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Helper method to start the background checker on first use.
+     */
+    private synchronized void ensureScheduled() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "vfs-transfer-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    check();
+                } catch (RuntimeException e) {
+                    log.error("Transfer watchdog check failed", e);
+                }
+            }
+        }, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Handle of a watched transfer.
+     */
+    public class Transfer {
+        private final String name;
+        private final long readIdleTimeout;
+        private final long maxTransferTime;
+        private final List<Closeable> streams;
+        private final long startedAt;
+        private volatile long lastProgressAt;
+        private volatile boolean paused;
+        private volatile String abortReason;
+
+        private Transfer(String name, long readIdleTimeout, long maxTransferTime, Closeable[] streams,
+                long startedAt) {
+            this.name = name;
+            this.readIdleTimeout = readIdleTimeout;
+            this.maxTransferTime = maxTransferTime;
+            this.streams = new CopyOnWriteArrayList<Closeable>(Arrays.asList(streams));
+            this.startedAt = startedAt;
+            this.lastProgressAt = startedAt;
+        }
+
+        /**
+         * Records progress of the transfer.
+         *
+         * @throws VfsTransferAbortedException
+         *             If the transfer has been aborted
+         */
+        public void progress() throws VfsTransferAbortedException {
+            checkAborted();
+            lastProgressAt = currentTimeMillis();
+        }
+
+        /**
+         * Adds a stream opened after watching started to the streams closed
+         * when the transfer is aborted. A stream added to an already aborted
+         * transfer is closed right away.
+         *
+         * @param stream
+         *            Stream to close on abort
+         */
+        public void watchStream(Closeable stream) {
+            streams.add(stream);
+            if (abortReason != null) {
+                close(stream);
+            }
+        }
+
+        /**
+         * Stops the read idle clock while the transfer is waiting on purpose,
+         * e.g. for bandwidth. The maximum transfer time still applies.
+         */
+        public void pause() {
+            paused = true;
+        }
+
+        /**
+         * Restarts the read idle clock stopped with {@link #pause()}.
+         */
+        public void resume() {
+            lastProgressAt = currentTimeMillis();
+            paused = false;
+        }
+
+        /**
+         * Checks whether the transfer has been aborted.
+         *
+         * @throws VfsTransferAbortedException
+         *             If the transfer has been aborted
+         */
+        public void checkAborted() throws VfsTransferAbortedException {
+            String reason = abortReason;
+            if (reason != null) {
+                throw new VfsTransferAbortedException("Transfer of " + name + " aborted: " + reason);
+            }
+        }
+
+        /**
+         * Stops watching the transfer.
+         */
+        public void finish() {
+            transfers.remove(this);
+        }
+
+        /**
+         * Helper method to check whether the transfer exceeds its timeouts.
+         *
+         * @param now
+         *            Current time in milliseconds
+         * @return Reason to abort, or null if within limits
+         */
+        private String timeoutReason(long now) {
+            if (maxTransferTime > 0 && now - startedAt > maxTransferTime) {
+                return "running longer than " + maxTransferTime + " ms";
+            }
+            if (readIdleTimeout > 0 && !paused && now - lastProgressAt > readIdleTimeout) {
+                return "no progress for " + readIdleTimeout + " ms";
+            }
+            return null;
+        }
+
+        /**
+         * Helper method to abort the transfer by closing its streams.
+         *
+         * @param reason
+         *            Reason to abort
+         */
+        private void abort(String reason) {
+            abortReason = reason;
+            for (Closeable stream : streams) {
+                close(stream);
+            }
+        }
+
+        /**
+         * Helper method to close a stream of an aborted transfer.
+         *
+         * @param stream
+         *            Stream to close
+         */
+        private void close(Closeable stream) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // the stream is broken anyway
+            } catch (RuntimeException ignored) {
+                // closing from another thread is best effort
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder implementation of {@link VfsFlightRecorder}. This
+ * class is compiled for Java 11 from a separate source directory and loaded
+ * reflectively, so the rest of the mediator keeps its Java 6 target.
+ * <p>
+ * Events are enabled and thresholded with the usual JFR settings, e.g.
+ * <code>fi.mystes.vfs.FileTransfer#enabled=true</code>. When an event type
+ * is disabled the begin methods return null and no event is allocated.
+ */
+public class JfrVfsFlightRecorder extends VfsFlightRecorder {
+
+    private static final String CATEGORY = "VFS Mediator";
+
+    private static final EventType OPERATION = EventType.getEventType(OperationEvent.class);
+    private static final EventType LISTING = EventType.getEventType(ListingEvent.class);
+    private static final EventType LOCK_WAIT = EventType.getEventType(LockWaitEvent.class);
+    private static final EventType FILE_TRANSFER = EventType.getEventType(FileTransferEvent.class);
+    private static final EventType RETRY = EventType.getEventType(RetryEvent.class);
+
+    /**
+     * Fields shared by all VFS events.
+     */
+    @Category(CATEGORY)
+    @StackTrace(false)
+    abstract static class VfsEvent extends Event {
+        @Label("URI")
+        @Description("URI of the file or directory, password masked")
+        String uri;
+
+        @Label("Scheme")
+        String scheme;
+
+        /**
+         * Sets URI and scheme of the event.
+         *
+         * @param uri
+         *            URI without password
+         */
+        void setUri(String uri) {
+            this.uri = uri;
+            this.scheme = schemeOf(uri);
+        }
+    }
+
+    @Name("fi.mystes.vfs.Operation")
+    @Label("VFS Operation")
+    @Description("Copy or move operation of a VFS mediator")
+    static class OperationEvent extends VfsEvent {
+        @Label("Operation")
+        String operation;
+
+        @Label("Files")
+        int files;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("fi.mystes.vfs.Listing")
+    @Label("VFS Listing")
+    @Description("Listing of a source directory")
+    static class ListingEvent extends VfsEvent {
+        @Label("Entries")
+        int entries;
+
+        @Label("Matched")
+        int matched;
+    }
+
+    @Name("fi.mystes.vfs.LockWait")
+    @Label("VFS Lock Wait")
+    @Description("Wait for a lock file or a bulkhead slot")
+    static class LockWaitEvent extends VfsEvent {
+        @Label("Lock")
+        String lock;
+
+        @Label("Acquired")
+        boolean acquired;
+    }
+
+    @Name("fi.mystes.vfs.FileTransfer")
+    @Label("VFS File Transfer")
+    @Description("Transfer of a single file to target or archive directory")
+    static class FileTransferEvent extends VfsEvent {
+        @Label("Target URI")
+        String targetUri;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("fi.mystes.vfs.Retry")
+    @Label("VFS Retry")
+    @Description("Failed call about to be retried")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class RetryEvent extends Event {
+        @Label("Cause")
+        String cause;
+
+        @Label("Wait")
+        @Timespan(Timespan.MILLISECONDS)
+        long wait;
+    }
+
+    @Override
+    Object beginOperation() {
+        return OPERATION.isEnabled() ? begin(new OperationEvent()) : null;
+    }
+
+    @Override
+    void endOperation(Object event, String operation, String uri, int files, boolean success) {
+        if (event == null) {
+            return;
+        }
+        OperationEvent e = (OperationEvent) event;
+        e.operation = operation;
+        e.files = files;
+        e.success = success;
+        commit(e, uri);
+    }
+
+    @Override
+    Object beginListing() {
+        return LISTING.isEnabled() ? begin(new ListingEvent()) : null;
+    }
+
+    @Override
+    void endListing(Object event, String uri, int entries, int matched) {
+        if (event == null) {
+            return;
+        }
+        ListingEvent e = (ListingEvent) event;
+        e.entries = entries;
+        e.matched = matched;
+        commit(e, uri);
+    }
+
+    @Override
+    Object beginLockWait() {
+        return LOCK_WAIT.isEnabled() ? begin(new LockWaitEvent()) : null;
+    }
+
+    @Override
+    void endLockWait(Object event, String lock, String uri, boolean acquired) {
+        if (event == null) {
+            return;
+        }
+        LockWaitEvent e = (LockWaitEvent) event;
+        e.lock = lock;
+        e.acquired = acquired;
+        commit(e, uri);
+    }
+
+    @Override
+    Object beginTransfer() {
+        return FILE_TRANSFER.isEnabled() ? begin(new FileTransferEvent()) : null;
+    }
+
+    @Override
+    void endTransfer(Object event, String sourceUri, String targetUri, long bytes) {
+        if (event == null) {
+            return;
+        }
+        FileTransferEvent e = (FileTransferEvent) event;
+        e.targetUri = targetUri;
+        e.bytes = bytes;
+        commit(e, sourceUri);
+    }
+
+    @Override
+    void retry(Throwable cause, long waitMillis) {
+        if (!RETRY.isEnabled()) {
+            return;
+        }
+        RetryEvent e = new RetryEvent();
+        if (e.shouldCommit()) {
+            e.cause = String.valueOf(cause.getMessage());
+            e.wait = waitMillis;
+            e.commit();
+        }
+    }
+
+    /**
+     * Helper method to begin given event. Callers check that the event type
+     * is enabled before allocating the event.
+     *
+     * @param event
+     *            Event to begin
+     * @return Event
+     */
+    private static Event begin(Event event) {
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Helper method to end and commit given event if it exceeds the
+     * configured threshold.
+     *
+     * @param event
+     *            Event to commit
+     * @param uri
+     *            URI of the event
+     */
+    private static void commit(VfsEvent event, String uri) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.setUri(uri);
+            event.commit();
+        }
+    }
+
+    /**
+     * Helper method to parse scheme of given URI.
+     *
+     * @param uri
+     *            URI
+     * @return Scheme, or null if URI has none
+     */
+    static String schemeOf(String uri) {
+        if (uri == null) {
+            return null;
+        }
+        int schemeEnd = uri.indexOf("://");
+        return schemeEnd <= 0 ? null : uri.substring(0, schemeEnd);
+    }
+}
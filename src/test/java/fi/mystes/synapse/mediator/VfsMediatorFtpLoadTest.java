@@ -0,0 +1,174 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.*;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.synapse.MessageContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.mystes.synapse.mediator.vfs.server.EmbeddedFtpServer;
+import fi.mystes.synapse.mediator.vfs.server.LoadTestReport;
+
+/**
+ * Load test running many mediator instances concurrently against an embedded
+ * FTP server. Each message moves files between two directories on the
+ * server, so listing, locking, transfer and delete all go over FTP. Excluded
+ * from the default build, run with <code>mvn test -Pload-tests</code>. The
+ * load is tuned with system properties:
+ * <ul>
+ * <li>vfs.loadtest.mediators - concurrent mediator instances (8)</li>
+ * <li>vfs.loadtest.messages - messages mediated by each instance (20)</li>
+ * <li>vfs.loadtest.files - files moved per message (5)</li>
+ * <li>vfs.loadtest.fileSize - size of each file in bytes (16384)</li>
+ * <li>vfs.loadtest.commandLatencyMs - latency of each FTP command (2)</li>
+ * <li>vfs.loadtest.maxLogins - concurrent login limit of the server (100)</li>
+ * </ul>
+ */
+public class VfsMediatorFtpLoadTest {
+
+    private final int mediators = Integer.getInteger("vfs.loadtest.mediators", 8);
+    private final int messages = Integer.getInteger("vfs.loadtest.messages", 20);
+    private final int files = Integer.getInteger("vfs.loadtest.files", 5);
+    private final int fileSize = Integer.getInteger("vfs.loadtest.fileSize", 16384);
+
+    private EmbeddedFtpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new EmbeddedFtpServer(new File("target/vfs-ftp-load-test"));
+        server.setMaxLogins(Integer.getInteger("vfs.loadtest.maxLogins", 100));
+        server.start();
+        server.setCommandLatencyMillis(Long.getLong("vfs.loadtest.commandLatencyMs", 2));
+    }
+
+    @After
+    public void tearDown() throws FileSystemException {
+        server.stop();
+        deleteDirectory(server.getRootDirectory().toURI().toString());
+    }
+
+    @Test
+    public void concurrentMediatorsMoveFilesInPassiveMode() throws Exception {
+        runLoad(true);
+    }
+
+    @Test
+    public void concurrentMediatorsMoveFilesInActiveMode() throws Exception {
+        runLoad(false);
+    }
+
+    /**
+     * Helper method to run all mediators to completion and check that every
+     * file arrived and no FTP session was left open.
+     */
+    private void runLoad(boolean passiveMode) throws Exception {
+        String mode = passiveMode ? "passive" : "active";
+        LoadTestReport report = new LoadTestReport("FTP " + mode + " move, " + mediators + " mediators");
+        ExecutorService executor = Executors.newFixedThreadPool(mediators);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+        report.start();
+        for (int i = 0; i < mediators; i++) {
+            results.add(executor.submit(mediatorRun(mode + i, passiveMode, report)));
+        }
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        report.stop();
+        executor.shutdown();
+
+        int leakedSessions = server.awaitSessionsClosed(10000);
+        System.out.println(report.summary("sessions=" + server.getTotalSessions(),
+                "peakSessions=" + server.getPeakSessions(), "leakedSessions=" + leakedSessions,
+                "LIST=" + (server.getCommandCount("LIST") + server.getCommandCount("NLST")),
+                "STOR=" + server.getCommandCount("STOR"), "RETR=" + server.getCommandCount("RETR")));
+
+        assertEquals("Failed messages", 0, report.getFailures());
+        assertEquals("Leaked sessions", 0, leakedSessions);
+        for (int i = 0; i < mediators; i++) {
+            String[] moved = new File(server.getRootDirectory(), "target-" + mode + i).list();
+            assertEquals("Files on server for mediator " + i + ": " + Arrays.toString(moved), messages * files,
+                    moved.length);
+        }
+    }
+
+    /**
+     * Helper method to create the work of a single mediator instance: for
+     * every message, writes source files directly to the server's disk and
+     * moves them to the target directory over FTP.
+     */
+    private Callable<Void> mediatorRun(String name, boolean passiveMode, final LoadTestReport report) {
+        final File sourceDirectory = new File(server.getRootDirectory(), "source-" + name);
+        sourceDirectory.mkdirs();
+        final VfsMediator mediator = new VfsMediator();
+        mediator.setOperationValue("move");
+        mediator.setSourceDirectoryValue(server.uri("/source-" + name));
+        mediator.setTargetDirectoryValue(server.uri("/target-" + name));
+        mediator.setCreateMissingDirectoriesValue(true);
+        mediator.setLockEnabledValue(true);
+        final MessageContext messageContext = mock(MessageContext.class);
+        when(messageContext.getProperty(VfsMediator.FTP_PASSIVE_MODE_PROPERTY_NAME)).thenReturn(
+                String.valueOf(passiveMode));
+
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                byte[] content = new byte[fileSize];
+                for (int message = 0; message < messages; message++) {
+                    for (int file = 0; file < files; file++) {
+                        write(new File(sourceDirectory, "m" + message + "f" + file + ".dat"), content);
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        mediator.mediate(messageContext);
+                        report.success(System.nanoTime() - start, files);
+                    } catch (RuntimeException e) {
+                        report.failure();
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+}
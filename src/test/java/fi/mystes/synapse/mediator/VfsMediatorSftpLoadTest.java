@@ -0,0 +1,151 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.*;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.synapse.MessageContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.mystes.synapse.mediator.vfs.server.EmbeddedSftpServer;
+import fi.mystes.synapse.mediator.vfs.server.LoadTestReport;
+
+/**
+ * Load test running many mediator instances concurrently against an embedded
+ * SFTP server. Excluded from the default build, run with
+ * <code>mvn test -Pload-tests</code>. The load is tuned with system
+ * properties:
+ * <ul>
+ * <li>vfs.loadtest.mediators - concurrent mediator instances (8)</li>
+ * <li>vfs.loadtest.messages - messages mediated by each instance (20)</li>
+ * <li>vfs.loadtest.files - files moved per message (5)</li>
+ * <li>vfs.loadtest.fileSize - size of each file in bytes (16384)</li>
+ * <li>vfs.loadtest.latencyMs - one-way latency of the server (5)</li>
+ * <li>vfs.loadtest.bytesPerSecond - bandwidth per connection, 0 unlimited
+ * (0)</li>
+ * </ul>
+ */
+public class VfsMediatorSftpLoadTest {
+    private static final String SOURCE_ROOT = "file:///tmp/vfs-sftp-load-test";
+
+    private final int mediators = Integer.getInteger("vfs.loadtest.mediators", 8);
+    private final int messages = Integer.getInteger("vfs.loadtest.messages", 20);
+    private final int files = Integer.getInteger("vfs.loadtest.files", 5);
+    private final int fileSize = Integer.getInteger("vfs.loadtest.fileSize", 16384);
+
+    private EmbeddedSftpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new EmbeddedSftpServer(new File("target/vfs-sftp-load-test"));
+        server.start();
+        server.setLatencyMillis(Long.getLong("vfs.loadtest.latencyMs", 5));
+        server.setBytesPerSecond(Long.getLong("vfs.loadtest.bytesPerSecond", 0));
+    }
+
+    @After
+    public void tearDown() throws FileSystemException, InterruptedException {
+        server.stop();
+        deleteDirectory(SOURCE_ROOT);
+        deleteDirectory(server.getRootDirectory().toURI().toString());
+    }
+
+    @Test
+    public void concurrentMediatorsMoveFilesWithoutLeakingSessions() throws Exception {
+        final LoadTestReport report = new LoadTestReport("SFTP move, " + mediators + " mediators");
+        ExecutorService executor = Executors.newFixedThreadPool(mediators);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+        report.start();
+        for (int i = 0; i < mediators; i++) {
+            results.add(executor.submit(mediatorRun(i, report)));
+        }
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        report.stop();
+        executor.shutdown();
+
+        int leakedSessions = server.getProxy().awaitConnectionsClosed(10000);
+        System.out.println(report.summary("sessions=" + server.getProxy().getTotalConnections(),
+                "peakSessions=" + server.getProxy().getPeakConnections(), "leakedSessions=" + leakedSessions));
+
+        assertEquals("Failed messages", 0, report.getFailures());
+        assertEquals("Leaked sessions", 0, leakedSessions);
+        for (int i = 0; i < mediators; i++) {
+            assertEquals("Files on server for mediator " + i, messages * files,
+                    new File(server.getRootDirectory(), "target" + i).list().length);
+        }
+    }
+
+    /**
+     * Helper method to create the work of a single mediator instance: for
+     * every message, creates source files and moves them to the server.
+     */
+    private Callable<Void> mediatorRun(final int index, final LoadTestReport report) throws FileSystemException {
+        final String sourceDirectory = SOURCE_ROOT + "/source" + index;
+        createDirectory(sourceDirectory);
+        final VfsMediator mediator = new VfsMediator();
+        mediator.setOperationValue("move");
+        mediator.setSourceDirectoryValue(sourceDirectory);
+        mediator.setTargetDirectoryValue(server.uri("/target" + index));
+        mediator.setCreateMissingDirectoriesValue(true);
+        mediator.setLockEnabledValue(true);
+
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                String content = content(fileSize);
+                MessageContext messageContext = mock(MessageContext.class);
+                for (int message = 0; message < messages; message++) {
+                    for (int file = 0; file < files; file++) {
+                        createFile(filePath(sourceDirectory, "m" + message + "f" + file + ".dat"), content);
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        mediator.mediate(messageContext);
+                        report.success(System.nanoTime() - start, files);
+                    } catch (RuntimeException e) {
+                        report.failure();
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static String content(int size) {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        return sb.toString();
+    }
+}
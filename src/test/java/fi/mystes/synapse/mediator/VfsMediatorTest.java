@@ -16,6 +16,8 @@
 
 package fi.mystes.synapse.mediator;
 
+import fi.mystes.synapse.mediator.vfs.VfsBulkheadConfig;
+import fi.mystes.synapse.mediator.vfs.VfsCircuitOpenException;
 import fi.mystes.synapse.mediator.vfs.VfsOperationDelegate;
 import fi.mystes.synapse.mediator.vfs.VfsOperationOptions;
 import org.apache.axiom.om.OMAbstractFactory;
@@ -26,15 +28,21 @@ import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.SynapseEnvironment;
 import org.apache.synapse.util.xpath.SynapseXPath;
 import org.jaxen.JaxenException;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class VfsMediatorTest {
@@ -208,6 +216,18 @@ public class VfsMediatorTest {
         verify(mc).setProperty("vfs.fileCount", 2);
     }
 
+    @Test
+    public void mediationSetsCircuitOpenPropertiesWhenEndpointCircuitOpen() throws JaxenException, FileSystemException {
+        when(operationDelegate.move(any(VfsOperationOptions.class))).thenThrow(new VfsCircuitOpenException("sftp://host:22"));
+        try {
+            mediator.mediate(mc);
+            fail("mediation should have failed");
+        } catch (SynapseException expected) {
+            verify(mc).setProperty(VfsMediator.CIRCUIT_OPEN_PROPERTY_NAME, Boolean.TRUE);
+            verify(mc).setProperty(VfsMediator.CIRCUIT_OPEN_ENDPOINT_PROPERTY_NAME, "sftp://host:22");
+        }
+    }
+
     @Test
     public void mediationDelegatesMoveOperationCorrectlyWhenFilePatternXpathSpecified() throws JaxenException, FileSystemException {
         OMFactory fac = OMAbstractFactory.getOMFactory();
@@ -357,6 +377,110 @@ public class VfsMediatorTest {
         verify(operationDelegate).move(eq(defaultOptions().targetFileSuffix("suffix_value").build()));
     }
 
+    @Test
+    public void mediationSetsStatisticsPropertiesWhenStatisticsEnabled() throws FileSystemException {
+        mediator.setStatisticsEnabled(true);
+        assertTrue(mediator.mediate(mc));
+        verify(operationDelegate).move(eq(defaultOptions().build()));
+        verify(mc).setProperty(VfsMediator.STATS_ENTRIES_LISTED_PROPERTY_NAME, 0);
+        verify(mc).setProperty(VfsMediator.STATS_BYTES_TRANSFERRED_PROPERTY_NAME, 0L);
+        verify(mc).setProperty(VfsMediator.STATS_RETRIES_PROPERTY_NAME, 0);
+        verify(mc, never()).setProperty(eq(VfsMediator.STATS_SLOWEST_FILE_PROPERTY_NAME), anyObject());
+    }
+
+    @Test
+    public void mediationSetsStatisticsPropertiesWhenOperationFails() throws FileSystemException {
+        mediator.setStatisticsEnabled(true);
+        when(operationDelegate.move(any(VfsOperationOptions.class))).thenThrow(new FileSystemException("failed"));
+        try {
+            mediator.mediate(mc);
+            fail("mediation should have failed");
+        } catch (SynapseException expected) {
+            verify(mc).setProperty(VfsMediator.STATS_RETRIES_PROPERTY_NAME, 0);
+        }
+    }
+
+    @Test
+    public void mediationDoesNotSetStatisticsPropertiesByDefault() throws FileSystemException {
+        assertTrue(mediator.mediate(mc));
+        verify(mc, never()).setProperty(eq(VfsMediator.STATS_CONNECT_MS_PROPERTY_NAME), anyObject());
+    }
+
+    @Test
+    public void initWarmsUpStaticDirectories() throws Exception {
+        resetXpaths();
+        mediator.setSourceDirectoryValue(SOURCE_DIRECTORY);
+        mediator.setTargetDirectoryValue(TARGET_DIRECTORY);
+        mediator.setWarmupConnections(2);
+        mediator.init(null);
+        try {
+            VfsOperationOptions options = captureWarmUpOptions();
+            assertEquals(SOURCE_DIRECTORY, options.getSourceDirectory());
+            assertEquals(TARGET_DIRECTORY, options.getTargetDirectory());
+            assertEquals(2, options.getWarmupConnections());
+            assertNotNull(options.getManagerPool());
+        } finally {
+            mediator.destroy();
+        }
+    }
+
+    @Test
+    public void initWarmsUpWithGlobalConnectionProperties() throws Exception {
+        SynapseConfiguration configuration = mock(SynapseConfiguration.class);
+        when(configuration.getProperty(VfsMediator.FTP_PASSIVE_MODE_PROPERTY_NAME)).thenReturn("true");
+        when(configuration.getProperty(VfsMediator.SFTP_AUTH_KEY_PATH_PROPERTY_NAME)).thenReturn("/keys/id_rsa");
+        SynapseEnvironment environment = mock(SynapseEnvironment.class);
+        when(environment.getSynapseConfiguration()).thenReturn(configuration);
+        resetXpaths();
+        mediator.setSourceDirectoryValue(SOURCE_DIRECTORY);
+        mediator.setWarmupConnections(1);
+        mediator.init(environment);
+        try {
+            VfsOperationOptions options = captureWarmUpOptions();
+            assertTrue(options.isFtpPassiveModeEnabled());
+            assertEquals("/keys/id_rsa", options.getSftpAuthKeyPath());
+        } finally {
+            mediator.destroy();
+        }
+    }
+
+    @Test
+    public void initLimitsWarmUpToBulkheadSessions() throws Exception {
+        resetXpaths();
+        mediator.setSourceDirectoryValue(SOURCE_DIRECTORY);
+        mediator.setBulkheadConfig(new VfsBulkheadConfig(1, 0, 0));
+        mediator.setWarmupConnections(4);
+        mediator.init(null);
+        try {
+            assertEquals(1, captureWarmUpOptions().getWarmupConnections());
+        } finally {
+            mediator.destroy();
+        }
+    }
+
+    @Test
+    public void initDoesNotWarmUpExpressionDirectories() throws Exception {
+        mediator.setWarmupConnections(1);
+        mediator.init(null);
+        try {
+            verify(operationDelegate, never()).warmUp(Matchers.any(VfsOperationOptions.class));
+        } finally {
+            mediator.destroy();
+        }
+    }
+
+    @Test
+    public void initDoesNotWarmUpByDefault() throws Exception {
+        mediator.init(null);
+        verify(operationDelegate, never()).warmUp(Matchers.any(VfsOperationOptions.class));
+    }
+
+    private VfsOperationOptions captureWarmUpOptions() throws FileSystemException {
+        ArgumentCaptor<VfsOperationOptions> options = ArgumentCaptor.forClass(VfsOperationOptions.class);
+        verify(operationDelegate).warmUp(options.capture());
+        return options.getValue();
+    }
+
     private void resetXpaths() {
         mediator.setArchiveDirectoryXpath(null);
         mediator.setSourceDirectoryXpath(null);
@@ -32,6 +32,9 @@ import org.jaxen.JaxenException;
 import org.junit.Test;
 
 import fi.mystes.synapse.mediator.VfsMediator;
+import fi.mystes.synapse.mediator.config.VfsMediatorConfigConstants;
+import fi.mystes.synapse.mediator.vfs.VfsCharsetStage;
+import fi.mystes.synapse.mediator.vfs.VfsStreamStageConfig;
 
 import static org.junit.Assert.*;
 
@@ -290,6 +293,201 @@ public class VfsMediatorFactoryTest {
 
     }
 
+    @Test
+    public void testCreateMediatorWithCircuitBreaker() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorCircuitBreakerVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertNotNull(mediator.getCircuitBreakerConfig());
+        assertEquals(75, mediator.getCircuitBreakerConfig().getFailureRateThreshold());
+        assertEquals(5, mediator.getCircuitBreakerConfig().getMinimumCalls());
+        assertEquals(20, mediator.getCircuitBreakerConfig().getWindowSize());
+        assertEquals(60000, mediator.getCircuitBreakerConfig().getCooldown());
+    }
+
+    @Test
+    public void testCreateMediatorWithBulkhead() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorBulkheadVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertNotNull(mediator.getBulkheadConfig());
+        assertEquals(4, mediator.getBulkheadConfig().getMaxConcurrent());
+        assertEquals(10, mediator.getBulkheadConfig().getOperationsPerSecond());
+        assertEquals(30000, mediator.getBulkheadConfig().getQueueTimeout());
+    }
+
+    @Test
+    public void testCreateMediatorWithDirectoryCache() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorDirectoryCacheVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals(600000, mediator.getDirectoryCacheTtl());
+    }
+
+    @Test
+    public void testCreateMediatorWithWarmup() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorWarmupVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals(3, mediator.getWarmupConnections());
+    }
+
+    @Test
+    public void testCreateMediatorWithStatistics() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorStatisticsVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertTrue(mediator.isStatisticsEnabled());
+    }
+
+    @Test
+    public void testCreateMediatorWithWatchdog() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorWatchdogVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals(30000, mediator.getReadIdleTimeout());
+        assertEquals(600000, mediator.getMaxTransferTime());
+    }
+
+    @Test
+    public void testCreateMediatorWithResume() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorResumeVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertTrue(mediator.isResumeEnabled());
+    }
+
+    @Test
+    public void testCreateMediatorWithSkipUnchanged() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorSkipUnchangedVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertTrue(mediator.isSkipUnchanged());
+        assertTrue(mediator.isSkipUnchangedChecksum());
+    }
+
+    @Test
+    public void testCreateMediatorWithChecksum() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorChecksumVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals("MD5", mediator.getChecksumAlgorithm());
+        assertTrue(mediator.isChecksumVerify());
+        assertTrue(mediator.isChecksumSidecar());
+    }
+
+    @Test
+    public void testCreateMediatorWithCompression() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorCompressionVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals("gzip", mediator.getCompress());
+        assertNull(mediator.getDecompress());
+    }
+
+    @Test
+    public void testCreateMediatorWithStreamStages() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorStreamStagesVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals(1, mediator.getStreamStages().size());
+        VfsStreamStageConfig stage = mediator.getStreamStages().get(0);
+        assertEquals(VfsCharsetStage.class.getName(), stage.getClassName());
+        assertEquals("ISO-8859-1", stage.getProperties().get("from"));
+        assertEquals("UTF-8", stage.getProperties().get("to"));
+        assertTrue(stage.getStage() instanceof VfsCharsetStage);
+    }
+
+    @Test
+    public void testCreateMediatorFromInvalidXMLWhereStreamStageClassMissing() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorStreamStageClassINVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+        try {
+            factory.createMediator(configs.get(0), null);
+            fail("unknown stage class should've failed");
+        } catch (SynapseException expected) {
+            assertEquals("Invalid stream stage com.example.MissingStage: stage class not found: com.example.MissingStage",
+                    expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testCreateMediatorWithBandwidth() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorBandwidthVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals(1048576, mediator.getBandwidthLimit());
+        assertEquals(10485760, mediator.getEndpointBandwidthLimit());
+    }
+
+    @Test
+    public void testCreateMediatorWithTransferStrategy() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorTransferStrategyVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertTrue(mediator.isAutoTransferStrategy());
+        assertEquals(1048576, mediator.getInMemoryThreshold());
+        assertEquals(VfsMediatorConfigConstants.DEFAULT_AUTO_BLOCK_SIZE, mediator.getAutoBlockSize());
+    }
+
+    @Test
+    public void testCreateMediatorWithChunkedTransfer() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorChunkedTransferVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals(1073741824L, mediator.getChunkedThreshold());
+        assertEquals(8, mediator.getChunkCount());
+    }
+
+    @Test
+    public void testCreateMediatorWithSftpPipelining() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorSftpPipeliningVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals(64, mediator.getSftpQueueDepth());
+        assertEquals(4194304, mediator.getSftpPipeliningThreshold());
+    }
+
+    @Test
+    public void testCreateMediatorResolvesMetricsName() throws Exception {
+        OMElement proxy = getDocumentElementFromResourcePath("/vfsMediatorWarmupVALID.xml");
+        List<OMElement> configs = (List<OMElement>) vfsMediator.evaluate(proxy);
+
+        VfsMediator mediator = (VfsMediator) factory.createMediator(configs.get(0), null);
+
+        assertEquals("VfsTestProxy/target/inSequence/0", mediator.getMetricsName());
+    }
+
     private static OMElement getDocumentElementFromResourcePath(String path)
             throws FileNotFoundException, XMLStreamException {
         return new StAXOMBuilder(
@@ -21,6 +21,9 @@ import static org.junit.Assert.assertNotNull;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
@@ -32,6 +35,10 @@ import org.jaxen.JaxenException;
 import org.junit.Test;
 
 import fi.mystes.synapse.mediator.VfsMediator;
+import fi.mystes.synapse.mediator.vfs.VfsBulkheadConfig;
+import fi.mystes.synapse.mediator.vfs.VfsCircuitBreakerConfig;
+import fi.mystes.synapse.mediator.vfs.VfsCharsetStage;
+import fi.mystes.synapse.mediator.vfs.VfsStreamStageConfig;
 
 public class VfsMediatorSerializerTest {
 
@@ -203,6 +210,164 @@ public class VfsMediatorSerializerTest {
         assertEquals(expected.toString(), element.toString());
     }
 
+    @Test
+    public void serializeWithCircuitBreaker() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setCircuitBreakerConfig(new VfsCircuitBreakerConfig(75, 5, 20, 60000));
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithCircuitBreaker.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithBulkhead() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setBulkheadConfig(new VfsBulkheadConfig(4, 10, 60000));
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithBulkhead.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithDirectoryCache() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setDirectoryCacheTtl(600000);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithDirectoryCache.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithWarmup() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setWarmupConnections(3);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithWarmup.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithStatistics() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setStatisticsEnabled(true);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithStatistics.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithWatchdog() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setReadIdleTimeout(30000);
+        mediator.setMaxTransferTime(600000);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithWatchdog.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithResume() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setResumeEnabled(true);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithResume.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithSkipUnchanged() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setSkipUnchanged(true);
+        mediator.setSkipUnchangedChecksum(true);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithSkipUnchanged.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithChecksum() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setChecksumAlgorithm("SHA-256");
+        mediator.setChecksumSidecar(true);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithChecksum.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithCompression() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setDecompress("gzip");
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithCompression.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithStreamStages() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        properties.put("from", "ISO-8859-1");
+        properties.put("to", "UTF-8");
+        mediator.setStreamStages(Collections.singletonList(
+                new VfsStreamStageConfig(VfsCharsetStage.class.getName(), properties)));
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithStreamStages.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithBandwidth() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setBandwidthLimit(1048576);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithBandwidth.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithTransferStrategy() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setAutoTransferStrategy(true);
+        mediator.setAutoBlockSize(131072);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithTransferStrategy.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithChunkedTransfer() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setChunkedThreshold(104857600);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithChunkedTransfer.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
+    @Test
+    public void serializeWithSftpPipelining() throws Exception {
+        VfsMediatorSerializer serializer = getDefaultSerializer();
+        VfsMediator mediator = getDefaultMediator();
+        mediator.setSftpQueueDepth(32);
+        OMElement element = serializer.serializeSpecificMediator(mediator);
+        OMElement expected = getDocumentElementFromResourcePath("/serializedVfsMediatorWithSftpPipelining.xml");
+        assertEquals(expected.toString(), element.toString());
+    }
+
 
     private VfsMediator getDefaultMediator() {
         VfsMediator mediator = new VfsMediator();
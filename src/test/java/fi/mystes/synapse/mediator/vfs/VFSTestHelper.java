@@ -20,8 +20,11 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -110,6 +113,34 @@ public class VFSTestHelper {
         return files;
     }
 
+    /**
+     * Fills a local directory with small files named test0000000.txt and so
+     * on, bypassing VFS for speed. A directory already holding the requested
+     * amount of files is reused as is.
+     */
+    public static void populateDirectory(File directory, int count) throws IOException {
+        String[] existing = directory.list();
+        if (existing != null && existing.length == count) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        byte[] content = new byte[] { 'x' };
+        for (int i = 0; i < count; i++) {
+            OutputStream out = new FileOutputStream(new File(directory, largeDirectoryFileName(i)));
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    public static String largeDirectoryFileName(int index) {
+        return String.format("test%07d.txt", index);
+    }
+
     public static interface TestFile {
         String getPath();
 
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class VfsBandwidthLimiterTest {
+
+    private long now = 0;
+    private long slept = 0;
+
+    @After
+    public void tearDown() {
+        VfsBandwidthLimiter.reset();
+    }
+
+    @Test
+    public void burstWithinBucketDoesNotWait() throws InterruptedIOException {
+        VfsBandwidthLimiter limiter = newLimiter(1000);
+        limiter.acquire(600);
+        limiter.acquire(400);
+        assertEquals(0, slept);
+    }
+
+    @Test
+    public void waitsForMissingTokens() throws InterruptedIOException {
+        VfsBandwidthLimiter limiter = newLimiter(1000);
+        limiter.acquire(1000);
+        limiter.acquire(500);
+        assertEquals(millis(500), slept);
+        assertEquals(500, limiter.getThrottledMillis());
+    }
+
+    @Test
+    public void sustainedTransferKeepsToLimit() throws InterruptedIOException {
+        VfsBandwidthLimiter limiter = newLimiter(8192);
+        for (int i = 0; i < 101; i++) {
+            limiter.acquire(8192);
+        }
+        // the first second is served from the full bucket
+        assertEquals(millis(100 * 1000), slept);
+        assertEquals(101 * 8192, limiter.getBytesTransferred());
+    }
+
+    @Test
+    public void refillsWhileIdle() throws InterruptedIOException {
+        VfsBandwidthLimiter limiter = newLimiter(1000);
+        limiter.acquire(1000);
+        now += millis(2000);
+        limiter.acquire(1000);
+        assertEquals(0, slept);
+    }
+
+    @Test
+    public void limitCanBeChangedAtRuntime() throws InterruptedIOException {
+        VfsBandwidthLimiter limiter = newLimiter(0);
+        limiter.acquire(1000000);
+        assertEquals(0, slept);
+
+        limiter.setBytesPerSecond(1000);
+        limiter.acquire(250);
+        assertEquals(millis(250), slept);
+
+        limiter.setBytesPerSecond(0);
+        limiter.acquire(1000000);
+        assertEquals(millis(250), slept);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeLimit() {
+        newLimiter(1000).setBytesPerSecond(-1);
+    }
+
+    @Test
+    public void sharesLimiterBetweenPathsOfSameEndpoint() {
+        VfsBandwidthLimiter first = VfsBandwidthLimiter.forUri("sftp://a@host/in", 1000);
+        VfsBandwidthLimiter second = VfsBandwidthLimiter.forUri("sftp://b@host:22/out", 2000);
+        assertSame(first, second);
+        assertEquals(1000, second.getBytesPerSecond());
+        assertEquals("sftp://host:22", second.getName());
+        assertNotSame(first, VfsBandwidthLimiter.forUri("sftp://other/in", 1000));
+        assertNull(VfsBandwidthLimiter.forUri("sftp://host/in", 0));
+        assertNull(VfsBandwidthLimiter.forUri("file:///tmp/foo", 1000));
+    }
+
+    private VfsBandwidthLimiter newLimiter(long bytesPerSecond) {
+        return new VfsBandwidthLimiter("test", bytesPerSecond) {
+            @Override
+            long nanoTime() {
+                return now;
+            }
+
+            @Override
+            void sleepNanos(long nanos) {
+                slept += nanos;
+                now += nanos;
+            }
+        };
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
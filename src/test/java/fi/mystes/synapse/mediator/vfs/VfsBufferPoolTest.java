@@ -0,0 +1,71 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class VfsBufferPoolTest {
+
+    @After
+    public void tearDown() {
+        VfsBufferPool.reset();
+    }
+
+    @Test
+    public void reusesReleasedBuffersOfSameSize() {
+        byte[] buffer = VfsBufferPool.acquire(1024);
+        VfsBufferPool.release(buffer);
+
+        assertNotSame(buffer, VfsBufferPool.acquire(2048));
+        assertSame(buffer, VfsBufferPool.acquire(1024));
+        assertEquals(0, VfsBufferPool.pooled(1024));
+    }
+
+    @Test
+    public void keepsAtMostMaximumAmountOfBuffersPerSize() {
+        for (int i = 0; i < VfsBufferPool.MAX_POOLED_PER_SIZE + 10; i++) {
+            VfsBufferPool.release(new byte[512]);
+        }
+        VfsBufferPool.release(null);
+
+        assertEquals(VfsBufferPool.MAX_POOLED_PER_SIZE, VfsBufferPool.pooled(512));
+    }
+
+    @Test
+    public void keepsAtMostMaximumBytesPerSize() {
+        int size = VfsBufferPool.MAX_POOLED_BUFFER_SIZE;
+        for (int i = 0; i < 10; i++) {
+            VfsBufferPool.release(new byte[size]);
+        }
+
+        assertEquals(VfsBufferPool.MAX_POOLED_BYTES_PER_SIZE / size, VfsBufferPool.pooled(size));
+    }
+
+    @Test
+    public void doesNotPoolLargeBuffers() {
+        int size = VfsBufferPool.MAX_POOLED_BUFFER_SIZE * 2;
+        byte[] buffer = VfsBufferPool.acquire(size);
+        VfsBufferPool.release(buffer);
+
+        assertEquals(0, VfsBufferPool.pooled(size));
+        assertNotSame(buffer, VfsBufferPool.acquire(size));
+    }
+}
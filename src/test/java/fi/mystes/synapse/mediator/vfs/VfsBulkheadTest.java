@@ -0,0 +1,102 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.junit.After;
+import org.junit.Test;
+
+public class VfsBulkheadTest {
+
+    @After
+    public void tearDown() {
+        VfsBulkhead.reset();
+    }
+
+    @Test
+    public void sharesBulkheadBetweenPathsOfSameEndpoint() {
+        VfsBulkheadConfig config = new VfsBulkheadConfig(2, 0, 100);
+        VfsBulkhead first = VfsBulkhead.forUri("sftp://a@host/in", config);
+        assertSame(first, VfsBulkhead.forUri("sftp://b@host:22/out", config));
+        assertNull(VfsBulkhead.forUri("file:///tmp/in", config));
+        assertNull(VfsBulkhead.forUri("sftp://host/in", null));
+    }
+
+    @Test
+    public void limitsConcurrentSessions() throws Exception {
+        VfsBulkhead bulkhead = new VfsBulkhead("sftp://host:22", new VfsBulkheadConfig(2, 0, 50));
+        bulkhead.enter();
+        bulkhead.enter();
+        assertEquals(0, bulkhead.getAvailableSessions());
+        try {
+            bulkhead.enter();
+            fail("Third session should time out");
+        } catch (FileSystemException e) {
+            assertTrue(e.getMessage().contains("sftp://host:22"));
+        }
+        bulkhead.exit();
+        bulkhead.enter();
+        bulkhead.exit();
+        bulkhead.exit();
+        assertEquals(2, bulkhead.getAvailableSessions());
+    }
+
+    @Test
+    public void unlimitedWhenLimitsAreZero() throws Exception {
+        VfsBulkhead bulkhead = new VfsBulkhead("sftp://host:22", new VfsBulkheadConfig(0, 0, 0));
+        for (int i = 0; i < 100; i++) {
+            bulkhead.enter();
+            bulkhead.throttle();
+        }
+        assertEquals(Integer.MAX_VALUE, bulkhead.getAvailableSessions());
+    }
+
+    @Test
+    public void spacesOperationsByRateLimit() throws Exception {
+        VfsBulkhead bulkhead = new VfsBulkhead("sftp://host:22", new VfsBulkheadConfig(0, 20, 1000));
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            bulkhead.throttle();
+        }
+        // first operation runs immediately, the rest 50 ms apart
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 190);
+    }
+
+    @Test
+    public void failsWhenRateLimitWaitExceedsQueueTimeout() throws Exception {
+        VfsBulkhead bulkhead = new VfsBulkhead("sftp://host:22", new VfsBulkheadConfig(0, 1, 100));
+        bulkhead.throttle();
+        try {
+            bulkhead.throttle();
+            fail("Second operation should not fit in the queue timeout");
+        } catch (FileSystemException e) {
+            assertTrue(e.getMessage().contains("rate limit"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeLimits() {
+        new VfsBulkheadConfig(-1, 0, 0);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.CharacterCodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class VfsCharsetStageTest {
+
+    @Test
+    public void convertsContentBetweenCharsets() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("r\u00e4\u00e4kk\u00e4 ").append(i).append('\n');
+        }
+
+        byte[] converted = convert("ISO-8859-1", "UTF-8", text.toString().getBytes("ISO-8859-1"));
+
+        assertEquals(text.toString(), new String(converted, "UTF-8"));
+    }
+
+    @Test
+    public void convertsEmptyContent() throws IOException {
+        assertEquals(0, convert("UTF-8", "UTF-16BE", new byte[0]).length);
+    }
+
+    @Test
+    public void convertsSurrogatePairsReadByteByByte() throws IOException {
+        String text = "smile \ud83d\ude00 r\u00e4\u00e4kk\u00e4";
+        VfsStreamStage stage = new VfsStreamStageConfig(VfsCharsetStage.class.getName(), charsets("UTF-8",
+                "UTF-16BE")).getStage();
+        InputStream in = stage.open(new ByteArrayInputStream(text.getBytes("UTF-8")), "test.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+        } finally {
+            in.close();
+        }
+
+        assertEquals(text, new String(out.toByteArray(), "UTF-16BE"));
+    }
+
+    @Test
+    public void returnsBuffersToPoolWhenClosed() throws IOException {
+        VfsBufferPool.reset();
+        try {
+            convert("UTF-8", "UTF-8", "content".getBytes("UTF-8"));
+            assertEquals(3, VfsBufferPool.pooled(8192));
+            convert("UTF-8", "UTF-8", "content".getBytes("UTF-8"));
+            assertEquals(3, VfsBufferPool.pooled(8192));
+        } finally {
+            VfsBufferPool.reset();
+        }
+    }
+
+    @Test(expected = CharacterCodingException.class)
+    public void failsOnUnmappableCharacters() throws IOException {
+        convert("UTF-8", "US-ASCII", "r\u00e4\u00e4kk\u00e4".getBytes("UTF-8"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requiresTargetCharset() {
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        properties.put(VfsCharsetStage.PROPERTY_FROM, "UTF-8");
+        new VfsStreamStageConfig(VfsCharsetStage.class.getName(), properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownCharset() {
+        new VfsStreamStageConfig(VfsCharsetStage.class.getName(), charsets("UTF-8", "no-such-charset"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsClassNotImplementingStage() {
+        new VfsStreamStageConfig(String.class.getName(), charsets("UTF-8", "UTF-8"));
+    }
+
+    private static byte[] convert(String from, String to, byte[] content) throws IOException {
+        VfsStreamStage stage = new VfsStreamStageConfig(VfsCharsetStage.class.getName(), charsets(from, to))
+                .getStage();
+        InputStream in = stage.open(new ByteArrayInputStream(content), "test.txt");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1000];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Map<String, String> charsets(String from, String to) {
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        properties.put(VfsCharsetStage.PROPERTY_FROM, from);
+        properties.put(VfsCharsetStage.PROPERTY_TO, to);
+        return properties;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Test;
+
+public class VfsChecksumTest {
+
+    @Test
+    public void calculatesKnownChecksums() throws UnsupportedEncodingException {
+        assertEquals("352441c2", checksum(VfsChecksum.CRC32, "abc"));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", checksum(VfsChecksum.MD5, "abc"));
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", checksum(VfsChecksum.SHA1, "abc"));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                checksum(VfsChecksum.SHA256, "abc"));
+    }
+
+    @Test
+    public void valueCanBeReadWhileUpdating() throws UnsupportedEncodingException {
+        VfsChecksum checksum = new VfsChecksum("sha-256");
+        checksum.update("ab".getBytes("UTF-8"), 0, 2);
+        checksum.getValue();
+        checksum.update("c".getBytes("UTF-8"), 0, 1);
+
+        assertEquals(checksum(VfsChecksum.SHA256, "abc"), checksum.getValue());
+    }
+
+    @Test
+    public void resetStartsOver() throws UnsupportedEncodingException {
+        for (String algorithm : new String[] { VfsChecksum.CRC32, VfsChecksum.MD5 }) {
+            VfsChecksum checksum = new VfsChecksum(algorithm);
+            checksum.update("partial".getBytes("UTF-8"), 0, 7);
+            checksum.reset();
+            checksum.update("abc".getBytes("UTF-8"), 0, 3);
+
+            assertEquals(checksum(algorithm, "abc"), checksum.getValue());
+        }
+    }
+
+    @Test
+    public void fileExtensionIsDerivedFromAlgorithm() {
+        assertEquals(".sha256", new VfsChecksum(VfsChecksum.SHA256).getFileExtension());
+        assertEquals(".sha1", new VfsChecksum(VfsChecksum.SHA1).getFileExtension());
+        assertEquals(".md5", new VfsChecksum(VfsChecksum.MD5).getFileExtension());
+        assertEquals(".crc32", new VfsChecksum(VfsChecksum.CRC32).getFileExtension());
+    }
+
+    @Test
+    public void parsesPlainAndSumFormats() {
+        assertEquals("abc123", VfsChecksum.parse("ABC123\n"));
+        assertEquals("abc123", VfsChecksum.parse("abc123  file.xml\n"));
+        assertNull(VfsChecksum.parse("  \n"));
+        assertNull(VfsChecksum.parse(null));
+    }
+
+    @Test
+    public void knowsSupportedAlgorithms() {
+        assertTrue(VfsChecksum.isSupported("md5"));
+        assertFalse(VfsChecksum.isSupported("CRC32C"));
+        assertFalse(VfsChecksum.isSupported(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedAlgorithm() {
+        new VfsChecksum("SHA-512/256");
+    }
+
+    private static String checksum(String algorithm, String content) throws UnsupportedEncodingException {
+        VfsChecksum checksum = new VfsChecksum(algorithm);
+        byte[] bytes = content.getBytes("UTF-8");
+        checksum.update(bytes, 0, bytes.length);
+        return checksum.getValue();
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VfsDirectoryCacheTest {
+
+    private static final String DIRECTORY = "sftp://user@host/target";
+
+    private long now = 0;
+
+    private final VfsDirectoryCache cache = new VfsDirectoryCache() {
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    };
+
+    @Test
+    public void unknownDirectoryIsNotValidated() {
+        assertFalse(cache.isValidated(DIRECTORY));
+    }
+
+    @Test
+    public void validatedDirectoryExpiresAfterTtl() {
+        cache.validated(DIRECTORY, 1000);
+        now += 999;
+        assertTrue(cache.isValidated(DIRECTORY));
+        now += 1;
+        assertFalse(cache.isValidated(DIRECTORY));
+    }
+
+    @Test
+    public void invalidateForgetsDirectory() {
+        cache.validated(DIRECTORY, 1000);
+        cache.invalidate(DIRECTORY);
+        assertFalse(cache.isValidated(DIRECTORY));
+    }
+
+    @Test
+    public void zeroTtlIsNotCached() {
+        cache.validated(DIRECTORY, 0);
+        assertFalse(cache.isValidated(DIRECTORY));
+    }
+}
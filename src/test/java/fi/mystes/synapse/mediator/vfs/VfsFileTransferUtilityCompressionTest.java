@@ -0,0 +1,155 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.assertFileDoesNotExist;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.assertFileContentEquals;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.createDirectory;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.createFile;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.deleteDirectory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.VFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VfsFileTransferUtilityCompressionTest {
+    private static final String SOURCE_DIR = "file:///tmp/foo/compression/source";
+    private static final String TARGET_DIR = "file:///tmp/foo/compression/target";
+    private static final String ARCHIVE_DIR = "file:///tmp/foo/compression/archive";
+
+    private String content;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        createDirectory(SOURCE_DIR);
+        createDirectory(TARGET_DIR);
+        createDirectory(ARCHIVE_DIR);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            csv.append(i).append(";some repeating column value;another column\n");
+        }
+        content = csv.toString();
+    }
+
+    @After
+    public void tearDown() throws FileSystemException {
+        deleteDirectory(SOURCE_DIR);
+        deleteDirectory(TARGET_DIR);
+        deleteDirectory(ARCHIVE_DIR);
+    }
+
+    @Test
+    public void compressesTargetFilesAndAddsExtension() throws IOException {
+        createFile(SOURCE_DIR + "/export.csv", content);
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).archiveDirectory(ARCHIVE_DIR).targetFileSuffix("_out").compress("gzip")
+                .metrics(metrics).build()).copyFiles();
+
+        assertEquals(1, count);
+        assertEquals(content, gunzip(TARGET_DIR + "/export_out.csv.gz"));
+        assertFileDoesNotExist(TARGET_DIR + "/export_out.csv");
+        // archive copies are not compressed
+        assertFileContentEquals(ARCHIVE_DIR + "/export.csv", content);
+        assertEquals(content.length(), metrics.getUncompressedBytes());
+        assertTrue("compression ratio " + metrics.getCompressionRatio(), metrics.getCompressionRatio() < 0.5);
+        assertEquals(metrics.getCompressedBytes(), VFS.getManager().resolveFile(TARGET_DIR + "/export_out.csv.gz")
+                .getContent().getSize());
+    }
+
+    @Test
+    public void decompressesSourceFilesAndRemovesExtension() throws IOException {
+        gzip(SOURCE_DIR + "/export.csv.gz", content);
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).streamingTransferEnabled(true).streamingBlockSize("4096")
+                .decompress("gzip").metrics(metrics).build()).moveFiles();
+
+        assertEquals(1, count);
+        assertFileContentEquals(TARGET_DIR + "/export.csv", content);
+        assertFileDoesNotExist(SOURCE_DIR + "/export.csv.gz");
+        assertEquals(content.length(), metrics.getUncompressedBytes());
+        assertTrue(metrics.getCompressedBytes() < content.length());
+    }
+
+    @Test
+    public void checksumCoversCompressedTargetContent() throws IOException {
+        createFile(SOURCE_DIR + "/export.csv", content);
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .streamingTransferEnabled(true).compress("gzip").checksumAlgorithm(VfsChecksum.MD5)
+                .statistics(statistics).build()).copyFiles();
+
+        VfsChecksum expected = new VfsChecksum(VfsChecksum.MD5);
+        byte[] compressed = read(TARGET_DIR + "/export.csv.gz");
+        expected.update(compressed, 0, compressed.length);
+        assertEquals(expected.getValue(), statistics.getChecksums().get("export.csv.gz"));
+    }
+
+    private static void gzip(String path, String content) throws IOException {
+        FileObject file = VFS.getManager().resolveFile(path);
+        OutputStream out = new GZIPOutputStream(file.getContent().getOutputStream());
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+            file.getContent().close();
+        }
+    }
+
+    private static String gunzip(String path) throws IOException {
+        InputStream in = new GZIPInputStream(VFS.getManager().resolveFile(path).getContent().getInputStream());
+        try {
+            return new String(readFully(in), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] read(String path) throws IOException {
+        InputStream in = VFS.getManager().resolveFile(path).getContent().getInputStream();
+        try {
+            return readFully(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+}
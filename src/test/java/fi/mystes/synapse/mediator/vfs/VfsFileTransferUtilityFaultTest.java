@@ -0,0 +1,312 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.apache.synapse.SynapseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.mystes.synapse.mediator.vfs.VFSTestHelper.TestFile;
+import fi.mystes.synapse.mediator.vfs.fault.FaultInjector;
+import fi.mystes.synapse.mediator.vfs.fault.FaultInjector.Fault;
+
+public class VfsFileTransferUtilityFaultTest {
+    private static final String SOURCE_DIR = "faulty:///source";
+    private static final String TARGET_DIR = "faulty:///target";
+
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[20000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        FaultInjector.createFile("/source/a.dat", content);
+        FaultInjector.createFile("/source/b.dat", content);
+        FaultInjector.createFile("/target/.keep", new byte[0]);
+    }
+
+    @After
+    public void tearDown() throws FileSystemException {
+        FaultInjector.uninstall();
+    }
+
+    @Test
+    public void connectFailuresAreRetried() throws IOException {
+        FaultInjector injector = FaultInjector.install(new FaultInjector(1).failNext(Fault.CONNECT, 2));
+
+        int count = utility(3, false).copyFiles();
+
+        assertEquals(2, count);
+        assertEquals(2, injector.getInjected(Fault.CONNECT));
+        assertArrayEquals(content, FaultInjector.readFile("/target/a.dat"));
+    }
+
+    @Test(expected = FileSystemException.class)
+    public void connectFailuresBeyondRetryCountFailOperation() throws FileSystemException {
+        FaultInjector.install(new FaultInjector(1).failNext(Fault.CONNECT, 3));
+
+        utility(2, false).copyFiles();
+    }
+
+    @Test
+    public void midStreamReadFailureIsRetriedWithoutCorruptingTarget() throws IOException {
+        FaultInjector injector = FaultInjector.install(new FaultInjector(1).failNext(Fault.READ, 1));
+
+        int count = utility(1, false).copyFiles();
+
+        assertEquals(2, count);
+        assertEquals(1, injector.getInjected(Fault.READ));
+        assertArrayEquals(content, FaultInjector.readFile("/target/a.dat"));
+        assertArrayEquals(content, FaultInjector.readFile("/target/b.dat"));
+    }
+
+    @Test
+    public void midStreamWriteFailureIsRetriedWithoutCorruptingTarget() throws IOException {
+        FaultInjector injector = FaultInjector.install(new FaultInjector(1).failNext(Fault.WRITE, 1));
+
+        utility(1, false).copyFiles();
+
+        assertEquals(1, injector.getInjected(Fault.WRITE));
+        assertArrayEquals(content, FaultInjector.readFile("/target/a.dat"));
+        assertArrayEquals(content, FaultInjector.readFile("/target/b.dat"));
+    }
+
+    @Test
+    public void streamingTransferResumesAfterMidStreamReadFailure() throws IOException {
+        FaultInjector injector = FaultInjector.install(new FaultInjector(1).failNext(Fault.READ, 1));
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).streamingTransferEnabled(true).resumeEnabled(true).retryCount(1)
+                .retryWait(1).metrics(metrics).build()).copyFiles();
+
+        assertEquals(2, count);
+        assertEquals(1, injector.getInjected(Fault.READ));
+        assertEquals(1, metrics.getResumedTransfers());
+        assertTrue(metrics.getBytesResumed() > 0);
+        assertArrayEquals(content, FaultInjector.readFile("/target/a.dat"));
+        assertArrayEquals(content, FaultInjector.readFile("/target/b.dat"));
+    }
+
+    @Test
+    public void stalledStreamingTransferIsResumed() throws IOException {
+        FaultInjector injector = FaultInjector.install(new FaultInjector(1).failNext(Fault.STALL, 1).stallMillis(1500));
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).streamingTransferEnabled(true).resumeEnabled(true).retryCount(1)
+                .retryWait(1).readIdleTimeout(300).metrics(metrics).build()).copyFiles();
+
+        assertEquals(2, count);
+        assertEquals(1, injector.getInjected(Fault.STALL));
+        assertEquals(1, metrics.getRetries());
+        assertEquals(1, metrics.getResumedTransfers());
+        assertEquals("Resumed abort should not be counted", 0, metrics.getAbortedTransfers());
+        assertArrayEquals(content, FaultInjector.readFile("/target/a.dat"));
+        assertArrayEquals(content, FaultInjector.readFile("/target/b.dat"));
+    }
+
+    @Test
+    public void resumedTransferChecksumCoversWholeFile() throws IOException {
+        FaultInjector.install(new FaultInjector(1).failNext(Fault.READ, 1));
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .streamingTransferEnabled(true).resumeEnabled(true).retryCount(1).retryWait(1)
+                .checksumAlgorithm(VfsChecksum.SHA256).statistics(statistics).metrics(metrics).build()).copyFiles();
+
+        VfsChecksum expected = new VfsChecksum(VfsChecksum.SHA256);
+        expected.update(content, 0, content.length);
+        assertEquals(1, metrics.getResumedTransfers());
+        assertEquals(expected.getValue(), statistics.getChecksums().get("a.dat"));
+        assertEquals(expected.getValue(), statistics.getChecksums().get("b.dat"));
+    }
+
+    @Test
+    public void streamingTransferResumesWithRandomAccessSourceAfterWriteFailure() throws IOException {
+        String localSource = "file:///tmp/vfs-fault-test/source";
+        VFSTestHelper.createDirectory(localSource);
+        try {
+            FaultInjector.install(new FaultInjector(3).failNext(Fault.WRITE, 1));
+            VfsTransferMetrics metrics = new VfsTransferMetrics();
+            TestFile file = VFSTestHelper.createFile(localSource + "/c.txt", new String(new char[20000]).replace('\0', 'c'));
+
+            new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(localSource)
+                    .targetDirectory(TARGET_DIR).streamingTransferEnabled(true).resumeEnabled(true).retryCount(1)
+                    .retryWait(1).metrics(metrics).build()).copyFiles();
+
+            assertEquals(file.getContent(), new String(FaultInjector.readFile("/target/c.txt"), "UTF-8"));
+            assertEquals(1, metrics.getRetries());
+        } finally {
+            VFSTestHelper.deleteDirectory(localSource);
+        }
+    }
+
+    @Test
+    public void failingRangeFailsChunkedTransferAndKeepsExistingTarget() throws IOException {
+        byte[] large = new byte[300000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i * 31);
+        }
+        FaultInjector.createFile("/source/large.dat", large);
+        FaultInjector.createFile("/target/large.dat", content);
+        // four ranges of 75000 bytes, reads of the last one always fail
+        FaultInjector.install(new FaultInjector(1).randomAccess().failReadsAt(290000));
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        try {
+            new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                    .targetDirectory(TARGET_DIR).filePatternRegex("large\\.dat").chunkedThreshold(100000)
+                    .chunkCount(4).retryCount(2).retryWait(1).metrics(metrics).build()).copyFiles();
+            fail("Failing range should fail the transfer");
+        } catch (FileSystemException e) {
+            // expected
+        }
+
+        assertEquals(1, metrics.getChunkedTransfers());
+        assertEquals("Only the failing range should be retried", 2, metrics.getRetries());
+        assertNull(FaultInjector.readFile("/target/large.dat.part"));
+        assertArrayEquals(content, FaultInjector.readFile("/target/large.dat"));
+        assertArrayEquals(large, FaultInjector.readFile("/source/large.dat"));
+    }
+
+    @Test(expected = SynapseException.class)
+    public void streamingTransferWithoutResumeFailsOnMidStreamFailure() throws IOException {
+        FaultInjector.install(new FaultInjector(1).failNext(Fault.READ, 1));
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .streamingTransferEnabled(true).retryCount(1).retryWait(1).build()).copyFiles();
+    }
+
+    @Test
+    public void failedSourceDeleteKeepsSourceAndCompleteTarget() throws IOException {
+        FaultInjector.install(new FaultInjector(1).failNext(Fault.DELETE, 1));
+
+        try {
+            utility(3, false).moveFiles();
+            fail("Failed delete should fail the move");
+        } catch (FileSystemException expected) {
+            // delete of the source is not retried, the file is delivered at least once
+        }
+
+        byte[] moved = FaultInjector.readFile("/target/a.dat");
+        if (moved == null) {
+            moved = FaultInjector.readFile("/target/b.dat");
+        }
+        assertArrayEquals(content, moved);
+        assertNotNull(FaultInjector.readFile("/source/a.dat"));
+        assertNotNull(FaultInjector.readFile("/source/b.dat"));
+    }
+
+    @Test
+    public void failedLockFileDeleteIsRetried() throws IOException {
+        FaultInjector injector = FaultInjector.install(new FaultInjector(1).failNext(Fault.DELETE, 1));
+
+        int count = utility(1, true).copyFiles();
+
+        assertEquals(2, count);
+        assertEquals(1, injector.getInjected(Fault.DELETE));
+        String[] targetFiles = new String[] { ".keep", "a.dat", "b.dat" };
+        for (String name : targetFiles) {
+            assertNotNull(name, FaultInjector.readFile("/target/" + name));
+        }
+        assertNull(FaultInjector.readFile("/target/a.dat.lock"));
+        assertNull(FaultInjector.readFile("/target/b.dat.lock"));
+    }
+
+    @Test
+    public void slowReadsDelayTransfer() throws IOException {
+        FaultInjector.install(new FaultInjector(1).rate(Fault.SLOW_READ, 1).slowReadMillis(20));
+
+        long start = System.currentTimeMillis();
+        utility(0, false).copyFiles();
+
+        assertTrue(System.currentTimeMillis() - start >= 2 * 20);
+    }
+
+    @Test
+    public void lostRenameIsAppliedButReportedAsFailure() throws IOException {
+        FaultInjector.install(new FaultInjector(1).failNext(Fault.LOST_RENAME, 1));
+        StandardFileSystemManager manager = new StandardFileSystemManager();
+        manager.init();
+        try {
+            FileObject source = manager.resolveFile(SOURCE_DIR + "/a.dat");
+            source.moveTo(manager.resolveFile(TARGET_DIR + "/renamed.dat"));
+            fail("Lost rename should be reported as failure");
+        } catch (FileSystemException expected) {
+            assertNull(FaultInjector.readFile("/source/a.dat"));
+            assertArrayEquals(content, FaultInjector.readFile("/target/renamed.dat"));
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void sameSeedInjectsSameFaults() throws IOException {
+        boolean[] first = draw(new FaultInjector(42).rate(Fault.READ, 0.3));
+        boolean[] second = draw(new FaultInjector(42).rate(Fault.READ, 0.3));
+
+        assertTrue(Arrays.equals(first, second));
+    }
+
+    private boolean[] draw(FaultInjector injector) throws IOException {
+        FaultInjector.install(injector);
+        StandardFileSystemManager manager = new StandardFileSystemManager();
+        manager.init();
+        boolean[] failed = new boolean[50];
+        try {
+            FileObject file = manager.resolveFile(SOURCE_DIR + "/a.dat");
+            for (int i = 0; i < failed.length; i++) {
+                try {
+                    InputStream in = file.getContent().getInputStream();
+                    while (in.read(new byte[4096]) != -1) {
+                        // read to the end
+                    }
+                } catch (IOException e) {
+                    failed[i] = true;
+                } finally {
+                    file.getContent().close();
+                }
+            }
+        } finally {
+            manager.close();
+        }
+        return failed;
+    }
+
+    private VfsFileTransferUtility utility(int retryCount, boolean lockEnabled) throws FileSystemException {
+        return new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).retryCount(retryCount).retryWait(1).lockEnabled(lockEnabled).build());
+    }
+}
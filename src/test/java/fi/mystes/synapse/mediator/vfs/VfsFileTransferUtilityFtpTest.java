@@ -0,0 +1,119 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.mystes.synapse.mediator.vfs.server.EmbeddedFtpServer;
+
+public class VfsFileTransferUtilityFtpTest {
+    private static final String SOURCE_DIR = "file:///tmp/vfs-ftp-test/source";
+    private static final String TARGET_DIR = "file:///tmp/vfs-ftp-test/target";
+
+    private EmbeddedFtpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        createDirectory(SOURCE_DIR);
+        createDirectory(TARGET_DIR);
+        server = new EmbeddedFtpServer(new File("target/vfs-ftp-test"));
+        server.start();
+        new File(server.getRootDirectory(), "incoming").mkdirs();
+    }
+
+    @After
+    public void tearDown() throws FileSystemException {
+        server.stop();
+        deleteDirectory(SOURCE_DIR);
+        deleteDirectory(TARGET_DIR);
+        deleteDirectory(server.getRootDirectory().toURI().toString());
+    }
+
+    @Test
+    public void movesFilesToFtpServerInActiveModeWithLocking() throws IOException, InterruptedException {
+        createFile(filePath(SOURCE_DIR, "a.txt"), "first");
+        createFile(filePath(SOURCE_DIR, "b.txt"), "second");
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(server.uri("/incoming")).lockEnabled(true).build()).moveFiles();
+
+        assertEquals("Utility return wrong file moved count", 2, count);
+        assertTrue(new File(server.getRootDirectory(), "incoming/a.txt").isFile());
+        assertTrue(new File(server.getRootDirectory(), "incoming/b.txt").isFile());
+        assertEquals("Lock files should have been removed", 2, new File(server.getRootDirectory(), "incoming").list().length);
+        assertEquals("Files should have been sent in active mode", 0, server.getCommandCount("PASV"));
+        assertTrue(server.getCommandCount("PORT") > 0);
+        assertEquals("Sessions should have been closed", 0, server.awaitSessionsClosed(5000));
+    }
+
+    @Test
+    public void movesFilesFromFtpServerInPassiveMode() throws IOException, InterruptedException {
+        createFile(server.getRootDirectory().toURI() + "incoming/a.txt", "first");
+        createFile(server.getRootDirectory().toURI() + "incoming/b.txt", "second");
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(server.uri("/incoming"))
+                .targetDirectory(TARGET_DIR).ftpPassiveModeEnabled(true).build()).moveFiles();
+
+        assertEquals("Utility return wrong file moved count", 2, count);
+        assertFilesExists(TARGET_DIR, 2);
+        assertEquals("Source files should have been deleted", 0, new File(server.getRootDirectory(), "incoming").list().length);
+        assertEquals("Files should have been fetched in passive mode", 0, server.getCommandCount("PORT"));
+        assertTrue(server.getCommandCount("PASV") > 0);
+        assertEquals(2, server.getCommandCount("DELE"));
+        assertEquals("Sessions should have been closed", 0, server.awaitSessionsClosed(5000));
+    }
+
+    @Test
+    public void unresponsiveServerTimesOutAfterReadIdleTimeout() throws IOException {
+        createFile(filePath(SOURCE_DIR, "a.txt"), "content");
+        server.setCommandLatencyMillis(2000);
+
+        try {
+            new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                    .targetDirectory(server.uri("/incoming")).ftpPassiveModeEnabled(true).readIdleTimeout(500)
+                    .build()).copyFiles();
+            fail("Commands slower than the read idle timeout should time out");
+        } catch (FileSystemException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void latencyIsAddedToEachCommand() throws IOException {
+        createFile(filePath(SOURCE_DIR, "a.txt"), "content");
+        server.setCommandLatencyMillis(20);
+
+        long start = System.currentTimeMillis();
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(server.uri("/incoming")).ftpPassiveModeEnabled(true).build()).copyFiles();
+        long elapsed = System.currentTimeMillis() - start;
+
+        int commands = server.getCommandCount("USER") + server.getCommandCount("PASS") + server.getCommandCount("PASV")
+                + server.getCommandCount("STOR");
+        assertTrue("Copy of " + commands + " commands took " + elapsed + " ms", elapsed >= commands * 20);
+    }
+}
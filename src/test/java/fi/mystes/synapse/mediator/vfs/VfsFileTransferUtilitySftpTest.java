@@ -0,0 +1,190 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.mystes.synapse.mediator.vfs.server.EmbeddedSftpServer;
+
+public class VfsFileTransferUtilitySftpTest {
+    private static final String SOURCE_DIR = "file:///tmp/vfs-sftp-test/source";
+
+    private EmbeddedSftpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        createDirectory(SOURCE_DIR);
+        server = new EmbeddedSftpServer(new File("target/vfs-sftp-test"));
+        server.start();
+        new File(server.getRootDirectory(), "incoming").mkdirs();
+    }
+
+    @After
+    public void tearDown() throws FileSystemException, InterruptedException {
+        server.stop();
+        deleteDirectory(SOURCE_DIR);
+        deleteDirectory(server.getRootDirectory().toURI().toString());
+    }
+
+    @Test
+    public void movesFilesToSftpServerAndClosesSessions() throws IOException, InterruptedException {
+        createFile(filePath(SOURCE_DIR, "a.txt"), "first");
+        createFile(filePath(SOURCE_DIR, "b.txt"), "second");
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(server.uri("/incoming")).lockEnabled(true).build()).moveFiles();
+
+        assertEquals("Utility return wrong file moved count", 2, count);
+        assertTrue(new File(server.getRootDirectory(), "incoming/a.txt").isFile());
+        assertTrue(new File(server.getRootDirectory(), "incoming/b.txt").isFile());
+        assertFileDoesNotExist(filePath(SOURCE_DIR, "a.txt"));
+        assertEquals("Lock file should have been removed", 2, new File(server.getRootDirectory(), "incoming").list().length);
+        assertEquals("Session should have been closed", 0, server.getProxy().awaitConnectionsClosed(5000));
+        assertEquals(1, server.getProxy().getTotalConnections());
+    }
+
+    @Test
+    public void latencyIsAddedToEachRoundTrip() throws IOException, InterruptedException {
+        createFile(filePath(SOURCE_DIR, "a.txt"), "content");
+        VfsOperationOptions options = VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(server.uri("/incoming")).build();
+
+        long start = System.currentTimeMillis();
+        new VfsFileTransferUtility(options).copyFiles();
+        long unshaped = System.currentTimeMillis() - start;
+
+        server.setLatencyMillis(25);
+        start = System.currentTimeMillis();
+        new VfsFileTransferUtility(options).copyFiles();
+        long shaped = System.currentTimeMillis() - start;
+
+        // SSH handshake and SFTP requests take well over ten round trips
+        assertTrue("Shaped copy took " + shaped + " ms, unshaped " + unshaped + " ms", shaped >= unshaped + 10 * 50);
+    }
+
+    @Test
+    public void uploadsWithPipelinedRequests() throws IOException, InterruptedException {
+        String content = largeContent();
+        createFile(filePath(SOURCE_DIR, "a.txt"), content);
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+        server.setLatencyMillis(5);
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(server.uri("/incoming")).sftpQueueDepth(16).metrics(metrics).build()).moveFiles();
+
+        assertEquals(1, count);
+        assertFileContentEquals(new File(server.getRootDirectory(), "incoming/a.txt").toURI().toString(), content);
+        assertFileDoesNotExist(filePath(SOURCE_DIR, "a.txt"));
+        assertEquals(1, metrics.getPipelinedTransfers());
+        assertEquals("Sessions should have been closed", 0, server.getProxy().awaitConnectionsClosed(5000));
+    }
+
+    @Test
+    public void downloadsWithPipelinedRequests() throws IOException, InterruptedException {
+        String content = largeContent();
+        File outgoing = new File(server.getRootDirectory(), "outgoing");
+        outgoing.mkdirs();
+        createFile(new File(outgoing, "b.txt").toURI().toString(), content);
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+        server.setLatencyMillis(5);
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(server.uri("/outgoing"))
+                .targetDirectory(SOURCE_DIR).sftpQueueDepth(16).metrics(metrics).build()).copyFiles();
+
+        assertEquals(1, count);
+        assertFileContentEquals(filePath(SOURCE_DIR, "b.txt"), content);
+        assertEquals(1, metrics.getPipelinedTransfers());
+        assertEquals("Sessions should have been closed", 0, server.getProxy().awaitConnectionsClosed(5000));
+    }
+
+    @Test
+    public void smallFilesAreNotPipelined() throws IOException, InterruptedException {
+        createFile(filePath(SOURCE_DIR, "a.txt"), "small");
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(server.uri("/incoming")).sftpQueueDepth(16).sftpPipeliningThreshold(1024)
+                .metrics(metrics).build()).copyFiles();
+
+        assertEquals(1, count);
+        assertFileContentEquals(new File(server.getRootDirectory(), "incoming/a.txt").toURI().toString(), "small");
+        assertEquals(0, metrics.getPipelinedTransfers());
+        assertEquals("No extra session should have been opened", 1, server.getProxy().getTotalConnections());
+    }
+
+    @Test
+    public void pipelinedSessionNeedsFreeBulkheadSlot() throws IOException, InterruptedException {
+        String content = largeContent();
+        createFile(filePath(SOURCE_DIR, "a.txt"), content);
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        try {
+            int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                    .targetDirectory(server.uri("/incoming")).sftpQueueDepth(16)
+                    .bulkhead(new VfsBulkheadConfig(1, 0, 1000)).metrics(metrics).build()).copyFiles();
+
+            assertEquals(1, count);
+            assertFileContentEquals(new File(server.getRootDirectory(), "incoming/a.txt").toURI().toString(), content);
+            assertEquals(0, metrics.getPipelinedTransfers());
+            assertEquals(1, server.getProxy().getTotalConnections());
+        } finally {
+            VfsBulkhead.reset();
+        }
+    }
+
+    @Test
+    public void bulkheadRejectionIsCountedAsFailure() throws IOException {
+        createFile(filePath(SOURCE_DIR, "a.txt"), "content");
+        VfsBulkheadConfig config = new VfsBulkheadConfig(1, 0, 100);
+        VfsBulkhead bulkhead = VfsBulkhead.forUri(server.uri("/incoming"), config);
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+
+        bulkhead.enter();
+        try {
+            new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                    .targetDirectory(server.uri("/incoming")).bulkhead(config).metrics(metrics)
+                    .statistics(statistics).build()).copyFiles();
+            fail("bulkhead should have rejected the operation");
+        } catch (FileSystemException expected) {
+            assertEquals(1, metrics.getFailures());
+            assertEquals(1, metrics.getLockLatencyCount());
+            assertTrue(statistics.getLockMillis() >= 100);
+        } finally {
+            bulkhead.exit();
+            VfsBulkhead.reset();
+        }
+    }
+
+    private static String largeContent() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        return content.toString();
+    }
+}
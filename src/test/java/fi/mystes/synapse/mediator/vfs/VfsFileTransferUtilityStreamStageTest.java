@@ -0,0 +1,194 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.assertFileDoesNotExist;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.createDirectory;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.deleteDirectory;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.VFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VfsFileTransferUtilityStreamStageTest {
+    private static final String SOURCE_DIR = "file:///tmp/foo/stages/source";
+    private static final String TARGET_DIR = "file:///tmp/foo/stages/target";
+
+    private String content;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        createDirectory(SOURCE_DIR);
+        createDirectory(TARGET_DIR);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append(i).append(";p\u00e4iv\u00e4m\u00e4\u00e4r\u00e4;another column\n");
+        }
+        content = text.toString();
+    }
+
+    @After
+    public void tearDown() throws FileSystemException {
+        deleteDirectory(SOURCE_DIR);
+        deleteDirectory(TARGET_DIR);
+    }
+
+    @Test
+    public void convertsCharsetOfTransferredFiles() throws IOException {
+        write(SOURCE_DIR + "/export.csv", content.getBytes("ISO-8859-1"));
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).streamingTransferEnabled(true)
+                .streamStages(Collections.singletonList(charsetStage("ISO-8859-1", "UTF-8"))).build()).moveFiles();
+
+        assertEquals(1, count);
+        assertEquals(content, new String(read(TARGET_DIR + "/export.csv"), "UTF-8"));
+        assertFileDoesNotExist(SOURCE_DIR + "/export.csv");
+    }
+
+    @Test
+    public void chainsStagesBetweenDecompressionAndCompression() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        OutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(content.getBytes("ISO-8859-1"));
+        gzip.close();
+        write(SOURCE_DIR + "/export.csv.gz", compressed.toByteArray());
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).decompress("gzip").compress("gzip")
+                .streamStages(Arrays.asList(charsetStage("ISO-8859-1", "UTF-8"),
+                        new VfsStreamStageConfig(UpperCaseStage.class.getName(), null)))
+                .build()).copyFiles();
+
+        assertEquals(1, count);
+        InputStream in = new GZIPInputStream(VFS.getManager().resolveFile(TARGET_DIR + "/export.csv.upper.gz")
+                .getContent().getInputStream());
+        try {
+            // the stage upper-cases ASCII letters only
+            assertEquals(content.toUpperCase(Locale.ENGLISH).replace('\u00c4', '\u00e4'),
+                    new String(readFully(in), "UTF-8"));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void transformedTargetsAreNeverUnchanged() throws IOException {
+        write(SOURCE_DIR + "/export.csv", content.getBytes("ISO-8859-1"));
+        write(TARGET_DIR + "/export.csv", content.getBytes("ISO-8859-1"));
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).skipUnchanged(true).skipUnchangedChecksum(true)
+                .streamStages(Collections.singletonList(charsetStage("ISO-8859-1", "UTF-8")))
+                .statistics(statistics).build()).copyFiles();
+
+        assertEquals(1, count);
+        assertEquals(0, statistics.getFilesSkipped());
+        assertEquals(content, new String(read(TARGET_DIR + "/export.csv"), "UTF-8"));
+    }
+
+    /**
+     * Stage upper-casing ASCII letters and marking the target file name.
+     */
+    public static class UpperCaseStage implements VfsStreamStage {
+
+        @Override
+        public void init(Map<String, String> properties) {
+        }
+
+        @Override
+        public InputStream open(InputStream source, String fileName) {
+            return new FilterInputStream(source) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    return b >= 'a' && b <= 'z' ? b - ('a' - 'A') : b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int length = super.read(b, off, len);
+                    for (int i = off; i < off + length; i++) {
+                        if (b[i] >= 'a' && b[i] <= 'z') {
+                            b[i] -= 'a' - 'A';
+                        }
+                    }
+                    return length;
+                }
+            };
+        }
+
+        @Override
+        public String targetFileName(String fileName) {
+            return fileName + ".upper";
+        }
+    }
+
+    private static VfsStreamStageConfig charsetStage(String from, String to) {
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        properties.put(VfsCharsetStage.PROPERTY_FROM, from);
+        properties.put(VfsCharsetStage.PROPERTY_TO, to);
+        return new VfsStreamStageConfig(VfsCharsetStage.class.getName(), properties);
+    }
+
+    private static void write(String path, byte[] bytes) throws IOException {
+        FileObject file = VFS.getManager().resolveFile(path);
+        OutputStream out = file.getContent().getOutputStream();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+            file.getContent().close();
+        }
+    }
+
+    private static byte[] read(String path) throws IOException {
+        InputStream in = VFS.getManager().resolveFile(path).getContent().getInputStream();
+        try {
+            return readFully(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+}
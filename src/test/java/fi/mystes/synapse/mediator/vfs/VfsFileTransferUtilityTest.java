@@ -36,6 +36,7 @@ import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.*;
 
@@ -415,6 +416,195 @@ public class VfsFileTransferUtilityTest {
         assertEquals("Utility returned wrong copied file count", 2, copyCount);
     }
 
+    @Test
+    public void copySkipsFilesWithUnchangedTarget() throws Exception {
+        createFile(SOURCE_DIR + "/same.txt", "unchanged content");
+        createFile(SOURCE_DIR + "/changed.txt", "old content");
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR).build()).copyFiles();
+
+        createFile(SOURCE_DIR + "/changed.txt", "new longer content");
+        createFile(SOURCE_DIR + "/new.txt", "new file");
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+        int copyCount = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .skipUnchanged(true).statistics(statistics).metrics(metrics).build()).copyFiles();
+
+        assertEquals("Utility returned wrong copied file count", 2, copyCount);
+        assertEquals("Wrong skipped file count", 1, statistics.getFilesSkipped());
+        assertEquals("Wrong skipped file count in metrics", 1, metrics.getFilesSkipped());
+        assertFileContentEquals(TARGET_DIR + "/changed.txt", "new longer content");
+        assertFileContentEquals(TARGET_DIR + "/new.txt", "new file");
+    }
+
+    @Test
+    public void copyComparesChecksumsOfSameSizedFilesWhenEnabled() throws Exception {
+        createFile(SOURCE_DIR + "/file.txt", "source");
+        // newer target with same size looks unchanged by timestamp
+        createFile(TARGET_DIR + "/file.txt", "target");
+
+        int timestampCount = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .skipUnchanged(true).build()).copyFiles();
+        assertEquals("Timestamp comparison should skip the file", 0, timestampCount);
+        assertFileContentEquals(TARGET_DIR + "/file.txt", "target");
+
+        int checksumCount = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .skipUnchanged(true).skipUnchangedChecksum(true).build()).copyFiles();
+        assertEquals("Checksum comparison should copy the file", 1, checksumCount);
+        assertFileContentEquals(TARGET_DIR + "/file.txt", "source");
+
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+        int unchangedCount = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .skipUnchanged(true).skipUnchangedChecksum(true).statistics(statistics).build()).copyFiles();
+        assertEquals("Utility returned wrong copied file count", 0, unchangedCount);
+        assertEquals("Wrong skipped file count", 1, statistics.getFilesSkipped());
+    }
+
+    @Test
+    public void copyCalculatesChecksumsDuringTransfer() throws Exception {
+        createFile(SOURCE_DIR + "/a.txt", "abc");
+        createFile(SOURCE_DIR + "/b.txt", "abc");
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+
+        int copyCount = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .checksumAlgorithm(VfsChecksum.SHA256).statistics(statistics).build()).copyFiles();
+
+        assertEquals("Utility returned wrong copied file count", 2, copyCount);
+        assertEquals(2, statistics.getChecksums().size());
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", statistics.getChecksums().get("a.txt"));
+        assertEquals(statistics.getChecksums().get("a.txt"), statistics.getLastChecksum());
+        assertFileContentEquals(TARGET_DIR + "/b.txt", "abc");
+    }
+
+    @Test
+    public void moveVerifiesChecksumAgainstSourceChecksumFile() throws Exception {
+        createFile(SOURCE_DIR + "/a.txt", "abc");
+        createFile(SOURCE_DIR + "/a.txt.md5", "900150983cd24fb0d6963f7d28e17f72  a.txt\n");
+
+        int moveCount = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .filePatternRegex(".*\\.txt").streamingTransferEnabled(true).checksumAlgorithm(VfsChecksum.MD5)
+                .checksumVerify(true).build()).moveFiles();
+
+        assertEquals("Utility returned wrong moved file count", 1, moveCount);
+        assertFileContentEquals(TARGET_DIR + "/a.txt", "abc");
+        assertFileDoesNotExist(SOURCE_DIR + "/a.txt");
+    }
+
+    @Test
+    public void writesChecksumFileNextToTargetFile() throws Exception {
+        createFile(SOURCE_DIR + "/a.txt", "abc");
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .lockEnabled(true).checksumAlgorithm(VfsChecksum.SHA256).checksumSidecar(true).build()).moveFiles();
+
+        assertFileContentEquals(TARGET_DIR + "/a.txt", "abc");
+        assertFileContentEquals(TARGET_DIR + "/a.txt.sha256",
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad  a.txt\n");
+        assertFileDoesNotExist(TARGET_DIR + "/a.txt.lock");
+        assertFilesExists(TARGET_DIR, 2);
+    }
+
+    @Test
+    public void copyPassesContentThroughBandwidthLimiter() throws Exception {
+        createFile(SOURCE_DIR + "/a.txt", "abc");
+        VfsBandwidthLimiter limiter = new VfsBandwidthLimiter("test", 1024 * 1024);
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .bandwidthLimiter(limiter).build()).copyFiles();
+
+        assertFileContentEquals(TARGET_DIR + "/a.txt", "abc");
+        assertEquals(3, limiter.getBytesTransferred());
+    }
+
+    @Test
+    public void autoTransferStrategyChoosesStrategyBySize() throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            large.append("large file content ");
+        }
+        createFile(SOURCE_DIR + "/small.txt", "abc");
+        createFile(SOURCE_DIR + "/large.txt", large.toString());
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .autoTransferStrategy(true).inMemoryThreshold(1024).autoBlockSize(4096).metrics(metrics).build())
+                .copyFiles();
+
+        assertFileContentEquals(TARGET_DIR + "/small.txt", "abc");
+        assertFileContentEquals(TARGET_DIR + "/large.txt", large.toString());
+        assertEquals(1, metrics.getInMemoryTransfers());
+        assertEquals(1, metrics.getStreamingTransfers());
+        assertEquals(0, metrics.getCopyTransfers());
+    }
+
+    @Test
+    public void transferStrategyFollowsStreamingSettingByDefault() throws Exception {
+        createFile(SOURCE_DIR + "/a.txt", "abc");
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .metrics(metrics).build()).copyFiles();
+
+        assertFileContentEquals(TARGET_DIR + "/a.txt", "abc");
+        assertEquals(1, metrics.getCopyTransfers());
+        assertEquals(0, metrics.getInMemoryTransfers());
+    }
+
+    @Test
+    public void largeFileIsMovedInParallelChunks() throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            large.append("chunk ").append(i).append(' ');
+        }
+        createFile(SOURCE_DIR + "/large.txt", large.toString());
+        createFile(SOURCE_DIR + "/small.txt", "abc");
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .chunkedThreshold(1024).chunkCount(4).metrics(metrics).build()).moveFiles();
+
+        assertFileContentEquals(TARGET_DIR + "/large.txt", large.toString());
+        assertFileContentEquals(TARGET_DIR + "/small.txt", "abc");
+        assertFileDoesNotExist(TARGET_DIR + "/large.txt.part");
+        assertFileDoesNotExist(SOURCE_DIR + "/large.txt");
+        assertEquals(1, metrics.getChunkedTransfers());
+        assertEquals(1, metrics.getCopyTransfers());
+    }
+
+    @Test
+    public void checksummedFileIsNotChunked() throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            large.append("chunk ").append(i).append(' ');
+        }
+        createFile(SOURCE_DIR + "/large.txt", large.toString());
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .chunkedThreshold(1024).chunkCount(4).checksumAlgorithm(VfsChecksum.SHA256).metrics(metrics).build())
+                .copyFiles();
+
+        assertFileContentEquals(TARGET_DIR + "/large.txt", large.toString());
+        assertEquals(0, metrics.getChunkedTransfers());
+        assertEquals(1, metrics.getCopyTransfers());
+    }
+
+    @Test
+    public void checksumMismatchDeletesTargetAndKeepsSource() throws Exception {
+        createFile(SOURCE_DIR + "/a.txt", "abc");
+        createFile(SOURCE_DIR + "/a.txt.md5", "00000000000000000000000000000000");
+
+        try {
+            new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                    .filePatternRegex(".*\\.txt").checksumAlgorithm(VfsChecksum.MD5).checksumVerify(true).build()).moveFiles();
+            fail("Checksum mismatch should fail the operation");
+        } catch (VfsChecksumMismatchException e) {
+            assertEquals("900150983cd24fb0d6963f7d28e17f72", e.getActual());
+        }
+
+        assertFileDoesNotExist(TARGET_DIR + "/a.txt");
+        assertFileExists(SOURCE_DIR + "/a.txt");
+    }
+
     private String expectedFolderNotExistsErrorString(String folder) {
         return "Path " + folder + " is not a folder!";
     }
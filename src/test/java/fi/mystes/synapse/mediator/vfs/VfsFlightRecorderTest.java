@@ -0,0 +1,45 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.junit.Test;
+
+public class VfsFlightRecorderTest {
+
+    @Test
+    public void fallsBackToNoOpWhenRecorderCannotBeLoaded() {
+        assertSame(VfsFlightRecorder.NO_OP, VfsFlightRecorder.load("fi.mystes.synapse.mediator.vfs.Missing"));
+    }
+
+    @Test
+    public void noOpRecorderIgnoresEvents() {
+        VfsFlightRecorder recorder = VfsFlightRecorder.NO_OP;
+        Object event = recorder.beginTransfer();
+        assertNull(event);
+        recorder.endTransfer(event, "file:///tmp/a.txt", "file:///tmp/b.txt", 1);
+        recorder.retry(new FileSystemException("failed"), 10);
+    }
+
+    @Test
+    public void recorderIsAlwaysAvailable() {
+        assertNotNull(VfsFlightRecorder.getInstance());
+    }
+}
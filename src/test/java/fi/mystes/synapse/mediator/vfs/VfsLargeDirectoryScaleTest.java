@@ -0,0 +1,146 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Locale;
+
+import org.junit.Test;
+
+/**
+ * Scale test listing large local directories and transferring the single
+ * file matching the file pattern, which measures listing time, heap use and
+ * time to the first transfer. Fails when the time or heap budget is
+ * exceeded. The default build runs 10k entries; the scale-tests profile
+ * (<code>mvn test -Pscale-tests</code>) adds 100k and 1M. Tuned with system
+ * properties:
+ * <ul>
+ * <li>vfs.scaletest.sizes - comma separated directory sizes (10000)</li>
+ * <li>vfs.scaletest.maxMicrosPerEntry - time budget per entry (200)</li>
+ * <li>vfs.scaletest.maxHeapBytesPerEntry - heap budget per entry (4096)</li>
+ * </ul>
+ * Both budgets include a fixed allowance of {@value #FIXED_MILLIS} ms and
+ * {@value #FIXED_HEAP_BYTES} bytes. Populated directories are kept under
+ * target/ and reused by later runs.
+ */
+public class VfsLargeDirectoryScaleTest {
+    static final long FIXED_MILLIS = 5000;
+    static final long FIXED_HEAP_BYTES = 64L * 1024 * 1024;
+    private static final File ROOT = new File("target/vfs-scale-test");
+
+    private final long maxMicrosPerEntry = Long.getLong("vfs.scaletest.maxMicrosPerEntry", 200);
+    private final long maxHeapBytesPerEntry = Long.getLong("vfs.scaletest.maxHeapBytesPerEntry", 4096);
+
+    @Test
+    public void listingAndFirstTransferStayWithinBudgets() throws Exception {
+        for (String size : System.getProperty("vfs.scaletest.sizes", "10000").split(",")) {
+            listAndTransferFirst(Integer.parseInt(size.trim()));
+        }
+    }
+
+    /**
+     * Helper method to copy the one file matching the pattern, from the
+     * middle of a directory of given size, and check the budgets.
+     */
+    private void listAndTransferFirst(int entries) throws Exception {
+        File source = new File(ROOT, "source-" + entries);
+        File target = new File(ROOT, "target-" + entries);
+        populateDirectory(source, entries);
+        target.mkdirs();
+        String matchingName = largeDirectoryFileName(entries / 2);
+        new File(target, matchingName).delete();
+
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+        VfsFileTransferUtility utility = new VfsFileTransferUtility(VfsOperationOptions.with()
+                .sourceDirectory(source.toURI().toString()).targetDirectory(target.toURI().toString())
+                .filePatternRegex(matchingName.replace(".", "\\.")).statistics(statistics).build());
+
+        HeapSampler heap = new HeapSampler();
+        long start = System.nanoTime();
+        int copied = utility.copyFiles();
+        long firstTransferMillis = (System.nanoTime() - start) / 1000000;
+        long heapBytes = heap.stop();
+
+        long millisBudget = FIXED_MILLIS + entries * maxMicrosPerEntry / 1000;
+        long heapBudget = FIXED_HEAP_BYTES + entries * maxHeapBytesPerEntry;
+        System.out.println(String.format(Locale.ENGLISH,
+                "Large directory %d entries: listed=%d, listMs=%d, firstTransferMs=%d (budget %d), heapMB=%.1f (budget %.1f)",
+                entries, statistics.getEntriesListed(), statistics.getListMillis(), firstTransferMillis, millisBudget,
+                heapBytes / 1048576.0, heapBudget / 1048576.0));
+
+        assertEquals("Files copied", 1, copied);
+        assertEquals("Entries listed", entries, statistics.getEntriesListed());
+        assertTrue("Time to first transfer " + firstTransferMillis + " ms exceeds budget " + millisBudget + " ms",
+                firstTransferMillis <= millisBudget);
+        assertTrue("Heap use " + heapBytes + " bytes exceeds budget " + heapBudget + " bytes",
+                heapBytes <= heapBudget);
+    }
+
+    /**
+     * Samples used heap in the background and reports the peak growth over
+     * the heap used when sampling started. The peak includes garbage not yet
+     * collected, so it is an upper bound of the memory the operation needs.
+     */
+    private static final class HeapSampler implements Runnable {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final Thread thread = new Thread(this, "heap-sampler");
+        private final long baseline;
+        private volatile boolean running = true;
+        private volatile long peak;
+
+        private HeapSampler() throws InterruptedException {
+            System.gc();
+            Thread.sleep(100);
+            baseline = memory.getHeapMemoryUsage().getUsed();
+            peak = baseline;
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                sample();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void sample() {
+            long used = memory.getHeapMemoryUsage().getUsed();
+            if (used > peak) {
+                peak = used;
+            }
+        }
+
+        private long stop() throws InterruptedException {
+            running = false;
+            thread.join();
+            sample();
+            return Math.max(0, peak - baseline);
+        }
+    }
+}
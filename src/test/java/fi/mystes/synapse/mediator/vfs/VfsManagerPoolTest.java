@@ -0,0 +1,106 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.vfs2.FileSystemManager;
+import org.junit.Test;
+
+public class VfsManagerPoolTest {
+
+    private static final VfsOperationOptions OPTIONS = VfsOperationOptions.with()
+            .sourceDirectory("ram://pool/source").targetDirectory("ram://pool/target").build();
+
+    @Test
+    public void keepsIdleManagersUpToCapacity() throws Exception {
+        VfsManagerPool pool = new VfsManagerPool(OPTIONS, 1);
+        FileSystemManager first = VfsManagerPool.create();
+        FileSystemManager second = VfsManagerPool.create();
+        pool.release(first, OPTIONS);
+        pool.release(second, OPTIONS);
+        assertEquals(1, pool.getIdleCount());
+        assertSame(first, pool.borrow(OPTIONS));
+        assertNull(pool.borrow(OPTIONS));
+    }
+
+    @Test
+    public void doesNotPoolManagersOfOtherDirectories() throws Exception {
+        VfsManagerPool pool = new VfsManagerPool(OPTIONS, 2);
+        VfsOperationOptions other = VfsOperationOptions.with().sourceDirectory("ram://pool/source")
+                .targetDirectory("ram://pool/other").build();
+        assertFalse(pool.accepts(other));
+        pool.release(VfsManagerPool.create(), other);
+        assertEquals(0, pool.getIdleCount());
+        pool.release(VfsManagerPool.create(), OPTIONS);
+        assertNull(pool.borrow(other));
+    }
+
+    @Test
+    public void doesNotPoolManagersOfOtherConnectionOptions() throws Exception {
+        VfsManagerPool pool = new VfsManagerPool(OPTIONS, 1);
+        VfsOperationOptions passive = VfsOperationOptions.with().sourceDirectory("ram://pool/source")
+                .targetDirectory("ram://pool/target").ftpPassiveModeEnabled(true).build();
+        assertFalse(pool.accepts(passive));
+        assertTrue(pool.accepts(VfsOperationOptions.with().sourceDirectory("ram://pool/source")
+                .targetDirectory("ram://pool/target").retryCount(5).build()));
+    }
+
+    @Test
+    public void closingPoolClosesIdleManagers() throws Exception {
+        VfsManagerPool pool = new VfsManagerPool(OPTIONS, 2);
+        pool.release(VfsManagerPool.create(), OPTIONS);
+        pool.close();
+        assertEquals(0, pool.getIdleCount());
+        pool.release(VfsManagerPool.create(), OPTIONS);
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void warmUpAddsConnectionsToPoolAndCreatesDirectories() throws Exception {
+        File source = File.createTempFile("vfs-mediator-warmup", "");
+        source.delete();
+        source.mkdir();
+        File target = new File(source, "out");
+        try {
+            VfsOperationOptions.Builder builder = VfsOperationOptions.with().sourceDirectory(source.toURI().toString())
+                    .targetDirectory(target.toURI().toString()).createMissingDirectories(true).warmupConnections(2);
+            VfsManagerPool pool = new VfsManagerPool(builder.build(), 2);
+            assertEquals(2, new VfsFileTransferUtility(builder.managerPool(pool).build()).warmUp(2));
+            assertEquals(2, pool.getIdleCount());
+            assertTrue(target.isDirectory());
+            pool.close();
+        } finally {
+            target.delete();
+            source.delete();
+        }
+    }
+
+    @Test
+    public void failedWarmUpDoesNotPoolConnections() throws Exception {
+        VfsOperationOptions.Builder builder = VfsOperationOptions.with().sourceDirectory("ram://warmup/missing")
+                .warmupConnections(1);
+        VfsManagerPool pool = new VfsManagerPool(builder.build(), 1);
+        assertEquals(0, new VfsFileTransferUtility(builder.managerPool(pool).build()).warmUp(1));
+        assertEquals(0, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.createDirectory;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.createFile;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.deleteDirectory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VfsOperationStatisticsTest {
+    private static final String SOURCE_DIR = "file:///tmp/foo/stats/source";
+    private static final String TARGET_DIR = "file:///tmp/foo/stats/target";
+
+    @Before
+    public void setUp() throws FileSystemException {
+        createDirectory(SOURCE_DIR);
+        createDirectory(TARGET_DIR);
+    }
+
+    @After
+    public void tearDown() throws FileSystemException {
+        deleteDirectory(SOURCE_DIR);
+        deleteDirectory(TARGET_DIR);
+    }
+
+    @Test
+    public void copyCollectsListingAndTransferStatistics() throws Exception {
+        createFile(SOURCE_DIR + "/a.txt", "12345");
+        createFile(SOURCE_DIR + "/b.txt", "123");
+        createFile(SOURCE_DIR + "/c.xml", "1");
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).filePatternRegex(".*\\.txt").statistics(statistics).build())
+                .copyFiles();
+
+        assertEquals(2, count);
+        assertEquals(3, statistics.getEntriesListed());
+        assertEquals(2, statistics.getFilesMatched());
+        assertEquals(8, statistics.getBytesTransferred());
+        assertEquals(0, statistics.getRetries());
+        assertTrue(statistics.getSlowestFile().endsWith(".txt"));
+        assertTrue(statistics.getSlowestFileMillis() >= 0);
+    }
+
+    @Test
+    public void emptySourceDirectoryHasNoSlowestFile() throws Exception {
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .statistics(statistics).build()).moveFiles();
+
+        assertEquals(0, statistics.getEntriesListed());
+        assertEquals(0, statistics.getFilesMatched());
+        assertNull(statistics.getSlowestFile());
+        assertEquals(-1, statistics.getSlowestFileMillis());
+    }
+
+    @Test
+    public void slowestFileIsTheLongestTransfer() {
+        VfsOperationStatistics statistics = new VfsOperationStatistics();
+        statistics.transferred("fast.txt", 10, 1000000);
+        statistics.transferred("slow.txt", 10, 5000000);
+        statistics.transferred("medium.txt", 10, 2000000);
+
+        assertEquals("slow.txt", statistics.getSlowestFile());
+        assertEquals(5, statistics.getSlowestFileMillis());
+        assertEquals(8, statistics.getTransferMillis());
+        assertEquals(30, statistics.getBytesTransferred());
+    }
+}
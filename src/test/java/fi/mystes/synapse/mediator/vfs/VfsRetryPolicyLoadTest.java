@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.junit.After;
+import org.junit.Test;
+
+import fi.mystes.synapse.mediator.vfs.fault.FaultInjector;
+import fi.mystes.synapse.mediator.vfs.fault.FaultInjector.Fault;
+import fi.mystes.synapse.mediator.vfs.server.LoadTestReport;
+
+/**
+ * Measures throughput and correctness of moves under injected connect,
+ * stream and delete failures. Every error rate is run with the same seed,
+ * so results are reproducible. Excluded from the default build, run with
+ * <code>mvn test -Pload-tests</code>. Tuned with system properties:
+ * <ul>
+ * <li>vfs.loadtest.errorRates - comma separated fault probabilities
+ * (0,0.01,0.05,0.1)</li>
+ * <li>vfs.loadtest.seed - seed of the injected faults (42)</li>
+ * <li>vfs.loadtest.messages - moves to run per error rate (50)</li>
+ * <li>vfs.loadtest.files - files per move (5)</li>
+ * <li>vfs.loadtest.fileSize - size of each file in bytes (16384)</li>
+ * <li>vfs.loadtest.retryCount - retry count of the moves (3)</li>
+ * </ul>
+ */
+public class VfsRetryPolicyLoadTest {
+    private static final String SOURCE_DIR = "faulty:///source";
+    private static final String TARGET_DIR = "faulty:///target";
+
+    private final long seed = Long.getLong("vfs.loadtest.seed", 42);
+    private final int messages = Integer.getInteger("vfs.loadtest.messages", 50);
+    private final int files = Integer.getInteger("vfs.loadtest.files", 5);
+    private final int fileSize = Integer.getInteger("vfs.loadtest.fileSize", 16384);
+    private final int retryCount = Integer.getInteger("vfs.loadtest.retryCount", 3);
+
+    @After
+    public void tearDown() throws FileSystemException {
+        FaultInjector.uninstall();
+    }
+
+    @Test
+    public void movesDeliverEveryFileIntactUnderInjectedFaults() throws IOException {
+        for (String rate : System.getProperty("vfs.loadtest.errorRates", "0,0.01,0.05,0.1").split(",")) {
+            runMoves(Double.parseDouble(rate.trim()));
+        }
+    }
+
+    /**
+     * Helper method to run the moves with given fault probability and check
+     * that every file is either intact in the target or still in the source.
+     * A failed move leaves its files for the next message, as a polling
+     * proxy service would.
+     */
+    private void runMoves(double rate) throws IOException {
+        FaultInjector.uninstall();
+        byte[] content = new byte[fileSize];
+        Arrays.fill(content, (byte) 'x');
+        FaultInjector.createFile("/target/.keep", new byte[0]);
+        FaultInjector injector = FaultInjector.install(new FaultInjector(seed).rate(Fault.CONNECT, rate)
+                .rate(Fault.READ, rate).rate(Fault.WRITE, rate).rate(Fault.DELETE, rate));
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+        VfsFileTransferUtility utility = new VfsFileTransferUtility(VfsOperationOptions.with()
+                .sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR).lockEnabled(true).retryCount(retryCount)
+                .retryWait(0).metrics(metrics).build());
+        LoadTestReport report = new LoadTestReport("Move with fault rate " + rate);
+
+        report.start();
+        for (int message = 0; message < messages; message++) {
+            for (int file = 0; file < files; file++) {
+                FaultInjector.createFile("/source/m" + message + "f" + file + ".dat", content);
+            }
+            long start = System.nanoTime();
+            try {
+                int moved = utility.moveFiles();
+                report.success(System.nanoTime() - start, moved);
+            } catch (FileSystemException e) {
+                report.failure();
+            }
+        }
+        report.stop();
+
+        int intact = 0;
+        int leftInSource = 0;
+        int duplicated = 0;
+        int lost = 0;
+        int corrupted = 0;
+        for (int message = 0; message < messages; message++) {
+            for (int file = 0; file < files; file++) {
+                String name = "m" + message + "f" + file + ".dat";
+                byte[] target = FaultInjector.readFile("/target/" + name);
+                boolean inSource = FaultInjector.readFile("/source/" + name) != null;
+                if (target != null && Arrays.equals(content, target)) {
+                    intact++;
+                    duplicated += inSource ? 1 : 0;
+                } else if (inSource) {
+                    leftInSource++;
+                } else if (target == null) {
+                    lost++;
+                } else {
+                    corrupted++;
+                }
+            }
+        }
+        System.out.println(report.summary("injectedFaults=" + injector.getInjectedTotal(),
+                "retries=" + metrics.getRetries(), "intact=" + intact, "leftInSource=" + leftInSource,
+                "duplicated=" + duplicated, "lost=" + lost, "corrupted=" + corrupted));
+
+        assertEquals("Lost files at fault rate " + rate, 0, lost);
+        assertEquals("Corrupted files at fault rate " + rate, 0, corrupted);
+    }
+}
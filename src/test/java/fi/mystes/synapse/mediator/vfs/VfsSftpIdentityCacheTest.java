@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jcraft.jsch.HostKeyRepository;
+import com.jcraft.jsch.Identity;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.KeyPair;
+
+public class VfsSftpIdentityCacheTest {
+
+    private File keyFile;
+    private File knownHostsFile;
+
+    @Before
+    public void setUp() throws Exception {
+        keyFile = File.createTempFile("vfs-mediator-key", "");
+        knownHostsFile = File.createTempFile("vfs-mediator-known-hosts", "");
+        KeyPair keyPair = KeyPair.genKeyPair(new JSch(), KeyPair.RSA, 1024);
+        keyPair.writePrivateKey(keyFile.getAbsolutePath());
+
+        ByteArrayOutputStream publicKey = new ByteArrayOutputStream();
+        keyPair.writePublicKey(publicKey, "test");
+        FileOutputStream out = new FileOutputStream(knownHostsFile);
+        try {
+            out.write(("host.example.com " + publicKey.toString("UTF-8")).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        VfsSftpIdentityCache.reset();
+        keyFile.delete();
+        knownHostsFile.delete();
+    }
+
+    @Test
+    public void parsesPrivateKeyOnlyOnce() throws Exception {
+        Identity identity = VfsSftpIdentityCache.getIdentity(keyFile);
+        assertNotNull(identity);
+        assertEquals("ssh-rsa", identity.getAlgName());
+        assertFalse(identity.isEncrypted());
+        assertTrue(identity.decrypt());
+        assertSame(identity, VfsSftpIdentityCache.getIdentity(keyFile));
+    }
+
+    @Test
+    public void reparsesPrivateKeyWhenFileChanges() throws Exception {
+        Identity identity = VfsSftpIdentityCache.getIdentity(keyFile);
+        keyFile.setLastModified(keyFile.lastModified() - 10000);
+        assertNotSame(identity, VfsSftpIdentityCache.getIdentity(keyFile));
+    }
+
+    @Test(expected = JSchException.class)
+    public void failsForMissingPrivateKey() throws Exception {
+        VfsSftpIdentityCache.getIdentity(new File(keyFile.getAbsolutePath() + ".missing"));
+    }
+
+    @Test
+    public void identityRepositoryFailsWithKeyParseError() {
+        String missing = keyFile.getAbsolutePath() + ".missing";
+        try {
+            VfsSftpIdentityCache.identityRepositoryFactory(missing).create(new JSch());
+            fail("Expected key parse error");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof JSchException);
+            assertTrue(e.getMessage().contains(missing));
+        }
+    }
+
+    @Test
+    public void parsesKnownHostsOnlyOnce() {
+        HostKeyRepository hostKeys = VfsSftpIdentityCache.getKnownHosts(knownHostsFile);
+        assertNotNull(hostKeys);
+        assertSame(hostKeys, VfsSftpIdentityCache.getKnownHosts(knownHostsFile));
+        knownHostsFile.setLastModified(knownHostsFile.lastModified() - 10000);
+        assertNotSame(hostKeys, VfsSftpIdentityCache.getKnownHosts(knownHostsFile));
+    }
+
+    @Test
+    public void installsKnownHostsOfSshDirectory() throws Exception {
+        File sshDir = File.createTempFile("vfs-mediator-ssh", "");
+        assertTrue(sshDir.delete() && sshDir.mkdir());
+        File sshKnownHosts = new File(sshDir, "known_hosts");
+        assertTrue(knownHostsFile.renameTo(sshKnownHosts));
+        String previous = System.getProperty("vfs.sftp.sshdir");
+        System.setProperty("vfs.sftp.sshdir", sshDir.getAbsolutePath());
+        try {
+            JSch jsch = new JSch();
+            VfsSftpIdentityCache.installKnownHosts(jsch);
+            assertSame(VfsSftpIdentityCache.getKnownHosts(sshKnownHosts), jsch.getHostKeyRepository());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("vfs.sftp.sshdir");
+            } else {
+                System.setProperty("vfs.sftp.sshdir", previous);
+            }
+            sshKnownHosts.delete();
+            sshDir.delete();
+        }
+    }
+
+    @Test
+    public void missingKnownHostsIsNotCached() {
+        assertNull(VfsSftpIdentityCache.getKnownHosts(VfsSftpIdentityCache.NO_KNOWN_HOSTS));
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.createDirectory;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.createTestFiles;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.deleteDirectory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.mystes.synapse.mediator.vfs.VFSTestHelper.TestFile;
+
+public class VfsTransferMetricsTest {
+    private static final String SOURCE_DIR = "file:///tmp/foo/metrics/source";
+    private static final String TARGET_DIR = "file:///tmp/foo/metrics/target";
+    private static final String ARCHIVE_DIR = "file:///tmp/foo/metrics/archive";
+
+    @Before
+    public void setUp() throws FileSystemException {
+        createDirectory(SOURCE_DIR);
+        createDirectory(TARGET_DIR);
+        createDirectory(ARCHIVE_DIR);
+    }
+
+    @After
+    public void tearDown() throws FileSystemException {
+        deleteDirectory(SOURCE_DIR);
+        deleteDirectory(TARGET_DIR);
+        deleteDirectory(ARCHIVE_DIR);
+    }
+
+    @Test
+    public void histogramReportsBucketUpperBounds() {
+        VfsLatencyHistogram histogram = new VfsLatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(40));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(120));
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1, histogram.getPercentileMillis(50));
+        assertEquals(50, histogram.getPercentileMillis(99));
+        assertEquals(250, histogram.getPercentileMillis(100));
+        assertEquals(120, histogram.getMaxMillis());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMillis(99));
+    }
+
+    @Test
+    public void stripedCounterSumsConcurrentUpdates() throws Exception {
+        final VfsStripedCounter counter = new VfsStripedCounter();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.increment();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, counter.sum());
+    }
+
+    @Test
+    public void copyRecordsFilesBytesAndPhases() throws Exception {
+        List<TestFile> files = createTestFiles(SOURCE_DIR, 3);
+        long bytes = 0;
+        for (TestFile file : files) {
+            bytes += file.getSize();
+        }
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .archiveDirectory(ARCHIVE_DIR).lockEnabled(true).metrics(metrics).build()).copyFiles();
+
+        assertEquals(3, metrics.getFilesCopied());
+        assertEquals(3, metrics.getFilesArchived());
+        assertEquals(bytes, metrics.getBytesCopied());
+        assertEquals(bytes, metrics.getBytesArchived());
+        assertEquals(1, metrics.getListLatencyCount());
+        assertEquals(6, metrics.getLockLatencyCount());
+        assertEquals(6, metrics.getTransferLatencyCount());
+        assertEquals(6, metrics.getDeleteLatencyCount());
+        assertEquals(0, metrics.getFailures());
+    }
+
+    @Test
+    public void moveRecordsMovedFiles() throws Exception {
+        createTestFiles(SOURCE_DIR, 2);
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR).targetDirectory(TARGET_DIR)
+                .streamingTransferEnabled(true).metrics(metrics).build()).moveFiles();
+
+        assertEquals(2, metrics.getFilesMoved());
+        assertTrue(metrics.getBytesMoved() > 0);
+        assertEquals(2, metrics.getDeleteLatencyCount());
+    }
+
+    @Test
+    public void failedOperationRecordsFailureAndLockConflict() throws Exception {
+        TestFile file = createTestFiles(SOURCE_DIR, 1).get(0);
+        VFSTestHelper.createFile(TARGET_DIR + "/" + file.getName() + ".lock", "");
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        try {
+            new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                    .targetDirectory(TARGET_DIR).lockEnabled(true).metrics(metrics).build()).copyFiles();
+            fail("Existing lock file should fail the copy");
+        } catch (FileSystemException e) {
+            assertEquals(1, metrics.getLockConflicts());
+            assertEquals(1, metrics.getFailures());
+        }
+
+        metrics.resetStatistics();
+        assertEquals(0, metrics.getFailures());
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs;
+
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.assertFileContentEquals;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.createDirectory;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.createFile;
+import static fi.mystes.synapse.mediator.vfs.VFSTestHelper.deleteDirectory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VfsTransferWatchdogTest {
+    private static final String SOURCE_DIR = "file:///tmp/foo/watchdog/source";
+    private static final String TARGET_DIR = "file:///tmp/foo/watchdog/target";
+
+    private TestWatchdog watchdog;
+    private TestStream stream;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        watchdog = new TestWatchdog();
+        stream = new TestStream();
+        createDirectory(SOURCE_DIR);
+        createDirectory(TARGET_DIR);
+    }
+
+    @After
+    public void tearDown() throws FileSystemException {
+        deleteDirectory(SOURCE_DIR);
+        deleteDirectory(TARGET_DIR);
+    }
+
+    @Test
+    public void abortsTransferWithoutProgress() {
+        VfsTransferWatchdog.Transfer transfer = watchdog.watch("a.txt", 1000, 0, stream);
+
+        watchdog.now += 600;
+        watchdog.check();
+        watchdog.now += 600;
+        watchdog.check();
+
+        assertTrue(stream.closed);
+        assertEquals(0, watchdog.getWatchedCount());
+        try {
+            transfer.progress();
+            fail("Aborted transfer should not make progress");
+        } catch (VfsTransferAbortedException e) {
+            assertTrue(e.getMessage().contains("no progress"));
+        }
+    }
+
+    @Test
+    public void progressKeepsTransferAlive() throws Exception {
+        VfsTransferWatchdog.Transfer transfer = watchdog.watch("a.txt", 1000, 0, stream);
+
+        for (int i = 0; i < 5; i++) {
+            watchdog.now += 600;
+            transfer.progress();
+            watchdog.check();
+        }
+        transfer.finish();
+
+        assertTrue(!stream.closed);
+        assertEquals(0, watchdog.getWatchedCount());
+    }
+
+    @Test
+    public void abortsTransferRunningTooLong() {
+        VfsTransferWatchdog.Transfer transfer = watchdog.watch("a.txt", 1000, 2000, stream);
+
+        for (int i = 0; i < 5; i++) {
+            watchdog.now += 600;
+            try {
+                transfer.progress();
+            } catch (VfsTransferAbortedException e) {
+                assertTrue(e.getMessage().contains("running longer than 2000 ms"));
+                assertTrue(stream.closed);
+                return;
+            }
+            watchdog.check();
+        }
+        fail("Transfer should have been aborted");
+    }
+
+    @Test
+    public void abortClosesStreamsAddedLater() {
+        VfsTransferWatchdog.Transfer transfer = watchdog.watch("a.txt", 1000, 0);
+        transfer.watchStream(stream);
+
+        watchdog.now += 1200;
+        watchdog.check();
+
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void streamAddedToAbortedTransferIsClosed() {
+        VfsTransferWatchdog.Transfer transfer = watchdog.watch("a.txt", 1000, 0);
+        watchdog.now += 1200;
+        watchdog.check();
+
+        transfer.watchStream(stream);
+
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void pausedTransferIsNotIdle() {
+        VfsTransferWatchdog.Transfer transfer = watchdog.watch("a.txt", 1000, 0, stream);
+
+        transfer.pause();
+        watchdog.now += 5000;
+        watchdog.check();
+        transfer.resume();
+        watchdog.now += 600;
+        watchdog.check();
+        assertTrue(!stream.closed);
+
+        watchdog.now += 600;
+        watchdog.check();
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void pausedTransferIsAbortedAfterMaxTransferTime() {
+        VfsTransferWatchdog.Transfer transfer = watchdog.watch("a.txt", 1000, 2000, stream);
+
+        transfer.pause();
+        watchdog.now += 2500;
+        watchdog.check();
+
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void throttledCopyIsNotAbortedAsIdle() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            content.append('x');
+        }
+        createFile(SOURCE_DIR + "/a.txt", content.toString());
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        // the single block waits two seconds for bandwidth, four times the idle timeout
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).readIdleTimeout(500).bandwidthLimiter(new VfsBandwidthLimiter("test", 1000))
+                .metrics(metrics).build()).copyFiles();
+
+        assertEquals(1, count);
+        assertFileContentEquals(TARGET_DIR + "/a.txt", content.toString());
+        assertEquals(0, metrics.getAbortedTransfers());
+    }
+
+    @Test
+    public void watchedCopyTransfersFiles() throws Exception {
+        createFile(SOURCE_DIR + "/a.txt", "content");
+        VfsTransferMetrics metrics = new VfsTransferMetrics();
+
+        int count = new VfsFileTransferUtility(VfsOperationOptions.with().sourceDirectory(SOURCE_DIR)
+                .targetDirectory(TARGET_DIR).readIdleTimeout(60000).maxTransferTime(60000).metrics(metrics).build())
+                .copyFiles();
+
+        assertEquals(1, count);
+        assertFileContentEquals(TARGET_DIR + "/a.txt", "content");
+        assertEquals(7, metrics.getBytesCopied());
+        assertEquals(0, metrics.getAbortedTransfers());
+        assertEquals(0, VfsTransferWatchdog.getInstance().getWatchedCount());
+    }
+
+    private static class TestWatchdog extends VfsTransferWatchdog {
+        long now = 1000;
+
+        TestWatchdog() {
+            super(false);
+        }
+
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class TestStream implements Closeable {
+        boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs.fault;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.provider.AbstractFileName;
+import org.apache.commons.vfs2.provider.AbstractFileObject;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+
+import fi.mystes.synapse.mediator.vfs.fault.FaultInjector.Fault;
+
+/**
+ * File of the <code>faulty://</code> scheme delegating to the RAM store and
+ * failing as decided by the installed {@link FaultInjector}.
+ */
+class FaultInjectingFileObject extends AbstractFileObject<FaultInjectingFileSystem> {
+
+    FaultInjectingFileObject(AbstractFileName name, FaultInjectingFileSystem fileSystem) {
+        super(name, fileSystem);
+    }
+
+    @Override
+    protected FileType doGetType() throws Exception {
+        return stored().getType();
+    }
+
+    @Override
+    protected String[] doListChildren() throws Exception {
+        FileObject[] children = stored().getChildren();
+        String[] names = new String[children.length];
+        for (int i = 0; i < children.length; i++) {
+            names[i] = children[i].getName().getBaseName();
+        }
+        return names;
+    }
+
+    @Override
+    protected long doGetContentSize() throws Exception {
+        return stored().getContent().getSize();
+    }
+
+    @Override
+    protected long doGetLastModifiedTime() throws Exception {
+        return stored().getContent().getLastModifiedTime();
+    }
+
+    @Override
+    protected boolean doSetLastModifiedTime(long modtime) throws Exception {
+        stored().getContent().setLastModifiedTime(modtime);
+        return true;
+    }
+
+    @Override
+    protected InputStream doGetInputStream() throws Exception {
+        FaultInjector injector = FaultInjector.current();
+        FileObject stored = stored();
+        long failAt = -1;
+        if (injector.inject(Fault.READ)) {
+            failAt = injector.readFailureOffset(stored.getContent().getSize());
+        }
+        long delay = injector.inject(Fault.SLOW_READ) ? injector.getSlowReadMillis() : 0;
+        FaultInjectingInputStream in = new FaultInjectingInputStream(stored.getContent().getInputStream(), 0, failAt,
+                delay);
+        if (injector.inject(Fault.STALL)) {
+            in.stall(injector.readFailureOffset(stored.getContent().getSize()), injector.getStallMillis());
+        }
+        return in;
+    }
+
+    @Override
+    protected RandomAccessContent doGetRandomAccessContent(RandomAccessMode mode) throws Exception {
+        final RandomAccessContent content = stored().getContent().getRandomAccessContent(mode);
+        final long failAt = FaultInjector.current().getFailingReadOffset();
+        if (failAt < 0 || mode.requestWrite()) {
+            return content;
+        }
+        // input streams of the content fail when reaching the failing offset
+        return (RandomAccessContent) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { RandomAccessContent.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getInputStream".equals(method.getName())) {
+                            long start = content.getFilePointer();
+                            return new FaultInjectingInputStream(content.getInputStream(), start,
+                                    failAt >= start ? failAt : -1, 0);
+                        }
+                        try {
+                            return method.invoke(content, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    @Override
+    protected OutputStream doGetOutputStream(boolean append) throws Exception {
+        FaultInjector injector = FaultInjector.current();
+        long failAt = injector.inject(Fault.WRITE) ? injector.writeFailureOffset() : -1;
+        return new FaultInjectingOutputStream(stored().getContent().getOutputStream(append), failAt);
+    }
+
+    @Override
+    protected void doCreateFolder() throws Exception {
+        stored().createFolder();
+    }
+
+    @Override
+    protected void doDelete() throws Exception {
+        if (FaultInjector.current().inject(Fault.DELETE)) {
+            throw new FileSystemException("Injected delete failure of " + getName());
+        }
+        stored().delete();
+    }
+
+    @Override
+    protected void doRename(FileObject newFile) throws Exception {
+        stored().moveTo(FaultInjector.storedFile(newFile.getName().getPath()));
+        if (FaultInjector.current().inject(Fault.LOST_RENAME)) {
+            throw new FileSystemException("Injected lost reply of renaming " + getName() + " to " + newFile.getName());
+        }
+    }
+
+    /**
+     * Helper method to resolve the stored file backing this file.
+     */
+    private FileObject stored() throws FileSystemException {
+        return FaultInjector.storedFile(getName().getPath());
+    }
+
+    /**
+     * Input stream failing at given offset and delaying every read.
+     */
+    private final class FaultInjectingInputStream extends FilterInputStream {
+        private final long failAt;
+        private final long delay;
+        private long position;
+        private long stallAt = -1;
+        private long stallMillis;
+
+        private FaultInjectingInputStream(InputStream in, long position, long failAt, long delay) {
+            super(in);
+            this.position = position;
+            this.failAt = failAt;
+            this.delay = delay;
+        }
+
+        /**
+         * Makes the stream stop responding once when reaching given offset.
+         *
+         * @param offset
+         *            Byte offset to stall at
+         * @param millis
+         *            Stall in milliseconds
+         */
+        private void stall(long offset, long millis) {
+            this.stallAt = offset;
+            this.stallMillis = millis;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted during slow read of " + getName());
+                }
+            }
+            if (stallAt >= 0 && position >= stallAt) {
+                stallAt = -1;
+                try {
+                    Thread.sleep(stallMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted during stalled read of " + getName());
+                }
+            }
+            int allowed = len;
+            if (stallAt >= 0) {
+                allowed = (int) Math.min(allowed, stallAt - position);
+            }
+            if (failAt >= 0) {
+                if (position >= failAt) {
+                    throw new IOException("Injected read failure at byte " + position + " of " + getName());
+                }
+                allowed = (int) Math.min(allowed, failAt - position);
+            }
+            int read = super.read(b, off, allowed);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            int read = read(buffer, 0, buffer.length);
+            return read == -1 ? 0 : read;
+        }
+    }
+
+    /**
+     * Output stream failing at given offset. Bytes before the offset are
+     * stored when the stream is closed, leaving a partial file.
+     */
+    private final class FaultInjectingOutputStream extends FilterOutputStream {
+        private final long failAt;
+        private long position;
+
+        private FaultInjectingOutputStream(OutputStream out, long failAt) {
+            super(out);
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (failAt >= 0 && position + len > failAt) {
+                int allowed = (int) (failAt - position);
+                out.write(b, off, allowed);
+                position += allowed;
+                throw new IOException("Injected write failure at byte " + position + " of " + getName());
+            }
+            out.write(b, off, len);
+            position += len;
+        }
+    }
+}
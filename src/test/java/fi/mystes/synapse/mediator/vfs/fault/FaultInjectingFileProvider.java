@@ -0,0 +1,70 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs.fault;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.commons.vfs2.Capability;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileSystem;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.provider.AbstractOriginatingFileProvider;
+import org.apache.commons.vfs2.provider.local.GenericFileNameParser;
+
+import fi.mystes.synapse.mediator.vfs.fault.FaultInjector.Fault;
+
+/**
+ * Test file provider for the <code>faulty://</code> scheme. Files are kept
+ * in a RAM store shared by all file system managers, so unlike
+ * <code>ram://</code> they survive the per-operation managers of the
+ * mediator. Operations fail as decided by the installed
+ * {@link FaultInjector}. The provider is registered for all standard
+ * managers in META-INF/vfs-providers.xml on the test class path.
+ */
+public class FaultInjectingFileProvider extends AbstractOriginatingFileProvider {
+
+    public static final String SCHEME = "faulty";
+
+    static final Collection<Capability> CAPABILITIES = Collections.unmodifiableCollection(Arrays.asList(
+            Capability.GET_TYPE, Capability.GET_LAST_MODIFIED, Capability.SET_LAST_MODIFIED_FILE,
+            Capability.SET_LAST_MODIFIED_FOLDER, Capability.LIST_CHILDREN, Capability.READ_CONTENT,
+            Capability.WRITE_CONTENT, Capability.APPEND_CONTENT, Capability.CREATE, Capability.DELETE,
+            Capability.RENAME, Capability.URI));
+
+    /**
+     * Constructor.
+     */
+    public FaultInjectingFileProvider() {
+        setFileNameParser(GenericFileNameParser.getInstance());
+    }
+
+    @Override
+    protected FileSystem doCreateFileSystem(FileName rootName, FileSystemOptions fileSystemOptions)
+            throws FileSystemException {
+        if (FaultInjector.current().inject(Fault.CONNECT)) {
+            throw new FileSystemException("Injected connect failure to " + rootName);
+        }
+        return new FaultInjectingFileSystem(rootName, fileSystemOptions);
+    }
+
+    @Override
+    public Collection<Capability> getCapabilities() {
+        return CAPABILITIES;
+    }
+}
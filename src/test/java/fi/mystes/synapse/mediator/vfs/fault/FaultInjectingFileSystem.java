@@ -0,0 +1,50 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs.fault;
+
+import java.util.Collection;
+
+import org.apache.commons.vfs2.Capability;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.provider.AbstractFileName;
+import org.apache.commons.vfs2.provider.AbstractFileSystem;
+
+/**
+ * File system of the <code>faulty://</code> scheme. Creating an instance
+ * corresponds to connecting to a server.
+ */
+class FaultInjectingFileSystem extends AbstractFileSystem {
+
+    FaultInjectingFileSystem(FileName rootName, FileSystemOptions fileSystemOptions) {
+        super(rootName, null, fileSystemOptions);
+    }
+
+    @Override
+    protected FileObject createFile(AbstractFileName name) {
+        return new FaultInjectingFileObject(name, this);
+    }
+
+    @Override
+    protected void addCapabilities(Collection<Capability> caps) {
+        caps.addAll(FaultInjectingFileProvider.CAPABILITIES);
+        if (FaultInjector.current().isRandomAccess()) {
+            caps.add(Capability.RANDOM_ACCESS_READ);
+            caps.add(Capability.RANDOM_ACCESS_WRITE);
+        }
+    }
+}
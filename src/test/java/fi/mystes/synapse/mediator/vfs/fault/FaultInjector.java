@@ -0,0 +1,366 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs.fault;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemManager;
+import org.apache.commons.vfs2.Selectors;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.apache.commons.vfs2.provider.ram.RamFileProvider;
+
+/**
+ * Decides which operations of the <code>faulty://</code> file system fail.
+ * Faults are either scheduled for the next calls with
+ * {@link #failNext(Fault, int)} or drawn with given probabilities from a
+ * random generator seeded by the test, so that a single-threaded run always
+ * injects the same faults. The installed injector is shared by all file
+ * system managers, like the RAM store holding the file contents.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * FaultInjector.install(new FaultInjector(42).rate(Fault.READ, 0.05).failNext(Fault.DELETE, 1));
+ * ... operate on faulty:///some/path ...
+ * FaultInjector.uninstall();
+ * </pre>
+ */
+public final class FaultInjector {
+
+    /**
+     * Injectable faults.
+     */
+    public enum Fault {
+        /** Creating the file system fails, like a refused connection. */
+        CONNECT,
+        /** Input stream throws an IOException in the middle of the file. */
+        READ,
+        /** Output stream throws an IOException in the middle of the file. */
+        WRITE,
+        /** Every read from the input stream is delayed. */
+        SLOW_READ,
+        /** Input stream stops responding once in the middle of the file. */
+        STALL,
+        /** Deleting a file fails and the file is kept. */
+        DELETE,
+        /** Rename is applied but reported as failed, like a lost reply. */
+        LOST_RENAME
+    }
+
+    private static final int WRITE_FAILURE_RANGE = 8192;
+    private static final FileSystemManager store = createStore();
+    private static volatile FaultInjector current = new FaultInjector(0);
+
+    private final Random random;
+    private final Map<Fault, Double> rates = new EnumMap<Fault, Double>(Fault.class);
+    private final Map<Fault, Integer> scheduled = new EnumMap<Fault, Integer>(Fault.class);
+    private final Map<Fault, Integer> injected = new EnumMap<Fault, Integer>(Fault.class);
+    private long slowReadMillis = 10;
+    private long stallMillis = 1000;
+    private boolean randomAccess;
+    private long failingReadOffset = -1;
+
+    /**
+     * Constructor. Injects no faults until configured.
+     *
+     * @param seed
+     *            Seed of the random generator drawing faults
+     */
+    public FaultInjector(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Sets probability of a fault. For stream faults the probability applies
+     * per opened stream, for the others per call.
+     *
+     * @param fault
+     *            Fault to inject
+     * @param probability
+     *            Probability between 0 and 1
+     * @return This injector
+     */
+    public synchronized FaultInjector rate(Fault fault, double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException("invalid probability: " + probability);
+        }
+        rates.put(fault, probability);
+        return this;
+    }
+
+    /**
+     * Makes the next calls fail regardless of the probabilities.
+     *
+     * @param fault
+     *            Fault to inject
+     * @param times
+     *            Amount of consecutive calls to fail
+     * @return This injector
+     */
+    public synchronized FaultInjector failNext(Fault fault, int times) {
+        scheduled.put(fault, times);
+        return this;
+    }
+
+    /**
+     * Makes file systems connected after installing this injector support
+     * random access reads and writes.
+     *
+     * @return This injector
+     */
+    public synchronized FaultInjector randomAccess() {
+        this.randomAccess = true;
+        return this;
+    }
+
+    /**
+     * Makes every random access read of given byte fail, so that the same
+     * range of a file fails on each attempt.
+     *
+     * @param offset
+     *            Byte offset random access reads fail at
+     * @return This injector
+     */
+    public synchronized FaultInjector failReadsAt(long offset) {
+        this.failingReadOffset = offset;
+        return this;
+    }
+
+    /**
+     * Sets delay of each read from a slow input stream.
+     *
+     * @param millis
+     *            Delay in milliseconds, default 10
+     * @return This injector
+     */
+    public synchronized FaultInjector slowReadMillis(long millis) {
+        this.slowReadMillis = millis;
+        return this;
+    }
+
+    /**
+     * Sets how long a stalled input stream stops responding.
+     *
+     * @param millis
+     *            Stall in milliseconds, default 1000
+     * @return This injector
+     */
+    public synchronized FaultInjector stallMillis(long millis) {
+        this.stallMillis = millis;
+        return this;
+    }
+
+    /**
+     * Returns how many times given fault has been injected.
+     *
+     * @param fault
+     *            Fault
+     * @return Injection count
+     */
+    public synchronized int getInjected(Fault fault) {
+        Integer count = injected.get(fault);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns how many faults have been injected in total.
+     *
+     * @return Injection count
+     */
+    public synchronized int getInjectedTotal() {
+        int total = 0;
+        for (Integer count : injected.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Installs the injector used by all <code>faulty://</code> file systems.
+     *
+     * @param injector
+     *            Injector to install
+     * @return The installed injector
+     */
+    public static FaultInjector install(FaultInjector injector) {
+        current = injector;
+        return injector;
+    }
+
+    /**
+     * Installs an injector injecting no faults and clears the file store.
+     *
+     * @throws FileSystemException
+     *             If clearing the store fails
+     */
+    public static void uninstall() throws FileSystemException {
+        current = new FaultInjector(0);
+        store.resolveFile("ram:///").delete(Selectors.EXCLUDE_SELF);
+    }
+
+    /**
+     * Returns the installed injector.
+     *
+     * @return Current injector
+     */
+    public static FaultInjector current() {
+        return current;
+    }
+
+    /**
+     * Writes a file directly to the store, bypassing fault injection.
+     *
+     * @param path
+     *            Absolute path, e.g. /source/a.txt
+     * @param content
+     *            File content
+     * @throws IOException
+     *             If writing fails
+     */
+    public static void createFile(String path, byte[] content) throws IOException {
+        FileObject file = storedFile(path);
+        OutputStream out = file.getContent().getOutputStream();
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a file directly from the store, bypassing fault injection.
+     *
+     * @param path
+     *            Absolute path, e.g. /target/a.txt
+     * @return File content, or null if the file does not exist
+     * @throws IOException
+     *             If reading fails
+     */
+    public static byte[] readFile(String path) throws IOException {
+        FileObject file = storedFile(path);
+        if (!file.exists()) {
+            return null;
+        }
+        InputStream in = file.getContent().getInputStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Resolves the stored file backing given path.
+     *
+     * @param path
+     *            Absolute path
+     * @return File in the RAM store, refreshed
+     * @throws FileSystemException
+     *             If resolving fails
+     */
+    static FileObject storedFile(String path) throws FileSystemException {
+        FileObject file = store.resolveFile("ram://" + path);
+        file.refresh();
+        return file;
+    }
+
+    /**
+     * Draws whether given fault is injected now.
+     *
+     * @param fault
+     *            Fault
+     * @return True if the caller must fail
+     */
+    synchronized boolean inject(Fault fault) {
+        Integer remaining = scheduled.get(fault);
+        boolean inject;
+        if (remaining != null && remaining > 0) {
+            scheduled.put(fault, remaining - 1);
+            inject = true;
+        } else {
+            Double rate = rates.get(fault);
+            inject = rate != null && rate > 0 && random.nextDouble() < rate;
+        }
+        if (inject) {
+            injected.put(fault, getInjected(fault) + 1);
+        }
+        return inject;
+    }
+
+    /**
+     * Draws the byte offset a failing read stream fails at.
+     *
+     * @param size
+     *            Size of the file being read
+     * @return Offset smaller than the size, 0 for empty files
+     */
+    synchronized long readFailureOffset(long size) {
+        return size <= 1 ? 0 : (long) (random.nextDouble() * size);
+    }
+
+    /**
+     * Draws the byte offset a failing write stream fails at.
+     *
+     * @return Offset within the first few kilobytes
+     */
+    synchronized long writeFailureOffset() {
+        return random.nextInt(WRITE_FAILURE_RANGE);
+    }
+
+    synchronized boolean isRandomAccess() {
+        return randomAccess;
+    }
+
+    synchronized long getFailingReadOffset() {
+        return failingReadOffset;
+    }
+
+    synchronized long getSlowReadMillis() {
+        return slowReadMillis;
+    }
+
+    synchronized long getStallMillis() {
+        return stallMillis;
+    }
+
+    /**
+     * Helper method to create the RAM store shared by all managers.
+     */
+    private static FileSystemManager createStore() {
+        try {
+            DefaultFileSystemManager manager = new DefaultFileSystemManager();
+            manager.addProvider("ram", new RamFileProvider());
+            manager.init();
+            return manager;
+        } catch (FileSystemException e) {
+            throw new IllegalStateException("Cannot create RAM store for fault injection", e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects latencies of the operations of a load test and reports
+ * throughput and latency percentiles. Safe for concurrent recording.
+ */
+public class LoadTestReport {
+
+    private final String name;
+    private final List<Long> latencies = new ArrayList<Long>();
+    private long startNanos;
+    private long endNanos;
+    private long files;
+    private long failures;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            Name of the load test shown in the report
+     */
+    public LoadTestReport(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Marks start of the measurement.
+     */
+    public synchronized void start() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks end of the measurement.
+     */
+    public synchronized void stop() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * Records a successful operation.
+     *
+     * @param nanos
+     *            Duration of the operation in nanoseconds
+     * @param fileCount
+     *            Amount of files the operation processed
+     */
+    public synchronized void success(long nanos, int fileCount) {
+        latencies.add(nanos);
+        files += fileCount;
+    }
+
+    /**
+     * Records a failed operation.
+     */
+    public synchronized void failure() {
+        failures++;
+    }
+
+    /**
+     * Returns amount of successful operations.
+     *
+     * @return Operation count
+     */
+    public synchronized int getOperations() {
+        return latencies.size();
+    }
+
+    /**
+     * Returns amount of failed operations.
+     *
+     * @return Failure count
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns amount of files processed by successful operations.
+     *
+     * @return File count
+     */
+    public synchronized long getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns files processed per second over the measurement.
+     *
+     * @return Throughput in files per second
+     */
+    public synchronized double getFilesPerSecond() {
+        long elapsed = endNanos - startNanos;
+        return elapsed <= 0 ? 0 : files * 1000000000.0 / elapsed;
+    }
+
+    /**
+     * Returns given percentile of operation latencies.
+     *
+     * @param percentile
+     *            Percentile between 0 and 100, e.g. 99
+     * @return Latency in milliseconds, 0 if nothing was recorded
+     */
+    public synchronized double getLatencyMillis(double percentile) {
+        if (latencies.isEmpty()) {
+            return 0;
+        }
+        List<Long> sorted = new ArrayList<Long>(latencies);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))) / 1000000.0;
+    }
+
+    /**
+     * Returns a one line summary of the load test, with additional values
+     * such as session counts appended.
+     *
+     * @param extra
+     *            Additional values, e.g. "peakSessions=8"
+     * @return Report line
+     */
+    public synchronized String summary(String... extra) {
+        StringBuilder sb = new StringBuilder(name);
+        sb.append(String.format(Locale.ENGLISH,
+                ": operations=%d, failures=%d, files=%d, throughput=%.1f files/s, p50=%.1f ms, p99=%.1f ms, max=%.1f ms",
+                latencies.size(), failures, files, getFilesPerSecond(), getLatencyMillis(50), getLatencyMillis(99),
+                getLatencyMillis(100)));
+        for (String value : extra) {
+            sb.append(", ").append(value);
+        }
+        return sb.toString();
+    }
+}
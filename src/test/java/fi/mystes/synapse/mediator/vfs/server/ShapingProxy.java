@@ -0,0 +1,279 @@
+/**
+ * Copyright 2016 Mystes Oy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fi.mystes.synapse.mediator.vfs.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TCP proxy shaping the traffic between a client and an embedded test
+ * server. Every forwarded chunk is delayed by the configured one-way latency
+ * and throttled to the configured bandwidth, so request/response protocols
+ * see round trips twice the latency. The proxy also counts the connections
+ * going through it, which is how load tests detect leaked sessions.
+ */
+public class ShapingProxy implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String targetHost;
+    private final int targetPort;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> sockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger peakConnections = new AtomicInteger();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+    private volatile boolean closed;
+
+    /**
+     * Constructor. Starts accepting connections on a free local port.
+     *
+     * @param targetHost
+     *            Host to forward connections to
+     * @param targetPort
+     *            Port to forward connections to
+     * @throws IOException
+     *             If binding the proxy port fails
+     */
+    public ShapingProxy(String targetHost, int targetPort) throws IOException {
+        this.targetHost = targetHost;
+        this.targetPort = targetPort;
+        this.serverSocket = new ServerSocket(0, 100, InetAddress.getByName("localhost"));
+        daemon(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "shaping-proxy-" + serverSocket.getLocalPort()).start();
+    }
+
+    /**
+     * Sets one-way latency added to each forwarded chunk. Takes effect
+     * immediately, also for open connections.
+     *
+     * @param latencyMillis
+     *            Latency in milliseconds, 0 for none
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Sets bandwidth limit of each direction of each connection. Takes effect
+     * immediately, also for open connections.
+     *
+     * @param bytesPerSecond
+     *            Bandwidth in bytes per second, 0 for unlimited
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Returns local port the proxy listens to.
+     *
+     * @return Proxy port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns amount of currently open client connections.
+     *
+     * @return Open connections
+     */
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * Returns the largest amount of simultaneously open client connections.
+     *
+     * @return Peak connections
+     */
+    public int getPeakConnections() {
+        return peakConnections.get();
+    }
+
+    /**
+     * Returns amount of client connections accepted so far.
+     *
+     * @return Total connections
+     */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    /**
+     * Waits until all client connections have been closed. Closing is
+     * noticed asynchronously, so clients that have just disconnected may
+     * still be counted for a moment.
+     *
+     * @param timeoutMillis
+     *            Maximum time to wait in milliseconds
+     * @return Amount of connections still open after waiting
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     */
+    public int awaitConnectionsClosed(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (openConnections.get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        return openConnections.get();
+    }
+
+    /**
+     * Stops accepting connections and closes all open ones.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(serverSocket);
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Helper method to accept client connections until the proxy is closed.
+     */
+    private void acceptConnections() {
+        while (!closed) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException e) {
+                // server socket closed
+                return;
+            }
+            Socket server;
+            try {
+                server = new Socket(targetHost, targetPort);
+            } catch (IOException e) {
+                closeQuietly(client);
+                continue;
+            }
+            sockets.add(client);
+            sockets.add(server);
+            totalConnections.incrementAndGet();
+            int open = openConnections.incrementAndGet();
+            int peak = peakConnections.get();
+            while (open > peak && !peakConnections.compareAndSet(peak, open)) {
+                peak = peakConnections.get();
+            }
+            Connection connection = new Connection(client, server);
+            daemon(connection.pump(client, server), "shaping-proxy-upstream").start();
+            daemon(connection.pump(server, client), "shaping-proxy-downstream").start();
+        }
+    }
+
+    /**
+     * Helper method to create a daemon thread.
+     */
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Helper method to close a socket ignoring errors.
+     */
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    /**
+     * Proxied connection consisting of the client and the server socket.
+     * Closing either direction closes the whole connection.
+     */
+    private final class Connection {
+        private final Socket client;
+        private final Socket server;
+        private boolean finished;
+
+        private Connection(Socket client, Socket server) {
+            this.client = client;
+            this.server = server;
+        }
+
+        private Runnable pump(final Socket from, final Socket to) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    try {
+                        InputStream in = from.getInputStream();
+                        OutputStream out = to.getOutputStream();
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            delay(read);
+                            out.write(buffer, 0, read);
+                            out.flush();
+                        }
+                    } catch (IOException e) {
+                        // connection closed by either side
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        finish();
+                    }
+                }
+            };
+        }
+
+        private void delay(int bytes) throws InterruptedException {
+            long millis = latencyMillis;
+            long limit = bytesPerSecond;
+            if (limit > 0) {
+                millis += bytes * 1000L / limit;
+            }
+            if (millis > 0) {
+                Thread.sleep(millis);
+            }
+        }
+
+        private synchronized void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            closeQuietly(client);
+            closeQuietly(server);
+            sockets.remove(client);
+            sockets.remove(server);
+            openConnections.decrementAndGet();
+        }
+    }
+}